@@ -6,11 +6,17 @@ import gov.nysenate.sage.dao.logger.ApiRequestLogger;
 import gov.nysenate.sage.dao.model.ApiUserDao;
 import gov.nysenate.sage.dao.model.JobProcessDao;
 import gov.nysenate.sage.dao.model.JobUserDao;
+import gov.nysenate.sage.dao.provider.DistrictShapefileDao;
+import gov.nysenate.sage.dao.provider.GeoCacheDao;
+import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.dao.stats.*;
 import gov.nysenate.sage.model.api.ApiUser;
 import gov.nysenate.sage.model.job.JobProcessStatus;
 import gov.nysenate.sage.model.job.JobUser;
 import gov.nysenate.sage.model.stats.*;
+import gov.nysenate.sage.service.geo.GeocodeServiceProvider;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
+import gov.nysenate.sage.util.ExecutorRegistry;
 import gov.nysenate.sage.util.auth.ApiUserAuth;
 import gov.nysenate.sage.util.auth.JobUserAuth;
 import org.apache.log4j.Logger;
@@ -21,10 +27,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class AdminApiController extends BaseAdminController
 {
@@ -86,6 +89,26 @@ public class AdminApiController extends BaseAdminController
                         adminResponse = getExceptionStats(request);
                         break;
                     }
+                    case "/cacheStats" : {
+                        adminResponse = getCacheStats(request);
+                        break;
+                    }
+                    case "/geocodeRequests" : {
+                        adminResponse = getGeocodeRequestStats(request);
+                        break;
+                    }
+                    case "/geocoderRanking" : {
+                        adminResponse = getGeocoderRankingStats(request);
+                        break;
+                    }
+                    case "/providerStatus" : {
+                        adminResponse = getProviderStatus(request);
+                        break;
+                    }
+                    case "/executorStats" : {
+                        adminResponse = getExecutorStats(request);
+                        break;
+                    }
                     default : {
                         adminResponse = new GenericResponse(false, "Invalid admin API request.");
                     }
@@ -126,6 +149,10 @@ public class AdminApiController extends BaseAdminController
                         adminResponse = hideException(request);
                         break;
                     }
+                    case "/reloadDistricts" : {
+                        adminResponse = reloadDistricts(request);
+                        break;
+                    }
                     default : {
                         adminResponse = new GenericResponse(false, "Invalid admin API request.");
                     }
@@ -356,6 +383,75 @@ public class AdminApiController extends BaseAdminController
         return exceptionInfoDao.getExceptionInfoList(true);
     }
 
+    /**
+     * Returns usage counters for the in-memory caches.
+     * @param request HttpServletRequest
+     * @return List<CacheStats>
+     */
+    private List<CacheStats> getCacheStats(HttpServletRequest request)
+    {
+        List<CacheStats> cacheStats = new ArrayList<>();
+        CacheStats geocacheStats = GeoCacheDao.getMemoryCacheStats();
+        if (geocacheStats != null) {
+            cacheStats.add(geocacheStats);
+        }
+        cacheStats.add(ApplicationFactory.getGeocodeServiceProvider().getNegativeCacheStats());
+        cacheStats.add(ApplicationFactory.getRevGeocodeServiceProvider().getCacheStats());
+        CacheStats districtCacheStats = DistrictShapefileDao.getDistrictInfoCacheStats();
+        if (districtCacheStats != null) {
+            cacheStats.add(districtCacheStats);
+        }
+        return cacheStats;
+    }
+
+    /**
+     * Returns the number of geocode requests that were coalesced with an identical in-flight request
+     * and the number of requests currently in flight.
+     * @param request HttpServletRequest
+     * @return Map<String, Long>
+     */
+    private Map<String, Long> getGeocodeRequestStats(HttpServletRequest request)
+    {
+        GeocodeServiceProvider geocodeServiceProvider = ApplicationFactory.getGeocodeServiceProvider();
+        Map<String, Long> requestStats = new LinkedHashMap<>();
+        requestStats.put("coalesced", geocodeServiceProvider.getCoalescedCount());
+        requestStats.put("inFlight", (long) geocodeServiceProvider.getInFlightCount());
+        return requestStats;
+    }
+
+    /**
+     * Returns the health metrics of each ranked geocoder in the current rank order.
+     * @param request HttpServletRequest
+     * @return List<GeocoderRankStats>
+     */
+    private List<GeocoderRankStats> getGeocoderRankingStats(HttpServletRequest request)
+    {
+        return ApplicationFactory.getGeocodeServiceProvider().getRankingStats();
+    }
+
+    /**
+     * Returns the circuit breaker state and concurrency usage of the geocode and address providers.
+     * @param request HttpServletRequest
+     * @return Map<String, List<ProviderResilienceStats>>
+     */
+    private Map<String, List<ProviderResilienceStats>> getProviderStatus(HttpServletRequest request)
+    {
+        Map<String, List<ProviderResilienceStats>> providerStatus = new LinkedHashMap<>();
+        providerStatus.put("geocoders", GeocodeServiceValidator.getResilienceStats());
+        providerStatus.put("addressProviders", ApplicationFactory.getAddressServiceProvider().getResilienceStats());
+        return providerStatus;
+    }
+
+    /**
+     * Returns the pool size, active threads and queue depth of each provider thread pool.
+     * @param request HttpServletRequest
+     * @return List<ExecutorStats>
+     */
+    private List<ExecutorStats> getExecutorStats(HttpServletRequest request)
+    {
+        return ExecutorRegistry.getStats();
+    }
+
     /**
      * Marks an exception as hidden so that it can be filtered out in the interface.
      * @param request Required Params: id (of the exceptionInfo).
@@ -375,4 +471,16 @@ public class AdminApiController extends BaseAdminController
         return (update > 0) ? new GenericResponse(true, "Exception hidden")
                             : new GenericResponse(false, "Failed to hide exception!");
     }
+
+    /**
+     * Reloads the district maps and the in-memory district shapes in the background, e.g. after new district
+     * shapefiles have been imported. Requests are served from the current data until the reload is done.
+     * @param request
+     * @return GenericResponse
+     */
+    private GenericResponse reloadDistricts(HttpServletRequest request)
+    {
+        new DistrictShapefileDao().reloadDistrictsAsync();
+        return new GenericResponse(true, "Reloading district data");
+    }
 }
@@ -5,7 +5,6 @@ import gov.nysenate.sage.client.response.base.ApiError;
 import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.api.ApiRequest;
-import gov.nysenate.sage.service.address.AddressService;
 import gov.nysenate.sage.service.address.AddressServiceProvider;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
@@ -105,13 +104,11 @@ public final class AddressController extends BaseApiController
             if (addresses != null && !addresses.isEmpty()) {
                 switch (apiRequest.getRequest()) {
                     case "validate": {
-                        AddressService addressService = addressProvider.newInstance(provider, true);
-                        addressResponse = new BatchValidateResponse(addressService.validate(addresses));
+                        addressResponse = new BatchValidateResponse(addressProvider.validate(addresses, provider, false));
                         break;
                     }
                     case "citystate": {
-                        AddressService addressService = addressProvider.newInstance(provider, true);
-                        addressResponse = new BatchCityStateResponse(addressService.lookupCityState(addresses));
+                        addressResponse = new BatchCityStateResponse(addressProvider.lookupCityState(addresses, provider));
                         break;
                     }
                     default : {
@@ -9,6 +9,7 @@ import gov.nysenate.sage.dao.logger.GeocodeResultLogger;
 import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.address.StreetAddress;
 import gov.nysenate.sage.model.api.*;
 import gov.nysenate.sage.model.geo.Geocode;
@@ -26,7 +27,6 @@ import gov.nysenate.sage.service.geo.RevGeocodeServiceProvider;
 import gov.nysenate.sage.service.map.MapServiceProvider;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.FormatUtil;
-import gov.nysenate.sage.util.StreetAddressParser;
 import gov.nysenate.sage.util.TimeUtil;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
@@ -255,14 +255,16 @@ public class DistrictController extends BaseApiController implements Observer
         Boolean zipProvided = false;
         Boolean isPoBox = false;
 
-        /** Parse the input address */
-        StreetAddress streetAddress = null;
+        /** Parse the input address once. The parse is carried on the requests below for reuse by the caches and DAOs. */
+        ParsedAddress parsedAddress = null;
         try {
-            streetAddress = StreetAddressParser.parseAddress(address);
+            parsedAddress = ParsedAddress.forAddress(address, districtRequest.getParsedAddress());
         }
         catch (Exception ex) {
             logger.debug("Failed to parse input address");
         }
+        districtRequest.setParsedAddress(parsedAddress);
+        StreetAddress streetAddress = (parsedAddress != null) ? parsedAddress.getStreetAddress() : null;
 
         /** This info about the address helps to decide how to process it */
         zipProvided = isZipProvided(streetAddress);
@@ -287,10 +289,12 @@ public class DistrictController extends BaseApiController implements Observer
             Address addressToGeocode = (validatedAddress != null && !validatedAddress.isEmpty())
                                        ? validatedAddress : address;
             geocodedAddress = new GeocodedAddress(addressToGeocode);
+            geocodedAddress.setParsedAddress(parsedAddress);
 
             /** Geocode address unless opted out */
             if (!districtRequest.isSkipGeocode()) {
                 GeocodeRequest geocodeRequest = new GeocodeRequest(districtRequest.getApiRequest(), addressToGeocode, districtRequest.getGeoProvider(), true, true);
+                geocodeRequest.setParsedAddress(parsedAddress);
                 /** Disable cache if provider is specified. */
                 if (districtRequest.getGeoProvider() != null && !districtRequest.getGeoProvider().isEmpty()) {
                     geocodeRequest.setUseCache(false);
@@ -4,12 +4,18 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.nysenate.sage.dao.base.BaseDao;
 import gov.nysenate.sage.dao.model.CountyDao;
+import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.district.*;
 import gov.nysenate.sage.model.geo.GeometryTypes;
 import gov.nysenate.sage.model.geo.Line;
 import gov.nysenate.sage.model.geo.Point;
 import gov.nysenate.sage.model.geo.Polygon;
+import gov.nysenate.sage.model.stats.CacheStats;
+import gov.nysenate.sage.service.district.DistrictPolygonIndex;
+import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.FormatUtil;
+import gov.nysenate.sage.util.MemoryCache;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -21,6 +27,8 @@ import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * DistrictShapefileDao utilizes a PostGIS database loaded with Census shapefiles to
@@ -36,8 +44,8 @@ public class DistrictShapefileDao extends BaseDao
     private static CountyDao countyDao = new CountyDao();
 
     /** Memory Cached District Maps */
-    private static Map<DistrictType, List<DistrictMap>> districtMapCache;
-    private static Map<DistrictType, Map<String, DistrictMap>> districtMapLookup;
+    private static volatile Map<DistrictType, List<DistrictMap>> districtMapCache;
+    private static volatile Map<DistrictType, Map<String, DistrictMap>> districtMapLookup;
 
     /** Set of DistrictTypes that can't be cached effectively due to non-unique codes.
      * These district maps are retrieved during getDistrictInfo() queries. */
@@ -46,10 +54,61 @@ public class DistrictShapefileDao extends BaseDao
         retrieveMapSet.add(DistrictType.SCHOOL);
     }
 
-    public DistrictShapefileDao() {}
+    /** In-memory index of the district shapes, if it has been loaded */
+    private static volatile DistrictPolygonIndex districtPolygonIndex;
+
+    /** Builds the lookup grid of the index and reloads the district data off the request threads */
+    private static ExecutorService indexExecutor = Executors.newSingleThreadExecutor(new SageThreadFactory("districtIndex"));
+
+    /** Results of getDistrictInfo keyed by the rounded point, the district types and the map/proximity flags */
+    private static MemoryCache<String, DistrictInfo> districtInfoCache;
+    private static volatile int DISTRICT_CACHE_PRECISION = 6;
+
+    /** Incremented whenever the district info cache is emptied. It is part of the cache key so that queries
+     *  which were already running against the old district data store their results under a stale key. */
+    private static volatile int districtCacheGeneration = 0;
+
+    public DistrictShapefileDao()
+    {
+        initDistrictInfoCache(ApplicationFactory.getConfig());
+    }
+
+    private static synchronized void initDistrictInfoCache(final Config config)
+    {
+        if (districtInfoCache == null && config != null) {
+            int size = Integer.parseInt(config.getValue("district.cache.size", "50000"));
+            int ttl = Integer.parseInt(config.getValue("district.cache.ttl", "86400"));
+            DISTRICT_CACHE_PRECISION = Integer.parseInt(config.getValue("district.cache.precision", "6"));
+            districtInfoCache = new MemoryCache<>("districtcache", size, ttl);
+            config.notifyOnChange(new Observer() {
+                @Override
+                public void update(Observable o, Object arg) {
+                    updateDistrictInfoCache(config);
+                }
+            });
+        }
+    }
 
     /**
-     * Retrieves a DistrictInfo object based on the districts that intersect the given point.
+     * Applies the district.cache settings to the existing cache. Changing the precision changes the cache keys,
+     * so the cache is emptied in that case.
+     */
+    private static synchronized void updateDistrictInfoCache(Config config)
+    {
+        int size = Integer.parseInt(config.getValue("district.cache.size", "50000"));
+        int ttl = Integer.parseInt(config.getValue("district.cache.ttl", "86400"));
+        int precision = Integer.parseInt(config.getValue("district.cache.precision", "6"));
+        districtInfoCache.resize(size, ttl);
+        if (precision != DISTRICT_CACHE_PRECISION) {
+            DISTRICT_CACHE_PRECISION = precision;
+            clearDistrictInfoCache();
+        }
+    }
+
+    /**
+     * Retrieves a DistrictInfo object based on the districts that intersect the given point. Results are cached
+     * by the point rounded to district.cache.precision decimal places, since the same geocodes are districted
+     * again every time their addresses are looked up.
      * @param point          Point of interest
      * @param districtTypes  Collection of district types to resolve
      * @param getSpecialMaps If true then query will return DistrictMap values for districts in the retrieveMapSet
@@ -57,6 +116,25 @@ public class DistrictShapefileDao extends BaseDao
      * @return  DistrictInfo if query was successful, null otherwise
      */
     public DistrictInfo getDistrictInfo(Point point, List<DistrictType> districtTypes, boolean getSpecialMaps, boolean getProximity)
+    {
+        MemoryCache<String, DistrictInfo> cache = districtInfoCache;
+        String cacheKey = (cache != null && point != null && districtTypes != null)
+                          ? getCacheKey(districtCacheGeneration, point, DISTRICT_CACHE_PRECISION, districtTypes,
+                                        getSpecialMaps, getProximity) : null;
+        if (cacheKey != null) {
+            DistrictInfo cachedInfo = cache.get(cacheKey);
+            if (cachedInfo != null) {
+                return copyDistrictInfo(cachedInfo);
+            }
+        }
+        DistrictInfo districtInfo = queryDistrictInfo(point, districtTypes, getSpecialMaps, getProximity);
+        if (cacheKey != null && districtInfo != null) {
+            cache.put(cacheKey, copyDistrictInfo(districtInfo));
+        }
+        return districtInfo;
+    }
+
+    private DistrictInfo queryDistrictInfo(Point point, List<DistrictType> districtTypes, boolean getSpecialMaps, boolean getProximity)
     {
         /** Template SQL for looking up district given a point */
         String sqlTmpl =
@@ -97,6 +175,56 @@ public class DistrictShapefileDao extends BaseDao
         return null;
     }
 
+    /**
+     * Builds the cache key from the cache generation and the point rounded to the given number of decimal places
+     * along with the district types (in a fixed order) and the flags, since those change the result.
+     */
+    static String getCacheKey(int generation, Point point, int precision, List<DistrictType> districtTypes,
+                              boolean getSpecialMaps, boolean getProximity)
+    {
+        double scale = Math.pow(10, precision);
+        return String.format("%d|%d|%d|%s|%b|%b", generation, Math.round(point.getLat() * scale), Math.round(point.getLon() * scale),
+                             new TreeSet<>(districtTypes), getSpecialMaps, getProximity);
+    }
+
+    /**
+     * Cached results are copied since the district assignment strategies modify the DistrictInfo they are given.
+     * The district maps are shared and are not modified.
+     */
+    private static DistrictInfo copyDistrictInfo(DistrictInfo districtInfo)
+    {
+        DistrictInfo copy = new DistrictInfo();
+        for (DistrictType type : districtInfo.getDistrictCodes().keySet()) {
+            copy.setDistCode(type, districtInfo.getDistCode(type));
+            copy.setDistName(type, districtInfo.getDistName(type));
+            copy.setDistMap(type, districtInfo.getDistMap(type));
+            copy.setDistProximity(type, districtInfo.getDistProximity(type));
+        }
+        return copy;
+    }
+
+    /**
+     * @return CacheStats for the district info cache, or null if it has not been created.
+     */
+    public static CacheStats getDistrictInfoCacheStats()
+    {
+        MemoryCache<String, DistrictInfo> cache = districtInfoCache;
+        return (cache != null) ? cache.getStats() : null;
+    }
+
+    /**
+     * Empties the district info cache, e.g. after the district data has been reloaded. Results of queries that
+     * are still running are not cached since they are keyed by the previous generation.
+     */
+    public static synchronized void clearDistrictInfoCache()
+    {
+        districtCacheGeneration++;
+        MemoryCache<String, DistrictInfo> cache = districtInfoCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * Creates and returns a DistrictOverlap object which contains lists of all districts that contained
      * within a collection of other districts and maps of intersections for senate districts. This is used
@@ -276,6 +404,117 @@ public class DistrictShapefileDao extends BaseDao
         }
     }
 
+    /**
+     * @return The cached DistrictPolygonIndex, or null if the district shapes have not been loaded.
+     */
+    public static DistrictPolygonIndex getDistrictPolygonIndex()
+    {
+        return districtPolygonIndex;
+    }
+
+    /**
+     * Loads the shapes of every district type into the given empty index, builds it and caches it. Each district
+     * type is loaded with its own query so that only one table's geometry is held as text at a time.
+     *
+     * The neighbor graph of the index is then built in the background, followed by the lookup grid if
+     * 'district.index.grid.size' is set. Until they are ready nearby districts are queried from PostGIS and
+     * the index answers from its tree alone.
+     * @param index New DistrictPolygonIndex to fill
+     * @return true if every district type was loaded, false otherwise.
+     */
+    public synchronized boolean cacheDistrictPolygonIndex(final DistrictPolygonIndex index)
+    {
+        long start = System.currentTimeMillis();
+        String sqlTmpl = "SELECT '%s' AS type, %s AS name, %s AS code, ST_AsText(geom) AS geom, %s \n" +
+                         "FROM " + SCHEMA + ".%s";
+        try {
+            for (DistrictType districtType : DistrictType.getStandardTypes()) {
+                if (DistrictShapeCode.contains(districtType)) {
+                    String mapQuery = (retrieveMapSet.contains(districtType)) ? "ST_AsGeoJson(geom) AS map" : "null AS map";
+                    String sqlQuery = String.format(sqlTmpl, districtType, resolveNameColumn(districtType),
+                                                    resolveCodeColumn(districtType), mapQuery, districtType);
+                    run.query(sqlQuery, new ResultSetHandler<Void>() {
+                        @Override
+                        public Void handle(ResultSet rs) throws SQLException {
+                            while (rs.next()) {
+                                DistrictType type = DistrictType.resolveType(rs.getString("type"));
+                                List<List<double[]>> polygons = parsePolygons(rs.getString("geom"));
+                                if (type != null && polygons != null) {
+                                    index.addDistrict(type, rs.getString("name"), getDistrictCode(rs),
+                                                      getDistrictMapFromJson(rs.getString("map")), polygons);
+                                }
+                            }
+                            return null;
+                        }
+                    });
+                    logger.debug(String.format("Indexed %d %s districts", index.getDistrictCount(districtType), districtType));
+                }
+            }
+            index.build();
+            districtPolygonIndex = index;
+            logger.info("Loaded district polygon index in " + (System.currentTimeMillis() - start) + " ms");
+            buildNeighborsAsync(index);
+            buildGridAsync(index);
+            return true;
+        }
+        catch (SQLException ex) {
+            logger.error("Failed to load district polygon index!", ex);
+        }
+        return false;
+    }
+
+    private void buildNeighborsAsync(final DistrictPolygonIndex index)
+    {
+        Config config = ApplicationFactory.getConfig();
+        final double tolerance = Double.parseDouble(config.getValue("district.index.neighbor.tolerance", "5"));
+        indexExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                index.buildNeighbors(tolerance);
+                logger.info("Built district neighbor graph in " + (System.currentTimeMillis() - start) + " ms");
+            }
+        });
+    }
+
+    private void buildGridAsync(final DistrictPolygonIndex index)
+    {
+        Config config = ApplicationFactory.getConfig();
+        final double cellSize = Double.parseDouble(config.getValue("district.index.grid.size", "0.01"));
+        if (cellSize > 0) {
+            indexExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    index.buildGrid(cellSize);
+                    logger.info(String.format("Built district lookup grid in %d ms (%.1f%% senate boundary cells)",
+                        System.currentTimeMillis() - start, index.getBoundaryCellRatio(DistrictType.SENATE) * 100));
+                }
+            });
+        }
+    }
+
+    /**
+     * Reloads the cached district maps and, if it is enabled, the district polygon index in the background. The
+     * district info cache is emptied once the maps have been reloaded and again once the new index is in use.
+     * The current caches keep serving requests until the new ones have been built.
+     */
+    public void reloadDistrictsAsync()
+    {
+        indexExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                logger.info("Reloading district data");
+                cacheDistrictMaps();
+                clearDistrictInfoCache();
+                if (Boolean.parseBoolean(ApplicationFactory.getConfig().getValue("district.index.enabled", "false"))) {
+                    cacheDistrictPolygonIndex(new DistrictPolygonIndex());
+                    clearDistrictInfoCache();
+                }
+            }
+        });
+    }
+
     /**
      * Obtain a list of districts that are closest to the given point. This list does not include the
      * district that the point actually resides within.
@@ -371,17 +610,17 @@ public class DistrictShapefileDao extends BaseDao
         @Override
         public Map<DistrictType, Map<String, DistrictMap>> handle(ResultSet rs) throws SQLException
         {
-            /** Initialize the cache maps */
-            districtMapCache = new HashMap<>();
-            districtMapLookup = new HashMap<>();
+            /** Fill new cache maps so the current ones can be used until they are replaced */
+            Map<DistrictType, List<DistrictMap>> mapCache = new HashMap<>();
+            Map<DistrictType, Map<String, DistrictMap>> mapLookup = new HashMap<>();
 
             while (rs.next()) {
                 DistrictType type = DistrictType.resolveType(rs.getString("type"));
                 if (type != null) {
-                    if (!districtMapCache.containsKey(type)) {
+                    if (!mapCache.containsKey(type)) {
                         logger.debug("Caching " + type.name());
-                        districtMapCache.put(type, new ArrayList<DistrictMap>());
-                        districtMapLookup.put(type, new HashMap<String, DistrictMap>());
+                        mapCache.put(type, new ArrayList<DistrictMap>());
+                        mapLookup.put(type, new HashMap<String, DistrictMap>());
                     }
 
                     String code = getDistrictCode(rs);
@@ -392,11 +631,13 @@ public class DistrictShapefileDao extends BaseDao
 
                     /** Set values in the lookup HashMap */
                     if (code != null && map != null) {
-                        districtMapCache.get(type).add(map);
-                        districtMapLookup.get(type).put(code, map);
+                        mapCache.get(type).add(map);
+                        mapLookup.get(type).put(code, map);
                     }
                 }
             }
+            districtMapCache = mapCache;
+            districtMapLookup = mapLookup;
             return districtMapLookup;
         }
     }
@@ -536,11 +777,68 @@ public class DistrictShapefileDao extends BaseDao
         return null;
     }
 
+    /**
+     * Parses the rings of a POLYGON or MULTIPOLYGON in well known text.
+     * @param wkt Geometry as returned by ST_AsText
+     * @return List of polygons, each a list of rings (outer ring first) of lon, lat pairs, or null if the
+     *         text could not be parsed.
+     */
+    static List<List<double[]>> parsePolygons(String wkt)
+    {
+        if (wkt == null || wkt.indexOf('(') < 0) {
+            return null;
+        }
+        List<List<double[]>> polygons = new ArrayList<>();
+        List<double[]> polygon = new ArrayList<>();
+        int depth = 0, ringDepth = -1;
+        try {
+            for (int i = wkt.indexOf('('); i < wkt.length(); i++) {
+                char c = wkt.charAt(i);
+                if (c == '(') {
+                    depth++;
+                    int end = wkt.indexOf(')', i);
+                    /** The innermost parentheses hold the coordinates of a ring */
+                    if (end > 0 && wkt.lastIndexOf('(', end) == i) {
+                        String[] points = wkt.substring(i + 1, end).split(",");
+                        double[] ring = new double[points.length * 2];
+                        for (int p = 0; p < points.length; p++) {
+                            String[] xy = points[p].trim().split(" ");
+                            ring[2*p] = Double.parseDouble(xy[0]);
+                            ring[2*p+1] = Double.parseDouble(xy[1]);
+                        }
+                        polygon.add(ring);
+                        ringDepth = depth;
+                        depth--;
+                        i = end;
+                    }
+                }
+                else if (c == ')') {
+                    depth--;
+                    /** Closes the polygon that the rings belong to */
+                    if (depth == ringDepth - 2) {
+                        polygons.add(polygon);
+                        polygon = new ArrayList<>();
+                    }
+                }
+            }
+        }
+        catch (RuntimeException ex) {
+            return null;
+        }
+        return polygons;
+    }
+
+    public static void shutdownThread()
+    {
+        indexExecutor.shutdownNow();
+    }
+
     public static void clearCache()
     {
         districtMapCache.clear();
         districtMapLookup.clear();
         districtMapCache = null;
         districtMapLookup = null;
+        clearDistrictInfoCache();
     }
 }
\ No newline at end of file
@@ -2,37 +2,120 @@ package gov.nysenate.sage.dao.provider;
 
 import gov.nysenate.sage.dao.base.BaseDao;
 import gov.nysenate.sage.factory.ApplicationFactory;
-import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.address.GeocodedStreetAddress;
 import gov.nysenate.sage.model.address.StreetAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.stats.CacheStats;
 import gov.nysenate.sage.util.Config;
-import gov.nysenate.sage.util.StreetAddressParser;
+import gov.nysenate.sage.util.MemoryCache;
 import gov.nysenate.sage.util.TimeUtil;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.WordUtils;
 import org.apache.log4j.Logger;
 
+import java.sql.BatchUpdateException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class GeoCacheDao extends BaseDao
 {
     private static Logger logger = Logger.getLogger(GeoCacheDao.class);
-    private static BlockingQueue<GeocodedAddress> cacheBuffer = new LinkedBlockingQueue<>();
-    private static int BUFFER_SIZE;
     private QueryRunner tigerRun = getTigerQueryRunner();
 
+    /** Write-behind buffer that is drained into the cache table by the flush executor. */
+    private static BlockingQueue<GeocodedStreetAddress> cacheBuffer;
+    private static ScheduledExecutorService flushExecutor;
+    private static GeoCacheDao flushExecutorDao;
+    private static AtomicBoolean flushPending = new AtomicBoolean(false);
+    private static final Object flushLock = new Object();
+
+    /** Number of buffered entries that triggers a flush. */
+    private static int BUFFER_SIZE;
+    /** Maximum number of buffered entries before writers are made to wait. */
+    private static int BUFFER_LIMIT;
+    /** Time (in ms) a writer waits on a full buffer before the entry is dropped. */
+    private static int BUFFER_WAIT_MS;
+    /** Time (in secs) between scheduled flushes. */
+    private static int FLUSH_INTERVAL;
+
+    /** In-memory cache that sits in front of the cache.geocache table, keyed by the parsed street address. */
+    private static MemoryCache<String, GeocodedStreetAddress> memoryCache;
+
     public GeoCacheDao() {
         Config config = ApplicationFactory.getConfig();
         BUFFER_SIZE = Integer.parseInt(config.getValue("geocache.buffer.size", "100"));
+        initMemoryCache(config);
+        initWriteBehind(config, this);
+    }
+
+    private static synchronized void initMemoryCache(Config config)
+    {
+        if (memoryCache == null) {
+            int size = Integer.parseInt(config.getValue("geocache.memory.size", "20000"));
+            int ttl = Integer.parseInt(config.getValue("geocache.memory.ttl", "3600"));
+            memoryCache = new MemoryCache<>("geocache", size, ttl);
+        }
+    }
+
+    /**
+     * Sets up the buffer and the single thread executor that writes it to the cache table. The executor
+     * flushes every FLUSH_INTERVAL seconds and whenever the buffer grows beyond BUFFER_SIZE.
+     * @param config Config
+     * @param flusher GeoCacheDao instance that performs the writes.
+     */
+    private static synchronized void initWriteBehind(Config config, final GeoCacheDao flusher)
+    {
+        if (flushExecutor == null) {
+            BUFFER_LIMIT = Integer.parseInt(config.getValue("geocache.buffer.limit", "10000"));
+            BUFFER_WAIT_MS = Integer.parseInt(config.getValue("geocache.buffer.wait", "1000"));
+            FLUSH_INTERVAL = Integer.parseInt(config.getValue("geocache.flush.interval", "5"));
+            cacheBuffer = new LinkedBlockingQueue<>(BUFFER_LIMIT);
+            flushExecutorDao = flusher;
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new SageThreadFactory("geocache"));
+            flushExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flusher.flushCacheBuffer();
+                }
+            }, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the flush executor and synchronously writes any remaining buffered entries. This should be
+     * called before the data sources are closed.
+     */
+    public static synchronized void shutdownFlusher()
+    {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                logger.warn("Interrupted while waiting for geocache flush to complete.");
+            }
+            flushExecutorDao.flushCacheBuffer();
+            flushExecutor = null;
+        }
+    }
+
+    /**
+     * @return CacheStats for the in-memory geocache.
+     */
+    public static CacheStats getMemoryCacheStats()
+    {
+        return (memoryCache != null) ? memoryCache.getStats() : null;
     }
 
     /**
@@ -56,7 +139,8 @@ public class GeoCacheDao extends BaseDao
     private final static String SQL_CACHE_HIT_FULL = String.format("%s\n%s\nLIMIT 1", SQLFRAG_SELECT, SQLFRAG_WHERE_FULL_MATCH);
 
     /**
-     * Performs a lookup on the cache table and returns a GeocodedStreetAddress upon match.
+     * Performs a lookup on the in-memory cache followed by the cache table and returns a
+     * GeocodedStreetAddress upon match.
      * @param sa  StreetAddress to lookup
      * @return    GeocodedStreetAddress
      */
@@ -67,10 +151,19 @@ public class GeoCacheDao extends BaseDao
         }
         if (isStreetAddressRetrievable(sa)) {
             boolean buildingMatch = (!sa.isPoBoxAddress() && !sa.isStreetEmpty());
+            String cacheKey = getCacheKey(sa);
+            GeocodedStreetAddress memoryHit = memoryCache.get(cacheKey);
+            if (memoryHit != null && isRetrievableGeocode(sa, memoryHit.getGeocode(), buildingMatch)) {
+                return newCachedStreetAddress(memoryHit.getStreetAddress(), memoryHit.getGeocode());
+            }
             try {
-                return tigerRun.query(SQL_CACHE_HIT_FULL, new GeocodedStreetAddressHandler(buildingMatch),
+                GeocodedStreetAddress cacheHit = tigerRun.query(SQL_CACHE_HIT_FULL, new GeocodedStreetAddressHandler(buildingMatch),
                     sa.getBldgNum(), sa.getPreDir(), sa.getStreetName(), sa.getPostDir(),
                     sa.getStreetType(), sa.getZip5(), sa.getZip5(), sa.getLocation(), sa.getState());
+                if (cacheHit != null) {
+                    memoryCache.put(cacheKey, newCachedStreetAddress(cacheHit.getStreetAddress(), cacheHit.getGeocode()));
+                }
+                return cacheHit;
             }
             catch (SQLException ex) {
                 logger.error("Error retrieving geo cache hit!", ex);
@@ -83,7 +176,86 @@ public class GeoCacheDao extends BaseDao
     }
 
     /**
-     * Pushes a geocoded address to the buffer for saving to cache.
+     * SQL for method getCacheHits(List<StreetAddress>). The input addresses are supplied as a VALUES list
+     * that is joined against the cache table with the same conditions as SQL_CACHE_HIT_FULL. DISTINCT ON
+     * limits the match to one row per input address.
+     */
+    private final static String SQLFRAG_BATCH_VALUES_ROW = "(?::int, ?::int, ?::text, ?::text, ?::text, ?::text, ?::text, ?::text, ?::text)";
+    private final static String SQL_CACHE_HITS_BATCH =
+        "SELECT DISTINCT ON (input.idx) input.idx, gc.*, ST_Y(gc.latlon) AS lat, ST_X(gc.latlon) AS lon \n" +
+        "FROM (VALUES %s) AS input (idx, bldgnum, predir, street, postdir, streettype, zip5, location, state) \n" +
+        "JOIN cache.geocache AS gc \n" +
+        "  ON gc.bldgnum = input.bldgnum \n" +
+        " AND gc.predir = input.predir \n" +
+        " AND gc.street = input.street \n" +
+        " AND gc.postdir = input.postdir \n" +
+        " AND gc.streettype = input.streettype \n" +
+        " AND (gc.zip5 = input.zip5 AND gc.zip5 != '' AND gc.quality NOT IN ('CITY', 'UNKNOWN') \n" +
+        "   OR input.zip5 = '' AND gc.zip5 = '' AND gc.location = input.location AND gc.location != '' AND gc.state = input.state) \n" +
+        "ORDER BY input.idx";
+
+    /** Maximum number of addresses to send in a single batch cache lookup query. */
+    private final static int BATCH_QUERY_LIMIT = 500;
+
+    /**
+     * Performs a lookup on the in-memory cache for each street address and resolves the remaining ones against
+     * the cache table using one query per BATCH_QUERY_LIMIT addresses.
+     * @param streetAddresses List of StreetAddress to lookup
+     * @return List<GeocodedStreetAddress> aligned with the input list. Elements are null where there is no hit.
+     */
+    public List<GeocodedStreetAddress> getCacheHits(List<StreetAddress> streetAddresses)
+    {
+        List<GeocodedStreetAddress> cacheHits = new ArrayList<>(Collections.nCopies(streetAddresses.size(), (GeocodedStreetAddress) null));
+        List<Integer> lookupIndices = new ArrayList<>();
+
+        /** Resolve what we can from memory first */
+        for (int i = 0; i < streetAddresses.size(); i++) {
+            StreetAddress sa = streetAddresses.get(i);
+            if (sa != null && isStreetAddressRetrievable(sa)) {
+                boolean buildingMatch = (!sa.isPoBoxAddress() && !sa.isStreetEmpty());
+                GeocodedStreetAddress memoryHit = memoryCache.get(getCacheKey(sa));
+                if (memoryHit != null && isRetrievableGeocode(sa, memoryHit.getGeocode(), buildingMatch)) {
+                    cacheHits.set(i, newCachedStreetAddress(memoryHit.getStreetAddress(), memoryHit.getGeocode()));
+                }
+                else {
+                    lookupIndices.add(i);
+                }
+            }
+        }
+
+        /** Query the cache table for the rest in chunks */
+        for (int from = 0; from < lookupIndices.size(); from += BATCH_QUERY_LIMIT) {
+            List<Integer> chunk = lookupIndices.subList(from, Math.min(from + BATCH_QUERY_LIMIT, lookupIndices.size()));
+            List<Object> params = new ArrayList<>(chunk.size() * 9);
+            for (int index : chunk) {
+                StreetAddress sa = streetAddresses.get(index);
+                params.addAll(Arrays.<Object>asList(index, sa.getBldgNum(), sa.getPreDir(), sa.getStreetName(), sa.getPostDir(),
+                    sa.getStreetType(), sa.getZip5(), sa.getLocation(), sa.getState()));
+            }
+            String sql = String.format(SQL_CACHE_HITS_BATCH, StringUtils.join(Collections.nCopies(chunk.size(), SQLFRAG_BATCH_VALUES_ROW), ", "));
+            try {
+                Map<Integer, GeocodedStreetAddress> resultMap = tigerRun.query(sql, new BatchGeocodedStreetAddressHandler(), params.toArray());
+                for (int index : chunk) {
+                    StreetAddress sa = streetAddresses.get(index);
+                    GeocodedStreetAddress cacheHit = resultMap.get(index);
+                    boolean buildingMatch = (!sa.isPoBoxAddress() && !sa.isStreetEmpty());
+                    if (cacheHit != null && isRetrievableGeocode(sa, cacheHit.getGeocode(), buildingMatch)) {
+                        memoryCache.put(getCacheKey(sa), newCachedStreetAddress(cacheHit.getStreetAddress(), cacheHit.getGeocode()));
+                        cacheHits.set(index, cacheHit);
+                    }
+                }
+            }
+            catch (SQLException ex) {
+                logger.error("Error retrieving batch geo cache hits!", ex);
+            }
+        }
+        return cacheHits;
+    }
+
+    /**
+     * Pushes a geocoded address to the buffer for saving to cache. The parsed StreetAddress of the address
+     * is put in the in-memory cache so that it can be served from there right away. If the buffer
+     * is full the caller waits up to BUFFER_WAIT_MS for the flush executor to make room.
      * @param geocodedAddress GeocodedAddress to cache.
      */
     public void cacheGeocodedAddress(GeocodedAddress geocodedAddress)
@@ -91,9 +263,21 @@ public class GeoCacheDao extends BaseDao
         if (geocodedAddress != null && geocodedAddress.isValidAddress() && geocodedAddress.isValidGeocode()) {
             Geocode gc = geocodedAddress.getGeocode();
             if (!gc.isCached()) {
-                cacheBuffer.add(geocodedAddress);
-                if (cacheBuffer.size() > BUFFER_SIZE) {
-                    flushCacheBuffer();
+                StreetAddress sa = geocodedAddress.getParsedAddress().getStreetAddress();
+                if (isCacheableStreetAddress(sa)) {
+                    memoryCache.put(getCacheKey(sa), newCachedStreetAddress(sa, gc));
+                    try {
+                        if (!cacheBuffer.offer(new GeocodedStreetAddress(sa, gc), BUFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                            logger.warn("Geocache buffer is full. Dropped " + sa.toString());
+                        }
+                    }
+                    catch (InterruptedException ex) {
+                        logger.warn("Interrupted while waiting on the geocache buffer.");
+                        Thread.currentThread().interrupt();
+                    }
+                    if (cacheBuffer.size() > BUFFER_SIZE) {
+                        requestFlush();
+                    }
                 }
             }
         }
@@ -115,53 +299,117 @@ public class GeoCacheDao extends BaseDao
     private final static String SQL_INSERT_CACHE_ENTRY =
         "INSERT INTO cache.geocache (bldgnum, predir, street, streettype, postdir, location, state, zip5, " +
                                     "latlon, method, quality, zip4) " +
-        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ST_GeomFromText(?), ?, ?, ?)";
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ST_GeomFromText(?), ?, ?, ?) " +
+        "ON CONFLICT DO NOTHING";
 
     /**
-     * Saves any GeocodedAddress objects stored in the buffer into the database. The address is parsed into
-     * a StreetAddress object so that look-up is more reliable given variations in the address.
+     * Schedules an asynchronous flush of the buffer unless one is already pending.
      */
-    public synchronized void flushCacheBuffer()
+    public void requestFlush()
     {
-        if (!cacheBuffer.isEmpty()) {
-            Timestamp startTime = TimeUtil.currentTimestamp();
-            int startSize = cacheBuffer.size();
-
-            while (!cacheBuffer.isEmpty()) {
-                GeocodedAddress geocodedAddress = cacheBuffer.remove();
-                if (geocodedAddress != null && geocodedAddress.isValidAddress() && geocodedAddress.isValidGeocode()) {
-                    Address address = geocodedAddress.getAddress();
-                    Geocode gc = geocodedAddress.getGeocode();
-                    StreetAddress sa = StreetAddressParser.parseAddress(address);
-                    if (isCacheableStreetAddress(sa)) {
-                        try {
-                            tigerRun.update(SQL_INSERT_CACHE_ENTRY, Integer.valueOf(sa.getBldgNum()),
-                                sa.getPreDir(), sa.getStreetName(), sa.getStreetType(), sa.getPostDir(), sa.getLocation(),
-                                sa.getState(), sa.getZip5(), "POINT(" + gc.getLon() + " " + gc.getLat() + ")",
-                                gc.getMethod(), gc.getQuality().name(), sa.getZip4());
-                            if (logger.isTraceEnabled()) {
-                                logger.trace("Saved " + sa.toString() + " in cache.");
-                            }
-                        }
-                        catch(SQLException ex) {
-                            // Duplicate row warnings are expected sometimes and can be suppressed.
-                            if (ex.getMessage().startsWith("ERROR: duplicate key")) {
-                                logger.trace(ex.getMessage());
-                            }
-                            else {
-                                logger.warn(ex.getMessage());
-                            }
-                        }
-                        catch(Exception ex) {
-                            logger.error(ex);
-                        }
+        if (flushExecutor != null && flushPending.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushPending.set(false);
+                        flushExecutorDao.flushCacheBuffer();
+                    }
+                });
+            }
+            catch (RejectedExecutionException ex) {
+                flushPending.set(false);
+                logger.debug("Geocache flush executor has been shut down.");
+            }
+        }
+    }
+
+    /**
+     * Saves any GeocodedStreetAddress objects stored in the buffer into the database using a JDBC batch.
+     * The address is stored in its parsed form so that look-up is more reliable given variations in the
+     * address. Rows that already exist in the cache are skipped by the ON CONFLICT clause.
+     *
+     * If a row of the batch is rejected the entries are written again one at a time, so that only the rows
+     * that fail are dropped (and logged) instead of the whole batch.
+     */
+    public void flushCacheBuffer()
+    {
+        synchronized (flushLock) {
+            if (!cacheBuffer.isEmpty()) {
+                Timestamp startTime = TimeUtil.currentTimestamp();
+                List<GeocodedStreetAddress> entries = new ArrayList<>(cacheBuffer.size());
+                cacheBuffer.drainTo(entries);
+
+                Object[][] params = new Object[entries.size()][];
+                for (int i = 0; i < entries.size(); i++) {
+                    StreetAddress sa = entries.get(i).getStreetAddress();
+                    Geocode gc = entries.get(i).getGeocode();
+                    params[i] = new Object[]{Integer.valueOf(sa.getBldgNum()), sa.getPreDir(), sa.getStreetName(),
+                        sa.getStreetType(), sa.getPostDir(), sa.getLocation(), sa.getState(), sa.getZip5(),
+                        "POINT(" + gc.getLon() + " " + gc.getLat() + ")", gc.getMethod(), gc.getQuality().name(), sa.getZip4()};
+                }
+                try {
+                    tigerRun.batch(SQL_INSERT_CACHE_ENTRY, params);
+                    if (entries.size() > 1) {
+                        logger.info(String.format("Cached %d geocodes in %d ms.", entries.size(), TimeUtil.getElapsedMs(startTime)));
+                    }
+                }
+                catch (SQLException ex) {
+                    if (getBatchUpdateException(ex) != null && entries.size() > 1) {
+                        logger.warn("Geocache batch was rejected, saving " + entries.size() + " geocodes individually.");
+                        saveIndividually(entries, params);
+                    }
+                    else {
+                        logger.warn("Failed to save " + entries.size() + " geocodes to cache!", ex);
                     }
                 }
             }
-            if (startSize > 1) {
-                logger.info(String.format("Cached %d geocodes in %d ms.", startSize, TimeUtil.getElapsedMs(startTime)));
+        }
+    }
+
+    /**
+     * Inserts each entry on its own and logs the ones that fail.
+     */
+    private void saveIndividually(List<GeocodedStreetAddress> entries, Object[][] params)
+    {
+        int failed = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                tigerRun.update(SQL_INSERT_CACHE_ENTRY, params[i]);
+            }
+            catch (SQLException ex) {
+                failed++;
+                logger.warn("Failed to save geocode for " + entries.get(i).getStreetAddress() + " to cache: " + ex.getMessage());
             }
         }
+        if (failed > 0) {
+            logger.warn(String.format("Failed to save %d of %d geocodes to cache.", failed, entries.size()));
+        }
+    }
+
+    /**
+     * QueryRunner wraps the driver exception, so the BatchUpdateException is searched for along the chain.
+     * @return BatchUpdateException or null if the exception was not caused by a rejected batch.
+     */
+    static BatchUpdateException getBatchUpdateException(SQLException ex)
+    {
+        Set<Throwable> seen = new HashSet<>();
+        Deque<Throwable> pending = new ArrayDeque<>();
+        pending.add(ex);
+        while (!pending.isEmpty()) {
+            Throwable t = pending.poll();
+            if (t == null || !seen.add(t)) {
+                continue;
+            }
+            if (t instanceof BatchUpdateException) {
+                return (BatchUpdateException) t;
+            }
+            pending.add(t.getCause());
+            if (t instanceof SQLException) {
+                pending.add(((SQLException) t).getNextException());
+            }
+        }
+        return null;
     }
 
     /**
@@ -186,22 +434,51 @@ public class GeoCacheDao extends BaseDao
                     return null;
                 }
 
-                StreetAddress sa = new StreetAddress();
-                sa.setBldgNum(rs.getInt("bldgnum"));
-                sa.setPreDir(rs.getString("predir"));
-                sa.setStreetName(WordUtils.capitalizeFully(rs.getString("street")));
-                sa.setStreetType(WordUtils.capitalizeFully(rs.getString("streettype")));
-                sa.setPostDir(rs.getString("postdir"));
-                sa.setLocation(WordUtils.capitalizeFully(rs.getString("location")));
-                sa.setState(rs.getString("state"));
-                sa.setZip5(rs.getString("zip5"));
-                sa.setZip4(rs.getString("zip4"));
-                return new GeocodedStreetAddress(sa, gc);
+                return new GeocodedStreetAddress(getStreetAddressFromResultSet(rs), gc);
             }
             return null;
         }
     }
 
+    /**
+     * Retrieves the cache hits of a batch lookup keyed by the index of the input address. The building
+     * match quality restriction is applied by the caller since it varies per address.
+     */
+    public class BatchGeocodedStreetAddressHandler implements ResultSetHandler<Map<Integer, GeocodedStreetAddress>>
+    {
+        @Override
+        public Map<Integer, GeocodedStreetAddress> handle(ResultSet rs) throws SQLException {
+            Map<Integer, GeocodedStreetAddress> cacheHits = new HashMap<>();
+            while (rs.next()) {
+                Geocode gc = getGeocodeFromResultSet(rs);
+                if (gc != null && gc.getQuality() != null) {
+                    cacheHits.put(rs.getInt("idx"), new GeocodedStreetAddress(getStreetAddressFromResultSet(rs), gc));
+                }
+            }
+            return cacheHits;
+        }
+    }
+
+    /**
+     * Constructs a StreetAddress from the result set.
+     * @param rs    Result set that has rs.next() already called
+     * @throws SQLException
+     */
+    private StreetAddress getStreetAddressFromResultSet(ResultSet rs) throws SQLException
+    {
+        StreetAddress sa = new StreetAddress();
+        sa.setBldgNum(rs.getInt("bldgnum"));
+        sa.setPreDir(rs.getString("predir"));
+        sa.setStreetName(WordUtils.capitalizeFully(rs.getString("street")));
+        sa.setStreetType(WordUtils.capitalizeFully(rs.getString("streettype")));
+        sa.setPostDir(rs.getString("postdir"));
+        sa.setLocation(WordUtils.capitalizeFully(rs.getString("location")));
+        sa.setState(rs.getString("state"));
+        sa.setZip5(rs.getString("zip5"));
+        sa.setZip4(rs.getString("zip4"));
+        return sa;
+    }
+
     /**
      * Constructs a Geocode from the result set.
      * @param rs    Result set that has rs.next() already called
@@ -231,6 +508,66 @@ public class GeoCacheDao extends BaseDao
         return null;
     }
 
+    /**
+     * Builds the in-memory cache key from the same address components that are matched against in
+     * SQL_CACHE_HIT_FULL. The location and state are only part of the key when the zip is empty.
+     * @param sa StreetAddress
+     * @return String key
+     */
+    private static String getCacheKey(StreetAddress sa)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(sa.getBldgNum()).append('|').append(sa.getPreDir()).append('|').append(sa.getStreetName())
+           .append('|').append(sa.getPostDir()).append('|').append(sa.getStreetType()).append('|');
+        if (!sa.getZip5().isEmpty()) {
+            key.append(sa.getZip5());
+        }
+        else {
+            key.append('|').append(sa.getLocation()).append('|').append(sa.getState());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Applies the quality restrictions of SQL_CACHE_HIT_FULL and GeocodedStreetAddressHandler to an
+     * in-memory cache entry.
+     */
+    private static boolean isRetrievableGeocode(StreetAddress sa, Geocode gc, boolean buildingMatch)
+    {
+        if (gc == null || gc.getQuality() == null) {
+            return false;
+        }
+        if (!sa.getZip5().isEmpty() && (gc.getQuality() == GeocodeQuality.CITY || gc.getQuality() == GeocodeQuality.UNKNOWN)) {
+            return false;
+        }
+        return !(buildingMatch && gc.getQuality().compareTo(GeocodeQuality.HOUSE) < 0);
+    }
+
+    /**
+     * Creates a copy of the street address and geocode in the same form that a cache table hit is returned in.
+     * Copies are made so that callers cannot modify the entries held in the in-memory cache.
+     * @param sa StreetAddress
+     * @param geocode Geocode
+     * @return GeocodedStreetAddress
+     */
+    private static GeocodedStreetAddress newCachedStreetAddress(StreetAddress sa, Geocode geocode)
+    {
+        StreetAddress cachedSa = new StreetAddress();
+        cachedSa.setBldgNum(sa.getBldgNum());
+        cachedSa.setPreDir(sa.getPreDir());
+        cachedSa.setStreetName(WordUtils.capitalizeFully(sa.getStreetName()));
+        cachedSa.setStreetType(WordUtils.capitalizeFully(sa.getStreetType()));
+        cachedSa.setPostDir(sa.getPostDir());
+        cachedSa.setLocation(WordUtils.capitalizeFully(sa.getLocation()));
+        cachedSa.setState(sa.getState());
+        cachedSa.setZip5(sa.getZip5());
+        cachedSa.setZip4(sa.getZip4());
+
+        Geocode cachedGc = new Geocode(new Point(geocode.getLat(), geocode.getLon()), geocode.getQuality(), geocode.getMethod());
+        cachedGc.setCached(true);
+        return new GeocodedStreetAddress(cachedSa, cachedGc);
+    }
+
     /**
      * Determines if street address is cache-able. The goal is to cache unique street level addresses and
      * unique (location/zip only) addresses. The location/zip only addresses allow for caching PO BOX type
@@ -238,7 +575,7 @@ public class GeoCacheDao extends BaseDao
      * @param sa StreetAddress
      * @return true if street address is cacheable.
      */
-    private boolean isCacheableStreetAddress(StreetAddress sa)
+    private static boolean isCacheableStreetAddress(StreetAddress sa)
     {
         return (!sa.getStreet().isEmpty() && !sa.getStreet().startsWith("[") && sa.getBldgNum() > 0)
                || (sa.getStreet().isEmpty() && sa.getBldgNum() == 0 &&
@@ -250,7 +587,7 @@ public class GeoCacheDao extends BaseDao
      * @param sa StreetAddress
      * @return true if street address is retrievable.
      */
-    private boolean isStreetAddressRetrievable(StreetAddress sa)
+    private static boolean isStreetAddressRetrievable(StreetAddress sa)
     {
         return isCacheableStreetAddress(sa);
     }
@@ -8,7 +8,9 @@ import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
 import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ProviderRateLimiter;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.log4j.Logger;
 
@@ -97,12 +99,15 @@ public class GoogleDao implements Observer
     /**
      * Sends out a request to google at the given url and returns a GeocodedAddress if successful.
      * @param url String
-     * @return GeocodedAddress, or null if no match
+     * @return GeocodedAddress, null if no match, or GeocodeServiceValidator.RATE_LIMITED if the request was held back.
      */
     private GeocodedAddress getGeocodedAddress(String url) {
         GeocodedAddress geocodedAddress = null;
 
         try {
+            if (!ProviderRateLimiter.acquire("google")) {
+                return GeocodeServiceValidator.RATE_LIMITED;
+            }
             String response = UrlRequest.getResponseFromUrl(url);
             if (response != null) {
                 JsonNode node = objectMapper.readTree(response);
@@ -1,5 +1,6 @@
 package gov.nysenate.sage.dao.provider;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.nysenate.sage.model.address.Address;
@@ -7,14 +8,20 @@ import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
+import gov.nysenate.sage.util.BatchDispatcher;
+import gov.nysenate.sage.util.JsonStreamUtil;
+import gov.nysenate.sage.util.ProviderRateLimiter;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -26,12 +33,14 @@ public class MapQuestDao
     private static final String DEFAULT_REV_URL = "http://www.mapquestapi.com/geocoding/v1/reverse";
     private static final String DEFAULT_FORMAT = "&outFormat=json&thumbMaps=false&maxResults=1";
     private static final int BATCH_SIZE = 95;
+    private static final int DEFAULT_BATCH_CONCURRENCY = 4;
 
     private Logger logger = Logger.getLogger(MapQuestDao.class);
     private ObjectMapper objectMapper;
     private String geoUrl;
     private String revGeoUrl;
     private String key;
+    private int batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
 
     private static HashMap<String, GeocodeQuality> qualityMap;
     static {
@@ -84,54 +93,60 @@ public class MapQuestDao
         this.key = key;
     }
 
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public void setBatchConcurrency(int batchConcurrency) {
+        this.batchConcurrency = batchConcurrency;
+    }
+
     /**
      * This method performs batch geocoding.
-     * Retrieves a GeocodedAddress given an Address using Yahoo.
+     * Retrieves a GeocodedAddress given an Address using MapQuest. The addresses are sent in batches of
+     * BATCH_SIZE, up to batchConcurrency batches at a time.
      *
      * @param addresses Addresses to geocode
-     * @return          ArrayList of GeocodedAddress containing best matched Geocodes.
+     * @return          ArrayList of GeocodedAddress containing best matched Geocodes, with null for each address
+     *                  whose batch failed.
      */
     public List<GeocodedAddress> getGeocodedAddresses(ArrayList<Address> addresses)
     {
-        /** Pre-populate the batch result with addresses */
-        List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
-        for (Address address : addresses) {
-            geocodedAddresses.add(new GeocodedAddress(address));
-        }
-
-        String baseUrl = getGeoUrl() + "?key=" + getKey() + DEFAULT_FORMAT;
-        String locations = "";
-        int batchCount = 0;
-        int batchOffset = 0;
-        for (int i = 1; i <= addresses.size(); i++)
-        {
-            try {
-                Address address = addresses.get(i-1);
-                locations += (address == null) ? String.format("&location=%s", "null")
-                                               : String.format("&location=%s", URLEncoder.encode(address.toString(), "UTF-8"));
-                batchCount++;
-                if (i % BATCH_SIZE != 0 && i != addresses.size()) continue;
-
-                /** A successful response will have the same size */
-                ArrayList<GeocodedAddress> batchResults = getGeocodedAddresses(baseUrl + locations);
-                if (batchResults.size() == batchCount) {
-                    for (int j = 0; j < batchCount; j++) {
-                        if (batchResults.get(j) != null && batchResults.get(j).isValidGeocode()) {
-                            geocodedAddresses.set(j + batchOffset, batchResults.get(j));
+        final String baseUrl = getGeoUrl() + "?key=" + getKey() + DEFAULT_FORMAT;
+        List<GeocodedAddress> batchResults = BatchDispatcher.dispatch("MapQuest", addresses, BATCH_SIZE, batchConcurrency,
+            new BatchDispatcher.BatchRequest<Address, GeocodedAddress>() {
+                @Override
+                public List<GeocodedAddress> send(List<Address> batch) {
+                    /** A batch held back by the rate limiter is not a failure, so it must not be bisected and retried */
+                    if (!ProviderRateLimiter.acquire("mapquest")) {
+                        return Collections.nCopies(batch.size(), GeocodeServiceValidator.RATE_LIMITED);
+                    }
+                    try {
+                        String locations = "";
+                        for (Address address : batch) {
+                            locations += (address == null) ? String.format("&location=%s", "null")
+                                                           : String.format("&location=%s", URLEncoder.encode(address.toString(), "UTF-8"));
                         }
+                        /** A successful response will have the same size */
+                        return getGeocodedAddresses(baseUrl + locations);
                     }
+                    catch (UnsupportedEncodingException ex){
+                        logger.fatal(ex);
+                    }
+                    return null;
                 }
-                else {
-                    logger.warn("Skipping failed MapQuest batch (" + batchOffset + " - " + (batchOffset + batchCount) + ")");
-                }
+            });
 
-                /** Reset batch counters */
-                batchOffset += batchCount;
-                batchCount = 0;
-                locations = "";
+        /** Addresses without a valid geocode are returned as is. Addresses from failed batches are left null
+         *  so that the failed request is not mistaken for an address that could not be geocoded. */
+        List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
+        for (int i = 0; i < addresses.size(); i++) {
+            GeocodedAddress batchResult = batchResults.get(i);
+            if (batchResult == null || batchResult == GeocodeServiceValidator.RATE_LIMITED) {
+                geocodedAddresses.add(batchResult);
             }
-            catch (UnsupportedEncodingException ex){
-                logger.fatal(ex);
+            else {
+                geocodedAddresses.add((batchResult.isValidGeocode()) ? batchResult : new GeocodedAddress(addresses.get(i)));
             }
         }
         return geocodedAddresses;
@@ -140,6 +155,9 @@ public class MapQuestDao
     public GeocodedAddress getGeocodedAddress(Point point)
     {
         String url = getRevGeoUrl() + "?key=" + getKey() + DEFAULT_FORMAT + String.format("&lat=%f&lng=%f", point.getLat(), point.getLon());
+        if (!ProviderRateLimiter.acquire("mapquest")) {
+            return GeocodeServiceValidator.RATE_LIMITED;
+        }
         ArrayList<GeocodedAddress> revGeocodedAddresses = getGeocodedAddresses(url);
 
         if (revGeocodedAddresses != null && !revGeocodedAddresses.isEmpty()){
@@ -158,38 +176,15 @@ public class MapQuestDao
     private ArrayList<GeocodedAddress> getGeocodedAddresses(String url)
     {
         ArrayList<GeocodedAddress> geocodedAddresses = new ArrayList<>();
-        String json = "";
         try {
-            /** Format and send request */
-            json = UrlRequest.getResponseFromUrl(url);
-            if (json != null) {
-                JsonNode jsonNode = objectMapper.readTree(json);
-
-                /** Error checking */
-                String status = jsonNode.get("info").get("statuscode").asText();
-                if (status != "0"){
-                    logger.debug("MapQuest statuscode: " + status);
-                    logger.error("MapQuest messages " + jsonNode.get("info").get("messages"));
-                    return geocodedAddresses;
-                }
-
-                /** Fetch the results and translate them to GeocodedAddresses */
-                JsonNode jsonResults = jsonNode.get("results");
-                int numResults = jsonResults.size();
-
-                /** Iterate over each result */
-                for (int j = 0; j < numResults; j++) {
-                    try {
-                        JsonNode location = jsonResults.get(j).get("locations").get(0);
-                        geocodedAddresses.add(getGeocodedAddressFromLocationNode(location));
-                    }
-                    catch (Exception ex) {
-                        logger.warn("Error retrieving GeocodedAddress from MapQuest response " + json, ex);
-                        geocodedAddresses.add(new GeocodedAddress());
-                    }
+            /** Send request and stream the results out of the response */
+            ArrayList<GeocodedAddress> results = UrlRequest.readFromUrl(url, new UrlRequest.ResponseReader<ArrayList<GeocodedAddress>>() {
+                @Override
+                public ArrayList<GeocodedAddress> read(InputStream inputStream) throws IOException {
+                    return readGeocodedAddresses(inputStream);
                 }
-            }
-            return geocodedAddresses;
+            });
+            return (results != null) ? results : geocodedAddresses;
         }
         catch (MalformedURLException ex){
             logger.error("Malformed MapQuest url!", ex);
@@ -198,10 +193,10 @@ public class MapQuestDao
             logger.error("UTF-8 Unsupported?!", ex);
         }
         catch (IOException ex) {
-            logger.error("Error opening API resource! " + ex.toString() + " Response: " + json);
+            logger.error("Error opening API resource! " + ex.toString());
         }
         catch (NullPointerException ex) {
-            logger.error("MapQuest response was not formatted correctly. Response: " + json, ex);
+            logger.error("MapQuest response was not formatted correctly.", ex);
         }
         catch (Exception ex){
             logger.error(ex);
@@ -209,6 +204,70 @@ public class MapQuestDao
         return geocodedAddresses;
     }
 
+    /**
+     * Parses a MapQuest response. Only one result at a time is read into a tree.
+     * @param inputStream Response body
+     * @return List of GeocodedAddresses, empty if MapQuest returned an error status or no status at all.
+     * @throws IOException
+     */
+    ArrayList<GeocodedAddress> readGeocodedAddresses(InputStream inputStream) throws IOException
+    {
+        ResponseHandler responseHandler = new ResponseHandler();
+        JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+        try {
+            JsonStreamUtil.readObject(parser, responseHandler);
+        }
+        finally {
+            parser.close();
+        }
+
+        /** Error checking */
+        if (responseHandler.info == null || !responseHandler.info.hasNonNull("statuscode")) {
+            logger.error("MapQuest response is missing the info status.");
+            return new ArrayList<>();
+        }
+        String status = responseHandler.info.get("statuscode").asText();
+        if (!status.equals("0")){
+            logger.debug("MapQuest statuscode: " + status);
+            logger.error("MapQuest messages " + responseHandler.info.get("messages"));
+            return new ArrayList<>();
+        }
+        return responseHandler.geocodedAddresses;
+    }
+
+    /**
+     * Collects the info node and translates each element of the results array to a GeocodedAddress.
+     */
+    class ResponseHandler implements JsonStreamUtil.FieldHandler, JsonStreamUtil.NodeHandler
+    {
+        JsonNode info;
+        ArrayList<GeocodedAddress> geocodedAddresses = new ArrayList<>();
+
+        @Override
+        public void handle(String fieldName, JsonParser parser) throws IOException
+        {
+            if (fieldName.equals("info")) {
+                info = objectMapper.readTree(parser);
+            }
+            else if (fieldName.equals("results")) {
+                JsonStreamUtil.readElements(parser, objectMapper, this);
+            }
+        }
+
+        @Override
+        public void handle(JsonNode result)
+        {
+            try {
+                JsonNode location = result.get("locations").get(0);
+                geocodedAddresses.add(getGeocodedAddressFromLocationNode(location));
+            }
+            catch (Exception ex) {
+                logger.warn("Error retrieving GeocodedAddress from MapQuest result " + result, ex);
+                geocodedAddresses.add(new GeocodedAddress());
+            }
+        }
+    }
+
     /**
      * Create an Address object by parsing the locations element of the json response.
      * @param location  A location node within the locations array that MapQuest returns.
@@ -0,0 +1,269 @@
+package gov.nysenate.sage.dao.provider;
+
+import gov.nysenate.sage.dao.base.BaseDao;
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.service.geo.AddressRangeIndex;
+import gov.nysenate.sage.service.geo.StreetSegmentIndex;
+import gov.nysenate.sage.util.AddressDictionary;
+import gov.nysenate.sage.util.StreetAddressParser;
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the NY TIGER address ranges (addr), their street names (featnames) and the geometry of the street
+ * segments they lie on (edges) from the tiger database into an in-memory AddressRangeIndex for geocoding
+ * and/or a StreetSegmentIndex for reverse geocoding. The segment index also holds named streets that have no
+ * address ranges.
+ */
+public class TigerAddressRangeDao extends BaseDao
+{
+    private static Logger logger = Logger.getLogger(TigerAddressRangeDao.class);
+    private static final String SCHEMA = "tiger_data";
+    private static final int FETCH_SIZE = 10000;
+
+    private static volatile AddressRangeIndex addressRangeIndex;
+    private static volatile StreetSegmentIndex streetSegmentIndex;
+
+    /** Every named edge along with its primary name. Edges without address ranges are only used for reverse geocoding. */
+    private static final String SQL_SEGMENTS =
+            "SELECT DISTINCT ON (e.tlid) e.tlid, ST_AsText(ST_LineMerge(e.the_geom)) AS geom, \n" +
+            "       f.predirabrv, f.name, f.suftypabrv, f.sufdirabrv, COALESCE(e.zipl, e.zipr) AS zip, \n" +
+            "       EXISTS (SELECT 1 FROM " + SCHEMA + ".ny_addr a WHERE a.tlid = e.tlid) AS has_addr \n" +
+            "FROM " + SCHEMA + ".ny_edges e \n" +
+            "JOIN " + SCHEMA + ".ny_featnames f ON f.tlid = e.tlid \n" +
+            "WHERE f.name IS NOT NULL \n" +
+            "ORDER BY e.tlid, f.paflag DESC NULLS LAST";
+
+    private static final String SQL_RANGES =
+            "SELECT a.tlid, a.fromhn, a.tohn, a.side, a.zip, f.predirabrv, f.name, f.suftypabrv, f.sufdirabrv \n" +
+            "FROM " + SCHEMA + ".ny_addr a \n" +
+            "JOIN " + SCHEMA + ".ny_featnames f ON f.tlid = a.tlid \n" +
+            "WHERE a.fromhn IS NOT NULL AND a.tohn IS NOT NULL AND a.zip IS NOT NULL AND f.name IS NOT NULL";
+
+    /**
+     * @return The cached AddressRangeIndex, or null if the ranges have not been loaded.
+     */
+    public static AddressRangeIndex getAddressRangeIndex()
+    {
+        return addressRangeIndex;
+    }
+
+    /**
+     * @return The cached StreetSegmentIndex, or null if the segments have not been loaded.
+     */
+    public static StreetSegmentIndex getStreetSegmentIndex()
+    {
+        return streetSegmentIndex;
+    }
+
+    /**
+     * Loads the address ranges and segment geometries into the given empty indexes, builds them and caches them.
+     * Both indexes are filled in a single pass over the tiger tables.
+     * @param rangeIndex   New AddressRangeIndex to fill, or null to skip it.
+     * @param segmentIndex New StreetSegmentIndex to fill, or null to skip it.
+     * @return true if the indexes were loaded, false otherwise.
+     */
+    public synchronized boolean cacheIndexes(AddressRangeIndex rangeIndex, StreetSegmentIndex segmentIndex)
+    {
+        long start = System.currentTimeMillis();
+        Connection conn = getTigerConnection();
+        if (conn == null) {
+            return false;
+        }
+        try {
+            /** The postgres driver only streams results with a fetch size when auto commit is off */
+            conn.setAutoCommit(false);
+            Map<Long, Integer> rangeSegmentIds = new HashMap<>();
+            Map<Long, Integer> streetSegmentIds = new HashMap<>();
+            loadSegments(conn, rangeIndex, segmentIndex, rangeSegmentIds, streetSegmentIds);
+            int skipped = loadRanges(conn, rangeIndex, segmentIndex, rangeSegmentIds, streetSegmentIds);
+            conn.commit();
+            if (rangeIndex != null) {
+                rangeIndex.build();
+                addressRangeIndex = rangeIndex;
+                logger.info(String.format("Cached %d address ranges on %d streets (%d segments, %d skipped)",
+                    rangeIndex.getRangeCount(), rangeIndex.getStreetCount(), rangeIndex.getSegmentCount(), skipped));
+            }
+            if (segmentIndex != null) {
+                segmentIndex.build();
+                streetSegmentIndex = segmentIndex;
+                logger.info(String.format("Cached %d street segments in %d grid cells",
+                    segmentIndex.getSegmentCount(), segmentIndex.getCellCount()));
+            }
+            logger.info("Loaded Tiger indexes in " + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        }
+        catch (SQLException ex) {
+            logger.error("Failed to cache Tiger address ranges!", ex);
+        }
+        finally {
+            try {
+                conn.setAutoCommit(true);
+            }
+            catch (SQLException ex) {
+                logger.warn("Failed to restore auto commit: " + ex.getMessage());
+            }
+            closeConnection(conn);
+        }
+        return false;
+    }
+
+    /**
+     * Adds the geometry of every segment that has an address range to the range index, and the geometry and
+     * primary street name of every named segment to the segment index, so that a point is matched to the street
+     * it is on even when that street has no address ranges.
+     * @param rangeSegmentIds  Filled with the tlid to range index segment id
+     * @param streetSegmentIds Filled with the tlid to street segment index segment id
+     */
+    private void loadSegments(Connection conn, AddressRangeIndex rangeIndex, StreetSegmentIndex segmentIndex,
+                              Map<Long, Integer> rangeSegmentIds, Map<Long, Integer> streetSegmentIds) throws SQLException
+    {
+        Statement statement = conn.createStatement();
+        try {
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet rs = statement.executeQuery(SQL_SEGMENTS);
+            while (rs.next()) {
+                float[] coordinates = parseLineCoordinates(rs.getString("geom"));
+                if (coordinates == null) {
+                    continue;
+                }
+                long tlid = rs.getLong("tlid");
+                if (rangeIndex != null && rs.getBoolean("has_addr")) {
+                    rangeSegmentIds.put(tlid, rangeIndex.addSegment(coordinates));
+                }
+                if (segmentIndex != null) {
+                    int segmentId = segmentIndex.addSegment(coordinates);
+                    segmentIndex.setStreet(segmentId, trim(rs.getString("predirabrv")), trim(rs.getString("name")),
+                                           trim(rs.getString("suftypabrv")), trim(rs.getString("sufdirabrv")),
+                                           rs.getString("zip"));
+                    streetSegmentIds.put(tlid, segmentId);
+                }
+            }
+            rs.close();
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Adds every address range under each of the names of its street. The segment index gets the first range
+     * on each side of the segment.
+     * @return Number of ranges that were skipped because they could not be used.
+     */
+    private int loadRanges(Connection conn, AddressRangeIndex rangeIndex, StreetSegmentIndex segmentIndex,
+                           Map<Long, Integer> rangeSegmentIds, Map<Long, Integer> streetSegmentIds) throws SQLException
+    {
+        int skipped = 0;
+        Statement statement = conn.createStatement();
+        try {
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet rs = statement.executeQuery(SQL_RANGES);
+            while (rs.next()) {
+                long tlid = rs.getLong("tlid");
+                Integer rangeSegmentId = rangeSegmentIds.get(tlid);
+                Integer streetSegmentId = streetSegmentIds.get(tlid);
+                int fromNum = parseHouseNumber(rs.getString("fromhn"));
+                int toNum = parseHouseNumber(rs.getString("tohn"));
+                if ((rangeSegmentId == null && streetSegmentId == null) || fromNum < 0 || toNum < 0) {
+                    skipped++;
+                    continue;
+                }
+                boolean leftSide = "L".equals(rs.getString("side"));
+                if (rangeIndex != null && rangeSegmentId != null) {
+                    String streetKey = getStreetKey(rs.getString("predirabrv"), rs.getString("name"),
+                                                    rs.getString("suftypabrv"), rs.getString("sufdirabrv"));
+                    rangeIndex.addRange(rs.getString("zip"), streetKey, fromNum, toNum, leftSide, rangeSegmentId);
+                }
+                if (segmentIndex != null && streetSegmentId != null) {
+                    segmentIndex.setRange(streetSegmentId, fromNum, toNum, leftSide);
+                }
+            }
+            rs.close();
+        }
+        finally {
+            statement.close();
+        }
+        return skipped;
+    }
+
+    private static String trim(String s)
+    {
+        return (s != null) ? s.trim() : "";
+    }
+
+    /**
+     * Normalizes the TIGER street name components the same way that StreetAddressParser normalizes
+     * a parsed address so that the two produce the same street key.
+     */
+    static String getStreetKey(String preDir, String name, String streetType, String postDir)
+    {
+        StreetAddress streetAddress = new StreetAddress();
+        streetAddress.setPreDir(normalize(preDir));
+        streetAddress.setStreetName(normalize(name));
+        String type = normalize(streetType);
+        if (AddressDictionary.streetTypeMap.containsKey(type)) {
+            type = AddressDictionary.streetTypeMap.get(type).toUpperCase();
+        }
+        streetAddress.setStreetType(type);
+        streetAddress.setPostDir(normalize(postDir));
+        StreetAddressParser.normalizeStreetAddress(streetAddress);
+        return AddressRangeIndex.getStreetKey(streetAddress);
+    }
+
+    private static String normalize(String s)
+    {
+        return (s != null) ? s.toUpperCase().trim() : "";
+    }
+
+    /**
+     * Converts a TIGER house number to an int. Hyphenated (Queens style) house numbers are joined the same
+     * way that StreetAddressParser joins them, e.g. 92-01 becomes 9201.
+     * @return House number, or -1 if it is not numeric.
+     */
+    static int parseHouseNumber(String houseNumber)
+    {
+        if (houseNumber == null) {
+            return -1;
+        }
+        String digits = houseNumber.trim().replace("-", "");
+        if (digits.isEmpty() || digits.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (!Character.isDigit(digits.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(digits);
+    }
+
+    /**
+     * Parses the coordinates of a WKT LINESTRING. The parts of a MULTILINESTRING that could not be merged
+     * are joined into a single line.
+     * @return Coordinates as lon, lat pairs, or null if there are none.
+     */
+    static float[] parseLineCoordinates(String wkt)
+    {
+        if (wkt == null || wkt.indexOf('(') < 0) {
+            return null;
+        }
+        String[] points = wkt.substring(wkt.indexOf('(')).replace("(", "").replace(")", "").split(",");
+        float[] coordinates = new float[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            String[] xy = points[i].trim().split(" ");
+            if (xy.length < 2) {
+                return null;
+            }
+            coordinates[2*i] = Float.parseFloat(xy[0]);
+            coordinates[2*i+1] = Float.parseFloat(xy[1]);
+        }
+        return coordinates;
+    }
+}
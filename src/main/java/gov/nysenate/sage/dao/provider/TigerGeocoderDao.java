@@ -2,6 +2,7 @@ package gov.nysenate.sage.dao.provider;
 
 import gov.nysenate.sage.dao.base.BaseDao;
 import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedStreetAddress;
 import gov.nysenate.sage.model.address.StreetAddress;
@@ -18,9 +19,12 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides a query interface to the TigerGeocoder database. For documentation on the geocoder
@@ -35,6 +39,17 @@ public class TigerGeocoderDao extends BaseDao implements Observer
     private QueryRunner run = getTigerQueryRunner();
     private int GEOCODER_TIMEOUT = 3000; //ms
 
+    /** Batch geocoding sessions. Each worker thread holds one connection for the duration of a batch. */
+    private static int BATCH_SESSIONS = Integer.parseInt(config.getValue("tiger.batch.sessions", "4"));
+    private static ExecutorService batchExecutor = Executors.newFixedThreadPool(BATCH_SESSIONS, new SageThreadFactory("tiger"));
+    private static final String QUERY_CANCELED_STATE = "57014";
+
+    /** Returned for addresses whose query failed (e.g. timed out) rather than found no match */
+    public static final GeocodedStreetAddress FAILED = new GeocodedStreetAddress();
+
+    private final static String SQL_GEOCODE = "SELECT g.rating, ST_Y(geomout) As lat, ST_X(geomout) As lon, (addy).* \n" +
+                                              "FROM geocode(?, 1) AS g;";
+
     public TigerGeocoderDao() {
         update(null, null);
     }
@@ -49,19 +64,18 @@ public class TigerGeocoderDao extends BaseDao implements Observer
      * can just go on indefinitely.
      * @param conn
      * @param address
-     * @return
+     * @return GeocodedStreetAddress, null if the address was not matched, or FAILED if the query failed (e.g. timed out).
      */
     public GeocodedStreetAddress getGeocodedStreetAddress(Connection conn, Address address)
     {
         GeocodedStreetAddress geoStreetAddress = null;
-        String sql = "SELECT g.rating, ST_Y(geomout) As lat, ST_X(geomout) As lon, (addy).* \n" +
-                     "FROM geocode(?, 1) AS g;";
         try {
             setTimeOut(conn, run, GEOCODER_TIMEOUT);
-            geoStreetAddress = run.query(conn, sql, new GeocodedStreetAddressHandler(), address.toString());
+            geoStreetAddress = run.query(conn, SQL_GEOCODE, new GeocodedStreetAddressHandler(), address.toString());
         }
         catch (SQLException ex){
             logger.warn(ex.getMessage());
+            geoStreetAddress = FAILED;
         }
         finally {
             closeConnection(conn);
@@ -75,6 +89,152 @@ public class TigerGeocoderDao extends BaseDao implements Observer
         return getGeocodedStreetAddress(this.getTigerConnection(), address);
     }
 
+    /**
+     * Geocodes a batch of addresses. The batch is shared by up to BATCH_SESSIONS workers that each hold a
+     * single connection, set the timeout once and reuse a prepared geocode statement. A query that times out
+     * only fails its own address; the session is rolled back if needed and reused, or replaced if it broke.
+     * @param addresses Addresses to geocode. Null addresses are skipped.
+     * @return List of GeocodedStreetAddress in the same order as the addresses. The entry is null if the
+     *         address was not matched, and FAILED if its query failed or was never run.
+     */
+    public List<GeocodedStreetAddress> getGeocodedStreetAddresses(final List<Address> addresses)
+    {
+        /** Each entry stays FAILED until its query completes */
+        final List<GeocodedStreetAddress> geoStreetAddresses = new ArrayList<>(addresses.size());
+        for (Address address : addresses) {
+            geoStreetAddresses.add((address != null) ? FAILED : null);
+        }
+        final AtomicInteger nextIndex = new AtomicInteger(0);
+        int sessionCount = Math.min(BATCH_SESSIONS, addresses.size());
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < sessionCount; i++) {
+                futures.add(batchExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        geocodeBatchSession(addresses, nextIndex, geoStreetAddresses);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException ex) {
+            logger.warn("Interrupted while batch geocoding using Tiger");
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException ex) {
+            logger.error("Tiger batch geocode failed!", ex.getCause());
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error("Tiger batch geocode failed!", ex);
+        }
+        synchronized (geoStreetAddresses) {
+            return new ArrayList<>(geoStreetAddresses);
+        }
+    }
+
+    /**
+     * Geocodes addresses from the batch until there are none left, using a single session.
+     */
+    private void geocodeBatchSession(List<Address> addresses, AtomicInteger nextIndex, List<GeocodedStreetAddress> geoStreetAddresses)
+    {
+        Connection conn = null;
+        PreparedStatement statement = null;
+        GeocodedStreetAddressHandler handler = new GeocodedStreetAddressHandler();
+        try {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < addresses.size() && !Thread.currentThread().isInterrupted()) {
+                Address address = addresses.get(index);
+                if (address == null) {
+                    continue;
+                }
+                if (conn == null) {
+                    conn = getTigerConnection();
+                    if (conn == null) {
+                        return;
+                    }
+                    setTimeOut(conn, run, GEOCODER_TIMEOUT);
+                    statement = conn.prepareStatement(SQL_GEOCODE);
+                }
+                try {
+                    statement.setString(1, address.toString());
+                    ResultSet rs = statement.executeQuery();
+                    try {
+                        GeocodedStreetAddress geoStreetAddress = handler.handle(rs);
+                        synchronized (geoStreetAddresses) {
+                            geoStreetAddresses.set(index, geoStreetAddress);
+                        }
+                    }
+                    finally {
+                        rs.close();
+                    }
+                }
+                catch (SQLException ex) {
+                    if (QUERY_CANCELED_STATE.equals(ex.getSQLState())) {
+                        logger.warn("Tiger geocode timed out for " + address);
+                    }
+                    else {
+                        logger.warn(ex.getMessage());
+                    }
+                    /** Make sure a failed query does not leave the session unusable for the rest of the batch */
+                    if (!conn.isClosed() && conn.isValid(1)) {
+                        if (!conn.getAutoCommit()) {
+                            /** The rollback also undoes the timeout that was set in the transaction */
+                            conn.rollback();
+                            setTimeOut(conn, run, GEOCODER_TIMEOUT);
+                        }
+                    }
+                    else {
+                        closeBatchSession(conn, statement);
+                        conn = null;
+                        statement = null;
+                    }
+                }
+            }
+        }
+        catch (SQLException ex) {
+            logger.error("Tiger batch geocode session failed!", ex);
+        }
+        finally {
+            closeBatchSession(conn, statement);
+        }
+    }
+
+    /**
+     * Resets the session timeout and returns the connection to the pool.
+     */
+    private void closeBatchSession(Connection conn, PreparedStatement statement)
+    {
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+            if (!conn.isClosed()) {
+                resetTimeOut(conn, run);
+            }
+        }
+        catch (SQLException ex) {
+            logger.warn("Failed to reset Tiger batch session: " + ex.getMessage());
+        }
+        finally {
+            closeConnection(conn);
+        }
+    }
+
+    public static void shutdownThread()
+    {
+        batchExecutor.shutdownNow();
+    }
+
     /**
      * This method may be used to parse an Address into it's street address components using
      * Tiger Geocoder's built in address parser.
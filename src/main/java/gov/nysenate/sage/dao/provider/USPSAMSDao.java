@@ -1,5 +1,6 @@
 package gov.nysenate.sage.dao.provider;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -11,11 +12,13 @@ import gov.nysenate.sage.model.result.AddressResult;
 import gov.nysenate.sage.model.result.ResultStatus;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.FormatUtil;
+import gov.nysenate.sage.util.JsonStreamUtil;
 import gov.nysenate.sage.util.TimeUtil;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -37,6 +40,14 @@ public class USPSAMSDao implements Observer
     private Logger logger = Logger.getLogger(this.getClass());
     private static ObjectMapper objectMapper = new ObjectMapper();
 
+    /** Reads the response into a tree without first copying it into a String */
+    private static final UrlRequest.ResponseReader<JsonNode> TREE_READER = new UrlRequest.ResponseReader<JsonNode>() {
+        @Override
+        public JsonNode read(InputStream inputStream) throws IOException {
+            return objectMapper.readTree(inputStream);
+        }
+    };
+
     public USPSAMSDao()
     {
         this.update(null, null);
@@ -68,9 +79,8 @@ public class USPSAMSDao implements Observer
                 urlParams.append("&initCaps=true");
 
                 String url = DEFAULT_BASE_URL + VALIDATE_METHOD + urlParams.toString();
-                String response = UrlRequest.getResponseFromUrl(url);
-                if (response != null && !response.isEmpty()) {
-                    JsonNode root = objectMapper.readTree(response);
+                JsonNode root = UrlRequest.readFromUrl(url, TREE_READER);
+                if (root != null) {
                     AddressResult addressResult = getAddressResultFromJsonValidate(root);
                     return addressResult;
                 }
@@ -115,17 +125,15 @@ public class USPSAMSDao implements Observer
             String jsonPayload = requestRoot.toString();
             String url = DEFAULT_BASE_URL + VALIDATE_METHOD + "?batch=true&initCaps=true";
             try {
-                String json = UrlRequest.getResponseFromUrlUsingPOST(url, jsonPayload);
-                if (json != null && !json.isEmpty()) {
-                    JsonNode responseRoot = objectMapper.readTree(json);
-                    if (responseRoot != null) {
-                        int total = responseRoot.get("total").asInt();
-                        JsonNode resultsNode = responseRoot.get("results");
-                        for (int i = 0; i < total; i++) {
-                            JsonNode resultNode = resultsNode.get(i);
-                            addressResults.add(getAddressResultFromJsonValidate(resultNode));
+                List<AddressResult> results = UrlRequest.readFromUrlUsingPOST(url, jsonPayload,
+                    new UrlRequest.ResponseReader<List<AddressResult>>() {
+                        @Override
+                        public List<AddressResult> read(InputStream inputStream) throws IOException {
+                            return readAddressResults(inputStream, false);
                         }
-                    }
+                    });
+                if (results != null) {
+                    addressResults = results;
                 }
             }
             catch (IOException ex) {
@@ -135,6 +143,49 @@ public class USPSAMSDao implements Observer
         return addressResults;
     }
 
+    /**
+     * Parses a batch response of the form {"total": n, "results": [ ..results.. ]}. Only one result at a
+     * time is read into a tree. A result that cannot be parsed is returned as a RESPONSE_PARSE_ERROR result
+     * so that the results still line up with the request.
+     * @param inputStream   Response body
+     * @param cityState     True if the response is from the citystate API, false for the validate API
+     * @return List<AddressResult>
+     * @throws IOException
+     */
+    List<AddressResult> readAddressResults(InputStream inputStream, final boolean cityState) throws IOException
+    {
+        final List<AddressResult> addressResults = new ArrayList<>();
+        final JsonStreamUtil.NodeHandler resultHandler = new JsonStreamUtil.NodeHandler() {
+            @Override
+            public void handle(JsonNode resultNode) throws IOException {
+                try {
+                    addressResults.add((cityState) ? getAddressResultFromJsonCityState(resultNode)
+                                                   : getAddressResultFromJsonValidate(resultNode));
+                }
+                catch (NullPointerException ex) {
+                    logger.warn("Error retrieving AddressResult from USPS AMS result " + resultNode, ex);
+                    addressResults.add(new AddressResult(USPSAMSDao.class, ResultStatus.RESPONSE_PARSE_ERROR));
+                }
+            }
+        };
+
+        JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+        try {
+            JsonStreamUtil.readObject(parser, new JsonStreamUtil.FieldHandler() {
+                @Override
+                public void handle(String fieldName, JsonParser parser) throws IOException {
+                    if (fieldName.equals("results")) {
+                        JsonStreamUtil.readElements(parser, objectMapper, resultHandler);
+                    }
+                }
+            });
+        }
+        finally {
+            parser.close();
+        }
+        return addressResults;
+    }
+
     /**
      * Parses the USPS AMS Web service JSON response returned when calling the validate API.
      * @param root The JsonNode representing the top level node of the response.
@@ -196,9 +247,8 @@ public class USPSAMSDao implements Observer
              {
                  urlParams.append("&zip5=" + URLEncoder.encode(address.getZip5(), "UTF-8"));
                  String url = DEFAULT_BASE_URL + CITYSTATE_METHOD + urlParams.toString();
-                 String response = UrlRequest.getResponseFromUrl(url);
-                 if (response != null && !response.isEmpty()) {
-                     JsonNode root = objectMapper.readTree(response);
+                 JsonNode root = UrlRequest.readFromUrl(url, TREE_READER);
+                 if (root != null) {
                      AddressResult addressResult = getAddressResultFromJsonCityState(root);
                      return addressResult;
                  }
@@ -239,17 +289,15 @@ public class USPSAMSDao implements Observer
                 String jsonPayload = requestRoot.toString();
                 String url = DEFAULT_BASE_URL + CITYSTATE_METHOD + "?batch=true&initCaps=true";
                 try {
-                    String json = UrlRequest.getResponseFromUrlUsingPOST(url, jsonPayload);
-                    if (json != null && !json.isEmpty()) {
-                        JsonNode responseRoot = objectMapper.readTree(json);
-                        if (responseRoot != null) {
-                            int total = responseRoot.get("total").asInt();
-                            JsonNode resultsNode = responseRoot.get("results");
-                            for (int i = 0; i < total; i++) {
-                                JsonNode resultNode = resultsNode.get(i);
-                                addressResults.add(getAddressResultFromJsonCityState(resultNode));
+                    List<AddressResult> results = UrlRequest.readFromUrlUsingPOST(url, jsonPayload,
+                        new UrlRequest.ResponseReader<List<AddressResult>>() {
+                            @Override
+                            public List<AddressResult> read(InputStream inputStream) throws IOException {
+                                return readAddressResults(inputStream, true);
                             }
-                        }
+                        });
+                    if (results != null) {
+                        addressResults = results;
                     }
                 }
                 catch (IOException ex) {
@@ -8,7 +8,9 @@ import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
 import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ProviderRateLimiter;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.log4j.Logger;
 
@@ -59,6 +61,9 @@ public class YahooBossDao implements Observer
     {
         String json = "";
         try {
+            if (!ProviderRateLimiter.acquire("yahooboss")) {
+                return GeocodeServiceValidator.RATE_LIMITED;
+            }
             /** Retrieve response from OAuth request */
             json = UrlRequest.getResponseFromUrlUsingOauth(url, CONSUMER_KEY, CONSUMER_SECRET);
             if (json != null) {
@@ -1,5 +1,7 @@
 package gov.nysenate.sage.dao.provider;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.nysenate.sage.factory.ApplicationFactory;
@@ -8,16 +10,22 @@ import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
+import gov.nysenate.sage.util.BatchDispatcher;
 import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.JsonStreamUtil;
+import gov.nysenate.sage.util.ProviderRateLimiter;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -43,6 +51,7 @@ public class YahooDao implements Observer
     private static String CONSUMER_KEY;
     private static String CONSUMER_SECRET;
     private static int BATCH_SIZE = 100;
+    private static int BATCH_CONCURRENCY = 4;
 
     private Logger logger = Logger.getLogger(YahooDao.class);
     private String baseUrl;
@@ -61,6 +70,7 @@ public class YahooDao implements Observer
         CONSUMER_KEY = config.getValue("yahoo.consumer.key");
         CONSUMER_SECRET = config.getValue("yahoo.consumer.secret");
         BATCH_SIZE = Integer.parseInt(config.getValue("yahoo.batch.size", "100"));
+        BATCH_CONCURRENCY = Integer.parseInt(config.getValue("yahoo.batch.concurrency", "4"));
     }
 
     public String getBaseUrl()
@@ -95,52 +105,57 @@ public class YahooDao implements Observer
     }
 
     /**
-     * Batch geocode a list of addresses.
+     * Batch geocode a list of addresses. The addresses are sent in batches of BATCH_SIZE, up to
+     * BATCH_CONCURRENCY batches at a time.
      * @param addresses Addresses to geocode
-     * @return          List<GeocodedAddress>
+     * @return          List<GeocodedAddress>, with null for each address whose batch failed.
      */
     public List<GeocodedAddress> getGeocodedAddresses(List<Address> addresses)
     {
-        /** Pre-populate the batch result with addresses */
-        List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
-        for (Address address : addresses) {
-            geocodedAddresses.add(new GeocodedAddress(address));
-        }
-
-        try {
-            int batchOffset = 0;
-            List<String> locations = new ArrayList<>();
-            for (int i = 1; i <= addresses.size(); i++) {
-                locations.add(String.format("text=\"%s\"", addresses.get(i - 1).toString()));
-
-                /** Stop here unless we've filled this batch request */
-                if (i % BATCH_SIZE != 0 && i != addresses.size()) continue;
-
-                String whereClause = StringUtils.join(locations, " or ");
-                String url = getBaseUrl() + SET_QUERY_AS + URLEncoder.encode(String.format(BATCH_GEOCODE_QUERY, whereClause), "UTF-8");
-                List<GeocodedAddress> batchResults = getGeocodedAddresses(url);
+        List<GeocodedAddress> batchResults = BatchDispatcher.dispatch("Yahoo", addresses, BATCH_SIZE, BATCH_CONCURRENCY,
+            new BatchDispatcher.BatchRequest<Address, GeocodedAddress>() {
+                @Override
+                public List<GeocodedAddress> send(List<Address> batch) {
+                    /** A batch held back by the rate limiter is not a failure, so it must not be bisected and retried */
+                    if (!ProviderRateLimiter.acquire("yahoo")) {
+                        return Collections.nCopies(batch.size(), GeocodeServiceValidator.RATE_LIMITED);
+                    }
+                    try {
+                        List<String> locations = new ArrayList<>();
+                        for (Address address : batch) {
+                            locations.add(String.format("text=\"%s\"", address.toString()));
+                        }
+                        String whereClause = StringUtils.join(locations, " or ");
+                        String url = getBaseUrl() + SET_QUERY_AS + URLEncoder.encode(String.format(BATCH_GEOCODE_QUERY, whereClause), "UTF-8");
+                        List<GeocodedAddress> results = getGeocodedAddresses(url);
 
-                /** A successful response will have the same size */
-                if (batchResults.size() == locations.size()) {
-                    for (int j = 0; j < locations.size(); j++) {
-                        if (batchResults.get(j) != null && batchResults.get(j).isValidGeocode()) {
-                            geocodedAddresses.set(j + batchOffset, batchResults.get(j));
+                        /** A successful response will have the same size */
+                        if (results.size() != locations.size()) {
+                            logger.warn("Expected response size: " + locations.size() + ", received: " + results.size());
                         }
+                        return results;
                     }
+                    catch (UnsupportedEncodingException ex) {
+                        logger.error("UTF-8 encoding not supported!?", ex);
+                    }
+                    catch (NullPointerException ex) {
+                        logger.error(ex);
+                    }
+                    return null;
                 }
-                else {
-                    logger.warn("Expected response size: " + locations.size() + ", received: " + batchResults.size());
-                    logger.warn("Skipping failed Yahoo batch (" + batchOffset + " - " + (batchOffset + locations.size()) + ")");
-                }
-                batchOffset += locations.size();
-                locations.clear();
+            });
+
+        /** Addresses without a valid geocode are returned as is. Addresses from failed batches are left null
+         *  so that the failed request is not mistaken for an address that could not be geocoded. */
+        List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
+        for (int i = 0; i < addresses.size(); i++) {
+            GeocodedAddress batchResult = batchResults.get(i);
+            if (batchResult == null || batchResult == GeocodeServiceValidator.RATE_LIMITED) {
+                geocodedAddresses.add(batchResult);
+            }
+            else {
+                geocodedAddresses.add((batchResult.isValidGeocode()) ? batchResult : new GeocodedAddress(addresses.get(i)));
             }
-        }
-        catch (UnsupportedEncodingException ex) {
-            logger.error("UTF-8 encoding not supported!?", ex);
-        }
-        catch (NullPointerException ex) {
-            logger.error(ex);
         }
         return geocodedAddresses;
     }
@@ -176,36 +191,11 @@ public class YahooDao implements Observer
      */
     private GeocodedAddress getGeocodedAddress(String url)
     {
-        GeocodedAddress geocodedAddress = null;
-        String json = "";
-        try {
-            json = UrlRequest.getResponseFromUrlUsingOauth(url, CONSUMER_KEY, CONSUMER_SECRET);
-            if (json != null) {
-                JsonNode rootNode = objectMapper.readTree(json).get("query");
-                JsonNode resultsNode = rootNode.get("results");
-                int resultCount = rootNode.get("count").asInt();
-
-                if (resultCount == 1) {
-                    geocodedAddress = getGeocodedAddressFromResultNode(resultsNode.get("Result"));
-                }
-                else if (resultCount > 1) {
-                    geocodedAddress = getGeocodedAddressFromResultNode(resultsNode.get("Result").get(0));
-                }
-            }
-            else {
-                logger.warn("No response from Yahoo's geocode service!");
-            }
-        }
-        catch (MalformedURLException ex) {
-            logger.error("Malformed URL! ", ex);
+        if (!ProviderRateLimiter.acquire("yahoo")) {
+            return GeocodeServiceValidator.RATE_LIMITED;
         }
-        catch (IOException ex) {
-            logger.error("Error opening API resource! " + ex.toString() + " Response: " + json);
-        }
-        catch (NullPointerException ex) {
-            logger.error("Yahoo response was not formatted correctly! Response: " + json, ex);
-        }
-        return geocodedAddress;
+        List<GeocodedAddress> geocodedAddresses = getGeocodedAddresses(url);
+        return (!geocodedAddresses.isEmpty()) ? geocodedAddresses.get(0) : null;
     }
 
     /** Retrieve the GeocodedAddress objects from the response of the given query url.
@@ -214,37 +204,19 @@ public class YahooDao implements Observer
     private List<GeocodedAddress> getGeocodedAddresses(String url)
     {
         List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
-        String json = "";
         try {
-            json = UrlRequest.getResponseFromUrlUsingOauth(url, CONSUMER_KEY, CONSUMER_SECRET);
-            if (json != null) {
-                JsonNode rootNode = objectMapper.readTree(json).get("query");
-                JsonNode resultsNode = rootNode.get("results");
-                int resultCount = rootNode.get("count").asInt();
-
-                if (resultCount == 1) {
-                    try {
-                        geocodedAddresses.add(getGeocodedAddressFromResultNode(resultsNode.get("Result")));
+            List<GeocodedAddress> results = UrlRequest.readFromUrlUsingOauth(url, CONSUMER_KEY, CONSUMER_SECRET,
+                new UrlRequest.ResponseReader<List<GeocodedAddress>>() {
+                    @Override
+                    public List<GeocodedAddress> read(InputStream inputStream) throws IOException {
+                        return readGeocodedAddresses(inputStream);
                     }
-                    catch (NullPointerException ex) {
-                        logger.warn("Error retrieving GeocodedAddress from Yahoo response " + json, ex);
-                        geocodedAddresses.add(new GeocodedAddress());
-                    }
-                }
-                else {
-                    for (int i = 0; i < resultCount; i++) {
-                        try {
-                            geocodedAddresses.add(getGeocodedAddressFromResultNode(resultsNode.get("Result").get(i)));
-                        }
-                        catch (NullPointerException ex) {
-                            logger.warn("Error retrieving GeocodedAddress from Yahoo response " + json, ex);
-                            geocodedAddresses.add(new GeocodedAddress());
-                        }
-                    }
-                }
+                });
+            if (results != null) {
+                geocodedAddresses = results;
             }
             else {
-                logger.warn("No response from Yahoo's batch geocode service!");
+                logger.warn("No response from Yahoo's geocode service!");
             }
         }
         catch (MalformedURLException ex) {
@@ -254,7 +226,52 @@ public class YahooDao implements Observer
             logger.error("Error opening API resource! " + ex.toString());
         }
         catch (NullPointerException ex) {
-            logger.error("Yahoo response was not formatted correctly. Response: " + json, ex);
+            logger.error("Yahoo response was not formatted correctly.", ex);
+        }
+        return geocodedAddresses;
+    }
+
+    /**
+     * Parses a Yahoo response of the form {"query": { ... "results": { "Result": [ ..results.. ]}}}, where
+     * Result is an object instead of an array if there is a single result. Only one result at a time is
+     * read into a tree.
+     * @param inputStream Response body
+     * @return List of GeocodedAddresses
+     * @throws IOException
+     */
+    List<GeocodedAddress> readGeocodedAddresses(InputStream inputStream) throws IOException
+    {
+        final List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
+        final JsonStreamUtil.NodeHandler resultHandler = new JsonStreamUtil.NodeHandler() {
+            @Override
+            public void handle(JsonNode resultNode) {
+                try {
+                    geocodedAddresses.add(getGeocodedAddressFromResultNode(resultNode));
+                }
+                catch (NullPointerException ex) {
+                    logger.warn("Error retrieving GeocodedAddress from Yahoo result " + resultNode, ex);
+                    geocodedAddresses.add(new GeocodedAddress());
+                }
+            }
+        };
+
+        JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+        try {
+            JsonStreamUtil.readObject(parser, new JsonStreamUtil.FieldHandler() {
+                @Override
+                public void handle(String fieldName, JsonParser parser) throws IOException {
+                    if ((fieldName.equals("query") || fieldName.equals("results")) &&
+                        parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                        JsonStreamUtil.readObject(parser, this);
+                    }
+                    else if (fieldName.equals("Result")) {
+                        JsonStreamUtil.readElements(parser, objectMapper, resultHandler);
+                    }
+                }
+            });
+        }
+        finally {
+            parser.close();
         }
         return geocodedAddresses;
     }
@@ -2,19 +2,24 @@ package gov.nysenate.sage.factory;
 
 import gov.nysenate.sage.dao.model.SenateDao;
 import gov.nysenate.sage.dao.provider.DistrictShapefileDao;
+import gov.nysenate.sage.dao.provider.GeoCacheDao;
+import gov.nysenate.sage.dao.provider.TigerAddressRangeDao;
+import gov.nysenate.sage.dao.provider.TigerGeocoderDao;
 import gov.nysenate.sage.listener.SageConfigurationListener;
 import gov.nysenate.sage.provider.*;
 import gov.nysenate.sage.service.address.AddressService;
 import gov.nysenate.sage.service.address.AddressServiceProvider;
 import gov.nysenate.sage.service.address.CityZipServiceProvider;
-import gov.nysenate.sage.service.address.ParallelAddressService;
+import gov.nysenate.sage.service.district.DistrictPolygonIndex;
 import gov.nysenate.sage.service.district.DistrictServiceProvider;
-import gov.nysenate.sage.service.district.ParallelDistrictService;
 import gov.nysenate.sage.service.geo.*;
 import gov.nysenate.sage.service.map.MapServiceProvider;
 import gov.nysenate.sage.service.street.StreetLookupServiceProvider;
+import gov.nysenate.sage.util.BatchDispatcher;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.DB;
+import gov.nysenate.sage.util.ExecutorRegistry;
+import gov.nysenate.sage.util.UrlRequest;
 import gov.nysenate.services.model.Senator;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.log4j.Logger;
@@ -96,6 +101,9 @@ public class ApplicationFactory
      */
     public static boolean close()
     {
+        /** Write out any buffered geocache entries while the connections are still open */
+        GeoCacheDao.shutdownFlusher();
+
         try {
             factoryInstance.baseDB.getDataSource().purge();
             factoryInstance.tigerDB.getDataSource().purge();
@@ -108,10 +116,12 @@ public class ApplicationFactory
             factoryInstance.baseDB.getDataSource().close(true);
             factoryInstance.tigerDB.getDataSource().close(true);
 
-            ParallelDistrictService.shutdownThread();
-            ParallelGeocodeService.shutdownThread();
-            ParallelRevGeocodeService.shutdownThread();
-            ParallelAddressService.shutdownThread();
+            ExecutorRegistry.shutdown();
+            HedgedGeocodeService.shutdownThread();
+            UrlRequest.shutdown();
+            BatchDispatcher.shutdownThread();
+            TigerGeocoderDao.shutdownThread();
+            DistrictShapefileDao.shutdownThread();
 
             return true;
         }
@@ -157,6 +167,7 @@ public class ApplicationFactory
             geoProviders.put("yahoo", Yahoo.class);
             geoProviders.put("google", GoogleGeocoder.class);
             geoProviders.put("tiger", TigerGeocoder.class);
+            geoProviders.put("tigerrange", TigerRangeGeocoder.class);
             geoProviders.put("mapquest", MapQuest.class);
             geoProviders.put("yahooboss", YahooBoss.class);
             geoProviders.put("osm", OSM.class);
@@ -199,6 +210,7 @@ public class ApplicationFactory
             /** Setup district lookup service providers. */
             districtServiceProvider = new DistrictServiceProvider();
             districtServiceProvider.registerDefaultProvider("shapefile", DistrictShapefile.class);
+            districtServiceProvider.registerProvider("shapeindex", DistrictShapeIndex.class);
             districtServiceProvider.registerProvider("streetfile", StreetFile.class);
             districtServiceProvider.registerProvider("geoserver", Geoserver.class);
             districtServiceProvider.setProviderFallbackChain(Arrays.asList("streetfile"));
@@ -244,6 +256,29 @@ public class ApplicationFactory
             return false;
         };
 
+        /** Load the district shapes into memory if enabled. The shapefile queries are used if this fails. */
+        if (Boolean.parseBoolean(config.getValue("district.index.enabled", "false"))) {
+            if (!dso.cacheDistrictPolygonIndex(new DistrictPolygonIndex())) {
+                logger.error("Failed to load the district polygon index!");
+            }
+        }
+
+        /** Initialize the in-memory Tiger address ranges if that geocoder is active and the street segments if
+         *  the reverse geocode index is enabled. The other providers can still be used if this fails. */
+        AddressRangeIndex rangeIndex = null;
+        StreetSegmentIndex segmentIndex = null;
+        if (activeGeoProviders.containsKey("tigerrange")) {
+            rangeIndex = new AddressRangeIndex(Double.parseDouble(config.getValue("tigerrange.side.offset", "10")));
+        }
+        if (Boolean.parseBoolean(config.getValue("revgeocode.index.enabled", "false"))) {
+            segmentIndex = new StreetSegmentIndex(Double.parseDouble(config.getValue("revgeocode.index.cell.size", "0.005")));
+        }
+        if (rangeIndex != null || segmentIndex != null) {
+            if (!new TigerAddressRangeDao().cacheIndexes(rangeIndex, segmentIndex)) {
+                logger.error("Failed to cache Tiger address ranges!");
+            }
+        }
+
         /** Initialize senator cache */
         SenateDao sd = new SenateDao();
         Collection<Senator> senators = sd.getSenators();
@@ -12,6 +12,7 @@ public class GeocodedAddress implements Serializable, Cloneable
 {
     protected Address address;
     protected Geocode geocode;
+    protected transient ParsedAddress parsedAddress;
 
     public GeocodedAddress() {}
 
@@ -36,6 +37,23 @@ public class GeocodedAddress implements Serializable, Cloneable
         this.address = address;
     }
 
+    /**
+     * Returns the parse of the address, parsing it only if it has not been parsed yet or if the address
+     * has changed since it was parsed.
+     * @return ParsedAddress or null if the address is empty.
+     */
+    public ParsedAddress getParsedAddress()
+    {
+        this.parsedAddress = ParsedAddress.forAddress(this.address, this.parsedAddress);
+        return this.parsedAddress;
+    }
+
+    /** Sets a parse that was already made of the address. It is only used if it matches the address. */
+    public void setParsedAddress(ParsedAddress parsedAddress)
+    {
+        this.parsedAddress = parsedAddress;
+    }
+
     public void setGeocode(Geocode geocode)
     {
         this.geocode = geocode;
@@ -63,4 +81,22 @@ public class GeocodedAddress implements Serializable, Cloneable
     {
         return (this.address != null && !this.address.isEmpty());
     }
+
+    /**
+     * @return Copy of the geocoded address with its own copies of the address and geocode. The parse is shared
+     *         since it is read only.
+     */
+    @Override
+    public GeocodedAddress clone()
+    {
+        try {
+            GeocodedAddress geocodedAddress = (GeocodedAddress) super.clone();
+            geocodedAddress.address = (this.address != null) ? this.address.clone() : null;
+            geocodedAddress.geocode = (this.geocode != null) ? this.geocode.clone() : null;
+            return geocodedAddress;
+        }
+        catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
 }
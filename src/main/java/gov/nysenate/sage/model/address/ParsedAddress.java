@@ -0,0 +1,106 @@
+package gov.nysenate.sage.model.address;
+
+import gov.nysenate.sage.util.StreetAddressParser;
+
+/**
+ * An Address parsed into its StreetAddress along with a 64 bit key of the normalized address. A ParsedAddress is
+ * created once when a request comes in and is carried on the request, geocoded address and job record objects so
+ * that the caches and DAOs further down the pipeline can reuse the parse instead of parsing the address again.
+ *
+ * The source address fields are copied when it is parsed. Since addresses are mutable, use forAddress() to get the
+ * parse of an address so that a stale parse is never used after the address has been changed or swapped out.
+ * The parsed StreetAddress is shared and must be treated as read only.
+ */
+public class ParsedAddress
+{
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String addr1, addr2, city, state, zip5, zip4;
+    private final StreetAddress streetAddress;
+    private final String normalizedAddress;
+    private final long key;
+
+    private ParsedAddress(Address address)
+    {
+        this.addr1 = address.getAddr1();
+        this.addr2 = address.getAddr2();
+        this.city = address.getCity();
+        this.state = address.getState();
+        this.zip5 = address.getZip5();
+        this.zip4 = address.getZip4();
+        this.streetAddress = StreetAddressParser.parseAddress(address);
+        this.normalizedAddress = this.streetAddress.toString();
+        this.key = hash(this.normalizedAddress);
+    }
+
+    /**
+     * Parses the address.
+     * @param address Address to parse
+     * @return ParsedAddress or null if the address is null or empty.
+     */
+    public static ParsedAddress parse(Address address)
+    {
+        return (address != null && !address.isEmpty()) ? new ParsedAddress(address) : null;
+    }
+
+    /**
+     * Returns the existing parse if it was made from the address as it is now, otherwise parses the address.
+     * @param address       Address to get the parse of
+     * @param parsedAddress Previous parse, may be null
+     * @return ParsedAddress or null if the address is null or empty.
+     */
+    public static ParsedAddress forAddress(Address address, ParsedAddress parsedAddress)
+    {
+        if (parsedAddress != null && parsedAddress.isParseOf(address)) {
+            return parsedAddress;
+        }
+        return parse(address);
+    }
+
+    /**
+     * @return True if this was parsed from an address with the same fields as the given address.
+     */
+    public boolean isParseOf(Address address)
+    {
+        return address != null && addr1.equals(address.getAddr1()) && addr2.equals(address.getAddr2())
+               && city.equals(address.getCity()) && state.equals(address.getState())
+               && zip5.equals(address.getZip5()) && zip4.equals(address.getZip4());
+    }
+
+    /** 64 bit FNV-1a hash */
+    private static long hash(String s)
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /** Parsed street address. Shared by all users of this parse so it must not be modified. */
+    public StreetAddress getStreetAddress()
+    {
+        return streetAddress;
+    }
+
+    /** The parsed address formatted as a single line, e.g. '100 N PEARL ST, ALBANY, NY 12207' */
+    public String getNormalizedAddress()
+    {
+        return normalizedAddress;
+    }
+
+    /** 64 bit hash of the normalized address. Addresses that parse the same way have the same key. */
+    public long getKey()
+    {
+        return key;
+    }
+
+    @Override
+    public String toString()
+    {
+        return normalizedAddress;
+    }
+}
@@ -1,6 +1,7 @@
 package gov.nysenate.sage.model.api;
 
 import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.geo.Point;
 
 import java.util.ArrayList;
@@ -10,6 +11,7 @@ public class BatchGeocodeRequest extends GeocodeRequest
 {
     protected List<Address> addresses = new ArrayList<>();
     protected List<Point> points = new ArrayList<>();
+    protected List<ParsedAddress> parsedAddresses = null;
 
     public BatchGeocodeRequest() {}
 
@@ -34,6 +36,15 @@ public class BatchGeocodeRequest extends GeocodeRequest
         this.addresses = addresses;
     }
 
+    /** Parses of the addresses made when the request came in, aligned with the addresses. May be null. */
+    public List<ParsedAddress> getParsedAddresses() {
+        return parsedAddresses;
+    }
+
+    public void setParsedAddresses(List<ParsedAddress> parsedAddresses) {
+        this.parsedAddresses = parsedAddresses;
+    }
+
     public List<Point> getPoints() {
         return points;
     }
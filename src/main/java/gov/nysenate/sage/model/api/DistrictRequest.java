@@ -2,6 +2,7 @@ package gov.nysenate.sage.model.api;
 
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.district.DistrictType;
 import gov.nysenate.sage.model.geo.Point;
 import gov.nysenate.sage.model.job.JobProcess;
@@ -28,6 +29,7 @@ public class DistrictRequest implements Cloneable
 
     /** User Input */
     private Address address;
+    private ParsedAddress parsedAddress;
     private Point point;
 
     /** Geocoded Input */
@@ -80,7 +82,9 @@ public class DistrictRequest implements Cloneable
      * @return A new DistrictRequest instance with bluebird options set.
      */
     public static DistrictRequest buildBluebirdRequest(DistrictRequest districtRequest, String bluebirdStrategy) {
-        return buildBluebirdRequest(districtRequest.getApiRequest(), districtRequest.getAddress(), districtRequest.getPoint(), bluebirdStrategy);
+        DistrictRequest dr = buildBluebirdRequest(districtRequest.getApiRequest(), districtRequest.getAddress(), districtRequest.getPoint(), bluebirdStrategy);
+        dr.setParsedAddress(districtRequest.getParsedAddress());
+        return dr;
     }
 
     public DistrictRequest(ApiRequest apiRequest, Address address, String provider, String geoProvider, boolean showMembers,
@@ -138,6 +142,15 @@ public class DistrictRequest implements Cloneable
         this.address = address;
     }
 
+    /** Parse of the address made when the request came in, may be null */
+    public ParsedAddress getParsedAddress() {
+        return parsedAddress;
+    }
+
+    public void setParsedAddress(ParsedAddress parsedAddress) {
+        this.parsedAddress = parsedAddress;
+    }
+
     public Point getPoint() {
         return point;
     }
@@ -1,6 +1,7 @@
 package gov.nysenate.sage.model.api;
 
 import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.geo.Point;
 import gov.nysenate.sage.model.job.JobProcess;
 
@@ -18,6 +19,7 @@ public class GeocodeRequest implements Cloneable
 
     /** Inputs */
     private Address address;
+    private ParsedAddress parsedAddress;
     private Point point;
     private boolean isReverse;
 
@@ -87,6 +89,15 @@ public class GeocodeRequest implements Cloneable
         this.address = address;
     }
 
+    /** Parse of the address made when the request came in, may be null */
+    public ParsedAddress getParsedAddress() {
+        return parsedAddress;
+    }
+
+    public void setParsedAddress(ParsedAddress parsedAddress) {
+        this.parsedAddress = parsedAddress;
+    }
+
     public boolean isReverse() {
         return isReverse;
     }
@@ -5,7 +5,7 @@ package gov.nysenate.sage.model.geo;
  * service. This includes the lat/lng pair represented by a Point and various
  * metrics describing the accuracy of the geocoding.
  */
-public class Geocode
+public class Geocode implements Cloneable
 {
     /** Contains the lat lon pair returned by the geocoder */
     protected Point latlon;
@@ -118,4 +118,22 @@ public class Geocode
     public void setCached(boolean cached) {
         isCached = cached;
     }
+
+    /**
+     * @return Copy of the geocode with its own lat lon point.
+     */
+    @Override
+    public Geocode clone()
+    {
+        try {
+            Geocode geocode = (Geocode) super.clone();
+            if (this.latlon != null) {
+                geocode.latlon = new Point(this.latlon.getLat(), this.latlon.getLon());
+            }
+            return geocode;
+        }
+        catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
 }
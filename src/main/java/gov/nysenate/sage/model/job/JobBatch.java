@@ -2,6 +2,7 @@ package gov.nysenate.sage.model.job;
 
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.result.AddressResult;
 import gov.nysenate.sage.model.result.DistrictResult;
 import gov.nysenate.sage.model.result.GeocodeResult;
@@ -70,6 +71,23 @@ public class JobBatch
         return addresses;
     }
 
+    /**
+     * Retrieve the parses of the addresses returned by getAddresses(swapWithValidatedAddress). Each address
+     * is parsed once and the parse is kept on its job record for the later stages of the job.
+     * @param swapWithValidatedAddress if true, parse the usps corrected versions if they exist.
+     * @return List<ParsedAddress> aligned with the addresses. Empty addresses have a null entry.
+     */
+    public List<ParsedAddress> getParsedAddresses(boolean swapWithValidatedAddress) {
+        List<Address> addresses = getAddresses(swapWithValidatedAddress);
+        List<ParsedAddress> parsedAddresses = new ArrayList<>();
+        for (int i = 0; i < jobRecords.size(); i++) {
+            JobRecord jobRecord = jobRecords.get(i);
+            jobRecord.setParsedAddress(ParsedAddress.forAddress(addresses.get(i), jobRecord.getParsedAddress()));
+            parsedAddresses.add(jobRecord.getParsedAddress());
+        }
+        return parsedAddresses;
+    }
+
     /**
      * Retrieve list of geocoded addresses for this batch.
      * @return List<GeocodedAddress>
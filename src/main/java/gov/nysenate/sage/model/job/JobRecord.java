@@ -2,6 +2,7 @@ package gov.nysenate.sage.model.job;
 
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.address.StreetAddress;
 import gov.nysenate.sage.model.district.DistrictInfo;
 import gov.nysenate.sage.model.district.DistrictType;
@@ -26,6 +27,7 @@ public class JobRecord
     protected Address address;
     protected Address correctedAddress;
     protected StreetAddress streetAddress;
+    protected ParsedAddress parsedAddress;
     protected Geocode geocode;
     protected DistrictInfo districtInfo;
 
@@ -136,6 +138,15 @@ public class JobRecord
         this.streetAddress = streetAddress;
     }
 
+    /** Parse of the address that was last geocoded, may be null */
+    public ParsedAddress getParsedAddress() {
+        return parsedAddress;
+    }
+
+    public void setParsedAddress(ParsedAddress parsedAddress) {
+        this.parsedAddress = parsedAddress;
+    }
+
     public Geocode getGeocode() {
         return geocode;
     }
@@ -155,6 +166,11 @@ public class JobRecord
     /** Implicit getters */
     public GeocodedAddress getGeocodedAddress() {
         boolean hasCorrectedAddress = this.correctedAddress != null && !this.correctedAddress.isEmpty();
-        return (geocode != null) ?  new GeocodedAddress((hasCorrectedAddress ? correctedAddress : address), geocode) : new GeocodedAddress();
+        if (geocode != null) {
+            GeocodedAddress geocodedAddress = new GeocodedAddress((hasCorrectedAddress ? correctedAddress : address), geocode);
+            geocodedAddress.setParsedAddress(parsedAddress);
+            return geocodedAddress;
+        }
+        return new GeocodedAddress();
     }
 }
@@ -4,6 +4,8 @@ import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.geo.Geocode;
 
+import java.util.ArrayList;
+
 public class GeocodeResult extends BaseResult
 {
     private GeocodedAddress geocodedAddress;
@@ -52,4 +54,18 @@ public class GeocodeResult extends BaseResult
     {
         this.geocodedAddress = geocodedAddress;
     }
+
+    /**
+     * Copies the result along with its address and geocode, so that a result that is handed out more than once
+     * (e.g from a cache or to coalesced requests) can be modified by one caller without affecting the others.
+     * @return GeocodeResult
+     */
+    public GeocodeResult copy()
+    {
+        GeocodeResult copy = new GeocodeResult(this.getSource(), this.getStatusCode(),
+                                               (geocodedAddress != null) ? geocodedAddress.clone() : null);
+        copy.setMessages(new ArrayList<>(this.getMessages()));
+        copy.setResultTime(this.getResultTime());
+        return copy;
+    }
 }
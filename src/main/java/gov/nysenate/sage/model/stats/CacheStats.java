@@ -0,0 +1,53 @@
+package gov.nysenate.sage.model.stats;
+
+/**
+ * Snapshot of the usage counters of an in-memory cache.
+ */
+public class CacheStats
+{
+    private String name;
+    private int size;
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CacheStats(String name, int size, int maxSize, long hits, long misses, long evictions)
+    {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return (total > 0) ? (double) hits / total : 0;
+    }
+}
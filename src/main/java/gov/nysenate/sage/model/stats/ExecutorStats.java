@@ -0,0 +1,50 @@
+package gov.nysenate.sage.model.stats;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Snapshot of the state of a provider's thread pool.
+ */
+public class ExecutorStats
+{
+    private String workload;
+    private String provider;
+    private int poolSize;
+    private int activeThreads;
+    private int queueDepth;
+    private long completedTasks;
+
+    public ExecutorStats(String workload, String provider, ThreadPoolExecutor executor)
+    {
+        this.workload = workload;
+        this.provider = provider;
+        this.poolSize = executor.getCorePoolSize();
+        this.activeThreads = executor.getActiveCount();
+        this.queueDepth = executor.getQueue().size();
+        this.completedTasks = executor.getCompletedTaskCount();
+    }
+
+    public String getWorkload() {
+        return workload;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+}
@@ -0,0 +1,61 @@
+package gov.nysenate.sage.model.stats;
+
+/**
+ * Snapshot of the health metrics and position of a geocoder in the adaptive ranking.
+ */
+public class GeocoderRankStats
+{
+    private String provider;
+    private int configuredRank;
+    private int currentRank;
+    private int resultCount;
+    private double successRate;
+    private double qualityRate;
+    private long latencyP90;
+    private double score;
+
+    public GeocoderRankStats(String provider, int configuredRank, int currentRank, int resultCount, double successRate,
+                             double qualityRate, long latencyP90, double score)
+    {
+        this.provider = provider;
+        this.configuredRank = configuredRank;
+        this.currentRank = currentRank;
+        this.resultCount = resultCount;
+        this.successRate = successRate;
+        this.qualityRate = qualityRate;
+        this.latencyP90 = latencyP90;
+        this.score = score;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public int getConfiguredRank() {
+        return configuredRank;
+    }
+
+    public int getCurrentRank() {
+        return currentRank;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    public double getSuccessRate() {
+        return successRate;
+    }
+
+    public double getQualityRate() {
+        return qualityRate;
+    }
+
+    public long getLatencyP90() {
+        return latencyP90;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,61 @@
+package gov.nysenate.sage.model.stats;
+
+import gov.nysenate.sage.util.Bulkhead;
+import gov.nysenate.sage.util.CircuitBreaker;
+
+/**
+ * Snapshot of the circuit breaker and bulkhead state of a service provider.
+ */
+public class ProviderResilienceStats
+{
+    private String provider;
+    private String breakerState;
+    private int consecutiveFailures;
+    private long breakerRejections;
+    private int maxConcurrent;
+    private int activeCalls;
+    private long bulkheadRejections;
+
+    public ProviderResilienceStats(String provider, CircuitBreaker breaker, Bulkhead bulkhead)
+    {
+        this.provider = provider;
+        if (breaker != null) {
+            this.breakerState = breaker.getState().name();
+            this.consecutiveFailures = breaker.getConsecutiveFailures();
+            this.breakerRejections = breaker.getRejectedCount();
+        }
+        if (bulkhead != null) {
+            this.maxConcurrent = bulkhead.getMaxConcurrent();
+            this.activeCalls = bulkhead.getActiveCount();
+            this.bulkheadRejections = bulkhead.getRejectedCount();
+        }
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getBreakerState() {
+        return breakerState;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public long getBreakerRejections() {
+        return breakerRejections;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActiveCalls() {
+        return activeCalls;
+    }
+
+    public long getBulkheadRejections() {
+        return bulkheadRejections;
+    }
+}
@@ -0,0 +1,129 @@
+package gov.nysenate.sage.provider;
+
+import gov.nysenate.sage.dao.provider.DistrictShapefileDao;
+import gov.nysenate.sage.model.address.DistrictedAddress;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.district.DistrictInfo;
+import gov.nysenate.sage.model.district.DistrictMap;
+import gov.nysenate.sage.model.district.DistrictMatchLevel;
+import gov.nysenate.sage.model.district.DistrictShapeCode;
+import gov.nysenate.sage.model.district.DistrictType;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.DistrictResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.service.district.DistrictPolygonIndex;
+import org.apache.log4j.Logger;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gov.nysenate.sage.service.district.DistrictServiceValidator.validateDistrictInfo;
+import static gov.nysenate.sage.service.district.DistrictServiceValidator.validateInput;
+
+/**
+ * DistrictShapeIndex assigns districts using the district shapes that are loaded into memory at startup
+ * (see DistrictShapefileDao.cacheDistrictPolygonIndex) instead of querying PostGIS for every point. It returns
+ * the same districts as DistrictShapefile, which it falls back to when the index has not been loaded. The
+ * proximity to the district boundary is measured in memory as well, so the near border checks of the
+ * neighborMatch strategy do not need PostGIS either. Once the neighbor graph of the index has been built, the
+ * nearby districts are found in memory as well and are returned with the cached district maps.
+ *
+ * The map and overlap lookups are inherited from DistrictShapefile.
+ */
+public class DistrictShapeIndex extends DistrictShapefile
+{
+    private static Logger logger = Logger.getLogger(DistrictShapeIndex.class);
+
+    /** Proximity that the shapefile query reports when the proximity is not requested */
+    private static final Double DEFAULT_PROXIMITY = 100000d;
+
+    @Override
+    public DistrictResult assignDistricts(GeocodedAddress geocodedAddress, List<DistrictType> reqTypes, boolean getSpecialMaps, boolean getProximity)
+    {
+        DistrictPolygonIndex index = DistrictShapefileDao.getDistrictPolygonIndex();
+        if (index == null || !isIndexed(index, reqTypes)) {
+            return super.assignDistricts(geocodedAddress, reqTypes, getSpecialMaps, getProximity);
+        }
+
+        DistrictResult districtResult = new DistrictResult(this.getClass());
+
+        /** Validate input */
+        if (!validateInput(geocodedAddress, districtResult, true, false)) {
+            return districtResult;
+        }
+        try {
+            Point point = geocodedAddress.getGeocode().getLatLon();
+            DistrictInfo districtInfo = new DistrictInfo();
+            for (DistrictType districtType : reqTypes) {
+                if (DistrictShapeCode.contains(districtType)) {
+                    DistrictPolygonIndex.District district = index.getDistrict(districtType, point);
+                    if (district != null) {
+                        districtInfo.setDistName(districtType, district.getName());
+                        districtInfo.setDistCode(districtType, district.getCode());
+                        districtInfo.setDistMap(districtType, (getSpecialMaps) ? district.getMap() : null);
+                        districtInfo.setDistProximity(districtType, (getProximity) ? index.getBoundaryDistance(district, point)
+                                                                                  : DEFAULT_PROXIMITY);
+                    }
+                }
+            }
+
+            /** Validate response */
+            if (!validateDistrictInfo(districtInfo, reqTypes, districtResult)) {
+                return districtResult;
+            }
+            /** Set the result */
+            districtResult.setDistrictedAddress(new DistrictedAddress(geocodedAddress, districtInfo, DistrictMatchLevel.HOUSE));
+            districtResult.setResultTime(new Timestamp(new Date().getTime()));
+        }
+        catch (Exception ex) {
+            districtResult.setStatusCode(ResultStatus.RESPONSE_PARSE_ERROR);
+            logger.error(ex);
+        }
+        return districtResult;
+    }
+
+    @Override
+    public Map<String, DistrictMap> nearbyDistricts(GeocodedAddress geocodedAddress, DistrictType districtType, int count)
+    {
+        DistrictPolygonIndex index = DistrictShapefileDao.getDistrictPolygonIndex();
+        if (index != null && geocodedAddress != null && geocodedAddress.isValidGeocode()) {
+            Point point = geocodedAddress.getGeocode().getLatLon();
+            Map<DistrictPolygonIndex.District, Double> nearby =
+                index.getNearbyDistricts(index.getDistrict(districtType, point), point, NEIGHBOR_PROXIMITY, count);
+            if (nearby != null) {
+                Map<String, DistrictMap> mapLookup = districtShapefileDao.getDistrictMapLookup().get(districtType);
+                LinkedHashMap<String, DistrictMap> nearbyDistrictMaps = new LinkedHashMap<>();
+                for (DistrictPolygonIndex.District district : nearby.keySet()) {
+                    DistrictMap map = new DistrictMap();
+                    DistrictMap cachedMap = (mapLookup != null) ? mapLookup.get(district.getCode()) : null;
+                    if (cachedMap != null) {
+                        map.setPolygons(cachedMap.getPolygons());
+                        map.setGeometryType(cachedMap.getGeometryType());
+                    }
+                    map.setDistrictName(district.getName());
+                    map.setDistrictType(districtType);
+                    map.setDistrictCode(district.getCode());
+                    nearbyDistrictMaps.put(district.getCode(), map);
+                }
+                return nearbyDistrictMaps;
+            }
+        }
+        return super.nearbyDistricts(geocodedAddress, districtType, count);
+    }
+
+    /**
+     * @return True if every requested district type that has shapes is in the index.
+     */
+    private boolean isIndexed(DistrictPolygonIndex index, List<DistrictType> reqTypes)
+    {
+        for (DistrictType districtType : reqTypes) {
+            if (DistrictShapeCode.contains(districtType) && !index.hasDistrictType(districtType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -31,7 +31,7 @@ public class DistrictShapefile implements DistrictService, MapService, Observer
 {
     private static Logger logger = Logger.getLogger(DistrictShapefile.class);
     private static Config config = ApplicationFactory.getConfig();
-    private DistrictShapefileDao districtShapefileDao;
+    protected DistrictShapefileDao districtShapefileDao;
 
     /** The street file and cityzip daos are needed to determine overlap */
     private StreetFileDao streetFileDao;
@@ -40,7 +40,7 @@ public class DistrictShapefile implements DistrictService, MapService, Observer
 
     /** Specifies the maximum distance a neighbor district can be from a specific point to still be considered
      * a nearby neighbor. */
-    private static Integer NEIGHBOR_PROXIMITY = 500;
+    protected static Integer NEIGHBOR_PROXIMITY = 500;
 
     /** Specifies the maximum number of nearby neighbors that will be returned by default. */
     private static Integer MAX_NEIGHBORS = 2;
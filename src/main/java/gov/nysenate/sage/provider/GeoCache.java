@@ -4,13 +4,12 @@ import gov.nysenate.sage.dao.provider.GeoCacheDao;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.address.GeocodedStreetAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.address.StreetAddress;
 import gov.nysenate.sage.model.result.GeocodeResult;
 import gov.nysenate.sage.service.geo.GeocodeCacheService;
 import gov.nysenate.sage.service.geo.GeocodeService;
-import gov.nysenate.sage.service.geo.ParallelGeocodeService;
 import gov.nysenate.sage.util.FormatUtil;
-import gov.nysenate.sage.util.StreetAddressParser;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
@@ -55,6 +54,12 @@ public class GeoCache implements GeocodeCacheService
 
     @Override
     public GeocodeResult geocode(Address address)
+    {
+        return geocode(address, null);
+    }
+
+    @Override
+    public GeocodeResult geocode(Address address, ParsedAddress parsedAddress)
     {
         logger.trace("Attempting geocode cache lookup");
         GeocodeResult geocodeResult  = new GeocodeResult(this.getClass());
@@ -63,7 +68,7 @@ public class GeoCache implements GeocodeCacheService
         if (!validateGeocodeInput(address, geocodeResult)) return geocodeResult;
 
         /** Retrieve geocoded address from cache */
-        StreetAddress sa = StreetAddressParser.parseAddress(address);
+        StreetAddress sa = ParsedAddress.forAddress(address, parsedAddress).getStreetAddress();
         GeocodedStreetAddress geocodedStreetAddress = geoCacheDao.getCacheHit(sa);
 
         /** Validate and return */
@@ -73,10 +78,53 @@ public class GeoCache implements GeocodeCacheService
         return geocodeResult;
     }
 
+    /**
+     * Performs a batch cache lookup. The addresses are parsed and resolved against the cache using a
+     * single set-based query instead of one lookup per address.
+     * @param addresses List of addresses to look up
+     * @return ArrayList<GeocodeResult> aligned with the addresses list.
+     */
     @Override
     public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
     {
-        return ParallelGeocodeService.geocode(this, addresses);
+        return geocode(addresses, null);
+    }
+
+    /**
+     * Performs a batch cache lookup reusing the given parses of the addresses.
+     * @param addresses       List of addresses to look up
+     * @param parsedAddresses Parses of the addresses aligned with the list, or null to parse them here
+     * @return ArrayList<GeocodeResult> aligned with the addresses list.
+     */
+    @Override
+    public ArrayList<GeocodeResult> geocode(List<Address> addresses, List<ParsedAddress> parsedAddresses)
+    {
+        logger.trace("Attempting batch geocode cache lookup");
+        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>(addresses.size());
+        List<StreetAddress> streetAddresses = new ArrayList<>(addresses.size());
+
+        /** Parse the valid input addresses; invalid ones are left as null */
+        for (int i = 0; i < addresses.size(); i++) {
+            Address address = addresses.get(i);
+            GeocodeResult geocodeResult = new GeocodeResult(this.getClass());
+            geocodeResults.add(geocodeResult);
+            if (validateGeocodeInput(address, geocodeResult)) {
+                ParsedAddress parsedAddress = (parsedAddresses != null) ? parsedAddresses.get(i) : null;
+                streetAddresses.add(ParsedAddress.forAddress(address, parsedAddress).getStreetAddress());
+            }
+            else {
+                streetAddresses.add(null);
+            }
+        }
+
+        /** Retrieve geocoded addresses from cache and validate */
+        List<GeocodedStreetAddress> geocodedStreetAddresses = geoCacheDao.getCacheHits(streetAddresses);
+        for (int i = 0; i < addresses.size(); i++) {
+            if (streetAddresses.get(i) != null) {
+                validateGeocodeResult(this.getClass(), geocodedStreetAddresses.get(i), geocodeResults.get(i), false);
+            }
+        }
+        return geocodeResults;
     }
 
     @Override
@@ -93,7 +141,7 @@ public class GeoCache implements GeocodeCacheService
     public void saveToCacheAndFlush(GeocodeResult geocodeResult)
     {
         this.saveToCache(geocodeResult);
-        geoCacheDao.flushCacheBuffer();
+        geoCacheDao.requestFlush();
     }
 
     @Override
@@ -114,6 +162,6 @@ public class GeoCache implements GeocodeCacheService
     public void saveToCacheAndFlush(List<GeocodeResult> geocodeResults)
     {
         this.saveToCache(geocodeResults);
-        geoCacheDao.flushCacheBuffer();
+        geoCacheDao.requestFlush();
     }
 }
@@ -43,6 +43,7 @@ public class MapQuest implements GeocodeService, RevGeocodeService
         this.mapQuestDao.setGeoUrl(config.getValue("mapquest.geo.url"));
         this.mapQuestDao.setRevGeoUrl(config.getValue("mapquest.rev.url"));
         this.mapQuestDao.setKey(config.getValue("mapquest.key"));
+        this.mapQuestDao.setBatchConcurrency(Integer.parseInt(config.getValue("mapquest.batch.concurrency", "4")));
     }
 
     /** Geocode Service Implementation ------------------------------------------------------------------*/
@@ -14,6 +14,7 @@ import gov.nysenate.sage.service.geo.GeocodeService;
 import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
 import gov.nysenate.sage.service.geo.ParallelGeocodeService;
 import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ProviderRateLimiter;
 import gov.nysenate.sage.util.TimeUtil;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.http.client.fluent.Content;
@@ -72,11 +73,17 @@ public class OSM implements GeocodeService, Observer
             return geocodeResult;
         }
 
+        ResultStatus failedStatus = ResultStatus.NO_GEOCODE_RESULT;
         try {
             String url = baseUrl +"?format=json&q=" + URLEncoder.encode(address.toString(), "UTF-8")
                     + "&addressdetails=1&limit=3&viewbox=-1.99%2C52.02%2C0.78%2C50.94";
             logger.debug(url);
 
+            if (!ProviderRateLimiter.acquire("osm")) {
+                geocodeResult.setStatusCode(ResultStatus.GEOCODE_PROVIDER_TEMP_DISABLED);
+                geocodeResult.addMessage("Request rate limit of OSM was reached.");
+                return geocodeResult;
+            }
             String json = UrlRequest.getResponseFromUrl(url);
             logger.debug(json);
 
@@ -124,24 +131,30 @@ public class OSM implements GeocodeService, Observer
         catch (UnsupportedEncodingException e) {
             String msg = "UTF-8 encoding not supported!?";
             logger.error(msg);
+            failedStatus = ResultStatus.INTERNAL_ERROR;
         }
         catch (MalformedURLException e) {
             String msg = "Malformed URL. Check api key and address values.";
             logger.error(msg, e);
+            failedStatus = ResultStatus.INTERNAL_ERROR;
         }
         catch (IOException e) {
             String msg = "Error opening API resource.";
             logger.error(msg, e);
+            failedStatus = ResultStatus.RESPONSE_ERROR;
         }
         catch (NullPointerException ex) {
             String msg = "Error while parsing JSON result!";
             logger.error(msg, ex);
+            failedStatus = ResultStatus.RESPONSE_PARSE_ERROR;
         }
         catch (Exception ex) {
             logger.error(ex.getMessage());
+            failedStatus = ResultStatus.RESPONSE_ERROR;
         }
 
-        geocodeResult.setStatusCode(ResultStatus.NO_GEOCODE_RESULT);
+        /** A failed request is not reported as a missing match */
+        geocodeResult.setStatusCode(failedStatus);
         geocodeResult.setResultTime(TimeUtil.currentTimestamp());
         geocodeResult.addMessage("Failed to retrieve a geocoded address from the response.");
         return geocodeResult;
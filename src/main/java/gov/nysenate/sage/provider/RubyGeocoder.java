@@ -12,6 +12,7 @@ import gov.nysenate.sage.model.result.GeocodeResult;
 import gov.nysenate.sage.model.result.ResultStatus;
 import gov.nysenate.sage.service.geo.GeocodeService;
 import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
+import gov.nysenate.sage.util.BatchDispatcher;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.UrlRequest;
 import org.apache.log4j.Logger;
@@ -20,6 +21,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.List;
 
 public class RubyGeocoder implements GeocodeService
 {
@@ -28,6 +30,7 @@ public class RubyGeocoder implements GeocodeService
     private final Logger logger;
     private final Config config;
     private final int BATCH_SIZE = 24;
+    private int batchConcurrency;
     private String m_baseUrl;
     private String m_baseBulkUrl;
 
@@ -44,6 +47,7 @@ public class RubyGeocoder implements GeocodeService
     {
         m_baseUrl = DEFAULT_BASE_URL+"/geocode";
         m_baseBulkUrl = DEFAULT_BASE_URL+"/bulk";
+        batchConcurrency = Integer.parseInt(config.getValue("ruby.batch.concurrency", "4"));
     }
 
     @Override
@@ -102,63 +106,82 @@ public class RubyGeocoder implements GeocodeService
         return geocodeParsedBulk(addresses);
     }
 
+    /**
+     * Sends the addresses to the bulk api in batches of BATCH_SIZE, up to batchConcurrency batches at a time.
+     * Null addresses are not sent and have a null result.
+     */
     private ArrayList<GeocodeResult> geocodeParsedBulk(ArrayList<Address> addresses)
     {
-        String urlText = "";
+        List<GeocodeResult> batchResults = BatchDispatcher.dispatch("RubyGeocoder", addresses, BATCH_SIZE, batchConcurrency,
+            new BatchDispatcher.BatchRequest<Address, GeocodeResult>() {
+                @Override
+                public List<GeocodeResult> send(List<Address> batch) {
+                    return geocodeBatch(batch);
+                }
+            });
+
         ArrayList<GeocodeResult> results = new ArrayList<>();
-        ArrayList<GeocodeResult> batchResults = new ArrayList<>();
+        for (int i = 0; i < addresses.size(); i++) {
+            GeocodeResult batchResult = batchResults.get(i);
+            if (batchResult == null && addresses.get(i) != null) {
+                batchResult = new GeocodeResult(this.getClass(), ResultStatus.RESPONSE_ERROR);
+            }
+            results.add(batchResult);
+        }
+        return results;
+    }
 
-        if (addresses.size() == 0) {
-            return results;
+    /**
+     * Performs a single bulk api request.
+     * @return List of GeocodeResults matching the batch, or null if the request failed.
+     */
+    private List<GeocodeResult> geocodeBatch(List<Address> batch)
+    {
+        String urlText = "";
+        List<GeocodeResult> batchResults = new ArrayList<>();
+        StringBuilder json = new StringBuilder();
+        for (Address address : batch) {
+            if (address == null) {
+                batchResults.add(null);
+            }
+            else {
+                batchResults.add(new GeocodeResult(this.getClass()));
+                json.append(",");
+                json.append(addressToJson(address));
+            }
+        }
+        if (json.length() == 0) {
+            return batchResults;
         }
 
         try {
-            StringBuilder json = new StringBuilder();
-            // Start with a=1 to make the batch boundary condition work nicely
-            for (int a = 1; a <= addresses.size(); a++) {
-                Address address = addresses.get(a-1);
-                if (address == null) {
-                    batchResults.add(null);
-                }
-                else {
-                    batchResults.add(new GeocodeResult(this.getClass()));
-                    json.append(",");
-                    json.append(addressToJson(address));
-                }
-
-                // Stop here unless we've filled this batch request
-                if (a % BATCH_SIZE != 0 && a != addresses.size()) {
-                    continue;
-                }
-
-                urlText = m_baseBulkUrl+"?json=["+ URLEncoder.encode(json.substring(1), "utf-8")+"]";
-                logger.info(urlText);
-
-                String jsonString = UrlRequest.getResponseFromUrl(urlText);
-                logger.info(jsonString);
+            urlText = m_baseBulkUrl+"?json=["+ URLEncoder.encode(json.substring(1), "utf-8")+"]";
+            logger.info(urlText);
 
+            String jsonString = UrlRequest.getResponseFromUrl(urlText);
+            logger.info(jsonString);
+            if (jsonString == null) {
+                return null;
+            }
 
-                // Each address specified produces its own result node.
-                // Because null addresses aren't sent to MapQuest we need
-                // to track an offset to the corresponding result.
-                int resultOffset = 0;
-                JsonNode jsonResults = this.jsonMapper.readTree("[" + jsonString + "]");
+            // Each address specified produces its own result node.
+            // Because null addresses aren't sent to the geocoder we need
+            // to track an offset to the corresponding result.
+            int resultOffset = 0;
+            JsonNode jsonResults = this.jsonMapper.readTree("[" + jsonString + "]");
 
-                for (int i = 0; i < jsonResults.size(); i++) {
-                    JsonNode jsonResult = jsonResults.get(i);
-                    while (batchResults.get(i+resultOffset) == null) {
-                        logger.info(("looping! " + resultOffset));
-                        resultOffset++;
-                    }
-                    batchResults.set(i+resultOffset, getGeocodeResultFromResultNode(jsonResult));
+            for (int i = 0; i < jsonResults.size(); i++) {
+                JsonNode jsonResult = jsonResults.get(i);
+                while (i + resultOffset < batchResults.size() && batchResults.get(i+resultOffset) == null) {
+                    resultOffset++;
                 }
-
-                json = new StringBuilder();
-                results.addAll(batchResults);
-                batchResults.clear();
+                if (i + resultOffset >= batchResults.size()) {
+                    logger.warn("RubyGeocoder returned more results than addresses sent");
+                    return null;
+                }
+                batchResults.set(i+resultOffset, getGeocodeResultFromResultNode(jsonResult));
             }
-
-            return results;
+            return batchResults;
         }
         catch (UnsupportedEncodingException e) {
             String msg = "UTF-8 encoding not supported!?";
@@ -168,7 +191,7 @@ public class RubyGeocoder implements GeocodeService
             String msg = "Error opening API resource '"+urlText+"'";
             logger.error(msg, e);
         }
-        return results;
+        return null;
     }
 
     private GeocodeResult getGeocodeResultFromResultNode(JsonNode jsonResult)
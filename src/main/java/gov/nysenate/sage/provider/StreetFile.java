@@ -11,7 +11,6 @@ import gov.nysenate.sage.model.result.DistrictResult;
 import gov.nysenate.sage.service.district.DistrictService;
 import gov.nysenate.sage.service.district.ParallelDistrictService;
 import gov.nysenate.sage.service.street.StreetLookupService;
-import gov.nysenate.sage.util.StreetAddressParser;
 import org.apache.log4j.Logger;
 
 import java.sql.SQLException;
@@ -71,8 +70,8 @@ public class StreetFile implements DistrictService, StreetLookupService
         if (!validateInput(geocodedAddress, districtResult, false, true)) {
             return districtResult;
         }
-        /** Parse the address */
-        StreetAddress streetAddr = StreetAddressParser.parseAddress(geocodedAddress.getAddress());
+        /** Get the parsed address, reusing the parse made earlier in the request if there is one */
+        StreetAddress streetAddr = geocodedAddress.getParsedAddress().getStreetAddress();
         if (logger.isTraceEnabled()) {
             logger.trace("Streetfile lookup on " + streetAddr.toStringParsed());
         }
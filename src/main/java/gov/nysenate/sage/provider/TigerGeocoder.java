@@ -15,6 +15,7 @@ import gov.nysenate.sage.util.TimeUtil;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * TigerGeocoder is a geocoding implementation that resides as a collection of functions
@@ -56,8 +57,55 @@ public class TigerGeocoder implements GeocodeService, RevGeocodeService
 
         /** Retrieve geocoded addresses from dao */
         GeocodedStreetAddress gsa = tigerGeocoderDao.getGeocodedStreetAddress(address);
+        setGeocodeResult(address, gsa, geocodeResult);
+        return geocodeResult;
+    }
+
+    /**
+     * Geocode a batch of addresses using the TigerGeocoder batch mode, which shares a small number
+     * of database sessions across the batch.
+     * @param addresses Addresses to geocode
+     * @return          ArrayList of GeocodeResults
+     */
+    @Override
+    public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
+    {
+        logger.debug("Performing batch geocoding using TigerGeocoder for " + addresses.size() + " addresses");
+        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+        List<Address> validAddresses = new ArrayList<>();
+
+        /** Only send the valid addresses to the dao */
+        for (Address address : addresses) {
+            GeocodeResult geocodeResult = new GeocodeResult(this.getClass());
+            boolean valid = GeocodeServiceValidator.isGeocodeServiceActive(this.getClass(), geocodeResult) &&
+                            GeocodeServiceValidator.validateGeocodeInput(address, geocodeResult);
+            geocodeResults.add(geocodeResult);
+            validAddresses.add((valid) ? address : null);
+        }
+
+        List<GeocodedStreetAddress> gsaList = tigerGeocoderDao.getGeocodedStreetAddresses(validAddresses);
+        for (int i = 0; i < addresses.size(); i++) {
+            if (validAddresses.get(i) != null) {
+                setGeocodeResult(addresses.get(i), gsaList.get(i), geocodeResults.get(i));
+            }
+        }
+        return geocodeResults;
+    }
 
-        if (gsa != null) {
+    /**
+     * Sets the geocoded address on the result, NO_GEOCODE_RESULT if the address was not geocoded, or
+     * RESPONSE_ERROR if the query for the address failed.
+     * @param address       The original address used for geocoding
+     * @param gsa           The geo street address returned by the TigerGeocoderDao, possibly null or FAILED
+     * @param geocodeResult GeocodeResult to set
+     */
+    private void setGeocodeResult(Address address, GeocodedStreetAddress gsa, GeocodeResult geocodeResult)
+    {
+        if (gsa == TigerGeocoderDao.FAILED) {
+            geocodeResult.setStatusCode(ResultStatus.RESPONSE_ERROR);
+            geocodeResult.setResultTime(TimeUtil.currentTimestamp());
+        }
+        else if (gsa != null) {
             Geocode geocode = gsa.getGeocode();
             StreetAddress streetAddress = gsa.getStreetAddress();
             Address convertedAddress = streetAddress.toAddress();
@@ -70,14 +118,6 @@ public class TigerGeocoder implements GeocodeService, RevGeocodeService
             geocodeResult.setStatusCode(ResultStatus.NO_GEOCODE_RESULT);
             geocodeResult.setResultTime(TimeUtil.currentTimestamp());
         }
-
-        return geocodeResult;
-    }
-
-    @Override
-    public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
-    {
-        return ParallelGeocodeService.geocode(this, addresses);
     }
 
     @Override
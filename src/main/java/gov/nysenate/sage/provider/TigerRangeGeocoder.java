@@ -0,0 +1,92 @@
+package gov.nysenate.sage.provider;
+
+import gov.nysenate.sage.dao.provider.TigerAddressRangeDao;
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.service.geo.AddressRangeIndex;
+import gov.nysenate.sage.service.geo.GeocodeService;
+import gov.nysenate.sage.service.geo.GeocodeServiceValidator;
+import gov.nysenate.sage.util.StreetAddressParser;
+import gov.nysenate.sage.util.TimeUtil;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+
+/**
+ * TigerRangeGeocoder interpolates house level geocodes from the NY TIGER address ranges that are loaded
+ * into memory at startup (see TigerAddressRangeDao). Requests do not touch the database, so this geocoder
+ * can be ranked ahead of the others; addresses that are not covered by a range return no result and fall
+ * through to the next geocoder.
+ */
+public class TigerRangeGeocoder implements GeocodeService
+{
+    private static Logger logger = Logger.getLogger(TigerRangeGeocoder.class);
+
+    /**
+     * Geocode a single address using the in-memory address ranges.
+     * @param address   Address to geocode
+     * @return          GeocodeResult
+     */
+    @Override
+    public GeocodeResult geocode(Address address)
+    {
+        GeocodeResult geocodeResult = new GeocodeResult(this.getClass());
+
+        /** Ensure that the geocoder is active, otherwise return error result. */
+        if (!GeocodeServiceValidator.isGeocodeServiceActive(this.getClass(), geocodeResult)) {
+            return geocodeResult;
+        }
+
+        /** Proceed if valid address */
+        if (!GeocodeServiceValidator.validateGeocodeInput(address, geocodeResult)){
+            return geocodeResult;
+        }
+
+        AddressRangeIndex addressRangeIndex = TigerAddressRangeDao.getAddressRangeIndex();
+        if (addressRangeIndex == null) {
+            logger.debug("Tiger address ranges have not been loaded");
+            geocodeResult.setStatusCode(ResultStatus.GEOCODE_PROVIDER_TEMP_DISABLED);
+            return geocodeResult;
+        }
+
+        /** A house number and zip code are required to find the range */
+        StreetAddress streetAddress = StreetAddressParser.parseAddress(address);
+        Point point = null;
+        if (streetAddress.getBldgNum() > 0 && !streetAddress.getZip5().isEmpty()) {
+            point = addressRangeIndex.getPoint(streetAddress.getZip5(), AddressRangeIndex.getStreetKey(streetAddress),
+                                               streetAddress.getBldgNum());
+        }
+
+        if (point != null) {
+            Geocode geocode = new Geocode(point, GeocodeQuality.HOUSE, this.getClass().getSimpleName());
+            GeocodedAddress geocodedAddress = new GeocodedAddress(address, geocode);
+            GeocodeServiceValidator.validateGeocodeResult(this.getClass(), geocodedAddress, geocodeResult, false);
+        }
+        else {
+            geocodeResult.setStatusCode(ResultStatus.NO_GEOCODE_RESULT);
+            geocodeResult.setResultTime(TimeUtil.currentTimestamp());
+        }
+        return geocodeResult;
+    }
+
+    /**
+     * Geocodes each address in turn. Lookups are in memory so there is nothing to gain from threading.
+     * @param addresses Addresses to geocode
+     * @return          ArrayList of GeocodeResults
+     */
+    @Override
+    public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
+    {
+        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+        for (Address address : addresses) {
+            geocodeResults.add(geocode(address));
+        }
+        return geocodeResults;
+    }
+}
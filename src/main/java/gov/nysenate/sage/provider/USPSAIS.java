@@ -17,6 +17,7 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -62,9 +63,8 @@ import java.util.regex.Pattern;
  * then the address object in the AddressResult will be null, isValidated
  * will be false, and the error messages will be stored in the messages array.
  *
- * It is important to note that this class is not thread-safe so the
- * calling method must ensure that multiple threads do not operate on
- * the same instance of this class.
+ * The XML parser and XPath evaluator are kept per thread so a single
+ * instance can validate several batches concurrently.
  *
  * Refer to the online documentation (link subject to change)
  * https://www.usps.com/webtools/_pdf/Address-Information-v3-1b.pdf
@@ -75,16 +75,35 @@ public class USPSAIS implements AddressService, Observer
     private static final String DEFAULT_BASE_URL = "http://production.shippingapis.com/ShippingAPI.dll";
     private final Logger logger = Logger.getLogger(USPSAIS.class);
     private Config config;
-    private final DocumentBuilder xmlBuilder;
-    private final XPath xpath;
+    private final ThreadLocal<DocumentBuilder> xmlBuilders;
+    private final ThreadLocal<XPath> xpaths;
     private String baseUrl;
     private String apiKey;
 
     public USPSAIS() throws Exception
     {
         config = ApplicationFactory.getConfig();
-        xmlBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        xpath = XPathFactory.newInstance().newXPath();
+        final DocumentBuilderFactory xmlBuilderFactory = DocumentBuilderFactory.newInstance();
+        xmlBuilders = new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                /** The factory itself is not thread safe */
+                synchronized (xmlBuilderFactory) {
+                    try {
+                        return xmlBuilderFactory.newDocumentBuilder();
+                    }
+                    catch (ParserConfigurationException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            }
+        };
+        xpaths = new ThreadLocal<XPath>() {
+            @Override
+            protected XPath initialValue() {
+                return XPathFactory.newInstance().newXPath();
+            }
+        };
         configure();
         config.notifyOnChange(this);
     }
@@ -105,7 +124,7 @@ public class USPSAIS implements AddressService, Observer
         if (resultList != null && !resultList.isEmpty()) {
             return resultList.get(0);
         }
-        return new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT);
+        return new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR);
     }
 
     /**
@@ -122,6 +141,8 @@ public class USPSAIS implements AddressService, Observer
         String url = "";
         Content page = null;
         Document response = null;
+        DocumentBuilder xmlBuilder = xmlBuilders.get();
+        XPath xpath = xpaths.get();
 
         ArrayList<AddressResult> results = new ArrayList<>();
         ArrayList<AddressResult> batchResults = new ArrayList<>();
@@ -265,7 +286,7 @@ public class USPSAIS implements AddressService, Observer
         if (resultList != null && !resultList.isEmpty()) {
             return resultList.get(0);
         }
-        return new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT);
+        return new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR);
     }
 
 
@@ -275,6 +296,8 @@ public class USPSAIS implements AddressService, Observer
         String url = "";
         Content page = null;
         Document response = null;
+        DocumentBuilder xmlBuilder = xmlBuilders.get();
+        XPath xpath = xpaths.get();
 
         ArrayList<AddressResult> results = new ArrayList<>();
         ArrayList<AddressResult> batchResults = new ArrayList<>();
@@ -17,7 +17,20 @@ import java.util.List;
 public class USPSAMS implements AddressService
 {
     private final Logger logger = Logger.getLogger(this.getClass());
-    private USPSAMSDao uspsAmsDao = new USPSAMSDao();
+    private USPSAMSDao uspsAmsDao;
+
+    public USPSAMS()
+    {
+        this(new USPSAMSDao());
+    }
+
+    /**
+     * @param uspsAmsDao Dao used to query the AMS web service
+     */
+    USPSAMS(USPSAMSDao uspsAmsDao)
+    {
+        this.uspsAmsDao = uspsAmsDao;
+    }
 
     /**
      * Performs USPS validation for a single address using the AMS Web Service.
@@ -33,6 +46,8 @@ public class USPSAMS implements AddressService
                 result.setSource(this.getClass());
                 return result;
             }
+            /** The web service could not be reached or returned an unusable response */
+            return new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR);
         }
         return new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT);
     }
@@ -67,7 +82,7 @@ public class USPSAMS implements AddressService
             else {
                 List<AddressResult> errorResults = new ArrayList<>();
                 for (int i = 0; i < addresses.size(); i++) {
-                    errorResults.add(new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT));
+                    errorResults.add(new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR));
                 }
                 return errorResults;
             }
@@ -86,6 +101,7 @@ public class USPSAMS implements AddressService
                 result.setSource(this.getClass());
                 return result;
             }
+            return new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR);
         }
         return new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT);
     }
@@ -99,7 +115,7 @@ public class USPSAMS implements AddressService
             if (results != null && results.size() == addresses.size()) {
                 return results;
             }
-            return Arrays.asList(new AddressResult(this.getClass(), ResultStatus.NO_ADDRESS_VALIDATE_RESULT));
+            return Arrays.asList(new AddressResult(this.getClass(), ResultStatus.RESPONSE_MISSING_ERROR));
         }
         return Arrays.asList(new AddressResult(this.getClass(), ResultStatus.MISSING_ADDRESS));
     }
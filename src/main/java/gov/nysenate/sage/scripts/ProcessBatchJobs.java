@@ -99,6 +99,8 @@ public class ProcessBatchJobs
 
             /** Bootstrap the application */
             ApplicationFactory.bootstrap();
+            /** Provider requests made by this process draw from the batch rate limits */
+            ProviderRateLimiter.setTrafficClass(ProviderRateLimiter.TrafficClass.BATCH);
             ProcessBatchJobs processBatchJobs = new ProcessBatchJobs();
 
             switch (args[0]) {
@@ -479,6 +481,7 @@ public class ProcessBatchJobs
             BatchGeocodeRequest batchGeoRequest = new BatchGeocodeRequest();
             batchGeoRequest.setJobProcess(this.jobProcess);
             batchGeoRequest.setAddresses(this.jobBatch.getAddresses(true));
+            batchGeoRequest.setParsedAddresses(this.jobBatch.getParsedAddresses(true));
             batchGeoRequest.setUseCache(true);
             batchGeoRequest.setUseFallback(true);
             batchGeoRequest.setRequestTime(TimeUtil.currentTimestamp());
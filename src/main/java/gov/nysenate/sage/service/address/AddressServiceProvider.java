@@ -1,20 +1,47 @@
 package gov.nysenate.sage.service.address;
 
+import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.result.AddressResult;
 import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.model.stats.ProviderResilienceStats;
 import gov.nysenate.sage.service.base.ServiceProviders;
 import gov.nysenate.sage.util.AddressUtil;
+import gov.nysenate.sage.util.BatchDispatcher;
+import gov.nysenate.sage.util.Bulkhead;
+import gov.nysenate.sage.util.CircuitBreaker;
+import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.TimeUtil;
 import org.apache.log4j.Logger;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class AddressServiceProvider extends ServiceProviders<AddressService>
 {
     private static Logger logger = Logger.getLogger(AddressServiceProvider.class);
+    private static Config config = ApplicationFactory.getConfig();
+
+    /** Each provider has a circuit breaker that opens after FAILURE_THRESHOLD consecutive failed requests and
+     *  a bulkhead that limits its concurrent requests to MAX_CONCURRENT. They are package-private for testing. */
+    Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private static Integer FAILURE_THRESHOLD = Integer.parseInt(config.getValue("address.failure.threshold", "5"));
+    private static Integer RETRY_INTERVAL_SECS = Integer.parseInt(config.getValue("address.retry.interval", "60"));
+    private static Integer MAX_CONCURRENT = Integer.parseInt(config.getValue("address.max.concurrent", "10"));
+    private static Integer BULKHEAD_WAIT_MS = Integer.parseInt(config.getValue("address.bulkhead.wait", "500"));
+
+    /** Batch validations larger than BATCH_CHUNK_SIZE are split into chunks that are sent to the provider up to
+     *  BATCH_CONCURRENCY at a time. A chunk that fails is retried up to BATCH_RETRIES times before it is bisected.
+     *  No more than BATCH_MAX_ATTEMPTS requests are made for a chunk in total, counting retries and its halves. */
+    private static Integer BATCH_CHUNK_SIZE = Integer.parseInt(config.getValue("address.batch.chunk.size", "10"));
+    private static Integer BATCH_CONCURRENCY = Integer.parseInt(config.getValue("address.batch.concurrency", "4"));
+    private static Integer BATCH_RETRIES = Integer.parseInt(config.getValue("address.batch.retries", "1"));
+    private static Integer BATCH_MAX_ATTEMPTS = Integer.parseInt(config.getValue("address.batch.max.attempts", "8"));
 
     /**
      * Validates an address using USPS or another provider if available.
@@ -35,7 +62,7 @@ public class AddressServiceProvider extends ServiceProviders<AddressService>
         /** Use provider if specified */
         if (provider != null && !provider.isEmpty()) {
             if (this.isRegistered(provider)) {
-                addressResult = this.getInstance(provider).validate(address);
+                addressResult = validateWithProvider(provider.toLowerCase(), address);
             }
             else {
                 return new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_NOT_SUPPORTED);
@@ -43,7 +70,7 @@ public class AddressServiceProvider extends ServiceProviders<AddressService>
         }
         /** Use USPS if address is eligible */
         else if (address.isEligibleForUSPS()) {
-            addressResult = this.getInstance().validate(address);
+            addressResult = validateWithProvider(this.defaultProvider, address);
         }
         /** Otherwise address is insufficient */
         else {
@@ -78,7 +105,7 @@ public class AddressServiceProvider extends ServiceProviders<AddressService>
                 provider = this.defaultProvider;
             }
             if (this.isRegistered(provider)) {
-                addressResults = this.getInstance(provider).validate(addresses);
+                addressResults = validateWithProvider(provider.toLowerCase(), addresses);
                 logger.info(String.format("USPS validate time: %d ms.", TimeUtil.getElapsedMs(startTime)));
                 if (usePunct) {
                     for (AddressResult addressResult : addressResults) {
@@ -106,7 +133,50 @@ public class AddressServiceProvider extends ServiceProviders<AddressService>
         if (provider == null || provider.isEmpty()) {
             provider = this.defaultProvider;
         }
-        return this.getInstance(provider).lookupCityState(address);
+        if (!this.isRegistered(provider)) {
+            return new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_NOT_SUPPORTED);
+        }
+        provider = provider.toLowerCase();
+        if (!acquireProvider(provider)) {
+            return new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_TEMP_DISABLED);
+        }
+        AddressResult addressResult = null;
+        try {
+            addressResult = this.getInstance(provider).lookupCityState(address);
+        }
+        finally {
+            releaseProvider(provider, isProviderError(addressResult));
+        }
+        return addressResult;
+    }
+
+    /**
+     * Use USPS for a batch city state lookup by default.
+     */
+    public List<AddressResult> lookupCityState(List<Address> addresses, String provider)
+    {
+        if (provider == null || provider.isEmpty()) {
+            provider = this.defaultProvider;
+        }
+        if (!this.isRegistered(provider)) {
+            List<AddressResult> addressResults = new ArrayList<>(addresses.size());
+            for (int i = 0; i < addresses.size(); i++) {
+                addressResults.add(new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_NOT_SUPPORTED));
+            }
+            return addressResults;
+        }
+        provider = provider.toLowerCase();
+        if (!acquireProvider(provider)) {
+            return newProviderDisabledResults(addresses.size());
+        }
+        List<AddressResult> addressResults = null;
+        try {
+            addressResults = this.getInstance(provider).lookupCityState(addresses);
+        }
+        finally {
+            releaseProvider(provider, isProviderError(addressResults));
+        }
+        return addressResults;
     }
 
     /**
@@ -116,4 +186,211 @@ public class AddressServiceProvider extends ServiceProviders<AddressService>
     {
         return validate(address, provider, false);
     }
+
+    /**
+     * @return ProviderResilienceStats for each registered provider.
+     */
+    public List<ProviderResilienceStats> getResilienceStats()
+    {
+        List<ProviderResilienceStats> stats = new ArrayList<>();
+        for (String provider : this.getProviderNames()) {
+            stats.add(new ProviderResilienceStats(provider, getCircuitBreaker(provider), getBulkhead(provider)));
+        }
+        return stats;
+    }
+
+    private AddressResult validateWithProvider(String provider, Address address)
+    {
+        if (!acquireProvider(provider)) {
+            return new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_TEMP_DISABLED);
+        }
+        AddressResult addressResult = null;
+        try {
+            addressResult = this.getInstance(provider).validate(address);
+        }
+        finally {
+            releaseProvider(provider, isProviderError(addressResult));
+        }
+        return addressResult;
+    }
+
+    /**
+     * Validates the addresses with the provider. Large batches are split into chunks of BATCH_CHUNK_SIZE which are
+     * validated concurrently and reassembled in input order. Each chunk goes through the provider's circuit breaker
+     * and bulkhead on its own so a failing chunk does not fail the rest of the batch.
+     */
+    private List<AddressResult> validateWithProvider(final String provider, final List<Address> addresses)
+    {
+        if (addresses.size() <= BATCH_CHUNK_SIZE) {
+            return validateChunk(provider, addresses);
+        }
+        /** The batch is dispatched by index so that each request can be charged to the chunk it came from */
+        List<Integer> indexes = new ArrayList<>(addresses.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            indexes.add(i);
+        }
+        final AtomicIntegerArray attemptsLeft = new AtomicIntegerArray((addresses.size() + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE);
+        for (int i = 0; i < attemptsLeft.length(); i++) {
+            attemptsLeft.set(i, BATCH_MAX_ATTEMPTS);
+        }
+        List<AddressResult> addressResults = BatchDispatcher.dispatch("address validate", indexes, BATCH_CHUNK_SIZE,
+            BATCH_CONCURRENCY, new BatchDispatcher.BatchRequest<Integer, AddressResult>() {
+                @Override
+                public List<AddressResult> send(List<Integer> chunkIndexes) {
+                    List<Address> chunk = new ArrayList<>(chunkIndexes.size());
+                    for (int index : chunkIndexes) {
+                        chunk.add(addresses.get(index));
+                    }
+                    return validateChunkWithRetry(provider, chunk, attemptsLeft, chunkIndexes.get(0) / BATCH_CHUNK_SIZE);
+                }
+            });
+        /** Addresses in chunks that could not be validated even after bisection are marked as response errors */
+        for (int i = 0; i < addressResults.size(); i++) {
+            if (addressResults.get(i) == null) {
+                addressResults.set(i, new AddressResult(this.getClass(), ResultStatus.RESPONSE_ERROR));
+            }
+        }
+        return addressResults;
+    }
+
+    /**
+     * Validates the chunk, retrying it up to BATCH_RETRIES times if the provider fails. Every request is taken out
+     * of the attempts left for the original chunk and no request is made once they are used up.
+     * @param attemptsLeft Attempts left for each original chunk of the batch
+     * @param chunkIndex   Index of the original chunk that this chunk belongs to
+     * @return Results of the chunk, or null if the provider failed on every attempt.
+     */
+    private List<AddressResult> validateChunkWithRetry(String provider, List<Address> chunk,
+                                                       AtomicIntegerArray attemptsLeft, int chunkIndex)
+    {
+        for (int attempt = 0; attempt <= BATCH_RETRIES; attempt++) {
+            if (attemptsLeft.getAndDecrement(chunkIndex) <= 0) {
+                logger.warn(String.format("Giving up on %s validate chunk %d after %d attempts", provider, chunkIndex, BATCH_MAX_ATTEMPTS));
+                return null;
+            }
+            if (attempt > 0) {
+                logger.debug(String.format("Retrying %s validate chunk of %d addresses (attempt %d)", provider, chunk.size(), attempt + 1));
+            }
+            List<AddressResult> addressResults = null;
+            try {
+                addressResults = validateChunk(provider, chunk);
+            }
+            catch (RuntimeException ex) {
+                logger.error("Failed to validate " + provider + " chunk", ex);
+            }
+            if (addressResults != null && addressResults.size() == chunk.size() && !isProviderError(addressResults)) {
+                return addressResults;
+            }
+        }
+        return null;
+    }
+
+    private List<AddressResult> validateChunk(String provider, List<Address> addresses)
+    {
+        if (!acquireProvider(provider)) {
+            return newProviderDisabledResults(addresses.size());
+        }
+        List<AddressResult> addressResults = null;
+        try {
+            addressResults = this.getInstance(provider).validate(addresses);
+        }
+        finally {
+            releaseProvider(provider, isProviderError(addressResults));
+        }
+        return addressResults;
+    }
+
+    /**
+     * Checks the provider's circuit breaker and acquires a slot in its bulkhead.
+     * @param provider Registered provider name
+     * @return true if the request may proceed, in which case releaseProvider() must be called afterwards.
+     */
+    private boolean acquireProvider(String provider)
+    {
+        if (!getCircuitBreaker(provider).allowRequest()) {
+            logger.debug(provider + " is temporarily disabled.");
+            return false;
+        }
+        if (!getBulkhead(provider).tryAcquire()) {
+            /** The request was never made, so a half-open breaker must not keep waiting on it as its probe */
+            getCircuitBreaker(provider).cancelProbe();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the bulkhead slot and records the outcome with the provider's circuit breaker.
+     * @param provider Registered provider name
+     * @param failed   True if the provider failed to respond
+     */
+    private void releaseProvider(String provider, boolean failed)
+    {
+        getBulkhead(provider).release();
+        if (failed) {
+            getCircuitBreaker(provider).recordFailure();
+        }
+        else {
+            getCircuitBreaker(provider).recordSuccess();
+        }
+    }
+
+    /**
+     * A result indicates a provider error if it is missing or the provider did not give a usable response.
+     * Addresses that simply could not be validated do not count as errors.
+     */
+    private boolean isProviderError(AddressResult addressResult)
+    {
+        if (addressResult == null) {
+            return true;
+        }
+        ResultStatus status = addressResult.getStatusCode();
+        return status == ResultStatus.RESPONSE_MISSING_ERROR || status == ResultStatus.RESPONSE_PARSE_ERROR ||
+               status == ResultStatus.RESPONSE_ERROR || status == ResultStatus.INTERNAL_ERROR;
+    }
+
+    /**
+     * A batch response indicates a provider error if it is missing or every result is an error.
+     */
+    private boolean isProviderError(List<AddressResult> addressResults)
+    {
+        if (addressResults == null || addressResults.isEmpty()) {
+            return true;
+        }
+        for (AddressResult addressResult : addressResults) {
+            if (!isProviderError(addressResult)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<AddressResult> newProviderDisabledResults(int size)
+    {
+        List<AddressResult> addressResults = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            addressResults.add(new AddressResult(this.getClass(), ResultStatus.ADDRESS_PROVIDER_TEMP_DISABLED));
+        }
+        return addressResults;
+    }
+
+    private CircuitBreaker getCircuitBreaker(String provider)
+    {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(provider);
+        if (circuitBreaker == null) {
+            circuitBreakers.putIfAbsent(provider, new CircuitBreaker(provider, FAILURE_THRESHOLD, RETRY_INTERVAL_SECS));
+            circuitBreaker = circuitBreakers.get(provider);
+        }
+        return circuitBreaker;
+    }
+
+    private Bulkhead getBulkhead(String provider)
+    {
+        Bulkhead bulkhead = bulkheads.get(provider);
+        if (bulkhead == null) {
+            bulkheads.putIfAbsent(provider, new Bulkhead(provider, MAX_CONCURRENT, BULKHEAD_WAIT_MS));
+            bulkhead = bulkheads.get(provider);
+        }
+        return bulkhead;
+    }
 }
\ No newline at end of file
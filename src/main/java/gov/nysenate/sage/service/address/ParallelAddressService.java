@@ -1,26 +1,23 @@
 package gov.nysenate.sage.service.address;
 
-import gov.nysenate.sage.factory.ApplicationFactory;
-import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.result.AddressResult;
-import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ExecutorRegistry;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Parallel address validation for use when an AddressService implementation does not provide
- * native batch methods.
+ * native batch methods. Each AddressService implementation gets its own thread pool from the ExecutorRegistry.
  */
 public abstract class ParallelAddressService {
 
     private static Logger logger = Logger.getLogger(ParallelAddressService.class);
-    private static Config config = ApplicationFactory.getConfig();
-    private static int THREAD_COUNT = Integer.parseInt(config.getValue("validate.threads", "3"));
-    private static ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new SageThreadFactory("address"));
+    private static final String WORKLOAD = "validate";
 
     private static class ParallelValidate implements Callable<AddressResult>
     {
@@ -40,31 +37,24 @@ public abstract class ParallelAddressService {
         }
     }
 
-    public static List<AddressResult> validate(AddressService addressService, List<Address> addresses)
+    /**
+     * Validates the address on the address service's thread pool.
+     * @param addressService AddressService provider
+     * @param address        Address to validate
+     * @return CompletableFuture that completes with the AddressResult
+     */
+    public static CompletableFuture<AddressResult> validateAsync(AddressService addressService, Address address)
     {
-        ArrayList<AddressResult> addressResults = new ArrayList<>();
-        ArrayList<Future<AddressResult>> futureAddressResults = new ArrayList<>();
+        return ExecutorRegistry.supplyAsync(WORKLOAD, addressService.getClass(), new ParallelValidate(addressService, address));
+    }
 
-        logger.trace("Validating addresses using " + THREAD_COUNT + " threads");
+    public static List<AddressResult> validate(AddressService addressService, List<Address> addresses)
+    {
+        List<CompletableFuture<AddressResult>> futureAddressResults = new ArrayList<>();
+        logger.trace("Validating addresses using the " + addressService.getClass().getSimpleName() + " thread pool");
         for (Address address : addresses) {
-            futureAddressResults.add(executor.submit(new ParallelValidate(addressService, address)));
+            futureAddressResults.add(validateAsync(addressService, address));
         }
-
-        for (Future<AddressResult> addressResult : futureAddressResults) {
-            try {
-                addressResults.add(addressResult.get());
-            }
-            catch (InterruptedException ex) {
-                logger.error(ex.getMessage());
-            }
-            catch (ExecutionException ex) {
-                logger.error(ex.getMessage());
-            }
-        }
-        return addressResults;
-    }
-
-    public static void shutdownThread() {
-        executor.shutdownNow();
+        return ExecutorRegistry.joinAll(futureAddressResults);
     }
 }
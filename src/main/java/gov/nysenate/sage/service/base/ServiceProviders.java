@@ -14,8 +14,8 @@ public class ServiceProviders<T>
     private Logger logger = Logger.getLogger(this.getClass());
     protected Map<String,Class<? extends T>> providers = new HashMap<>();
     protected Map<String,T> providerInstances = new HashMap<>();
-    protected String defaultProvider;
-    protected LinkedList<String> defaultFallback = new LinkedList<>();
+    protected volatile String defaultProvider;
+    protected volatile LinkedList<String> defaultFallback = new LinkedList<>();
 
     /**
      * Registers the default service as an instance of the given provider.
@@ -0,0 +1,732 @@
+package gov.nysenate.sage.service.district;
+
+import gov.nysenate.sage.model.district.DistrictMap;
+import gov.nysenate.sage.model.district.DistrictType;
+import gov.nysenate.sage.model.geo.Point;
+
+import java.util.*;
+
+/**
+ * In-memory index of the district shapes, used to find the districts that contain a point without querying
+ * PostGIS. Each polygon of a district is a leaf of an STR (sort-tile-recursive) packed R-tree that is built
+ * per DistrictType, so a lookup only runs the point-in-polygon test on the few polygons whose bounding box
+ * contains the point.
+ *
+ * Coordinates are kept as they are stored in the district tables (lon, lat in the srid of the table) and
+ * compared with the point the same way the ST_Contains query does.
+ *
+ * Since nearly every point lies deep inside a district, buildGrid() can also label the cells of a uniform grid
+ * over each district type as either lying entirely within a single district (or none) or as being crossed by a
+ * district boundary. A point in an interior cell is then resolved with an array lookup and only points in
+ * boundary cells need the tree and polygon tests.
+ *
+ * The boundary of each district is also indexed, as chunks of consecutive ring edges packed into a tree of
+ * their own, so that the distance from a point to the nearest boundary of its district can be found without
+ * measuring every edge. Distances are measured on a sphere like ST_Distance_Sphere.
+ *
+ * buildNeighbors() joins the boundary chunks of each district type to find the districts whose boundaries touch
+ * and keeps, for every pair of neighbors, the chunks along their shared border. Districts near a point are then
+ * found with a range search of the polygon tree, and the shared borders bound the measuring of the neighbors.
+ *
+ * The index is filled using addDistrict() and must be built before it is used for lookups. Once built it is
+ * read only and safe to share between threads. The grid may be built while the index is in use; lookups use
+ * the tree alone until it is ready. The same goes for the neighbor graph, getNearbyDistricts() returns null
+ * until it has been built.
+ */
+public class DistrictPolygonIndex
+{
+    /** Max number of children of each tree node */
+    private static final int NODE_CAPACITY = 8;
+
+    /** Number of consecutive ring edges in each leaf of a boundary tree */
+    private static final int CHUNK_EDGES = 16;
+
+    /** Radius of the sphere used by ST_Distance_Sphere, in meters */
+    private static final double EARTH_RADIUS = 6370986;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS;
+
+    /** Grid cell labels other than the id of the district that contains the cell */
+    private static final int NO_DISTRICT = -1;
+    private static final int BOUNDARY = -2;
+
+    private final Map<DistrictType, List<District>> districts = new EnumMap<>(DistrictType.class);
+    private final Map<DistrictType, List<Node>> leaves = new EnumMap<>(DistrictType.class);
+    private final Map<DistrictType, Node> roots = new EnumMap<>(DistrictType.class);
+    private volatile Map<DistrictType, Grid> grids = new EnumMap<>(DistrictType.class);
+    private volatile boolean neighborsBuilt = false;
+
+    /** A district along with the map that is returned with it, if any */
+    public static class District
+    {
+        private final int id;
+        private final DistrictType type;
+        private final String name;
+        private final String code;
+        private final DistrictMap map;
+        private final List<Node> boundaryChunks = new ArrayList<>();
+        private Node boundary;
+        /** Tree of the boundary chunks of each neighbor that lie along its border with this district */
+        private Map<District, Node> neighbors = Collections.emptyMap();
+
+        District(int id, DistrictType type, String name, String code, DistrictMap map)
+        {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.code = code;
+            this.map = map;
+        }
+
+        public DistrictType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public DistrictMap getMap() {
+            return map;
+        }
+    }
+
+    /** A leaf holds a single polygon (outer ring and holes). Internal nodes only hold children. */
+    private static class Node
+    {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        Node[] children;
+        District district;
+        double[][] rings;
+        /** Ring edges from vertex 'from' to vertex 'to' of a boundary tree leaf */
+        double[] ring;
+        int from, to;
+
+        void expand(double x1, double y1, double x2, double y2)
+        {
+            minX = Math.min(minX, x1);
+            minY = Math.min(minY, y1);
+            maxX = Math.max(maxX, x2);
+            maxY = Math.max(maxY, y2);
+        }
+
+        boolean contains(double x, double y)
+        {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+
+        double centerX()
+        {
+            return (minX + maxX) / 2;
+        }
+
+        double centerY()
+        {
+            return (minY + maxY) / 2;
+        }
+    }
+
+    /** Cell labels of a uniform grid covering the polygons of a district type */
+    private static class Grid
+    {
+        final double minX, minY, cellSize;
+        final int cols, rows;
+        final int[] labels;
+
+        Grid(Node root, double cellSize)
+        {
+            this.minX = root.minX;
+            this.minY = root.minY;
+            this.cellSize = cellSize;
+            this.cols = (int) Math.floor((root.maxX - root.minX) / cellSize) + 1;
+            this.rows = (int) Math.floor((root.maxY - root.minY) / cellSize) + 1;
+            this.labels = new int[cols * rows];
+        }
+
+        int col(double x)
+        {
+            return (int) Math.floor((x - minX) / cellSize);
+        }
+
+        int row(double y)
+        {
+            return (int) Math.floor((y - minY) / cellSize);
+        }
+    }
+
+    private static final Comparator<Node> BY_X = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return Double.compare(a.centerX(), b.centerX());
+        }
+    };
+
+    private static final Comparator<Node> BY_Y = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return Double.compare(a.centerY(), b.centerY());
+        }
+    };
+
+    /**
+     * Adds a district shape.
+     * @param type     DistrictType
+     * @param name     District name
+     * @param code     District code
+     * @param map      DistrictMap to return with the district, or null
+     * @param polygons Polygons of the shape, each a list of rings where a ring is an array of lon, lat pairs.
+     *                 The first ring of a polygon is its outer ring and the others are its holes.
+     */
+    public void addDistrict(DistrictType type, String name, String code, DistrictMap map, List<List<double[]>> polygons)
+    {
+        if (!districts.containsKey(type)) {
+            districts.put(type, new ArrayList<District>());
+            leaves.put(type, new ArrayList<Node>());
+        }
+        District district = new District(districts.get(type).size(), type, name, code, map);
+        districts.get(type).add(district);
+        for (List<double[]> polygon : polygons) {
+            Node leaf = new Node();
+            leaf.district = district;
+            leaf.rings = polygon.toArray(new double[polygon.size()][]);
+            for (double[] ring : leaf.rings) {
+                for (int p = 0; p < ring.length - 1; p += 2) {
+                    leaf.expand(ring[p], ring[p+1], ring[p], ring[p+1]);
+                }
+            }
+            if (leaf.minX <= leaf.maxX) {
+                leaves.get(type).add(leaf);
+            }
+            for (double[] ring : leaf.rings) {
+                int vertices = ring.length / 2;
+                for (int from = 0; from < vertices - 1; from += CHUNK_EDGES) {
+                    Node chunk = new Node();
+                    chunk.district = district;
+                    chunk.ring = ring;
+                    chunk.from = from;
+                    chunk.to = Math.min(from + CHUNK_EDGES, vertices - 1);
+                    for (int v = chunk.from; v <= chunk.to; v++) {
+                        chunk.expand(ring[2*v], ring[2*v+1], ring[2*v], ring[2*v+1]);
+                    }
+                    district.boundaryChunks.add(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the polygons of each district type into its tree. Must be called once all districts have been added.
+     */
+    public void build()
+    {
+        roots.clear();
+        for (Map.Entry<DistrictType, List<Node>> entry : leaves.entrySet()) {
+            Node root = packAll(entry.getValue());
+            if (root != null) {
+                roots.put(entry.getKey(), root);
+            }
+        }
+        for (List<District> typeDistricts : districts.values()) {
+            for (District district : typeDistricts) {
+                district.boundary = packAll(district.boundaryChunks);
+            }
+        }
+    }
+
+    /**
+     * Packs the nodes level by level up to a single root.
+     * @return Root node, or null if there are no nodes.
+     */
+    private Node packAll(List<Node> nodes)
+    {
+        List<Node> level = new ArrayList<>(nodes);
+        while (level.size() > 1) {
+            level = pack(level);
+        }
+        return (!level.isEmpty()) ? level.get(0) : null;
+    }
+
+    /**
+     * Groups the nodes into parents of NODE_CAPACITY nodes. The nodes are sorted into vertical slices by x
+     * and then by y within each slice so that each parent covers a compact area.
+     */
+    private List<Node> pack(List<Node> nodes)
+    {
+        int parentCount = (int) Math.ceil(nodes.size() / (double) NODE_CAPACITY);
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        Collections.sort(nodes, BY_X);
+
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int sliceStart = 0; sliceStart < nodes.size(); sliceStart += sliceSize) {
+            List<Node> slice = new ArrayList<>(nodes.subList(sliceStart, Math.min(sliceStart + sliceSize, nodes.size())));
+            Collections.sort(slice, BY_Y);
+            for (int start = 0; start < slice.size(); start += NODE_CAPACITY) {
+                Node parent = new Node();
+                List<Node> children = slice.subList(start, Math.min(start + NODE_CAPACITY, slice.size()));
+                parent.children = children.toArray(new Node[children.size()]);
+                for (Node child : parent.children) {
+                    parent.expand(child.minX, child.minY, child.maxX, child.maxY);
+                }
+                parents.add(parent);
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Labels the cells of a grid over each district type. A cell that a polygon edge passes through is a boundary
+     * cell. Every other cell lies on the same side of every ring, so the district that contains its center
+     * contains the whole cell. Must be called after build().
+     * @param cellSize Size of the grid cells in degrees
+     */
+    public void buildGrid(double cellSize)
+    {
+        Map<DistrictType, Grid> newGrids = new EnumMap<>(DistrictType.class);
+        for (Map.Entry<DistrictType, Node> entry : roots.entrySet()) {
+            DistrictType type = entry.getKey();
+            Grid grid = new Grid(entry.getValue(), cellSize);
+            for (Node leaf : leaves.get(type)) {
+                for (double[] ring : leaf.rings) {
+                    for (int p = 2; p < ring.length - 1; p += 2) {
+                        markEdge(grid, ring[p-2], ring[p-1], ring[p], ring[p+1]);
+                    }
+                }
+            }
+            for (int row = 0; row < grid.rows; row++) {
+                for (int col = 0; col < grid.cols; col++) {
+                    int cell = row * grid.cols + col;
+                    if (grid.labels[cell] != BOUNDARY) {
+                        District district = findDistrict(type, grid.minX + (col + 0.5) * cellSize, grid.minY + (row + 0.5) * cellSize);
+                        grid.labels[cell] = (district != null) ? district.id : NO_DISTRICT;
+                    }
+                }
+            }
+            newGrids.put(type, grid);
+        }
+        grids = newGrids;
+    }
+
+    /**
+     * Marks the cells that the edge passes through as boundary cells, one column of cells at a time.
+     */
+    private static void markEdge(Grid grid, double x1, double y1, double x2, double y2)
+    {
+        if (x1 > x2) {
+            double x = x1, y = y1;
+            x1 = x2; y1 = y2;
+            x2 = x; y2 = y;
+        }
+        int col1 = grid.col(x1), col2 = grid.col(x2);
+        for (int col = col1; col <= col2; col++) {
+            /** Part of the edge within the column */
+            double startX = Math.max(x1, grid.minX + col * grid.cellSize);
+            double endX = Math.min(x2, grid.minX + (col + 1) * grid.cellSize);
+            double startY = (x2 > x1) ? y1 + (y2 - y1) * (startX - x1) / (x2 - x1) : y1;
+            double endY = (x2 > x1) ? y1 + (y2 - y1) * (endX - x1) / (x2 - x1) : y2;
+            int row1 = grid.row(Math.min(startY, endY)), row2 = grid.row(Math.max(startY, endY));
+            for (int row = Math.max(row1, 0); row <= Math.min(row2, grid.rows - 1); row++) {
+                grid.labels[row * grid.cols + col] = BOUNDARY;
+            }
+        }
+    }
+
+    /**
+     * Finds the neighbors of every district. Two districts are neighbors if a vertex of one lies within the
+     * tolerance of an edge of the other, which also joins districts that are separated by the slivers and
+     * small gaps that shape files tend to have between them. Must be called after build().
+     * @param tolerance Max distance between the boundaries of neighbors, in meters
+     */
+    public void buildNeighbors(double tolerance)
+    {
+        for (List<District> typeDistricts : districts.values()) {
+            List<Node> chunks = new ArrayList<>();
+            for (District district : typeDistricts) {
+                chunks.addAll(district.boundaryChunks);
+            }
+            Node root = packAll(chunks);
+            if (root == null) {
+                continue;
+            }
+            Map<District, Map<District, Set<Node>>> sharedBorders = new HashMap<>();
+            Deque<Node> stack = new ArrayDeque<>();
+            for (Node chunk : chunks) {
+                double dy = tolerance / METERS_PER_DEGREE;
+                double maxLat = Math.min(89, Math.max(Math.abs(chunk.minY), Math.abs(chunk.maxY)) + dy);
+                double dx = dy / Math.cos(Math.toRadians(maxLat));
+                stack.push(root);
+                while (!stack.isEmpty()) {
+                    Node node = stack.pop();
+                    if (node.minX > chunk.maxX + dx || node.maxX < chunk.minX - dx ||
+                        node.minY > chunk.maxY + dy || node.maxY < chunk.minY - dy) {
+                        continue;
+                    }
+                    if (node.children != null) {
+                        for (Node child : node.children) {
+                            stack.push(child);
+                        }
+                    }
+                    /** Each pair of chunks is compared once, from the district with the lower id */
+                    else if (node.district.id > chunk.district.id && chunksTouch(chunk, node, tolerance)) {
+                        addSharedBorder(sharedBorders, chunk.district, node.district, node);
+                        addSharedBorder(sharedBorders, node.district, chunk.district, chunk);
+                    }
+                }
+            }
+            for (District district : typeDistricts) {
+                Map<District, Node> neighbors = new LinkedHashMap<>();
+                if (sharedBorders.containsKey(district)) {
+                    for (Map.Entry<District, Set<Node>> entry : sharedBorders.get(district).entrySet()) {
+                        neighbors.put(entry.getKey(), packAll(new ArrayList<>(entry.getValue())));
+                    }
+                }
+                district.neighbors = neighbors;
+            }
+        }
+        neighborsBuilt = true;
+    }
+
+    private static void addSharedBorder(Map<District, Map<District, Set<Node>>> sharedBorders, District district,
+                                        District neighbor, Node neighborChunk)
+    {
+        if (!sharedBorders.containsKey(district)) {
+            sharedBorders.put(district, new LinkedHashMap<District, Set<Node>>());
+        }
+        if (!sharedBorders.get(district).containsKey(neighbor)) {
+            sharedBorders.get(district).put(neighbor, new LinkedHashSet<Node>());
+        }
+        sharedBorders.get(district).get(neighbor).add(neighborChunk);
+    }
+
+    /**
+     * @return True if a vertex of either boundary chunk lies within the tolerance of an edge of the other.
+     */
+    private static boolean chunksTouch(Node a, Node b, double tolerance)
+    {
+        double lonScale = Math.cos(Math.toRadians(a.centerY())) * METERS_PER_DEGREE;
+        return verticesTouch(a, b, tolerance, lonScale) || verticesTouch(b, a, tolerance, lonScale);
+    }
+
+    private static boolean verticesTouch(Node vertices, Node edges, double tolerance, double lonScale)
+    {
+        for (int v = vertices.from; v <= vertices.to; v++) {
+            double x = vertices.ring[2*v], y = vertices.ring[2*v+1];
+            for (int e = edges.from; e < edges.to; e++) {
+                if (edgeDistance(edges.ring, e, x, y, lonScale) <= tolerance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the districts of the same type that lie within the max distance of a point in the given district,
+     * nearest first, the way the getNearbyDistricts query of DistrictShapefileDao does. The candidates are the
+     * districts with a polygon whose bounding box lies within the max distance, found with the tree of the
+     * district type, so districts across water or a gap wider than the neighbor tolerance are found as well.
+     * The shared border with a neighbor in the graph is its nearest part and bounds the search of its boundary.
+     * @param district    District from this index that contains the point
+     * @param point       Point to measure from
+     * @param maxDistance Max distance in meters
+     * @param count       Max number of districts to return
+     * @return Districts mapped to their distance from the point in meters, or null if the neighbors have not
+     *         been built or the district is null.
+     */
+    public LinkedHashMap<District, Double> getNearbyDistricts(District district, Point point, double maxDistance, int count)
+    {
+        if (!neighborsBuilt || district == null || point == null) {
+            return null;
+        }
+        double x = point.getLon(), y = point.getLat();
+        final Map<District, Double> distances = new HashMap<>();
+        for (District candidate : findDistrictsInRange(district.type, x, y, maxDistance)) {
+            if (candidate == district || candidate.boundary == null) {
+                continue;
+            }
+            double limit = maxDistance;
+            Node sharedBorder = district.neighbors.get(candidate);
+            if (sharedBorder != null) {
+                limit = nearestEdge(sharedBorder, x, y, limit);
+            }
+            double distance = nearestEdge(candidate.boundary, x, y, limit);
+            if (distance < maxDistance) {
+                distances.put(candidate, distance);
+            }
+        }
+
+        List<District> nearby = new ArrayList<>(distances.keySet());
+        Collections.sort(nearby, new Comparator<District>() {
+            @Override
+            public int compare(District a, District b) {
+                return Double.compare(distances.get(a), distances.get(b));
+            }
+        });
+        LinkedHashMap<District, Double> nearest = new LinkedHashMap<>();
+        for (District nearbyDistrict : nearby.subList(0, Math.min(count, nearby.size()))) {
+            nearest.put(nearbyDistrict, distances.get(nearbyDistrict));
+        }
+        return nearest;
+    }
+
+    /**
+     * Searches the tree of the district type for the polygons whose bounding box lies within the distance.
+     * @return Districts of those polygons.
+     */
+    private Set<District> findDistrictsInRange(DistrictType type, double x, double y, double maxDistance)
+    {
+        Set<District> inRange = new LinkedHashSet<>();
+        Node root = roots.get(type);
+        if (root == null) {
+            return inRange;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (boxDistance(node, x, y) >= maxDistance) {
+                continue;
+            }
+            if (node.children == null) {
+                inRange.add(node.district);
+            }
+            else {
+                for (Node child : node.children) {
+                    stack.push(child);
+                }
+            }
+        }
+        return inRange;
+    }
+
+    /**
+     * @return True once buildNeighbors() has finished.
+     */
+    public boolean hasNeighbors()
+    {
+        return neighborsBuilt;
+    }
+
+    /**
+     * Finds the district of the given type that contains the point.
+     * @param type  DistrictType
+     * @param point Point to look up
+     * @return District or null if the point is not within any district of that type.
+     */
+    public District getDistrict(DistrictType type, Point point)
+    {
+        if (point == null) {
+            return null;
+        }
+        double x = point.getLon(), y = point.getLat();
+        Grid grid = grids.get(type);
+        if (grid != null) {
+            int col = grid.col(x), row = grid.row(y);
+            if (col >= 0 && col < grid.cols && row >= 0 && row < grid.rows) {
+                int label = grid.labels[row * grid.cols + col];
+                if (label == NO_DISTRICT) {
+                    return null;
+                }
+                if (label != BOUNDARY) {
+                    return districts.get(type).get(label);
+                }
+            }
+        }
+        return findDistrict(type, x, y);
+    }
+
+    /**
+     * Searches the tree of the district type for the polygon that contains the point.
+     */
+    private District findDistrict(DistrictType type, double x, double y)
+    {
+        Node root = roots.get(type);
+        if (root == null) {
+            return null;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (!node.contains(x, y)) {
+                continue;
+            }
+            if (node.children == null) {
+                if (contains(node.rings, x, y)) {
+                    return node.district;
+                }
+            }
+            else {
+                for (Node child : node.children) {
+                    stack.push(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Measures the distance from the point to the nearest boundary of the district (including the boundaries of
+     * its holes and of its other polygons), as ST_Distance_Sphere(ST_Boundary(geom), point) does. The boundary
+     * chunks are searched nearest first and the search stops once no chunk can be nearer than the nearest edge.
+     * @param district District from this index
+     * @param point    Point to measure from
+     * @return Distance in meters, or null if the district has no boundary.
+     */
+    public Double getBoundaryDistance(District district, Point point)
+    {
+        if (district == null || district.boundary == null || point == null) {
+            return null;
+        }
+        return nearestEdge(district.boundary, point.getLon(), point.getLat(), Double.MAX_VALUE);
+    }
+
+    /**
+     * Searches a boundary tree for the edge nearest to the point.
+     * @param nearest Distance to beat, in meters
+     * @return Distance to the nearest edge, or the given distance if no edge is nearer.
+     */
+    private static double nearestEdge(Node root, double x, double y, double nearest)
+    {
+        double lonScale = Math.cos(Math.toRadians(y)) * METERS_PER_DEGREE;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(root, boxDistance(root, x, y)));
+        while (!queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            if (candidate.bound >= nearest) {
+                break;
+            }
+            Node node = candidate.node;
+            if (node.children == null) {
+                for (int v = node.from; v < node.to; v++) {
+                    nearest = Math.min(nearest, edgeDistance(node.ring, v, x, y, lonScale));
+                }
+            }
+            else {
+                for (Node child : node.children) {
+                    double bound = boxDistance(child, x, y);
+                    if (bound < nearest) {
+                        queue.add(new Candidate(child, bound));
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /** Node of a boundary tree along with the least distance from the point to it */
+    private static class Candidate implements Comparable<Candidate>
+    {
+        final Node node;
+        final double bound;
+
+        Candidate(Node node, double bound)
+        {
+            this.node = node;
+            this.bound = bound;
+        }
+
+        @Override
+        public int compareTo(Candidate other)
+        {
+            return Double.compare(bound, other.bound);
+        }
+    }
+
+    /**
+     * Lower bound of the distance in meters from the point to the bounding box of the node. Longitude degrees are
+     * scaled at the latitude of the box furthest from the equator, where they are shortest.
+     */
+    private static double boxDistance(Node node, double x, double y)
+    {
+        double dx = Math.max(0, Math.max(node.minX - x, x - node.maxX));
+        double dy = Math.max(0, Math.max(node.minY - y, y - node.maxY));
+        double maxLat = Math.min(90, Math.max(Math.abs(node.minY), Math.abs(node.maxY)));
+        return Math.hypot(dx * Math.cos(Math.toRadians(maxLat)) * METERS_PER_DEGREE, dy * METERS_PER_DEGREE);
+    }
+
+    /**
+     * Finds the closest point on the edge from vertex v to v + 1 in a local projection around the point and
+     * returns its great circle distance from the point.
+     */
+    private static double edgeDistance(double[] ring, int v, double x, double y, double lonScale)
+    {
+        double ax = ring[2*v], ay = ring[2*v+1];
+        double dx = ring[2*v+2] - ax, dy = ring[2*v+3] - ay;
+        double px = (x - ax) * lonScale, py = (y - ay) * METERS_PER_DEGREE;
+        double ex = dx * lonScale, ey = dy * METERS_PER_DEGREE;
+        double length2 = ex * ex + ey * ey;
+        double t = (length2 > 0) ? Math.max(0, Math.min(1, (px * ex + py * ey) / length2)) : 0;
+        return sphereDistance(x, y, ax + t * dx, ay + t * dy);
+    }
+
+    /**
+     * Haversine distance in meters between two lon, lat points.
+     */
+    static double sphereDistance(double lon1, double lat1, double lon2, double lat2)
+    {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Even-odd ray casting test over all rings of a polygon, so a point inside a hole is outside the polygon.
+     */
+    static boolean contains(double[][] rings, double x, double y)
+    {
+        boolean inside = false;
+        for (double[] ring : rings) {
+            int n = ring.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                double xi = ring[2*i], yi = ring[2*i+1];
+                double xj = ring[2*j], yj = ring[2*j+1];
+                if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @return True if districts of the type have been indexed.
+     */
+    public boolean hasDistrictType(DistrictType type)
+    {
+        return roots.containsKey(type);
+    }
+
+    public int getDistrictCount(DistrictType type)
+    {
+        return (districts.containsKey(type)) ? districts.get(type).size() : 0;
+    }
+
+    public int getPolygonCount(DistrictType type)
+    {
+        return (leaves.containsKey(type)) ? leaves.get(type).size() : 0;
+    }
+
+    /**
+     * @return Fraction of the grid cells of the district type that are boundary cells, or -1 if there is no grid.
+     */
+    public double getBoundaryCellRatio(DistrictType type)
+    {
+        Grid grid = grids.get(type);
+        if (grid == null) {
+            return -1;
+        }
+        int boundaryCells = 0;
+        for (int label : grid.labels) {
+            if (label == BOUNDARY) {
+                boundaryCells++;
+            }
+        }
+        return boundaryCells / (double) grid.labels.length;
+    }
+}
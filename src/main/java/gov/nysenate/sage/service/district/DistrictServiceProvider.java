@@ -1,5 +1,6 @@
 package gov.nysenate.sage.service.district;
 
+import gov.nysenate.sage.dao.provider.DistrictShapefileDao;
 import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.GeocodedAddress;
@@ -123,7 +124,7 @@ public class DistrictServiceProvider extends ServiceProviders<DistrictService> i
         }
         else {
             try {
-                DistrictService shapeFileService = this.getInstance("shapefile");
+                DistrictService shapeFileService = getShapeFileService();
                 DistrictService streetFileService = this.getInstance("streetfile");
                 if (districtStrategy == null) {
                     districtStrategy = SINGLE_DISTRICT_STRATEGY;
@@ -262,7 +263,7 @@ public class DistrictServiceProvider extends ServiceProviders<DistrictService> i
         List<DistrictResult> districtResults = new ArrayList<>(), streetFileResults, shapeFileResults;
 
         DistrictService streetFileService = this.getInstance("streetfile");
-        DistrictService shapeFileService = this.getInstance("shapefile");
+        DistrictService shapeFileService = getShapeFileService();
 
         if (this.isRegistered(distProvider)) {
             DistrictService districtService = this.getInstance(distProvider);
@@ -362,6 +363,19 @@ public class DistrictServiceProvider extends ServiceProviders<DistrictService> i
         return districtResults;
     }
 
+    /**
+     * The shape index returns the same districts as the shapefile queries without going to the database,
+     * so it is used by the district strategies in place of the shapefile provider once it has been loaded.
+     * @return DistrictService used for shapefile lookups
+     */
+    private DistrictService getShapeFileService()
+    {
+        if (DistrictShapefileDao.getDistrictPolygonIndex() != null && this.isRegistered("shapeindex")) {
+            return this.getInstance("shapeindex");
+        }
+        return this.getInstance("shapefile");
+    }
+
     /** Multi District Overlap ---------------------------------------------------------------------------------------*/
 
     public DistrictResult assignMultiMatchDistricts(GeocodedAddress geocodedAddress, Boolean zipProvided)
@@ -1,27 +1,24 @@
 package gov.nysenate.sage.service.district;
 
-import gov.nysenate.sage.factory.ApplicationFactory;
-import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.district.DistrictType;
 import gov.nysenate.sage.model.result.DistrictResult;
-import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ExecutorRegistry;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Parallel district assignment for use in a provider's batch district implementation.
+ * Each DistrictService implementation gets its own thread pool from the ExecutorRegistry.
  */
 public abstract class ParallelDistrictService
 {
     private static Logger logger = Logger.getLogger(ParallelDistrictService.class);
-    private static Config config = ApplicationFactory.getConfig();
-    private static int THREAD_COUNT = Integer.parseInt(config.getValue("distassign.threads", "3"));
-    private static ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new SageThreadFactory("district"));
+    private static final String WORKLOAD = "distassign";
 
     private static class ParallelDistAssign implements Callable<DistrictResult>
     {
@@ -43,31 +40,27 @@ public abstract class ParallelDistrictService
         }
     }
 
-    public static List<DistrictResult> assignDistricts(DistrictService districtService, List<GeocodedAddress> geocodedAddresses, List<DistrictType> types)
+    /**
+     * Assigns districts to the geocoded address on the district service's thread pool.
+     * @param districtService DistrictService provider
+     * @param geocodedAddress GeocodedAddress to assign districts to
+     * @param types           District types to assign
+     * @return CompletableFuture that completes with the DistrictResult
+     */
+    public static CompletableFuture<DistrictResult> assignDistrictsAsync(DistrictService districtService, GeocodedAddress geocodedAddress,
+                                                                       List<DistrictType> types)
     {
-        ArrayList<DistrictResult> districtResults = new ArrayList<>();
-        ArrayList<Future<DistrictResult>> futureDistrictResults = new ArrayList<>();
+        return ExecutorRegistry.supplyAsync(WORKLOAD, districtService.getClass(),
+                                            new ParallelDistAssign(districtService, geocodedAddress, types));
+    }
 
-        logger.trace("District Assigning using " + THREAD_COUNT + " threads.");
+    public static List<DistrictResult> assignDistricts(DistrictService districtService, List<GeocodedAddress> geocodedAddresses, List<DistrictType> types)
+    {
+        List<CompletableFuture<DistrictResult>> futureDistrictResults = new ArrayList<>();
+        logger.trace("District Assigning using the " + districtService.getClass().getSimpleName() + " thread pool");
         for (GeocodedAddress geocodedAddress : geocodedAddresses) {
-            futureDistrictResults.add(executor.submit(new ParallelDistAssign(districtService, geocodedAddress, types)));
+            futureDistrictResults.add(assignDistrictsAsync(districtService, geocodedAddress, types));
         }
-
-        for (Future<DistrictResult> districtResult : futureDistrictResults) {
-            try {
-                districtResults.add(districtResult.get());
-            }
-            catch (InterruptedException ex) {
-                logger.error(ex.getMessage());
-            }
-            catch (ExecutionException ex) {
-                logger.error(ex.getMessage());
-            }
-        }
-        return districtResults;
-    }
-
-    public static void shutdownThread() {
-        executor.shutdownNow();
+        return ExecutorRegistry.joinAll(futureDistrictResults);
     }
 }
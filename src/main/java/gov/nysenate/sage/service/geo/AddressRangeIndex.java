@@ -0,0 +1,283 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.util.StreetAddressParser;
+
+import java.util.*;
+
+/**
+ * In-memory index of house number ranges along street segments, used to interpolate house level geocodes
+ * without a round trip to the database. Ranges are grouped by zip5 and normalized street and kept sorted by
+ * their low house number. Segment geometries are stored once as float coordinate arrays (sub-meter precision
+ * at NY longitudes) and shared by the ranges on both sides of the segment.
+ *
+ * The index is filled using addSegment() and addRange() and must be built before it is used for lookups.
+ * Once built it is read only and safe to share between threads.
+ */
+public class AddressRangeIndex
+{
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private final List<float[]> segments = new ArrayList<>();
+    private final Map<String, StreetRanges> streets = new HashMap<>();
+    private final double sideOffsetMeters;
+    private int rangeCount = 0;
+
+    /**
+     * @param sideOffsetMeters Distance to move the interpolated point off the street centerline, towards the
+     *                         side of the street that the address is on.
+     */
+    public AddressRangeIndex(double sideOffsetMeters)
+    {
+        this.sideOffsetMeters = sideOffsetMeters;
+    }
+
+    /**
+     * House number ranges of a single street within a zip code. The ranges are stored in parallel arrays
+     * which are sorted by the low house number when the index is built.
+     */
+    private static class StreetRanges
+    {
+        int size = 0;
+        int[] low = new int[2];
+        int[] high = new int[2];
+        int[] from = new int[2];
+        int[] to = new int[2];
+        int[] segment = new int[2];
+        boolean[] left = new boolean[2];
+        /** maxHigh[i] is the highest house number of the ranges 0..i */
+        int[] maxHigh;
+
+        void add(int fromNum, int toNum, boolean leftSide, int segmentId)
+        {
+            if (size == low.length) {
+                int capacity = size * 2;
+                low = Arrays.copyOf(low, capacity);
+                high = Arrays.copyOf(high, capacity);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                segment = Arrays.copyOf(segment, capacity);
+                left = Arrays.copyOf(left, capacity);
+            }
+            low[size] = Math.min(fromNum, toNum);
+            high[size] = Math.max(fromNum, toNum);
+            from[size] = fromNum;
+            to[size] = toNum;
+            segment[size] = segmentId;
+            left[size] = leftSide;
+            size++;
+        }
+
+        void build()
+        {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(low[a], low[b]);
+                }
+            });
+            int[] sortedLow = new int[size], sortedHigh = new int[size], sortedFrom = new int[size],
+                  sortedTo = new int[size], sortedSegment = new int[size];
+            boolean[] sortedLeft = new boolean[size];
+            maxHigh = new int[size];
+            for (int i = 0; i < size; i++) {
+                int j = order[i];
+                sortedLow[i] = low[j];
+                sortedHigh[i] = high[j];
+                sortedFrom[i] = from[j];
+                sortedTo[i] = to[j];
+                sortedSegment[i] = segment[j];
+                sortedLeft[i] = left[j];
+                maxHigh[i] = (i > 0) ? Math.max(maxHigh[i - 1], high[j]) : high[j];
+            }
+            low = sortedLow; high = sortedHigh; from = sortedFrom; to = sortedTo; segment = sortedSegment; left = sortedLeft;
+        }
+
+        /**
+         * @return Index of the range that contains the house number, preferring ranges with the same
+         *         parity as the house number, or -1 if no range contains it.
+         */
+        int find(int bldgNum)
+        {
+            /** Binary search for the last range that starts at or before the house number */
+            int lo = 0, hi = size - 1, last = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (low[mid] <= bldgNum) {
+                    last = mid;
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid - 1;
+                }
+            }
+            /** Walk back through the ranges that may still overlap the house number */
+            int match = -1;
+            for (int i = last; i >= 0 && maxHigh[i] >= bldgNum; i--) {
+                if (high[i] >= bldgNum) {
+                    boolean mixedParity = (from[i] % 2) != (to[i] % 2);
+                    if (mixedParity || (from[i] % 2) == (bldgNum % 2)) {
+                        return i;
+                    }
+                    if (match == -1) {
+                        match = i;
+                    }
+                }
+            }
+            return match;
+        }
+    }
+
+    /**
+     * Adds the geometry of a street segment.
+     * @param coordinates Coordinates of the segment line as lon, lat pairs in order from the segment's
+     *                    from node to its to node.
+     * @return Id of the segment, used to add ranges to it.
+     */
+    public int addSegment(float[] coordinates)
+    {
+        segments.add(coordinates);
+        return segments.size() - 1;
+    }
+
+    /**
+     * Adds a house number range along one side of a segment.
+     * @param zip5      Zip code of the range
+     * @param streetKey Normalized street, see getStreetKey()
+     * @param fromNum   House number at the from node of the segment
+     * @param toNum     House number at the to node of the segment
+     * @param leftSide  True if the range is on the left side of the segment
+     * @param segmentId Id returned by addSegment()
+     */
+    public void addRange(String zip5, String streetKey, int fromNum, int toNum, boolean leftSide, int segmentId)
+    {
+        String key = zip5 + "|" + streetKey;
+        StreetRanges streetRanges = streets.get(key);
+        if (streetRanges == null) {
+            streetRanges = new StreetRanges();
+            streets.put(key, streetRanges);
+        }
+        streetRanges.add(fromNum, toNum, leftSide, segmentId);
+        rangeCount++;
+    }
+
+    /**
+     * Sorts the ranges of each street. Must be called once all ranges have been added.
+     */
+    public void build()
+    {
+        for (StreetRanges streetRanges : streets.values()) {
+            streetRanges.build();
+        }
+    }
+
+    /**
+     * Interpolates the location of the house number along the segment whose range contains it.
+     * @param zip5      Zip code
+     * @param streetKey Normalized street, see getStreetKey()
+     * @param bldgNum   House number
+     * @return Point, or null if no range of the street contains the house number.
+     */
+    public Point getPoint(String zip5, String streetKey, int bldgNum)
+    {
+        StreetRanges streetRanges = streets.get(zip5 + "|" + streetKey);
+        if (streetRanges == null) {
+            return null;
+        }
+        int i = streetRanges.find(bldgNum);
+        if (i == -1) {
+            return null;
+        }
+        int fromNum = streetRanges.from[i], toNum = streetRanges.to[i];
+        double fraction = (fromNum == toNum) ? 0.5 : (double) (bldgNum - fromNum) / (toNum - fromNum);
+        return interpolate(segments.get(streetRanges.segment[i]), fraction, streetRanges.left[i]);
+    }
+
+    /**
+     * Finds the point at the given fraction of the length of the line and moves it sideOffsetMeters
+     * perpendicular to the line, to the left or right.
+     */
+    private Point interpolate(float[] line, double fraction, boolean leftSide)
+    {
+        int pointCount = line.length / 2;
+        if (pointCount == 0) {
+            return null;
+        }
+        if (pointCount == 1) {
+            return new Point(line[1], line[0]);
+        }
+
+        /** Lengths are measured in meters using a local equirectangular projection */
+        double lonScale = Math.cos(Math.toRadians(line[1])) * METERS_PER_DEGREE;
+        double latScale = METERS_PER_DEGREE;
+        double length = 0;
+        for (int p = 1; p < pointCount; p++) {
+            length += Math.hypot((line[2*p] - line[2*p-2]) * lonScale, (line[2*p+1] - line[2*p-1]) * latScale);
+        }
+
+        double target = Math.max(0, Math.min(1, fraction)) * length;
+        double walked = 0;
+        for (int p = 1; p < pointCount; p++) {
+            double dx = (line[2*p] - line[2*p-2]) * lonScale;
+            double dy = (line[2*p+1] - line[2*p-1]) * latScale;
+            double partLength = Math.hypot(dx, dy);
+            if (partLength == 0) {
+                continue;
+            }
+            if (walked + partLength >= target || p == pointCount - 1) {
+                double t = Math.min(1, (target - walked) / partLength);
+                double x = line[2*p-2] * lonScale + dx * t;
+                double y = line[2*p-1] * latScale + dy * t;
+                /** The left normal of the direction (dx, dy) is (-dy, dx) */
+                double side = (leftSide) ? 1 : -1;
+                x += -dy / partLength * sideOffsetMeters * side;
+                y += dx / partLength * sideOffsetMeters * side;
+                return new Point(y / latScale, x / lonScale);
+            }
+            walked += partLength;
+        }
+        return new Point(line[pointCount*2-1], line[pointCount*2-2]);
+    }
+
+    /**
+     * Builds the normalized street used as the index key from the directionals, street name and street type.
+     * Street name prefixes such as Saint and Fort are abbreviated.
+     * @param streetAddress Parsed and normalized StreetAddress
+     * @return Upper case street key
+     */
+    public static String getStreetKey(StreetAddress streetAddress)
+    {
+        StringBuilder key = new StringBuilder();
+        String streetName = StreetAddressParser.getPrefixNormalizedStreetName(streetAddress.getStreetName());
+        for (String part : Arrays.asList(streetAddress.getPreDir(), streetName,
+                                         streetAddress.getStreetType(), streetAddress.getPostDir())) {
+            if (part != null && !part.trim().isEmpty()) {
+                if (key.length() > 0) {
+                    key.append(' ');
+                }
+                key.append(part.trim().toUpperCase());
+            }
+        }
+        return key.toString();
+    }
+
+    public int getStreetCount()
+    {
+        return streets.size();
+    }
+
+    public int getRangeCount()
+    {
+        return rangeCount;
+    }
+
+    public int getSegmentCount()
+    {
+        return segments.size();
+    }
+}
@@ -1,7 +1,10 @@
 package gov.nysenate.sage.service.geo;
 
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.result.GeocodeResult;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -9,6 +12,10 @@ import java.util.List;
  */
 public interface GeocodeCacheService extends GeocodeService
 {
+    /** Cache lookups that reuse a parse of the address made earlier in the request (may be null) */
+    public GeocodeResult geocode(Address address, ParsedAddress parsedAddress);
+    public ArrayList<GeocodeResult> geocode(List<Address> addresses, List<ParsedAddress> parsedAddresses);
+
     public void saveToCache(GeocodeResult geocodeResult);
     public void saveToCacheAndFlush(GeocodeResult geocodeResult);
     public void saveToCache(List<GeocodeResult> geocodeResults);
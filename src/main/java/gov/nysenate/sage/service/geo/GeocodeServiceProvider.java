@@ -3,21 +3,32 @@ package gov.nysenate.sage.service.geo;
 import gov.nysenate.sage.factory.ApplicationFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.ParsedAddress;
 import gov.nysenate.sage.model.api.BatchGeocodeRequest;
 import gov.nysenate.sage.model.api.GeocodeRequest;
 import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.result.GeocodeResult;
 import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.model.stats.CacheStats;
+import gov.nysenate.sage.model.stats.GeocoderRankStats;
 import gov.nysenate.sage.provider.GeoCache;
 import gov.nysenate.sage.service.base.ServiceProviders;
+import gov.nysenate.sage.util.Bulkhead;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.FormatUtil;
+import gov.nysenate.sage.util.LatencyWindow;
+import gov.nysenate.sage.util.MemoryCache;
+import gov.nysenate.sage.util.RequestCoalescer;
 import gov.nysenate.sage.util.TimeUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Point of access for all geocoding requests. This class maintains a collection of available
@@ -33,6 +44,28 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
     private GeocodeCacheService geocodeCache;
     private Boolean CACHE_ENABLED = true;
 
+    /** Negative caching members. Addresses that no provider in the chain could geocode are remembered
+     *  here so that they are not sent through the providers again until the entry expires. */
+    private MemoryCache<String, Boolean> negativeCache;
+    private Boolean NEGATIVE_CACHE_ENABLED = true;
+    private String providerConfig;
+
+    /** Hedging members. When enabled the next provider in the chain is started once the current one has
+     *  taken longer than HEDGE_PERCENTILE of its recent response times. */
+    private Boolean HEDGE_ENABLED = false;
+    private Double HEDGE_PERCENTILE = 90.0;
+    private Long HEDGE_DEFAULT_DELAY = 2000L;
+    private GeocodeQuality HEDGE_MIN_QUALITY = GeocodeQuality.HOUSE;
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    /** Adaptive ranking members. The health of each provider is tracked here and, when enabled, the default
+     *  provider and fallback chain are periodically reordered based on it. */
+    private GeocoderRanking ranking = new GeocoderRanking();
+    private Boolean ADAPTIVE_RANK_ENABLED = false;
+
+    /** Concurrent requests for the same address and provider options wait on a single geocode. */
+    private RequestCoalescer<String, GeocodeResult> requestCoalescer = new RequestCoalescer<>();
+
     public GeocodeServiceProvider() {
         config.notifyOnChange(this);
         update(null, null);
@@ -42,6 +75,95 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
     @Override
     public void update(Observable o, Object arg) {
         CACHE_ENABLED = Boolean.parseBoolean(config.getValue("geocache.enabled"));
+        NEGATIVE_CACHE_ENABLED = Boolean.parseBoolean(config.getValue("geocache.negative.enabled", "true"));
+        int negativeCacheSize = Integer.parseInt(config.getValue("geocache.negative.size", "10000"));
+        int negativeCacheTtl = Integer.parseInt(config.getValue("geocache.negative.ttl", "86400"));
+        if (negativeCache == null) {
+            negativeCache = new MemoryCache<>("geocache-negative", negativeCacheSize, negativeCacheTtl);
+        }
+        else {
+            negativeCache.resize(negativeCacheSize, negativeCacheTtl);
+        }
+
+        /** A change in the geocoder settings may allow previously failed addresses to be geocoded. */
+        String currentProviderConfig = String.format("%s|%s|%s", config.getValue("geocoder.active"),
+            config.getValue("geocoder.rank"), config.getValue("geocoder.cacheable"));
+        if (providerConfig != null && !providerConfig.equals(currentProviderConfig)) {
+            logger.info("Geocoder configuration changed. Clearing negative geocode cache.");
+            negativeCache.clear();
+        }
+        providerConfig = currentProviderConfig;
+
+        HEDGE_ENABLED = Boolean.parseBoolean(config.getValue("geocoder.hedge.enabled", "false"));
+        HEDGE_PERCENTILE = Double.parseDouble(config.getValue("geocoder.hedge.percentile", "90"));
+        HEDGE_DEFAULT_DELAY = Long.parseLong(config.getValue("geocoder.hedge.delay", "2000"));
+        HedgedGeocodeService.setThreadCount(Integer.parseInt(config.getValue("geocoder.hedge.threads", "32")));
+        try {
+            HEDGE_MIN_QUALITY = GeocodeQuality.valueOf(config.getValue("geocoder.hedge.quality", "HOUSE").toUpperCase());
+        }
+        catch (IllegalArgumentException ex) {
+            logger.warn("Invalid geocoder.hedge.quality setting. Defaulting to HOUSE.");
+            HEDGE_MIN_QUALITY = GeocodeQuality.HOUSE;
+        }
+
+        ADAPTIVE_RANK_ENABLED = Boolean.parseBoolean(config.getValue("geocoder.adaptive.enabled", "false"));
+        ranking.setBounds(Integer.parseInt(config.getValue("geocoder.adaptive.max.shift", "1")),
+                          Double.parseDouble(config.getValue("geocoder.adaptive.margin", "0.1")),
+                          Integer.parseInt(config.getValue("geocoder.adaptive.min.samples", "20")),
+                          Long.parseLong(config.getValue("geocoder.adaptive.latency.target", "1000")),
+                          Integer.parseInt(config.getValue("geocoder.adaptive.interval", "30")));
+        if (!ADAPTIVE_RANK_ENABLED) {
+            applyRanking(ranking.getConfiguredRanking());
+        }
+    }
+
+    /**
+     * Sets the fallback chain and records the default provider followed by the chain as the configured
+     * ranking that adaptive ranking is bounded by.
+     * @param fallbackChain List of provider names
+     */
+    @Override
+    public void setProviderFallbackChain(List<String> fallbackChain)
+    {
+        super.setProviderFallbackChain(fallbackChain);
+        List<String> configuredRanking = new ArrayList<>();
+        if (this.defaultProvider != null) {
+            configuredRanking.add(this.defaultProvider);
+        }
+        configuredRanking.addAll(fallbackChain);
+        ranking.setConfiguredRanking(configuredRanking);
+    }
+
+    /**
+     * @return GeocoderRankStats for each ranked provider in the current rank order.
+     */
+    public List<GeocoderRankStats> getRankingStats()
+    {
+        return ranking.getStats();
+    }
+
+    /**
+     * @return CacheStats for the negative geocode cache.
+     */
+    public CacheStats getNegativeCacheStats()
+    {
+        return negativeCache.getStats();
+    }
+
+    /**
+     * @return Number of geocode requests that were served by waiting on an identical in-flight request.
+     */
+    public long getCoalescedCount()
+    {
+        return requestCoalescer.getCoalescedCount();
+    }
+
+    /**
+     * @return Number of distinct geocode requests currently in flight.
+     */
+    public int getInFlightCount()
+    {
+        return requestCoalescer.getInFlightCount();
     }
 
     /**
@@ -73,8 +195,8 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
         if (geocodeRequest != null) {
             String provider = (geocodeRequest.getProvider() != null && !geocodeRequest.getProvider().isEmpty())
                               ? geocodeRequest.getProvider() : this.defaultProvider;
-            return this.geocode(geocodeRequest.getAddress(), provider, this.defaultFallback,
-                                geocodeRequest.isUseFallback(), geocodeRequest.isUseCache());
+            return this.geocodeCoalesced(geocodeRequest.getAddress(), geocodeRequest.getParsedAddress(), provider,
+                                         this.defaultFallback, geocodeRequest.isUseFallback(), geocodeRequest.isUseCache());
         }
         return null;
     }
@@ -130,27 +252,93 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
      */
     public GeocodeResult geocode(Address address, String provider, LinkedList<String> fallbackProviders, boolean useFallback,
                           boolean useCache)
+    {
+        return this.geocodeCoalesced(address, null, provider, fallbackProviders, useFallback, useCache);
+    }
+
+    /**
+     * Performs the single geocode, waiting on an identical request if one is already in flight.
+     * @param parsedAddress Parse of the address made earlier in the request, may be null
+     */
+    private GeocodeResult geocodeCoalesced(Address address, ParsedAddress parsedAddress, String provider,
+                                           LinkedList<String> fallbackProviders, boolean useFallback, boolean useCache)
     {
         /** Clone the list of fall back providers */
         LinkedList<String> fallback = (fallbackProviders != null) ? new LinkedList<>(fallbackProviders)
                                                                   : new LinkedList<>(this.defaultFallback);
+        parsedAddress = ParsedAddress.forAddress(address, parsedAddress);
+        if (parsedAddress == null) {
+            return this.geocode(address, parsedAddress, provider, fallback, useFallback, useCache);
+        }
+
+        /** Wait on an identical request that is already in flight, otherwise process it here */
+        String requestKey = getRequestKey(parsedAddress, provider, fallback, useFallback, useCache);
+        CompletableFuture<GeocodeResult> request = new CompletableFuture<>();
+        CompletableFuture<GeocodeResult> inFlightRequest = requestCoalescer.claim(requestKey, request);
+        if (inFlightRequest != null) {
+            logger.debug("Waiting on in-flight geocode request for " + parsedAddress);
+            GeocodeResult coalescedResult = requestCoalescer.await(inFlightRequest);
+            if (coalescedResult != null) {
+                return coalescedResult.copy();
+            }
+            return this.geocode(address, parsedAddress, provider, fallback, useFallback, useCache);
+        }
+
+        GeocodeResult geocodeResult = null;
+        try {
+            geocodeResult = this.geocode(address, parsedAddress, provider, fallback, useFallback, useCache);
+        }
+        finally {
+            /** Waiters get copies of a snapshot, so that this caller can go on to modify its own result */
+            requestCoalescer.complete(requestKey, request, (geocodeResult != null) ? geocodeResult.copy() : null);
+        }
+        return geocodeResult;
+    }
+
+    /**
+     * Performs the single geocode without request coalescing.
+     * @param address       Address to geocode
+     * @param parsedAddress Parse of the address (null if address is empty)
+     * @param fallback      Copy of the fallback chain that can be modified
+     * @return              GeocodeResult
+     */
+    private GeocodeResult geocode(Address address, ParsedAddress parsedAddress, String provider, LinkedList<String> fallback,
+                                  boolean useFallback, boolean useCache)
+    {
         /** Set up and hit the cache */
         if (this.geocodeCache == null) {
             this.newCacheInstance();
         }
         Timestamp startTime = TimeUtil.currentTimestamp();
-        GeocodeResult geocodeResult = (CACHE_ENABLED && useCache) ? this.geocodeCache.geocode(address)
+        GeocodeResult geocodeResult = (CACHE_ENABLED && useCache) ? this.geocodeCache.geocode(address, parsedAddress)
                                                  : new GeocodeResult(this.getClass(), ResultStatus.NO_GEOCODE_RESULT);
         boolean cacheHit = CACHE_ENABLED && useCache && geocodeResult.isSuccess();
 
-        if (!cacheHit) {
-            /** Geocode using the supplied provider if valid */
+        /** Skip the providers entirely if this address failed with the same provider chain recently. The negative
+         *  cache is only read when the cache is, so that a request which turns caching off reaches the providers. */
+        String negativeCacheKey = null;
+        boolean negativeHit = false;
+        if (!cacheHit && NEGATIVE_CACHE_ENABLED && parsedAddress != null
+                      && !hasUnknownProvider(provider, (useFallback) ? fallback : new LinkedList<String>())) {
+            negativeCacheKey = getNegativeCacheKey(parsedAddress, provider, (useFallback) ? fallback : new LinkedList<String>());
+            negativeHit = CACHE_ENABLED && useCache && (negativeCache.get(negativeCacheKey) != null);
+        }
+        /** Set to false if any provider fails for reasons other than not finding a match */
+        boolean definiteMiss = true;
+
+        if (negativeHit) {
+            logger.info("Negative cache hit. Skipping geocode providers.");
+        }
+        else if (cacheHit) {
+            logger.info(String.format("Cache hit in %d ms.", TimeUtil.getElapsedMs(startTime)));
+        }
+        else {
+            /** Determine the providers to use in order of preference */
+            List<String> providerChain = new ArrayList<>();
             if (this.isRegistered(provider)) {
                 /** Remove the provider if it's set in the fallback chain */
                 fallback.remove(provider);
-                startTime = TimeUtil.currentTimestamp();
-                geocodeResult = this.getInstance(provider).geocode(address);
-                logger.info(String.format("%s response time: %d ms.", provider, TimeUtil.getElapsedMs(startTime)));
+                providerChain.add(provider);
             }
             else {
                 logger.error("Supplied an invalid geocoding provider! " + provider);
@@ -159,26 +347,49 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
                     fallback.set(0, this.defaultProvider);
                 }
             }
-        }
-        else {
-            logger.info(String.format("Cache hit in %d ms.", TimeUtil.getElapsedMs(startTime)));
-        }
+            if (useFallback) {
+                providerChain.addAll(fallback);
+            }
 
-        /** If attempt failed, use the fallback providers if allowed */
-        if (geocodeResult != null && !geocodeResult.isSuccess() && useFallback) {
-            Iterator<String> fallbackIterator = fallback.iterator();
-            while (!geocodeResult.isSuccess() && fallbackIterator.hasNext()) {
-                provider = fallbackIterator.next();
-                logger.info(String.format("Sending through %s.", provider));
-                startTime = TimeUtil.currentTimestamp();
-                geocodeResult = this.getInstance(provider).geocode(address);
-                logger.info(String.format("%s response time: %d ms.", provider, TimeUtil.getElapsedMs(startTime)));
+            /** Race the providers if hedging is enabled, otherwise use each provider until one succeeds */
+            if (HEDGE_ENABLED && providerChain.size() > 1) {
+                List<GeocodeResult> failedResults = new ArrayList<>();
+                GeocodeResult hedgedResult = hedgedGeocode(address, providerChain, failedResults);
+                /** Every provider in the chain has to have answered for the miss to be definite */
+                definiteMiss = (failedResults.size() == providerChain.size());
+                for (GeocodeResult failedResult : failedResults) {
+                    definiteMiss = definiteMiss && isDefiniteMiss(failedResult);
+                }
+                if (hedgedResult != null) {
+                    geocodeResult = hedgedResult;
+                }
+                else if (!failedResults.isEmpty()) {
+                    geocodeResult = failedResults.get(failedResults.size() - 1);
+                }
+            }
+            else {
+                Iterator<String> providerIterator = providerChain.iterator();
+                while ((geocodeResult == null || !geocodeResult.isSuccess()) && providerIterator.hasNext()) {
+                    String nextProvider = providerIterator.next();
+                    if (!nextProvider.equals(provider)) {
+                        logger.info(String.format("Sending through %s.", nextProvider));
+                    }
+                    geocodeResult = geocodeWithProvider(nextProvider, address);
+                    definiteMiss = definiteMiss && isDefiniteMiss(geocodeResult);
+                }
             }
         }
+
         /** Ensure we don't return a null response */
         if (geocodeResult == null || !geocodeResult.isSuccess()) {
             logger.warn("No valid geocode result.");
             geocodeResult = new GeocodeResult(this.getClass(), ResultStatus.NO_GEOCODE_RESULT);
+            if (negativeHit) {
+                geocodeResult.addMessage("Address previously failed to geocode with the requested providers; skipped geocoding.");
+            }
+            else if (negativeCacheKey != null && definiteMiss) {
+                negativeCache.put(negativeCacheKey, true);
+            }
         }
         /** Output result if log level is high enough */
         else if (logger.isDebugEnabled()) {
@@ -191,8 +402,11 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             }
         }
 
-        /** Set the timestamp */
+        /** Set the timestamp and pass the parse along with the geocoded address */
         geocodeResult.setResultTime(TimeUtil.currentTimestamp());
+        if (geocodeResult.getGeocodedAddress() != null) {
+            geocodeResult.getGeocodedAddress().setParsedAddress(parsedAddress);
+        }
 
         /** Cache result */
         if (CACHE_ENABLED && !cacheHit) {
@@ -212,8 +426,9 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             String provider = (batchGeoRequest.getProvider() != null && !batchGeoRequest.getProvider().isEmpty())
                               ? batchGeoRequest.getProvider()
                               : this.defaultProvider;
-            return this.geocode(batchGeoRequest.getAddresses(), provider, batchGeoRequest.isUseFallback(),
-                                batchGeoRequest.isUseCache());
+            /** The cache is always checked first, as with geocode(addresses, provider, useFallback, useCache) */
+            return this.geocode(batchGeoRequest.getAddresses(), batchGeoRequest.getParsedAddresses(), provider,
+                                this.defaultFallback, batchGeoRequest.isUseFallback(), true);
         }
         return null;
     }
@@ -252,6 +467,124 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
      */
     public List<GeocodeResult> geocode(List<Address> addresses, String provider,
                                        List<String> fallbackProviders, boolean useFallback, boolean useCache)
+    {
+        return this.geocode(addresses, null, provider, fallbackProviders, useFallback, useCache);
+    }
+
+    /**
+     * Perform batch geocoding reusing the parses of the addresses that were made when the request came in.
+     * @param addresses         List of addresses to geocode
+     * @param parsedAddresses   Parses aligned with the addresses, or null to parse them here
+     * @return                  List<GeocodeResult> corresponding to the addresses list.
+     */
+    private List<GeocodeResult> geocode(List<Address> addresses, List<ParsedAddress> parsedAddresses, String provider,
+                                        List<String> fallbackProviders, boolean useFallback, boolean useCache)
+    {
+        List<String> fallback = (fallbackProviders != null) ? fallbackProviders : this.defaultFallback;
+
+        /** Claim each address that is not already being geocoded by another request. The remaining
+         *  addresses will wait on the in-flight requests once this batch has been processed. */
+        List<ParsedAddress> addressParses = new ArrayList<>(addresses.size());
+        Map<Integer, String> requestKeys = new HashMap<>();
+        Map<Integer, CompletableFuture<GeocodeResult>> ownedRequests = new HashMap<>();
+        Map<Integer, CompletableFuture<GeocodeResult>> inFlightRequests = new HashMap<>();
+        List<Address> ownedAddresses = new ArrayList<>(addresses.size());
+        List<ParsedAddress> ownedAddressParses = new ArrayList<>(addresses.size());
+        List<Integer> ownedIndices = new ArrayList<>(addresses.size());
+
+        for (int i = 0; i < addresses.size(); i++) {
+            ParsedAddress parsedAddress = ParsedAddress.forAddress(addresses.get(i),
+                                                                   (parsedAddresses != null) ? parsedAddresses.get(i) : null);
+            addressParses.add(parsedAddress);
+            if (parsedAddress != null) {
+                String requestKey = getRequestKey(parsedAddress, provider, fallback, useFallback, useCache);
+                CompletableFuture<GeocodeResult> request = new CompletableFuture<>();
+                CompletableFuture<GeocodeResult> inFlightRequest = requestCoalescer.claim(requestKey, request);
+                if (inFlightRequest != null) {
+                    inFlightRequests.put(i, inFlightRequest);
+                    continue;
+                }
+                requestKeys.put(i, requestKey);
+                ownedRequests.put(i, request);
+            }
+            ownedAddresses.add(addresses.get(i));
+            ownedAddressParses.add(parsedAddress);
+            ownedIndices.add(i);
+        }
+        if (inFlightRequests.isEmpty()) {
+            return this.geocodeBatch(addresses, addressParses, provider, fallback, useFallback, useCache, ownedRequests, requestKeys);
+        }
+
+        logger.info(String.format("%d geocodes are already in flight.", inFlightRequests.size()));
+        Map<Integer, CompletableFuture<GeocodeResult>> ownedRequestsByOwnedIndex = new HashMap<>();
+        Map<Integer, String> requestKeysByOwnedIndex = new HashMap<>();
+        for (int j = 0; j < ownedIndices.size(); j++) {
+            if (ownedRequests.containsKey(ownedIndices.get(j))) {
+                ownedRequestsByOwnedIndex.put(j, ownedRequests.get(ownedIndices.get(j)));
+                requestKeysByOwnedIndex.put(j, requestKeys.get(ownedIndices.get(j)));
+            }
+        }
+        List<GeocodeResult> ownedResults = (!ownedAddresses.isEmpty())
+            ? this.geocodeBatch(ownedAddresses, ownedAddressParses, provider, fallback, useFallback, useCache,
+                                ownedRequestsByOwnedIndex, requestKeysByOwnedIndex)
+            : new ArrayList<GeocodeResult>();
+        if (ownedResults.size() != ownedAddresses.size()) {
+            return ownedResults;
+        }
+
+        /** Merge the results of this batch with the results of the in-flight requests */
+        List<GeocodeResult> geocodeResults = new ArrayList<>(addresses.size());
+        Iterator<GeocodeResult> ownedResultIterator = ownedResults.iterator();
+        for (int i = 0; i < addresses.size(); i++) {
+            if (inFlightRequests.containsKey(i)) {
+                GeocodeResult coalescedResult = requestCoalescer.await(inFlightRequests.get(i));
+                geocodeResults.add((coalescedResult != null)
+                    ? coalescedResult.copy()
+                    : this.geocode(addresses.get(i), addressParses.get(i), provider, new LinkedList<>(fallback), useFallback, useCache));
+            }
+            else {
+                geocodeResults.add(ownedResultIterator.next());
+            }
+        }
+        return geocodeResults;
+    }
+
+    /**
+     * Performs the batch geocode and completes the owned in-flight requests with the results.
+     * @param addresses         List of addresses to geocode
+     * @param parsedAddresses   Parses aligned with addresses (null for empty addresses)
+     * @param ownedRequests     In-flight requests claimed by this batch, by address index
+     * @param requestKeys       Keys of the claimed requests, by address index
+     * @return                  List<GeocodeResult> corresponding to the addresses list.
+     */
+    private List<GeocodeResult> geocodeBatch(List<Address> addresses, List<ParsedAddress> parsedAddresses, String provider,
+                                             List<String> fallbackProviders, boolean useFallback, boolean useCache,
+                                             Map<Integer, CompletableFuture<GeocodeResult>> ownedRequests,
+                                             Map<Integer, String> requestKeys)
+    {
+        List<GeocodeResult> geocodeResults = null;
+        try {
+            geocodeResults = this.geocodeBatch(addresses, parsedAddresses, provider, fallbackProviders, useFallback, useCache);
+        }
+        finally {
+            boolean aligned = (geocodeResults != null && geocodeResults.size() == addresses.size());
+            for (Map.Entry<Integer, CompletableFuture<GeocodeResult>> ownedRequest : ownedRequests.entrySet()) {
+                int index = ownedRequest.getKey();
+                requestCoalescer.complete(requestKeys.get(index), ownedRequest.getValue(),
+                                          (aligned && geocodeResults.get(index) != null) ? geocodeResults.get(index).copy() : null);
+            }
+        }
+        return geocodeResults;
+    }
+
+    /**
+     * Performs the batch geocode without request coalescing.
+     * @param addresses         List of addresses to geocode
+     * @param parsedAddresses   Parses aligned with addresses (null for empty addresses)
+     * @return                  List<GeocodeResult> corresponding to the addresses list.
+     */
+    private List<GeocodeResult> geocodeBatch(List<Address> addresses, List<ParsedAddress> parsedAddresses, String provider,
+                                             List<String> fallbackProviders, boolean useFallback, boolean useCache)
     {
         if (this.geocodeCache == null) {
             this.newCacheInstance();
@@ -269,10 +602,12 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
         /** Make note of the indices that contain empty addresses and create a new list of addresses
         * containing just the addresses with values. */
         List<Address> validAddresses = new ArrayList<>(addressCount);
+        List<ParsedAddress> validParsedAddresses = new ArrayList<>(addressCount);
         List<Integer> invalidIndices = new ArrayList<>();
         for (int i = 0; i < addressCount; i++) {
             if (addresses.get(i) != null && !addresses.get(i).isEmpty()) {
                 validAddresses.add(addresses.get(i));
+                validParsedAddresses.add(parsedAddresses.get(i));
             }
             else {
                 invalidIndices.add(i);
@@ -288,7 +623,7 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             logger.debug("Running batch through geo cache..");
             Timestamp benchmark1 = TimeUtil.currentTimestamp();
 
-            geocodeResults = this.geocodeCache.geocode((ArrayList<Address>) validAddresses);
+            geocodeResults = this.geocodeCache.geocode(validAddresses, validParsedAddresses);
             cacheElapsedMs = TimeUtil.getElapsedMs(benchmark1);
 
             if (!fallback.contains(provider)) {
@@ -300,7 +635,7 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             /** Remove the provider if it's set in the fallback chain */
             fallback.remove(provider);
             logger.info(String.format("Skipped cache lookup. Using %s.", provider));
-            geocodeResults = this.getInstance(provider).geocode((ArrayList<Address>) validAddresses);
+            geocodeResults = geocodeBatchWithProvider(provider, (ArrayList<Address>) validAddresses);
         }
         /** Otherwise populate the results array with failed results so they get picked up
          *  during the fallback stage. */
@@ -321,6 +656,29 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
                 (validAddresses.size() - failedIndices.size()), validAddresses.size(), cacheElapsedMs));
         }
 
+        /** Set aside the addresses that recently failed with the same provider chain so that they skip the
+         *  fallback providers, unless caching is turned off for the request. Results that fail for reasons other
+         *  than a missing match are tracked as indefinite so that they don't get stored in the negative cache. */
+        Map<Integer, String> negativeCacheKeys = new HashMap<>();
+        Set<Integer> negativeHitIndices = new HashSet<>();
+        Set<Integer> indefiniteIndices = new HashSet<>();
+        if (NEGATIVE_CACHE_ENABLED && !hasUnknownProvider(provider, fallback)) {
+            for (int failedIndex : failedIndices) {
+                String negativeCacheKey = getNegativeCacheKey(validParsedAddresses.get(failedIndex), provider, fallback);
+                negativeCacheKeys.put(failedIndex, negativeCacheKey);
+                if (CACHE_ENABLED && useCache && negativeCache.get(negativeCacheKey) != null) {
+                    negativeHitIndices.add(failedIndex);
+                }
+                else if (!isDefiniteMiss(geocodeResults.get(failedIndex))) {
+                    indefiniteIndices.add(failedIndex);
+                }
+            }
+            failedIndices.removeAll(negativeHitIndices);
+            if (!negativeHitIndices.isEmpty()) {
+                logger.info(String.format("Negative cache hits: %d. Skipping geocode providers for these.", negativeHitIndices.size()));
+            }
+        }
+
         /** Create new batches containing just the failed results and run them through the fallback providers.
          *  Recompute the failed results and repeat until all fallback providers specified have been used. */
         Iterator<String> fallbackIterator = fallback.iterator();
@@ -334,7 +692,7 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             }
 
             Timestamp startTime = TimeUtil.currentTimestamp();
-            List<GeocodeResult> fallbackResults = this.getInstance(provider).geocode(fallbackBatch);
+            List<GeocodeResult> fallbackResults = geocodeBatchWithProvider(provider, fallbackBatch);
             long elapsedMs = TimeUtil.getElapsedMs(startTime);
             String responseTimeMsg = String.format("%s response time: %d ms.", provider, elapsedMs);
             if (elapsedMs > 10000) {
@@ -350,12 +708,26 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
                 if (fallbackResult != null) {
                     geocodeResults.set(failedIndex, fallbackResult);
                 }
+                if (!isDefiniteMiss(fallbackResult)) {
+                    indefiniteIndices.add(failedIndex);
+                }
             }
             failedIndices = getFailedResultIndices(geocodeResults);
+            failedIndices.removeAll(negativeHitIndices);
         }
 
-        if (!failedIndices.isEmpty()) {
-            logger.info(String.format("%d addresses were not geocoded!", failedIndices.size()));
+        /** Remember the addresses that none of the providers could match */
+        for (int failedIndex : failedIndices) {
+            if (negativeCacheKeys.containsKey(failedIndex) && !indefiniteIndices.contains(failedIndex)) {
+                negativeCache.put(negativeCacheKeys.get(failedIndex), true);
+            }
+        }
+        for (int negativeHitIndex : negativeHitIndices) {
+            geocodeResults.get(negativeHitIndex).addMessage("Address previously failed to geocode with the requested providers; skipped geocoding.");
+        }
+
+        if (!failedIndices.isEmpty() || !negativeHitIndices.isEmpty()) {
+            logger.info(String.format("%d addresses were not geocoded!", failedIndices.size() + negativeHitIndices.size()));
         }
 
         /** If the geocodeResults do not align with the valid input address set, produce error and return empty array. */
@@ -387,10 +759,14 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
             finalGeocodeResults = geocodeResults;
         }
 
-        /** Loop through results and set the timestamp */
-        for (GeocodeResult geocodeResult : finalGeocodeResults) {
+        /** Loop through results, set the timestamp and pass the parses along with the geocoded addresses */
+        for (int i = 0; i < finalGeocodeResults.size(); i++) {
+            GeocodeResult geocodeResult = finalGeocodeResults.get(i);
             if (geocodeResult != null) {
                 geocodeResult.setResultTime(TimeUtil.currentTimestamp());
+                if (geocodeResult.getGeocodedAddress() != null) {
+                    geocodeResult.getGeocodedAddress().setParsedAddress(parsedAddresses.get(i));
+                }
             }
         }
 
@@ -402,6 +778,204 @@ public class GeocodeServiceProvider extends ServiceProviders<GeocodeService> imp
         return finalGeocodeResults;
     }
 
+    /**
+     * Geocodes the address using the given provider and records the response time.
+     * @param provider  Registered provider name
+     * @param address   Address to geocode
+     * @return GeocodeResult
+     */
+    private GeocodeResult geocodeWithProvider(String provider, Address address)
+    {
+        GeocodeService geocodeService = this.getInstance(provider);
+        Bulkhead bulkhead = GeocodeServiceValidator.getBulkhead(geocodeService.getClass());
+        GeocodeResult geocodeResult;
+        if (bulkhead.tryAcquire()) {
+            try {
+                Timestamp startTime = TimeUtil.currentTimestamp();
+                geocodeResult = geocodeService.geocode(address);
+                long elapsedMs = TimeUtil.getElapsedMs(startTime);
+                logger.info(String.format("%s response time: %d ms.", provider, elapsedMs));
+                ranking.recordLatency(provider, elapsedMs);
+            }
+            finally {
+                bulkhead.release();
+            }
+        }
+        else {
+            geocodeResult = newBulkheadRejectedResult(geocodeService);
+        }
+        ranking.recordResult(provider, geocodeResult);
+        updateRanking();
+        return geocodeResult;
+    }
+
+    /**
+     * Batch geocodes the addresses using the given provider. The batch occupies a single slot of the
+     * provider's bulkhead.
+     * @param provider  Registered provider name
+     * @param addresses Addresses to geocode
+     * @return List<GeocodeResult> corresponding to the addresses list.
+     */
+    private List<GeocodeResult> geocodeBatchWithProvider(String provider, ArrayList<Address> addresses)
+    {
+        GeocodeService geocodeService = this.getInstance(provider);
+        Bulkhead bulkhead = GeocodeServiceValidator.getBulkhead(geocodeService.getClass());
+        List<GeocodeResult> geocodeResults;
+        if (bulkhead.tryAcquire()) {
+            try {
+                geocodeResults = geocodeService.geocode(addresses);
+            }
+            finally {
+                bulkhead.release();
+            }
+        }
+        else {
+            geocodeResults = new ArrayList<>(addresses.size());
+            for (int i = 0; i < addresses.size(); i++) {
+                geocodeResults.add(newBulkheadRejectedResult(geocodeService));
+            }
+        }
+        recordBatchResults(provider, geocodeResults);
+        return geocodeResults;
+    }
+
+    private GeocodeResult newBulkheadRejectedResult(GeocodeService geocodeService)
+    {
+        GeocodeResult geocodeResult = new GeocodeResult(geocodeService.getClass(), ResultStatus.GEOCODE_PROVIDER_TEMP_DISABLED);
+        geocodeResult.addMessage("Too many concurrent requests to " + geocodeService.getClass().getSimpleName() + ".");
+        return geocodeResult;
+    }
+
+    /**
+     * Records the outcome of each result of a batch geocode. Batch response times are not recorded
+     * since they are not comparable to single geocode response times.
+     * @param provider          Registered provider name
+     * @param geocodeResults    Results returned by the provider
+     */
+    private void recordBatchResults(String provider, List<GeocodeResult> geocodeResults)
+    {
+        if (geocodeResults != null) {
+            for (GeocodeResult geocodeResult : geocodeResults) {
+                ranking.recordResult(provider, geocodeResult);
+            }
+            updateRanking();
+        }
+    }
+
+    /**
+     * Reorders the default provider and fallback chain if adaptive ranking is enabled and due.
+     */
+    private void updateRanking()
+    {
+        if (ADAPTIVE_RANK_ENABLED) {
+            applyRanking(ranking.rankIfDue());
+        }
+    }
+
+    /**
+     * Sets the first provider of the ranking as the default and the rest as the fallback chain.
+     * @param providerRanking Provider names in order of preference (ignored if null or empty)
+     */
+    private synchronized void applyRanking(List<String> providerRanking)
+    {
+        if (providerRanking != null && !providerRanking.isEmpty()) {
+            String rankedDefault = providerRanking.get(0);
+            LinkedList<String> rankedFallback = new LinkedList<>(providerRanking.subList(1, providerRanking.size()));
+            if (!rankedDefault.equals(this.defaultProvider) || !rankedFallback.equals(this.defaultFallback)) {
+                logger.info("Geocoder ranking changed to " + providerRanking);
+                this.defaultFallback = rankedFallback;
+                this.defaultProvider = rankedDefault;
+            }
+        }
+    }
+
+    /**
+     * @param provider Registered provider name
+     * @return LatencyWindow with the recent single geocode response times of the provider.
+     */
+    private LatencyWindow getProviderLatency(String provider)
+    {
+        return ranking.getHealth(provider).getLatency();
+    }
+
+    /**
+     * Runs the provider chain through the HedgedGeocodeService. The hedge delay of each provider is its
+     * HEDGE_PERCENTILE response time, or HEDGE_DEFAULT_DELAY until enough samples have been recorded.
+     * @param address       Address to geocode
+     * @param providerChain Provider names in order of preference
+     * @param failedResults Populated with the unsuccessful results
+     * @return GeocodeResult or null if no provider succeeded.
+     */
+    private GeocodeResult hedgedGeocode(final Address address, List<String> providerChain, List<GeocodeResult> failedResults)
+    {
+        List<Callable<GeocodeResult>> calls = new ArrayList<>();
+        List<Long> hedgeDelays = new ArrayList<>();
+        for (final String provider : providerChain) {
+            calls.add(new Callable<GeocodeResult>() {
+                @Override
+                public GeocodeResult call() {
+                    return geocodeWithProvider(provider, address);
+                }
+            });
+            LatencyWindow latency = getProviderLatency(provider);
+            hedgeDelays.add((latency.getCount() >= HEDGE_MIN_SAMPLES) ? latency.getPercentile(HEDGE_PERCENTILE)
+                                                                      : HEDGE_DEFAULT_DELAY);
+        }
+        return HedgedGeocodeService.geocode(providerChain, calls, hedgeDelays, HEDGE_MIN_QUALITY, failedResults);
+    }
+
+    /**
+     * Builds the negative cache key from the parsed address key and the ordered set of providers that will be used.
+     * @param parsedAddress Parsed address
+     * @param provider      Primary provider
+     * @param fallback      Fallback providers (empty if fallback is not used)
+     * @return String key
+     */
+    private String getNegativeCacheKey(ParsedAddress parsedAddress, String provider, List<String> fallback)
+    {
+        Set<String> providerChain = new LinkedHashSet<>();
+        providerChain.add(provider);
+        providerChain.addAll(fallback);
+        return Long.toHexString(parsedAddress.getKey()) + "|" + StringUtils.join(providerChain, ",");
+    }
+
+    /**
+     * Builds the request coalescing key from the parsed address key and all of the provider options.
+     */
+    private String getRequestKey(ParsedAddress parsedAddress, String provider, List<String> fallback, boolean useFallback, boolean useCache)
+    {
+        return String.format("%x|%s|%s|%b|%b", parsedAddress.getKey(), provider, StringUtils.join(fallback, ","), useFallback, useCache);
+    }
+
+    /**
+     * A result is only considered a definite miss if the provider responded without a match. Failures due
+     * to disabled providers or failed requests (which providers report as response errors) should not be cached.
+     * @param geocodeResult GeocodeResult
+     * @return true if the provider returned no geocode result.
+     */
+    private boolean isDefiniteMiss(GeocodeResult geocodeResult)
+    {
+        return geocodeResult != null && geocodeResult.getStatusCode() == ResultStatus.NO_GEOCODE_RESULT;
+    }
+
+    /**
+     * A miss from a chain that names an unregistered provider says nothing about the address, so those
+     * results are not negative cached.
+     * @return True if the provider or any of the fallback providers is not registered.
+     */
+    private boolean hasUnknownProvider(String provider, List<String> fallback)
+    {
+        if (!this.isRegistered(provider)) {
+            return true;
+        }
+        for (String fallbackProvider : fallback) {
+            if (!this.isRegistered(fallbackProvider)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Retrieve a list of indices denoting the locations of failed results in the array.
      * @param geocodeResults    The results to analyze
@@ -5,12 +5,14 @@ import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.address.GeocodedAddress;
 import gov.nysenate.sage.model.address.GeocodedStreetAddress;
 import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.stats.ProviderResilienceStats;
+import gov.nysenate.sage.util.Bulkhead;
+import gov.nysenate.sage.util.CircuitBreaker;
 import gov.nysenate.sage.util.Config;
 import gov.nysenate.sage.util.FormatUtil;
 import gov.nysenate.sage.util.TimeUtil;
 import org.apache.log4j.Logger;
 
-import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -24,16 +26,26 @@ public abstract class GeocodeServiceValidator
     private static final Logger logger = Logger.getLogger(GeocodeServiceValidator.class);
     private static Config config = ApplicationFactory.getConfig();
 
-    /** Keep track of GeocodeService implementations that are temporarily unavailable. */
+    /** Keep track of GeocodeService implementations that are temporarily unavailable. Each geocoder has a circuit
+     *  breaker that opens after FAILURE_THRESHOLD consecutive failures and allows a probe request once
+     *  RETRY_INTERVAL_SECS have elapsed. Each geocoder also has a bulkhead that limits its concurrent calls. */
     private static Set<Class<? extends GeocodeService>> activeGeocoders = new HashSet<>();
-    private static Map<Class<? extends GeocodeService>, Timestamp> frozenGeocoders = new ConcurrentHashMap<>();
-    private static Map<Class<? extends GeocodeService>, Integer> failedRequests = new ConcurrentHashMap<>();
+    private static Map<Class<? extends GeocodeService>, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private static Map<Class<? extends GeocodeService>, Bulkhead> bulkheads = new ConcurrentHashMap<>();
     private static Integer FAILURE_THRESHOLD = 20;
     private static Integer RETRY_INTERVAL_SECS = 300;
+    private static Integer MAX_CONCURRENT = 10;
+    private static Integer BULKHEAD_WAIT_MS = 500;
+
+    /** Returned by provider daos in place of a result when the request was held back by the ProviderRateLimiter.
+     *  It is reported as GEOCODE_PROVIDER_TEMP_DISABLED and is not counted as a failure of the provider. */
+    public static final GeocodedAddress RATE_LIMITED = new GeocodedAddress();
 
     static {
         FAILURE_THRESHOLD = Integer.parseInt(config.getValue("geocoder.failure.threshold", "20"));
         RETRY_INTERVAL_SECS = Integer.parseInt(config.getValue("geocoder.retry.interval", "300"));
+        MAX_CONCURRENT = Integer.parseInt(config.getValue("geocoder.max.concurrent", "10"));
+        BULKHEAD_WAIT_MS = Integer.parseInt(config.getValue("geocoder.bulkhead.wait", "500"));
     }
 
     /**
@@ -65,20 +77,7 @@ public abstract class GeocodeServiceValidator
                 geocodeResult.setResultTime(TimeUtil.currentTimestamp());
                 return false;
             }
-            else if (frozenGeocoders.containsKey(geocodeService)) {
-                /** Check if the freeze time has elapsed */
-                Timestamp freezeTime = frozenGeocoders.get(geocodeService);
-                Calendar refreshTime = Calendar.getInstance();
-                refreshTime.add(Calendar.SECOND, RETRY_INTERVAL_SECS * -1);
-                Timestamp refreshTimestamp = new Timestamp(refreshTime.getTimeInMillis());
-
-                /** If the geocoder's freeze time has expired, remove it from the disabled list */
-                if (freezeTime.compareTo(refreshTimestamp) < 0) {
-                    frozenGeocoders.remove(geocodeService);
-                    failedRequests.remove(geocodeService);
-                    return true;
-                }
-
+            else if (!getCircuitBreaker(geocodeService).allowRequest()) {
                 geocodeResult.setStatusCode(GEOCODE_PROVIDER_TEMP_DISABLED);
                 geocodeResult.setResultTime(TimeUtil.currentTimestamp());
                 logger.debug(geocodeService.getSimpleName() + " is temporarily disabled.");
@@ -118,35 +117,71 @@ public abstract class GeocodeServiceValidator
     }
 
     /**
-     * Will remove the geocoder from it's frozen state.
+     * Will remove the geocoder from it's frozen state by closing its circuit breaker.
      * @param geocodeService GeocodeService that returned the successful result.
      */
     public static void removeGeocoderBlock(Class<? extends GeocodeService> geocodeService)
     {
-        failedRequests.remove(geocodeService);
-        frozenGeocoders.remove(geocodeService);
+        if (geocodeService != null) {
+            getCircuitBreaker(geocodeService).recordSuccess();
+        }
     }
 
     /**
-     * If the number of consecutive failed results equals FAILURE_THRESHOLD, add the geocode service
-     * to the frozen list, thus making it temporarily disabled.
+     * Records a failure with the geocoder's circuit breaker. If the number of consecutive failed results
+     * reaches FAILURE_THRESHOLD (or the breaker is half-open) the geocode service is temporarily disabled.
      * @param geocodeService GeocodeService that returned the failed result.
      */
-    public synchronized static void recordFailedResult(Class<? extends GeocodeService> geocodeService)
+    public static void recordFailedResult(Class<? extends GeocodeService> geocodeService)
     {
         if (geocodeService != null) {
-            int failedCount = 0;
-            if (failedRequests.containsKey(geocodeService)) {
-                failedCount = failedRequests.get(geocodeService);
-            }
-            failedRequests.put(geocodeService, ++failedCount);
+            getCircuitBreaker(geocodeService).recordFailure();
+        }
+    }
+
+    /**
+     * @param geocodeService GeocodeService implementation class
+     * @return CircuitBreaker for the geocode service, created if necessary.
+     */
+    public static CircuitBreaker getCircuitBreaker(Class<? extends GeocodeService> geocodeService)
+    {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(geocodeService);
+        if (circuitBreaker == null) {
+            circuitBreakers.putIfAbsent(geocodeService,
+                new CircuitBreaker(geocodeService.getSimpleName(), FAILURE_THRESHOLD, RETRY_INTERVAL_SECS));
+            circuitBreaker = circuitBreakers.get(geocodeService);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * @param geocodeService GeocodeService implementation class
+     * @return Bulkhead that limits the concurrent calls to the geocode service, created if necessary.
+     */
+    public static Bulkhead getBulkhead(Class<? extends GeocodeService> geocodeService)
+    {
+        Bulkhead bulkhead = bulkheads.get(geocodeService);
+        if (bulkhead == null) {
+            bulkheads.putIfAbsent(geocodeService, new Bulkhead(geocodeService.getSimpleName(), MAX_CONCURRENT, BULKHEAD_WAIT_MS));
+            bulkhead = bulkheads.get(geocodeService);
+        }
+        return bulkhead;
+    }
 
-            /** If the failure count reaches the threshold, freeze the geocoder if not already. */
-            if (failedCount >= FAILURE_THRESHOLD && !frozenGeocoders.containsKey(geocodeService)) {
-                frozenGeocoders.put(geocodeService, TimeUtil.currentTimestamp());
-                logger.info("Temporarily blocking " + geocodeService.getSimpleName() + " for " + RETRY_INTERVAL_SECS + " secs due to consecutive failures.");
+    /**
+     * @return ProviderResilienceStats for each active geocoder.
+     */
+    public static List<ProviderResilienceStats> getResilienceStats()
+    {
+        List<ProviderResilienceStats> stats = new ArrayList<>();
+        for (Class<? extends GeocodeService> geocodeService : activeGeocoders) {
+            if (geocodeService == null) {
+                continue;
             }
+            stats.add(new ProviderResilienceStats(geocodeService.getSimpleName(), getCircuitBreaker(geocodeService),
+                                                  getBulkhead(geocodeService)));
         }
+        return stats;
     }
 
     /**
@@ -179,6 +214,11 @@ public abstract class GeocodeServiceValidator
     public static boolean validateGeocodeResult(Class<? extends GeocodeService> source, GeocodedAddress geocodedAddress,
                                                 GeocodeResult geocodeResult, Boolean freeze)
     {
+        if (geocodedAddress == RATE_LIMITED) {
+            geocodeResult.setStatusCode(GEOCODE_PROVIDER_TEMP_DISABLED);
+            geocodeResult.addMessage("Request rate limit of " + source.getSimpleName() + " was reached.");
+            return false;
+        }
         if (geocodedAddress != null) {
             geocodeResult.setGeocodedAddress(geocodedAddress);
             if (!geocodedAddress.isValidGeocode()){
@@ -231,7 +271,8 @@ public abstract class GeocodeServiceValidator
      * @param source GeocodeService implementation that provided the results.
      * @param addresses List of input addresses to check results against.
      * @param geocodeResults List of GeocodeResults to store results in.
-     * @param geocodedAddresses List of GeocodedAddresses
+     * @param geocodedAddresses List of GeocodedAddresses, where null marks an address whose request failed and
+     *                          RATE_LIMITED an address whose request was held back by the rate limiter.
      * @param freeze If true the geocode service may be temporarily disabled for a specified duration
      * if it keeps returning error results.
      * @return GeocodeResult
@@ -240,32 +281,41 @@ public abstract class GeocodeServiceValidator
                                                       List<GeocodedAddress> geocodedAddresses, Boolean freeze)
     {
         boolean hasValidResult = false;
+        int rateLimitedCount = 0;
 
         /** Make sure the result array is empty at first */
         geocodeResults.clear();
 
         /** Check each geocoded address to set the result status accordingly */
         if (geocodedAddresses != null && geocodedAddresses.size() == addresses.size()) {
-            for (GeocodedAddress geocodedAddress : geocodedAddresses) {
+            for (int i = 0; i < geocodedAddresses.size(); i++) {
                 GeocodeResult geocodeResult = new GeocodeResult(source);
-                if (validateGeocodeResult(source, geocodedAddress, geocodeResult, false)) {
+                /** A null geocoded address belongs to a part of the batch whose request failed */
+                if (geocodedAddresses.get(i) == null) {
+                    geocodeResult = new GeocodeResult(source, RESPONSE_ERROR, new GeocodedAddress(addresses.get(i)));
+                }
+                else if (validateGeocodeResult(source, geocodedAddresses.get(i), geocodeResult, false)) {
                     hasValidResult = true;
                 }
+                else if (geocodedAddresses.get(i) == RATE_LIMITED) {
+                    rateLimitedCount++;
+                }
                 geocodeResults.add(geocodeResult);
             }
         }
-        /** If the batch is invalid, return a collection of invalidated geocode results. */
+        /** If the batch is invalid (e.g. the request failed), return a collection of error results. */
         else {
             logger.warn("Invalidating this batch! The results returned do not match the addresses given.");
             for (Address a : addresses) {
-                geocodeResults.add(new GeocodeResult(source, NO_GEOCODE_RESULT, new GeocodedAddress(a)));
+                geocodeResults.add(new GeocodeResult(source, RESPONSE_ERROR, new GeocodedAddress(a)));
             }
         }
 
         if (hasValidResult) {
             removeGeocoderBlock(source);
         }
-        else if (freeze) {
+        /** A batch that was entirely held back by the rate limiter says nothing about the provider */
+        else if (freeze && rateLimitedCount < addresses.size()) {
             recordFailedResult(source);
         }
         return hasValidResult;
@@ -0,0 +1,119 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.util.LatencyWindow;
+
+/**
+ * Rolling window of the recent response times, success rate and result quality of a single geocoder.
+ */
+public class GeocoderHealth
+{
+    private final LatencyWindow latency;
+    private final boolean[] successes;
+    private final int[] qualities;
+    private int next = 0;
+    private int count = 0;
+
+    /**
+     * @param size Number of samples to keep.
+     */
+    public GeocoderHealth(int size)
+    {
+        this.latency = new LatencyWindow(size);
+        this.successes = new boolean[Math.max(size, 1)];
+        this.qualities = new int[Math.max(size, 1)];
+    }
+
+    /**
+     * @return LatencyWindow with the recent single geocode response times.
+     */
+    public LatencyWindow getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Records the outcome of a geocode, replacing the oldest one if the window is full. Results that are
+     * neither successful nor provider failures (e.g. no match for the address) are not recorded.
+     * @param geocodeResult Result returned by the geocoder (null counts as a failure).
+     */
+    public synchronized void addResult(GeocodeResult geocodeResult)
+    {
+        boolean success = (geocodeResult != null && geocodeResult.isSuccess());
+        if (!success && !isFailure(geocodeResult)) {
+            return;
+        }
+        GeocodeQuality quality = (success && geocodeResult.getGeocode() != null) ? geocodeResult.getGeocode().getQuality() : null;
+        successes[next] = success;
+        qualities[next] = (quality != null) ? quality.getValue() : 0;
+        next = (next + 1) % successes.length;
+        if (count < successes.length) {
+            count++;
+        }
+    }
+
+    /**
+     * @return Number of results currently in the window.
+     */
+    public synchronized int getResultCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return Fraction of the recent results that were successful, or 1 if there are no results.
+     */
+    public synchronized double getSuccessRate()
+    {
+        if (count == 0) {
+            return 1;
+        }
+        int successCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (successes[i]) {
+                successCount++;
+            }
+        }
+        return (double) successCount / count;
+    }
+
+    /**
+     * Mean quality of the successful results relative to the given target quality. Results at or above
+     * the target count as 1.
+     * @param targetQuality Quality that is considered a full match
+     * @return Value between 0 and 1, or 1 if there are no successful results.
+     */
+    public synchronized double getQualityRate(GeocodeQuality targetQuality)
+    {
+        int successCount = 0;
+        double qualitySum = 0;
+        for (int i = 0; i < count; i++) {
+            if (successes[i]) {
+                successCount++;
+                qualitySum += Math.min(qualities[i], targetQuality.getValue());
+            }
+        }
+        return (successCount > 0) ? qualitySum / (successCount * targetQuality.getValue()) : 1;
+    }
+
+    /**
+     * @param geocodeResult Result returned by the geocoder
+     * @return True if the result indicates a transport, parse or internal failure of the provider.
+     */
+    public static boolean isFailure(GeocodeResult geocodeResult)
+    {
+        if (geocodeResult == null || geocodeResult.getStatusCode() == null) {
+            return true;
+        }
+        switch (geocodeResult.getStatusCode()) {
+            case RESPONSE_MISSING_ERROR:
+            case RESPONSE_PARSE_ERROR:
+            case RESPONSE_ERROR:
+            case INTERNAL_ERROR:
+            case DATABASE_ERROR: return true;
+            default: return false;
+        }
+    }
+}
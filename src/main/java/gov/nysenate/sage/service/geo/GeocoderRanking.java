@@ -0,0 +1,195 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.stats.GeocoderRankStats;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive ordering of the geocoder fallback chain. The health of each geocoder is tracked over a rolling
+ * window and the configured ranking is periodically reordered so that a degraded geocoder is moved behind
+ * healthier ones. A geocoder is never moved more than maxShift positions away from its configured rank and
+ * only moves ahead of a higher ranked geocoder if its score is better by more than the given margin.
+ *
+ * The score of a geocoder is its success rate * quality rate * latency factor, where the latency factor is
+ * min(1, latencyTarget / p90 latency). Metrics with fewer than minSamples samples are assumed to be healthy.
+ */
+public class GeocoderRanking
+{
+    private static final int HEALTH_WINDOW_SIZE = 200;
+
+    private final Map<String, GeocoderHealth> healthMap = new ConcurrentHashMap<>();
+    private final AtomicLong lastRankTime = new AtomicLong();
+    private List<String> configuredRanking = new ArrayList<>();
+    private volatile List<String> currentRanking = new ArrayList<>();
+
+    private int maxShift = 1;
+    private double margin = 0.1;
+    private int minSamples = 20;
+    private long latencyTargetMs = 1000;
+    private long intervalMs = 30000;
+    private GeocodeQuality targetQuality = GeocodeQuality.HOUSE;
+
+    /**
+     * Sets the bounds that the adaptive ranking must stay within.
+     * @param maxShift          Max number of positions a geocoder can move from its configured rank
+     * @param margin            Score difference required for a geocoder to move ahead of a higher ranked one
+     * @param minSamples        Number of samples required before a metric affects the score
+     * @param latencyTargetMs   p90 latency (ms) at or below which a geocoder is not penalized
+     * @param intervalSecs      Minimum time between re-rankings
+     */
+    public void setBounds(int maxShift, double margin, int minSamples, long latencyTargetMs, int intervalSecs)
+    {
+        this.maxShift = Math.max(maxShift, 0);
+        this.margin = margin;
+        this.minSamples = Math.max(minSamples, 1);
+        this.latencyTargetMs = Math.max(latencyTargetMs, 1);
+        this.intervalMs = intervalSecs * 1000L;
+    }
+
+    /**
+     * Sets the geocoder ranking from configuration. The current ranking is reset to match it.
+     * @param ranking Provider names in order of preference
+     */
+    public synchronized void setConfiguredRanking(List<String> ranking)
+    {
+        this.configuredRanking = new ArrayList<>(new LinkedHashSet<>(ranking));
+        this.currentRanking = new ArrayList<>(this.configuredRanking);
+    }
+
+    public synchronized List<String> getConfiguredRanking()
+    {
+        return new ArrayList<>(configuredRanking);
+    }
+
+    public List<String> getCurrentRanking()
+    {
+        return new ArrayList<>(currentRanking);
+    }
+
+    /**
+     * @param provider Provider name
+     * @return GeocoderHealth for the provider, created if necessary.
+     */
+    public GeocoderHealth getHealth(String provider)
+    {
+        GeocoderHealth health = healthMap.get(provider);
+        if (health == null) {
+            healthMap.putIfAbsent(provider, new GeocoderHealth(HEALTH_WINDOW_SIZE));
+            health = healthMap.get(provider);
+        }
+        return health;
+    }
+
+    /**
+     * Records the response time of a single geocode.
+     */
+    public void recordLatency(String provider, long elapsedMs)
+    {
+        getHealth(provider).getLatency().add(elapsedMs);
+    }
+
+    /**
+     * Records the outcome of a geocode.
+     */
+    public void recordResult(String provider, GeocodeResult geocodeResult)
+    {
+        getHealth(provider).addResult(geocodeResult);
+    }
+
+    /**
+     * Computes the health score of the provider.
+     * @param provider Provider name
+     * @return Score between 0 and 1
+     */
+    public double getScore(String provider)
+    {
+        GeocoderHealth health = getHealth(provider);
+        double score = 1;
+        if (health.getResultCount() >= minSamples) {
+            score = health.getSuccessRate() * health.getQualityRate(targetQuality);
+        }
+        if (health.getLatency().getCount() >= minSamples) {
+            long latencyP90 = health.getLatency().getPercentile(90);
+            if (latencyP90 > latencyTargetMs) {
+                score *= (double) latencyTargetMs / latencyP90;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Re-ranks the geocoders if the re-rank interval has elapsed since the last ranking.
+     * @return The new ranking, or null if it was not yet time to re-rank.
+     */
+    public List<String> rankIfDue()
+    {
+        long now = System.currentTimeMillis();
+        long lastRank = lastRankTime.get();
+        if (now - lastRank < intervalMs || !lastRankTime.compareAndSet(lastRank, now)) {
+            return null;
+        }
+        return rank();
+    }
+
+    /**
+     * Orders the configured geocoders by score within the bounds.
+     * @return The new ranking
+     */
+    public synchronized List<String> rank()
+    {
+        Map<String, Double> scores = new HashMap<>();
+        for (String provider : configuredRanking) {
+            scores.put(provider, getScore(provider));
+        }
+
+        List<String> remaining = new ArrayList<>(configuredRanking);
+        List<String> ranking = new ArrayList<>(configuredRanking.size());
+        for (int position = 0; position < configuredRanking.size(); position++) {
+            String choice = null;
+            /** A geocoder that has already dropped maxShift positions has to be placed here */
+            for (String provider : remaining) {
+                if (configuredRanking.indexOf(provider) + maxShift <= position) {
+                    choice = provider;
+                    break;
+                }
+            }
+            /** Otherwise pick the best scoring geocoder that may move up to this position, favoring the
+             *  configured order unless another geocoder is better by more than the margin. */
+            if (choice == null) {
+                for (String provider : remaining) {
+                    if (configuredRanking.indexOf(provider) - maxShift > position) {
+                        break;
+                    }
+                    if (choice == null || scores.get(provider) > scores.get(choice) + margin) {
+                        choice = provider;
+                    }
+                }
+            }
+            remaining.remove(choice);
+            ranking.add(choice);
+        }
+        currentRanking = ranking;
+        return new ArrayList<>(ranking);
+    }
+
+    /**
+     * @return GeocoderRankStats for each configured geocoder in the current rank order.
+     */
+    public List<GeocoderRankStats> getStats()
+    {
+        List<String> configured = getConfiguredRanking();
+        List<String> current = getCurrentRanking();
+        List<GeocoderRankStats> stats = new ArrayList<>();
+        for (String provider : current) {
+            GeocoderHealth health = getHealth(provider);
+            stats.add(new GeocoderRankStats(provider, configured.indexOf(provider), current.indexOf(provider),
+                health.getResultCount(), health.getSuccessRate(), health.getQualityRate(targetQuality),
+                health.getLatency().getPercentile(90), getScore(provider)));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,176 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.factory.SageThreadFactory;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Hedged execution of a geocode fallback chain. Rather than waiting for a provider to fail before trying
+ * the next one, the next provider in the chain is started in parallel once the current one has taken
+ * longer than its hedge delay. The first successful result that meets the minimum quality wins and the
+ * remaining calls are cancelled.
+ *
+ * The calls run on a bounded pool (see setThreadCount). When the pool is full a hedge is simply not started
+ * and the calls that are already running are waited on, and if nothing is running yet the call is made on
+ * the caller's thread. Slow providers therefore degrade hedging to the plain fallback chain instead of
+ * piling up threads.
+ */
+public abstract class HedgedGeocodeService
+{
+    private static Logger logger = Logger.getLogger(HedgedGeocodeService.class);
+    private static final int DEFAULT_THREAD_COUNT = 32;
+    private static ThreadPoolExecutor executor = new ThreadPoolExecutor(0, DEFAULT_THREAD_COUNT, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new SageThreadFactory("hedge"));
+
+    /**
+     * Races the geocode calls in rank order.
+     * @param providers     Provider names in rank order (used for logging).
+     * @param calls         Geocode calls aligned with providers.
+     * @param hedgeDelays   Time (in ms) to wait on each call before starting the next one.
+     * @param minQuality    Successful results below this quality are only used if nothing better arrives.
+     * @param failedResults Populated with the results of calls that completed without success.
+     * @return GeocodeResult of the winning call, or null if no call was successful.
+     */
+    public static GeocodeResult geocode(List<String> providers, List<Callable<GeocodeResult>> calls, List<Long> hedgeDelays,
+                                        GeocodeQuality minQuality, List<GeocodeResult> failedResults)
+    {
+        CompletionService<GeocodeResult> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<GeocodeResult>, Integer> running = new HashMap<>();
+        List<Future<GeocodeResult>> started = new ArrayList<>();
+        GeocodeResult bestResult = null;
+        int bestRank = Integer.MAX_VALUE;
+        int nextCall = 0;
+
+        try {
+            while (nextCall < calls.size() || !running.isEmpty()) {
+                Future<GeocodeResult> completed = null;
+
+                /** Start the next call if nothing is running */
+                if (running.isEmpty()) {
+                    Future<GeocodeResult> future = submit(completionService, calls.get(nextCall));
+                    if (future == null) {
+                        /** The pool is full, so the call is made on this thread */
+                        FutureTask<GeocodeResult> task = new FutureTask<>(calls.get(nextCall));
+                        task.run();
+                        future = completed = task;
+                    }
+                    running.put(future, nextCall);
+                    started.add(future);
+                    nextCall++;
+                }
+
+                /** Wait for a call to complete or for the hedge delay of the latest call to elapse */
+                if (completed == null) {
+                    if (nextCall < calls.size()) {
+                        completed = completionService.poll(hedgeDelays.get(nextCall - 1), TimeUnit.MILLISECONDS);
+                        if (completed == null) {
+                            Future<GeocodeResult> future = submit(completionService, calls.get(nextCall));
+                            if (future != null) {
+                                logger.info(String.format("%s has not responded in %d ms. Hedging with %s.",
+                                    providers.get(nextCall - 1), hedgeDelays.get(nextCall - 1), providers.get(nextCall)));
+                                running.put(future, nextCall);
+                                started.add(future);
+                                nextCall++;
+                                continue;
+                            }
+                            logger.debug("Hedge pool is full. Waiting on " + providers.get(nextCall - 1) + " without hedging.");
+                            completed = completionService.take();
+                        }
+                    }
+                    else {
+                        completed = completionService.take();
+                    }
+                }
+
+                int rank = running.remove(completed);
+                GeocodeResult result = getResult(completed, providers.get(rank));
+                if (result != null && result.isSuccess()) {
+                    if (isAcceptable(result, minQuality)) {
+                        return result;
+                    }
+                    /** Hold on to lower quality results in case nothing better comes back */
+                    if (bestResult == null || isBetter(result, rank, bestResult, bestRank)) {
+                        bestResult = result;
+                        bestRank = rank;
+                    }
+                }
+                else {
+                    failedResults.add(result);
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            logger.warn("Interrupted while waiting on hedged geocode calls.");
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            for (Future<GeocodeResult> future : started) {
+                future.cancel(true);
+            }
+        }
+        return bestResult;
+    }
+
+    /**
+     * @return Future of the call, or null if the pool has no free thread for it.
+     */
+    private static Future<GeocodeResult> submit(CompletionService<GeocodeResult> completionService, Callable<GeocodeResult> call)
+    {
+        try {
+            return completionService.submit(call);
+        }
+        catch (RejectedExecutionException ex) {
+            return null;
+        }
+    }
+
+    private static GeocodeResult getResult(Future<GeocodeResult> future, String provider)
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException | ExecutionException ex) {
+            logger.error(provider + " failed during hedged geocode: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    private static boolean isAcceptable(GeocodeResult result, GeocodeQuality minQuality)
+    {
+        return minQuality == null || (result.getGeocode() != null && result.getGeocode().getQuality() != null &&
+                                      result.getGeocode().getQuality().compareTo(minQuality) >= 0);
+    }
+
+    /** Prefers higher quality, then the higher ranked provider. */
+    private static boolean isBetter(GeocodeResult result, int rank, GeocodeResult other, int otherRank)
+    {
+        GeocodeQuality quality = (result.getGeocode() != null) ? result.getGeocode().getQuality() : null;
+        GeocodeQuality otherQuality = (other.getGeocode() != null) ? other.getGeocode().getQuality() : null;
+        if (quality == null || otherQuality == null || quality == otherQuality) {
+            return otherQuality == null || (quality != null && rank < otherRank);
+        }
+        return quality.compareTo(otherQuality) > 0;
+    }
+
+    /**
+     * Sets the max number of hedged calls that can run at once.
+     */
+    public static synchronized void setThreadCount(int threads)
+    {
+        threads = Math.max(threads, 1);
+        if (threads != executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    public static void shutdownThread() {
+        executor.shutdownNow();
+    }
+}
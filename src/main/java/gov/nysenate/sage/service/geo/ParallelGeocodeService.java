@@ -1,26 +1,24 @@
 package gov.nysenate.sage.service.geo;
 
-import gov.nysenate.sage.factory.ApplicationFactory;
-import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.address.Address;
 import gov.nysenate.sage.model.result.GeocodeResult;
-import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ExecutorRegistry;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Parallel geocoding for use when a GeocodeService implementation does not provide
- * native batch methods.
+ * native batch methods. Each GeocodeService implementation gets its own thread pool from the
+ * ExecutorRegistry so that a slow or hung provider cannot tie up the threads used by the other providers.
  */
 public abstract class ParallelGeocodeService
 {
     private static Logger logger = Logger.getLogger(ParallelGeocodeService.class);
-    private static Config config = ApplicationFactory.getConfig();
-    private static int THREAD_COUNT = Integer.parseInt(config.getValue("geocode.threads", "3"));
-    private static ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new SageThreadFactory("geocode"));
+    private static final String WORKLOAD = "geocode";
 
     /**
     * Callable for parallel geocoding requests
@@ -42,28 +40,24 @@ public abstract class ParallelGeocodeService
         }
     }
 
-    public static ArrayList<GeocodeResult> geocode(GeocodeService geocodeService, List<Address> addresses)
+    /**
+     * Geocodes the address on the geocode service's thread pool.
+     * @param geocodeService GeocodeService provider
+     * @param address        Address to geocode
+     * @return CompletableFuture that completes with the GeocodeResult
+     */
+    public static CompletableFuture<GeocodeResult> geocodeAsync(GeocodeService geocodeService, Address address)
     {
-        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
-        ArrayList<Future<GeocodeResult>> futureGeocodeResults = new ArrayList<>();
+        return ExecutorRegistry.supplyAsync(WORKLOAD, geocodeService.getClass(), new ParallelGeocode(geocodeService, address));
+    }
 
-        logger.trace("Geocoding using " + THREAD_COUNT + " threads");
+    public static ArrayList<GeocodeResult> geocode(GeocodeService geocodeService, List<Address> addresses)
+    {
+        List<CompletableFuture<GeocodeResult>> futureGeocodeResults = new ArrayList<>();
+        logger.trace("Geocoding using the " + geocodeService.getClass().getSimpleName() + " thread pool");
         for (Address address : addresses) {
-            futureGeocodeResults.add(executor.submit(new ParallelGeocode(geocodeService, address)));
+            futureGeocodeResults.add(geocodeAsync(geocodeService, address));
         }
-
-        for (Future<GeocodeResult> geocodeResult : futureGeocodeResults) {
-            try {
-                geocodeResults.add(geocodeResult.get());
-            }
-            catch (InterruptedException | ExecutionException ex) {
-                logger.error(ex.getMessage());
-            }
-        }
-        return geocodeResults;
-    }
-
-    public static void shutdownThread() {
-        executor.shutdownNow();
+        return ExecutorRegistry.joinAll(futureGeocodeResults);
     }
 }
@@ -1,22 +1,19 @@
 package gov.nysenate.sage.service.geo;
 
-import gov.nysenate.sage.factory.ApplicationFactory;
-import gov.nysenate.sage.factory.SageThreadFactory;
 import gov.nysenate.sage.model.geo.Point;
 import gov.nysenate.sage.model.result.GeocodeResult;
-import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.ExecutorRegistry;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 public class ParallelRevGeocodeService
 {
     private static Logger logger = Logger.getLogger(ParallelRevGeocodeService.class);
-    private static Config config = ApplicationFactory.getConfig();
-    private static int THREAD_COUNT = Integer.parseInt(config.getValue("revgeocode.threads", "3"));
-    private static ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new SageThreadFactory("revgeo"));
+    private static final String WORKLOAD = "revgeocode";
 
     /**
     * Callable for parallel reverse geocoding requests
@@ -38,6 +35,17 @@ public class ParallelRevGeocodeService
         }
     }
 
+    /**
+     * Reverse geocodes the point on the reverse geocode service's thread pool.
+     * @param revGeocodeService Reverse Geocode provider
+     * @param point             Point to lookup the address for
+     * @return CompletableFuture that completes with the GeocodeResult
+     */
+    public static CompletableFuture<GeocodeResult> reverseGeocodeAsync(RevGeocodeService revGeocodeService, Point point)
+    {
+        return ExecutorRegistry.supplyAsync(WORKLOAD, revGeocodeService.getClass(), new ParallelRevGeocode(revGeocodeService, point));
+    }
+
     /**
     * Perform parallel reverse geocoding using the single reverse geocode implementation found in the
     * provided revGeocodeService.
@@ -47,29 +55,11 @@ public class ParallelRevGeocodeService
     */
     public static ArrayList<GeocodeResult> reverseGeocode(RevGeocodeService revGeocodeService, List<Point> points)
     {
-        ArrayList<GeocodeResult> revGeocodeResults = new ArrayList<>();
-        ArrayList<Future<GeocodeResult>> futureRevGeocodeResults = new ArrayList<>();
-
-        logger.trace("Reverse geocoding using " + THREAD_COUNT + " threads");
+        List<CompletableFuture<GeocodeResult>> futureRevGeocodeResults = new ArrayList<>();
+        logger.trace("Reverse geocoding using the " + revGeocodeService.getClass().getSimpleName() + " thread pool");
         for (Point point: points) {
-            futureRevGeocodeResults.add(executor.submit(new ParallelRevGeocode(revGeocodeService, point)));
+            futureRevGeocodeResults.add(reverseGeocodeAsync(revGeocodeService, point));
         }
-
-        for (Future<GeocodeResult> geocodeResult : futureRevGeocodeResults) {
-            try {
-                revGeocodeResults.add(geocodeResult.get());
-            }
-            catch (InterruptedException ex) {
-                logger.error(ex.getMessage());
-            }
-            catch (ExecutionException ex) {
-                logger.error(ex.getMessage());
-            }
-        }
-        return revGeocodeResults;
-    }
-
-    public static void shutdownThread() {
-        executor.shutdownNow();
+        return ExecutorRegistry.joinAll(futureRevGeocodeResults);
     }
 }
@@ -1,13 +1,20 @@
 package gov.nysenate.sage.service.geo;
 
+import gov.nysenate.sage.dao.provider.TigerAddressRangeDao;
 import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.address.StreetAddress;
 import gov.nysenate.sage.model.api.BatchGeocodeRequest;
 import gov.nysenate.sage.model.api.GeocodeRequest;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.model.geo.Point;
 import gov.nysenate.sage.model.result.GeocodeResult;
 import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.model.stats.CacheStats;
 import gov.nysenate.sage.service.base.ServiceProviders;
 import gov.nysenate.sage.util.Config;
+import gov.nysenate.sage.util.MemoryCache;
 import org.apache.log4j.Logger;
 
 import java.sql.Timestamp;
@@ -15,16 +22,42 @@ import java.util.*;
 
 /**
 * Point of access for all reverse geocoding requests.
+*
+* Successful results are cached by the point rounded to revgeocode.cache.precision decimal places, so clients
+* that send many nearly identical points only reach the providers once per rounded point. A cached result is
+* returned with its geocode set to the requested point. When the in-memory street segment index is loaded,
+* requests that do not name a provider are answered from it at street level before falling back to the providers.
 */
 public class RevGeocodeServiceProvider extends ServiceProviders<RevGeocodeService> implements Observer
 {
     private final Logger logger = Logger.getLogger(GeocodeServiceProvider.class);
     private final static Config config = ApplicationFactory.getConfig();
 
-    public RevGeocodeServiceProvider() {}
+    private MemoryCache<String, GeocodeResult> pointCache;
+    private volatile boolean CACHE_ENABLED = true;
+    private volatile int CACHE_PRECISION = 4;
+    private volatile double INDEX_MAX_DISTANCE = 100;
+
+    public RevGeocodeServiceProvider() {
+        config.notifyOnChange(this);
+        update(null, null);
+    }
 
     @Override
-    public void update(Observable o, Object arg) {}
+    public void update(Observable o, Object arg)
+    {
+        CACHE_ENABLED = Boolean.parseBoolean(config.getValue("revgeocode.cache.enabled", "true"));
+        CACHE_PRECISION = Integer.parseInt(config.getValue("revgeocode.cache.precision", "4"));
+        int cacheSize = Integer.parseInt(config.getValue("revgeocode.cache.size", "50000"));
+        int cacheTtl = Integer.parseInt(config.getValue("revgeocode.cache.ttl", "86400"));
+        if (pointCache == null) {
+            pointCache = new MemoryCache<>("revgeocache", cacheSize, cacheTtl);
+        }
+        else {
+            pointCache.resize(cacheSize, cacheTtl);
+        }
+        INDEX_MAX_DISTANCE = Double.parseDouble(config.getValue("revgeocode.index.distance", "100"));
+    }
 
     public GeocodeResult reverseGeocode(GeocodeRequest geocodeRequest)
     {
@@ -43,7 +76,7 @@ public class RevGeocodeServiceProvider extends ServiceProviders<RevGeocodeServic
      */
     public GeocodeResult reverseGeocode(Point point)
     {
-        return reverseGeocode(point, this.defaultProvider, this.defaultFallback, true);
+        return reverseGeocode(point, null, this.defaultFallback, true);
     }
 
     /**
@@ -70,28 +103,99 @@ public class RevGeocodeServiceProvider extends ServiceProviders<RevGeocodeServic
                                         boolean useFallback)
     {
         logger.debug("Performing reverse geocode on point " + point);
+        String cacheKey = (CACHE_ENABLED && point != null)
+                          ? getCacheKey(point, CACHE_PRECISION, provider, fallbackProviders, useFallback) : null;
+        if (cacheKey != null) {
+            GeocodeResult cachedResult = pointCache.get(cacheKey);
+            if (cachedResult != null) {
+                logger.debug("Reverse geocode cache hit for point " + point);
+                return copyResult(cachedResult, point);
+            }
+        }
+
         GeocodeResult geocodeResult = new GeocodeResult(this.getClass(), ResultStatus.NO_REVERSE_GEOCODE_RESULT);
         /** Clone the list of fall back reverse geocode providers */
         LinkedList<String> fallback = (fallbackProviders != null) ? new LinkedList<>(fallbackProviders)
                                                                   : new LinkedList<>(this.defaultFallback);
 
-        if (provider != null && !provider.isEmpty()) {
-            geocodeResult = this.getInstance(provider).reverseGeocode(point);
-        }
-        else {
-            fallbackProviders.addFirst(this.defaultProvider);
+        /** The index only answers requests that leave the choice of provider to us */
+        if (provider == null || provider.isEmpty()) {
+            geocodeResult = reverseGeocodeUsingIndex(point);
         }
 
-        if (!geocodeResult.isSuccess() && useFallback) {
-            Iterator<String> fallbackIterator = fallback.iterator();
-            while (!geocodeResult.isSuccess() && fallbackIterator.hasNext()) {
-                geocodeResult = this.getInstance(fallbackIterator.next()).reverseGeocode(point);
+        if (!geocodeResult.isSuccess()) {
+            if (provider != null && !provider.isEmpty()) {
+                geocodeResult = this.getInstance(provider).reverseGeocode(point);
+            }
+            else {
+                fallback.addFirst(this.defaultProvider);
+            }
+
+            if (!geocodeResult.isSuccess() && useFallback) {
+                Iterator<String> fallbackIterator = fallback.iterator();
+                while (!geocodeResult.isSuccess() && fallbackIterator.hasNext()) {
+                    geocodeResult = this.getInstance(fallbackIterator.next()).reverseGeocode(point);
+                }
             }
         }
         geocodeResult.setResultTime(new Timestamp(new Date().getTime()));
+        if (cacheKey != null && geocodeResult.isSuccess()) {
+            pointCache.put(cacheKey, geocodeResult.copy());
+        }
         return geocodeResult;
     }
 
+    /**
+     * Finds the nearest street in the in-memory street segment index.
+     * @param point Point to lookup address for
+     * @return GeocodeResult, with NO_REVERSE_GEOCODE_RESULT status if the index is not loaded or there
+     *         is no street within revgeocode.index.distance meters.
+     */
+    private GeocodeResult reverseGeocodeUsingIndex(Point point)
+    {
+        StreetSegmentIndex streetSegmentIndex = TigerAddressRangeDao.getStreetSegmentIndex();
+        StreetAddress streetAddress = (streetSegmentIndex != null) ? streetSegmentIndex.getStreetAddress(point, INDEX_MAX_DISTANCE)
+                                                                   : null;
+        if (streetAddress == null) {
+            return new GeocodeResult(StreetSegmentIndex.class, ResultStatus.NO_REVERSE_GEOCODE_RESULT);
+        }
+        Geocode geocode = new Geocode(point, GeocodeQuality.STREET, StreetSegmentIndex.class.getSimpleName());
+        return new GeocodeResult(StreetSegmentIndex.class, ResultStatus.SUCCESS,
+                                 new GeocodedAddress(streetAddress.toAddress(), geocode));
+    }
+
+    /**
+     * Builds the cache key from the point rounded to the given number of decimal places along with the
+     * provider options, since those can change the result.
+     */
+    static String getCacheKey(Point point, int precision, String provider, List<String> fallbackProviders, boolean useFallback)
+    {
+        double scale = Math.pow(10, precision);
+        return String.format("%d|%d|%s|%s|%b", Math.round(point.getLat() * scale), Math.round(point.getLon() * scale),
+                             (provider != null) ? provider.toLowerCase() : "", fallbackProviders, useFallback);
+    }
+
+    /**
+     * Cached results are deep copied so that callers cannot modify the cached instance. The cache entry may have
+     * been stored for a different point that rounds to the same key, so the geocode is set to the requested point.
+     */
+    static GeocodeResult copyResult(GeocodeResult geocodeResult, Point point)
+    {
+        GeocodeResult copy = geocodeResult.copy();
+        if (copy.getGeocode() != null) {
+            copy.getGeocode().setLatlon(new Point(point.getLat(), point.getLon()));
+        }
+        return copy;
+    }
+
+    /**
+     * @return CacheStats for the reverse geocode point cache.
+     */
+    public CacheStats getCacheStats()
+    {
+        return pointCache.getStats();
+    }
+
     /**
      * Perform batch reverse geocoding using supploed BatchGeocodeRequest with points set.
      * @param batchRevGeoRequest
@@ -110,7 +214,7 @@ public class RevGeocodeServiceProvider extends ServiceProviders<RevGeocodeServic
     */
     public List<GeocodeResult> reverseGeocode(List<Point> points)
     {
-        return reverseGeocode(points, this.defaultProvider, this.defaultFallback);
+        return reverseGeocode(points, null, this.defaultFallback);
     }
 
     /**
@@ -32,6 +32,10 @@ public class RevGeocodeServiceValidator
      */
     public static boolean validateGeocodeResult(GeocodedAddress geocodedAddress, GeocodeResult geocodeResult)
     {
+        if (geocodedAddress == GeocodeServiceValidator.RATE_LIMITED) {
+            geocodeResult.setStatusCode(GEOCODE_PROVIDER_TEMP_DISABLED);
+            return false;
+        }
         if (geocodedAddress != null){
             geocodeResult.setGeocodedAddress(geocodedAddress);
             if (!geocodedAddress.isReverseGeocoded()){
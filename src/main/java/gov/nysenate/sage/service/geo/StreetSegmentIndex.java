@@ -0,0 +1,256 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.model.geo.Point;
+
+import java.util.*;
+
+/**
+ * In-memory spatial index of named street segments, used to reverse geocode a point to the nearest street
+ * without a round trip to the database. Segments are bucketed into a uniform grid of cellSize degrees so a
+ * lookup only measures the segments in the cells around the point.
+ *
+ * When a segment has a house number range on the side of the street that the point is on, the house number
+ * is estimated by interpolating along that range.
+ *
+ * The index is filled using addSegment(), setStreet() and setRange() and must be built before it is used for
+ * lookups. Once built it is read only and safe to share between threads.
+ */
+public class StreetSegmentIndex
+{
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private final double cellSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    private static class Segment
+    {
+        final float[] line;
+        String preDir, streetName, streetType, postDir, zip5;
+        int leftFrom = -1, leftTo = -1, rightFrom = -1, rightTo = -1;
+
+        Segment(float[] line)
+        {
+            this.line = line;
+        }
+    }
+
+    /** Nearest location on a segment to a point */
+    private static class Match
+    {
+        int segmentId = -1;
+        double distance = Double.MAX_VALUE;
+        double fraction;
+        boolean leftSide;
+    }
+
+    /**
+     * @param cellSize Size of the grid cells in degrees
+     */
+    public StreetSegmentIndex(double cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds the geometry of a street segment.
+     * @param coordinates Coordinates of the segment line as lon, lat pairs in order from the segment's
+     *                    from node to its to node.
+     * @return Id of the segment, used to set its street and ranges.
+     */
+    public int addSegment(float[] coordinates)
+    {
+        segments.add(new Segment(coordinates));
+        return segments.size() - 1;
+    }
+
+    /**
+     * Sets the street name of the segment if it does not have one yet. Segments without a street are not indexed.
+     */
+    public void setStreet(int segmentId, String preDir, String streetName, String streetType, String postDir, String zip5)
+    {
+        Segment segment = segments.get(segmentId);
+        if (segment.streetName == null) {
+            segment.preDir = preDir;
+            segment.streetName = streetName;
+            segment.streetType = streetType;
+            segment.postDir = postDir;
+            segment.zip5 = zip5;
+        }
+    }
+
+    /**
+     * Sets the house number range along one side of the segment if that side does not have one yet.
+     */
+    public void setRange(int segmentId, int fromNum, int toNum, boolean leftSide)
+    {
+        Segment segment = segments.get(segmentId);
+        if (leftSide && segment.leftFrom == -1) {
+            segment.leftFrom = fromNum;
+            segment.leftTo = toNum;
+        }
+        else if (!leftSide && segment.rightFrom == -1) {
+            segment.rightFrom = fromNum;
+            segment.rightTo = toNum;
+        }
+    }
+
+    /**
+     * Assigns the named segments to the grid cells covered by their bounding box. Must be called once all
+     * segments have been added.
+     */
+    public void build()
+    {
+        Map<Long, List<Integer>> cellLists = new HashMap<>();
+        for (int id = 0; id < segments.size(); id++) {
+            Segment segment = segments.get(id);
+            if (segment.streetName == null || segment.line.length < 2) {
+                continue;
+            }
+            float minLon = Float.MAX_VALUE, minLat = Float.MAX_VALUE, maxLon = -Float.MAX_VALUE, maxLat = -Float.MAX_VALUE;
+            for (int p = 0; p < segment.line.length - 1; p += 2) {
+                minLon = Math.min(minLon, segment.line[p]);
+                maxLon = Math.max(maxLon, segment.line[p]);
+                minLat = Math.min(minLat, segment.line[p+1]);
+                maxLat = Math.max(maxLat, segment.line[p+1]);
+            }
+            for (int x = cell(minLon); x <= cell(maxLon); x++) {
+                for (int y = cell(minLat); y <= cell(maxLat); y++) {
+                    List<Integer> ids = cellLists.get(cellKey(x, y));
+                    if (ids == null) {
+                        ids = new ArrayList<>();
+                        cellLists.put(cellKey(x, y), ids);
+                    }
+                    ids.add(id);
+                }
+            }
+        }
+        cells.clear();
+        for (Map.Entry<Long, List<Integer>> entry : cellLists.entrySet()) {
+            int[] ids = new int[entry.getValue().size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = entry.getValue().get(i);
+            }
+            cells.put(entry.getKey(), ids);
+        }
+    }
+
+    /**
+     * Finds the street segment nearest to the point.
+     * @param point          Point to reverse geocode
+     * @param maxDistance    Maximum distance in meters between the point and the street
+     * @return StreetAddress with the street, zip5 and (if the segment has a range on that side of the street)
+     *         the estimated house number, or null if there is no street within the distance.
+     */
+    public StreetAddress getStreetAddress(Point point, double maxDistance)
+    {
+        if (point == null) {
+            return null;
+        }
+        double lonScale = Math.cos(Math.toRadians(point.getLat())) * METERS_PER_DEGREE;
+        double latScale = METERS_PER_DEGREE;
+        int lonCells = (int) Math.ceil(maxDistance / (cellSize * lonScale));
+        int latCells = (int) Math.ceil(maxDistance / (cellSize * latScale));
+        int cx = cell(point.getLon()), cy = cell(point.getLat());
+
+        Match match = new Match();
+        Set<Integer> visited = new HashSet<>();
+        for (int x = cx - lonCells; x <= cx + lonCells; x++) {
+            for (int y = cy - latCells; y <= cy + latCells; y++) {
+                int[] ids = cells.get(cellKey(x, y));
+                if (ids == null) {
+                    continue;
+                }
+                for (int id : ids) {
+                    if (visited.add(id)) {
+                        measure(id, point, lonScale, latScale, match);
+                    }
+                }
+            }
+        }
+        if (match.segmentId == -1 || match.distance > maxDistance) {
+            return null;
+        }
+
+        Segment segment = segments.get(match.segmentId);
+        StreetAddress streetAddress = new StreetAddress();
+        streetAddress.setPreDir(segment.preDir);
+        streetAddress.setStreetName(segment.streetName);
+        streetAddress.setStreetType(segment.streetType);
+        streetAddress.setPostDir(segment.postDir);
+        streetAddress.setZip5(segment.zip5);
+        streetAddress.setState("NY");
+        int from = (match.leftSide) ? segment.leftFrom : segment.rightFrom;
+        int to = (match.leftSide) ? segment.leftTo : segment.rightTo;
+        if (from != -1) {
+            streetAddress.setBldgNum(interpolateHouseNumber(from, to, match.fraction));
+        }
+        return streetAddress;
+    }
+
+    /**
+     * Measures the distance from the point to each part of the segment, keeping the nearest in match.
+     * Distances are measured in meters using a local equirectangular projection.
+     */
+    private void measure(int segmentId, Point point, double lonScale, double latScale, Match match)
+    {
+        float[] line = segments.get(segmentId).line;
+        double px = point.getLon() * lonScale, py = point.getLat() * latScale;
+        int pointCount = line.length / 2;
+
+        double length = 0;
+        double[] partStart = new double[Math.max(pointCount - 1, 1)];
+        for (int p = 1; p < pointCount; p++) {
+            partStart[p-1] = length;
+            length += Math.hypot((line[2*p] - line[2*p-2]) * lonScale, (line[2*p+1] - line[2*p-1]) * latScale);
+        }
+
+        for (int p = 1; p < pointCount; p++) {
+            double ax = line[2*p-2] * lonScale, ay = line[2*p-1] * latScale;
+            double dx = line[2*p] * lonScale - ax, dy = line[2*p+1] * latScale - ay;
+            double partLength2 = dx * dx + dy * dy;
+            double t = (partLength2 > 0) ? Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / partLength2)) : 0;
+            double distance = Math.hypot(ax + t * dx - px, ay + t * dy - py);
+            if (distance < match.distance) {
+                match.segmentId = segmentId;
+                match.distance = distance;
+                match.fraction = (length > 0) ? (partStart[p-1] + t * Math.sqrt(partLength2)) / length : 0.5;
+                /** The point is on the left if the cross product of the direction and the offset is positive */
+                match.leftSide = (dx * (py - ay) - dy * (px - ax)) > 0;
+            }
+        }
+    }
+
+    /**
+     * Estimates the house number at the fraction of the range, keeping the parity of the range.
+     */
+    static int interpolateHouseNumber(int fromNum, int toNum, double fraction)
+    {
+        int number = (int) Math.round(fromNum + (toNum - fromNum) * fraction);
+        if ((fromNum % 2) == (toNum % 2) && (number % 2) != (fromNum % 2)) {
+            number += (toNum >= fromNum) ? -1 : 1;
+        }
+        return number;
+    }
+
+    private int cell(double degrees)
+    {
+        return (int) Math.floor(degrees / cellSize);
+    }
+
+    private static long cellKey(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    public int getCellCount()
+    {
+        return cells.size();
+    }
+}
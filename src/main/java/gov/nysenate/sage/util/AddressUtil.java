@@ -13,6 +13,19 @@ public abstract class AddressUtil
 {
     public AddressUtil() {}
 
+    /** Tries over the dictionary values and the unit number pattern are built once for all calls */
+    private static final DictionaryTrie unitTrie = new DictionaryTrie(AddressDictionary.unitMap.values(), true);
+    private static final DictionaryTrie directionTrie = new DictionaryTrie(AddressDictionary.directionMap.values(), true);
+    private static final DictionaryTrie streetTypeTrie;
+    private static final Pattern unitNumberPattern = Pattern.compile("[ ]*#?[ ]*\\d*-?\\w*$");
+
+    static {
+        Set<String> streetTypes = new HashSet<>();
+        streetTypes.addAll(AddressDictionary.streetTypeMap.values());
+        streetTypes.addAll(AddressDictionary.highWayMap.values());
+        streetTypeTrie = new DictionaryTrie(streetTypes, true);
+    }
+
     /**
      * Adds a period to the end of every directional, street type abbreviation, and unit type.
      * @param address
@@ -20,37 +33,107 @@ public abstract class AddressUtil
      */
     public static Address addPunctuation(Address address) {
         if (address != null && !address.isEmpty()) {
-            Set<String> streetTypes = new HashSet<>();
-            streetTypes.addAll(AddressDictionary.streetTypeMap.values());
-            streetTypes.addAll(AddressDictionary.highWayMap.values());
-
-            String unitAlt = StringUtils.join(AddressDictionary.unitMap.values(), "|");
-            String stTypeAlt = StringUtils.join(streetTypes, "|");
-            String directionalAlt = StringUtils.join(AddressDictionary.directionMap.values(), "|");
-
             String addr1 = address.getAddr1();
-            String res = addr1;
-
             if (addr1 != null && !addr1.isEmpty()) {
-                Matcher m = Pattern.compile("(?i)(" + unitAlt + ")([ ]*#?[ ]*\\d*-?\\w*)$").matcher(addr1);
-                if (m.find()) {
-                    String internal = m.group();
-                    addr1 = m.replaceFirst("$1.$2");
+                addr1 = punctuateUnit(addr1);
+                addr1 = punctuateDirectionals(addr1);
+                addr1 = punctuateStreetType(addr1);
+            }
+            address.setAddr1(addr1);
+        }
+        return address;
+    }
+
+    /**
+     * Adds a period after the first unit type that is followed only by a unit number, e.g. 'Apt 4' -> 'Apt. 4'
+     */
+    private static String punctuateUnit(String addr1)
+    {
+        int[] ends = new int[unitTrie.getMaxKeyLength() + 1];
+        Matcher m = unitNumberPattern.matcher(addr1);
+        for (int start = 0; start < addr1.length(); start++) {
+            int count = unitTrie.findMatches(addr1, start, ends);
+            for (int i = 0; i < count; i++) {
+                if (m.region(ends[i], addr1.length()).lookingAt()) {
+                    return addr1.substring(0, ends[i]) + "." + addr1.substring(ends[i]);
+                }
+            }
+        }
+        return addr1;
+    }
+
+    /**
+     * Adds a period after every word that is a directional, e.g. 'N Main St' -> 'N. Main St'
+     */
+    private static String punctuateDirectionals(String addr1)
+    {
+        StringBuilder sb = null;
+        int copied = 0;
+        for (int start = 0; start < addr1.length(); start++) {
+            if (!isWordChar(addr1.charAt(start))) {
+                continue;
+            }
+            int end = start + 1;
+            while (end < addr1.length() && isWordChar(addr1.charAt(end))) {
+                end++;
+            }
+            if (directionTrie.get(addr1.subSequence(start, end)) != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(addr1.length() + 4);
                 }
-                Matcher dirM = Pattern.compile("(?i)\\b(" + directionalAlt + ")\\b").matcher(addr1);
-                if (dirM.find()) {
-                    String postDir = dirM.group();
-                    addr1 = dirM.replaceAll("$1.");
+                sb.append(addr1, copied, end).append('.');
+                copied = end;
+            }
+            start = end;
+        }
+        return (sb != null) ? sb.append(addr1, copied, addr1.length()).toString() : addr1;
+    }
+
+    /**
+     * Adds a period after the last street or highway type in the address, e.g. 'Main St' -> 'Main St.'
+     * The words are searched in reverse order and the longest type found first is punctuated where it
+     * first occurs in the address.
+     */
+    private static String punctuateStreetType(String addr1)
+    {
+        String addr1Rev = StringUtils.reverseDelimited(addr1, ' ');
+        int[] ends = new int[streetTypeTrie.getMaxKeyLength() + 1];
+        String streetType = null;
+        for (int start = 0; start < addr1Rev.length() && streetType == null; start++) {
+            if (!isWordBoundary(addr1Rev, start)) {
+                continue;
+            }
+            int count = streetTypeTrie.findMatches(addr1Rev, start, ends);
+            for (int i = count - 1; i >= 0; i--) {
+                if (isWordBoundary(addr1Rev, ends[i])) {
+                    streetType = addr1Rev.substring(start, ends[i]);
+                    break;
                 }
-                String addr1Rev = StringUtils.reverseDelimited(addr1, ' ');
-                Matcher stypeM = Pattern.compile("(?i)\\b(" + stTypeAlt + ")\\b").matcher(addr1Rev);
-                if (stypeM.find()) {
-                    String streetType = addr1Rev.substring(stypeM.start(), stypeM.end());
-                    addr1 = addr1.replaceFirst("\\b" + streetType + "\\b", streetType + ".");
+            }
+        }
+        if (streetType != null) {
+            for (int i = addr1.indexOf(streetType); i != -1; i = addr1.indexOf(streetType, i + 1)) {
+                int end = i + streetType.length();
+                if (isWordBoundary(addr1, i) && isWordBoundary(addr1, end)) {
+                    return addr1.substring(0, end) + "." + addr1.substring(end);
                 }
             }
-            address.setAddr1(addr1);
         }
-        return address;
+        return addr1;
+    }
+
+    /**
+     * Word characters and boundaries as defined by the \b regex boundary matcher
+     */
+    private static boolean isWordChar(char c)
+    {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isWordBoundary(String s, int index)
+    {
+        boolean left = index > 0 && isWordChar(s.charAt(index - 1));
+        boolean right = index < s.length() && isWordChar(s.charAt(index));
+        return left != right;
     }
 }
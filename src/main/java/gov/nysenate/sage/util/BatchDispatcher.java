@@ -0,0 +1,182 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.factory.SageThreadFactory;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Splits a batch request into sub-batches and sends up to 'concurrency' of them at a time, reassembling the
+ * results in input order. The sub-batches of all callers share one thread pool.
+ *
+ * A sub-batch that fails is bisected and each half is retried so that a single bad item does not cause the
+ * whole sub-batch to be dropped. If both halves of a failed sub-batch fail as well the provider is assumed to
+ * be failing outright and the range is given up on rather than being split all the way down to single items.
+ */
+public abstract class BatchDispatcher
+{
+    private static Logger logger = Logger.getLogger(BatchDispatcher.class);
+    private static int THREAD_COUNT = 10;
+    private static ExecutorService executor;
+
+    static {
+        Config config = ApplicationFactory.getConfig();
+        if (config != null) {
+            THREAD_COUNT = Integer.parseInt(config.getValue("batch.dispatch.threads", "10"));
+        }
+        executor = Executors.newFixedThreadPool(THREAD_COUNT, new SageThreadFactory("batch"));
+    }
+
+    /**
+     * Sends a single sub-batch to the provider.
+     * @param <T> Input item type
+     * @param <R> Result type
+     */
+    public interface BatchRequest<T, R>
+    {
+        /**
+         * @param batch Items of the sub-batch
+         * @return Results in the same order as the batch, or null if the request failed. A result list that
+         *         does not match the size of the batch is also considered a failure.
+         */
+        List<R> send(List<T> batch);
+    }
+
+    /**
+     * Dispatches the items in sub-batches of at most batchSize.
+     * @param name          Name used in log messages
+     * @param items         Items to send
+     * @param batchSize     Max number of items per request
+     * @param concurrency   Max number of requests in flight for this call
+     * @param request       BatchRequest that sends a sub-batch
+     * @return List of the same size as items. The result of an item whose request failed is null.
+     */
+    public static <T, R> List<R> dispatch(final String name, List<T> items, int batchSize, int concurrency,
+                                          final BatchRequest<T, R> request)
+    {
+        final List<R> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(null);
+        }
+        batchSize = Math.max(batchSize, 1);
+        final List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset < items.size(); offset += batchSize) {
+            offsets.add(offset);
+        }
+
+        /** Nothing to gain from handing a single sub-batch off to another thread */
+        if (offsets.size() <= 1 || concurrency <= 1) {
+            for (int offset : offsets) {
+                sendWithBisection(name, items.subList(offset, Math.min(offset + batchSize, items.size())), offset, request, results);
+            }
+            return results;
+        }
+
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        int submitted = 0, completed = 0;
+        try {
+            while (completed < offsets.size()) {
+                while (submitted < offsets.size() && submitted - completed < concurrency) {
+                    final int offset = offsets.get(submitted);
+                    final List<T> batch = items.subList(offset, Math.min(offset + batchSize, items.size()));
+                    futures.add(completionService.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            sendWithBisection(name, batch, offset, request, results);
+                            return null;
+                        }
+                    }));
+                    submitted++;
+                }
+                try {
+                    completionService.take().get();
+                }
+                catch (ExecutionException ex) {
+                    logger.error("Failed to dispatch " + name + " batch", ex.getCause());
+                }
+                completed++;
+            }
+        }
+        catch (InterruptedException ex) {
+            logger.warn("Interrupted while dispatching " + name + " batches");
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error("Failed to dispatch " + name + " batch", ex);
+        }
+        return results;
+    }
+
+    /**
+     * Sends the batch and, if it fails, retries it as two halves.
+     */
+    private static <T, R> void sendWithBisection(String name, List<T> batch, int offset, BatchRequest<T, R> request,
+                                                 List<R> results)
+    {
+        if (!send(batch, offset, request, results)) {
+            bisect(name, batch, offset, request, results);
+        }
+    }
+
+    private static <T, R> void bisect(String name, List<T> batch, int offset, BatchRequest<T, R> request, List<R> results)
+    {
+        if (batch.size() <= 1) {
+            logger.warn("Skipping failed " + name + " batch item (" + offset + ")");
+            return;
+        }
+        int mid = batch.size() / 2;
+        List<T> left = batch.subList(0, mid);
+        List<T> right = batch.subList(mid, batch.size());
+        boolean leftSuccess = send(left, offset, request, results);
+        boolean rightSuccess = send(right, offset + mid, request, results);
+        if (!leftSuccess && !rightSuccess) {
+            logger.warn("Skipping failed " + name + " batch (" + offset + " - " + (offset + batch.size()) + ")");
+            return;
+        }
+        if (!leftSuccess) {
+            bisect(name, left, offset, request, results);
+        }
+        if (!rightSuccess) {
+            bisect(name, right, offset + mid, request, results);
+        }
+    }
+
+    /**
+     * @return true if the batch results were received and stored, false otherwise.
+     */
+    private static <T, R> boolean send(List<T> batch, int offset, BatchRequest<T, R> request, List<R> results)
+    {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        List<R> batchResults = null;
+        try {
+            batchResults = request.send(batch);
+        }
+        catch (RuntimeException ex) {
+            logger.error("Batch request failed", ex);
+        }
+        if (batchResults == null || batchResults.size() != batch.size()) {
+            return false;
+        }
+        /** Each sub-batch writes to its own range of the result list */
+        synchronized (results) {
+            for (int i = 0; i < batchResults.size(); i++) {
+                results.set(offset + i, batchResults.get(i));
+            }
+        }
+        return true;
+    }
+
+    public static void shutdownThread()
+    {
+        executor.shutdownNow();
+    }
+}
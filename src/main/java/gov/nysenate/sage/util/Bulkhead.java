@@ -0,0 +1,79 @@
+package gov.nysenate.sage.util;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent calls to a service provider so that a slow provider cannot tie up
+ * all of the available threads. Callers that cannot get a permit within the wait time fail fast.
+ */
+public class Bulkhead
+{
+    private static Logger logger = Logger.getLogger(Bulkhead.class);
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long waitMs;
+    private final Semaphore permits;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name          Name used for logging and statistics.
+     * @param maxConcurrent Maximum number of concurrent calls.
+     * @param waitMs        Time to wait for a permit before rejecting the call.
+     */
+    public Bulkhead(String name, int maxConcurrent, long waitMs)
+    {
+        this.name = name;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.waitMs = Math.max(waitMs, 0);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Attempts to acquire a permit. If true is returned, release() must be called once the call completes.
+     * @return true if a permit was acquired, false if the call should fail fast.
+     */
+    public boolean tryAcquire()
+    {
+        try {
+            if (permits.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        rejectedCount.incrementAndGet();
+        logger.warn(String.format("Rejected call to %s. %d concurrent calls in progress.", name, maxConcurrent));
+        return false;
+    }
+
+    public void release()
+    {
+        permits.release();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    public int getActiveCount()
+    {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+}
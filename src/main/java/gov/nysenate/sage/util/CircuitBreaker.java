@@ -0,0 +1,134 @@
+package gov.nysenate.sage.util;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker for a remote service provider.
+ *
+ * CLOSED:    Requests are allowed. After failureThreshold consecutive failures the breaker opens.
+ * OPEN:      Requests are rejected until openSecs have elapsed, at which point the breaker becomes half-open.
+ * HALF_OPEN: A single probe request is allowed. A success closes the breaker and a failure re-opens it.
+ *            If the probe never reports back, another probe is allowed after openSecs.
+ */
+public class CircuitBreaker
+{
+    private static Logger logger = Logger.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private int failureThreshold;
+    private long openMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long stateTime = System.currentTimeMillis();
+    private boolean probeInFlight = false;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name              Name used for logging and statistics.
+     * @param failureThreshold  Number of consecutive failures that opens the breaker.
+     * @param openSecs          Time to reject requests before allowing a probe request.
+     */
+    public CircuitBreaker(String name, int failureThreshold, int openSecs)
+    {
+        this.name = name;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openMs = openSecs * 1000L;
+    }
+
+    /**
+     * Determines if a request may proceed. Callers that are allowed should report the outcome
+     * using recordSuccess() or recordFailure().
+     * @return true if the request is allowed, false if it should fail fast.
+     */
+    public synchronized boolean allowRequest()
+    {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now - stateTime >= openMs) {
+            setState(State.HALF_OPEN, now);
+        }
+        if (state == State.HALF_OPEN && (!probeInFlight || now - stateTime >= openMs)) {
+            probeInFlight = true;
+            stateTime = now;
+            return true;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Gives up the probe request allowed while half-open when the request could not be made after all (e.g. it was
+     * rejected by a bulkhead), so that the next request may probe right away. Does nothing in any other state.
+     */
+    public synchronized void cancelProbe()
+    {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Records a successful request, closing the breaker.
+     */
+    public synchronized void recordSuccess()
+    {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            setState(State.CLOSED, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records a failed request, opening the breaker if it is half-open or the failure threshold is reached.
+     */
+    public synchronized void recordFailure()
+    {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            setState(State.OPEN, System.currentTimeMillis());
+            logger.info(String.format("Opening circuit for %s for %d secs due to %d consecutive failures.",
+                                      name, openMs / 1000, consecutiveFailures));
+        }
+    }
+
+    private void setState(State state, long now)
+    {
+        if (this.state != state) {
+            logger.debug(String.format("Circuit for %s changed from %s to %s.", name, this.state, state));
+        }
+        this.state = state;
+        this.stateTime = now;
+        this.probeInFlight = false;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public synchronized State getState()
+    {
+        /** An open breaker whose open time has elapsed is reported as half-open */
+        if (state == State.OPEN && System.currentTimeMillis() - stateTime >= openMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+}
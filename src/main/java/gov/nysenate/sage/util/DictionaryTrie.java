@@ -0,0 +1,199 @@
+package gov.nysenate.sage.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Character trie built once from one of the AddressDictionary maps. Multi-word keys are stored with their
+ * words separated by a single space, so a run of tokens can be matched by walking the tokens in turn instead
+ * of joining them into a string first. It replaces set lookups on joined token lists and large regex
+ * alternations of dictionary words.
+ *
+ * A trie is read only once built and is safe to share between threads.
+ */
+public class DictionaryTrie
+{
+    private final Node root = new Node();
+    private final boolean ignoreCase;
+    private int maxKeyLength = 0;
+
+    private static class Node
+    {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        String value;
+
+        Node child(char c)
+        {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char c)
+        {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * @param map        Map of keys to the values returned on a match
+     * @param ignoreCase True to match keys regardless of ASCII case, as with the (?i) regex flag.
+     *                   Keys are then stored in upper case.
+     */
+    public DictionaryTrie(Map<String, String> map, boolean ignoreCase)
+    {
+        this.ignoreCase = ignoreCase;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Builds a trie that matches the given words, e.g. the values of a dictionary map.
+     * @param words      Words to match. The value of a match is the word itself.
+     * @param ignoreCase True to match regardless of case.
+     */
+    public DictionaryTrie(Iterable<String> words, boolean ignoreCase)
+    {
+        this.ignoreCase = ignoreCase;
+        for (String word : words) {
+            put(word, word);
+        }
+    }
+
+    private void put(String key, String value)
+    {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(fold(key.charAt(i)));
+        }
+        node.value = value;
+        maxKeyLength = Math.max(maxKeyLength, key.length());
+    }
+
+    private char fold(char c)
+    {
+        return (ignoreCase && c >= 'a' && c <= 'z') ? (char) (c - 'a' + 'A') : c;
+    }
+
+    private Node walk(Node node, CharSequence s)
+    {
+        for (int i = 0; i < s.length() && node != null; i++) {
+            node = node.child(fold(s.charAt(i)));
+        }
+        return node;
+    }
+
+    /**
+     * @return Value of the key equal to s, or null if there is none.
+     */
+    public String get(CharSequence s)
+    {
+        Node node = walk(root, s);
+        return (node != null) ? node.value : null;
+    }
+
+    /**
+     * @return Value of the key equal to the tokens from (inclusive) to to (exclusive) joined by spaces,
+     *         or null if there is none.
+     */
+    public String get(List<String> tokens, int from, int to)
+    {
+        Node node = tokenWalk(tokens, from, to);
+        return (node != null) ? node.value : null;
+    }
+
+    /**
+     * Finds the longest key that equals the tokens starting at from, joined by spaces.
+     * @return Number of tokens in the longest matching key, or 0 if no key matches.
+     */
+    public int longestMatch(List<String> tokens, int from, int to)
+    {
+        int longest = 0;
+        Node node = root;
+        for (int i = from; i < to && node != null; i++) {
+            if (i > from) {
+                node = node.child(' ');
+            }
+            node = (node != null) ? walk(node, tokens.get(i)) : null;
+            if (node != null && node.value != null) {
+                longest = i - from + 1;
+            }
+        }
+        return longest;
+    }
+
+    private Node tokenWalk(List<String> tokens, int from, int to)
+    {
+        Node node = root;
+        for (int i = from; i < to && node != null; i++) {
+            if (i > from) {
+                node = node.child(' ');
+            }
+            if (node != null) {
+                node = walk(node, tokens.get(i));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Finds the keys that s starts with at the given index.
+     * @param s     Text to match
+     * @param start Index in s to match at
+     * @param ends  Receives the end index (exclusive) of each matching key, shortest first. Must be at least
+     *              getMaxKeyLength() + 1 long.
+     * @return Number of matching keys
+     */
+    public int findMatches(CharSequence s, int start, int[] ends)
+    {
+        int count = 0;
+        Node node = root;
+        for (int i = start; i < s.length(); i++) {
+            node = node.child(fold(s.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                ends[count++] = i + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Length of the shortest key that s starts with, or 0 if there is none.
+     */
+    public int shortestPrefix(CharSequence s)
+    {
+        Node node = root;
+        for (int i = 0; i < s.length(); i++) {
+            node = node.child(fold(s.charAt(i)));
+            if (node == null) {
+                return 0;
+            }
+            if (node.value != null) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    public int getMaxKeyLength()
+    {
+        return maxKeyLength;
+    }
+}
@@ -0,0 +1,205 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.factory.SageThreadFactory;
+import gov.nysenate.sage.model.stats.ExecutorStats;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.*;
+
+/**
+ * Registry of the thread pools used to call service providers in parallel. Each provider gets its own pool
+ * for each workload (e.g. geocode, revgeocode, district, validate) so that a slow provider only queues up
+ * its own requests instead of holding the threads used by every other provider.
+ *
+ * A pool is sized using the '<workload>.threads.<provider>' config value if it is set, where the provider is
+ * the lower case class name (e.g. geocode.threads.googlegeocoder), and '<workload>.threads' otherwise.
+ * The pools are resized when the config file is reloaded.
+ */
+public abstract class ExecutorRegistry
+{
+    private static Logger logger = Logger.getLogger(ExecutorRegistry.class);
+    private static Config config = ApplicationFactory.getConfig();
+    private static final String DEFAULT_THREAD_COUNT = "3";
+
+    private static Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    private static class Pool
+    {
+        final String workload;
+        final String provider;
+        final ThreadPoolExecutor executor;
+
+        Pool(String workload, String provider, int threads)
+        {
+            this.workload = workload;
+            this.provider = provider;
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new SageThreadFactory(workload + "-" + provider));
+        }
+    }
+
+    static {
+        if (config != null) {
+            config.notifyOnChange(new Observer() {
+                @Override
+                public void update(Observable o, Object arg) {
+                    resizePools();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the pool used by the provider for the given workload, creating it if necessary.
+     * @param workload Type of work, also the prefix of the thread count config keys.
+     * @param provider Provider implementation class
+     * @return ExecutorService
+     */
+    public static ExecutorService getExecutor(String workload, Class<?> provider)
+    {
+        return getPool(workload, provider).executor;
+    }
+
+    /**
+     * Runs the task on the provider's pool for the given workload.
+     * @param workload Type of work
+     * @param provider Provider implementation class
+     * @param task     Task to run
+     * @return CompletableFuture that completes with the value returned by the task or completes exceptionally
+     *         if the task threw an exception or could not be scheduled.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(String workload, Class<?> provider, final Callable<T> task)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            getExecutor(workload, provider).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(task.call());
+                    }
+                    catch (Exception ex) {
+                        future.completeExceptionally(ex);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for each of the futures and returns their values in order. Futures that completed exceptionally
+     * are logged and left out of the results.
+     * @param futures List of futures
+     * @return List of results
+     */
+    public static <T> ArrayList<T> joinAll(List<CompletableFuture<T>> futures)
+    {
+        ArrayList<T> results = new ArrayList<>();
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException ex) {
+                logger.error(ex.getMessage());
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ex) {
+                logger.error(ex.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return Pool size, active threads and queue depth of each pool.
+     */
+    public static List<ExecutorStats> getStats()
+    {
+        List<ExecutorStats> stats = new ArrayList<>();
+        for (Pool pool : pools.values()) {
+            stats.add(new ExecutorStats(pool.workload, pool.provider, pool.executor));
+        }
+        return stats;
+    }
+
+    public static void shutdown()
+    {
+        for (Pool pool : pools.values()) {
+            pool.executor.shutdownNow();
+        }
+    }
+
+    private static Pool getPool(String workload, Class<?> providerClass)
+    {
+        String provider = providerClass.getSimpleName().toLowerCase();
+        String key = workload + "." + provider;
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            synchronized (ExecutorRegistry.class) {
+                pool = pools.get(key);
+                if (pool == null) {
+                    pool = new Pool(workload, provider, getThreadCount(workload, provider));
+                    pools.put(key, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static int getThreadCount(String workload, String provider)
+    {
+        if (config == null) {
+            return Integer.parseInt(DEFAULT_THREAD_COUNT);
+        }
+        String threads = config.getValue(workload + ".threads." + provider, "");
+        if (threads.isEmpty()) {
+            threads = config.getValue(workload + ".threads", DEFAULT_THREAD_COUNT);
+        }
+        try {
+            return Math.max(Integer.parseInt(threads.trim()), 1);
+        }
+        catch (NumberFormatException ex) {
+            logger.warn("Invalid thread count for " + workload + "." + provider + ": " + threads);
+            return Integer.parseInt(DEFAULT_THREAD_COUNT);
+        }
+    }
+
+    /** Applies the configured thread counts to the existing pools. */
+    private static void resizePools()
+    {
+        for (Pool pool : pools.values()) {
+            int threads = getThreadCount(pool.workload, pool.provider);
+            if (threads != pool.executor.getCorePoolSize()) {
+                logger.info(String.format("Resizing %s pool for %s from %d to %d threads", pool.workload, pool.provider,
+                                          pool.executor.getCorePoolSize(), threads));
+                resize(pool.executor, threads);
+            }
+        }
+    }
+
+    /**
+     * Sets the number of threads of the pool. Queued tasks are picked up by new threads right away; when
+     * shrinking, busy threads finish their current task before they exit.
+     */
+    static void resize(ThreadPoolExecutor executor, int threads)
+    {
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        }
+        else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package gov.nysenate.sage.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Helpers for reading large JSON responses incrementally. Instead of building a tree of the whole response,
+ * the parser walks the enclosing objects and only the individual result elements are read as (small) trees.
+ */
+public abstract class JsonStreamUtil
+{
+    /**
+     * Handles the value of an object field. The parser is positioned at the first token of the value. Values
+     * that the handler does not read are skipped.
+     */
+    public interface FieldHandler
+    {
+        void handle(String fieldName, JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Handles a single element of a result array.
+     */
+    public interface NodeHandler
+    {
+        void handle(JsonNode node) throws IOException;
+    }
+
+    /**
+     * Reads the fields of the object at the current token. If the parser has not been advanced yet the first
+     * token is read.
+     * @param parser    JsonParser positioned at the start of an object
+     * @param handler   FieldHandler called for each field of the object
+     * @throws IOException if the value is not an object or the json is malformed
+     */
+    public static void readObject(JsonParser parser, FieldHandler handler) throws IOException
+    {
+        JsonToken token = (parser.getCurrentToken() == null) ? parser.nextToken() : parser.getCurrentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a json object but found " + token);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            handler.handle(fieldName, parser);
+            /** No-op if the handler read the value */
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Reads each element of the array at the current token as a tree. An object that is not wrapped in an
+     * array is handled as a single element. Any other value is ignored.
+     * @param parser        JsonParser positioned at the start of an array or object
+     * @param objectMapper  ObjectMapper used to read the elements
+     * @param handler       NodeHandler called for each element
+     * @throws IOException if the json is malformed
+     */
+    public static void readElements(JsonParser parser, ObjectMapper objectMapper, NodeHandler handler) throws IOException
+    {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_ARRAY) {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of json array");
+                }
+                JsonNode node = objectMapper.readTree(parser);
+                handler.handle(node);
+            }
+        }
+        else if (token == JsonToken.START_OBJECT) {
+            JsonNode node = objectMapper.readTree(parser);
+            handler.handle(node);
+        }
+    }
+}
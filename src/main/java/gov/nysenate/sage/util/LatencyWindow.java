@@ -0,0 +1,74 @@
+package gov.nysenate.sage.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples (in ms) in a fixed size ring buffer so that percentiles
+ * can be computed over a rolling window.
+ */
+public class LatencyWindow
+{
+    private final long[] samples;
+    private int next = 0;
+    private int count = 0;
+
+    /**
+     * @param size Number of samples to keep.
+     */
+    public LatencyWindow(int size)
+    {
+        this.samples = new long[Math.max(size, 1)];
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one if the window is full.
+     * @param latencyMs Latency in milliseconds
+     */
+    public synchronized void add(long latencyMs)
+    {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /**
+     * @return Number of samples currently in the window.
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Computes the latency at the given percentile using the nearest-rank method.
+     * @param percentile Value between 0 and 100
+     * @return Latency in ms, or -1 if there are no samples.
+     */
+    public synchronized long getPercentile(double percentile)
+    {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil((percentile / 100.0) * count);
+        return sorted[Math.min(Math.max(rank, 1), count) - 1];
+    }
+
+    /**
+     * @return Mean latency in ms, or -1 if there are no samples.
+     */
+    public synchronized long getMean()
+    {
+        if (count == 0) {
+            return -1;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / count;
+    }
+}
@@ -0,0 +1,163 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.model.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory LRU cache with per-entry expiration. Entries are evicted when the cache grows
+ * beyond maxSize (least recently used first) or when they are read after their time to live has
+ * elapsed. All access is synchronized so a single instance can be shared across servlet threads.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class MemoryCache<K, V>
+{
+    private final String name;
+    private int maxSize;
+    private long ttlMs;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class Entry<V>
+    {
+        final V value;
+        final long expireTime;
+
+        Entry(V value, long expireTime)
+        {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * @param name      Name used when reporting statistics.
+     * @param maxSize   Maximum number of entries to hold.
+     * @param ttlSecs   Number of seconds an entry remains valid. Values <= 0 disable expiration.
+     */
+    public MemoryCache(String name, int maxSize, int ttlSecs)
+    {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlSecs * 1000L;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > MemoryCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the value mapped to key if it exists and has not expired.
+     * @param key Key to look up
+     * @return V or null if not found.
+     */
+    public synchronized V get(K key)
+    {
+        Entry<V> entry = (key != null) ? entries.get(key) : null;
+        if (entry != null) {
+            if (entry.expireTime > 0 && entry.expireTime < System.currentTimeMillis()) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            else {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Maps the value to key, replacing any existing entry and resetting its expiration.
+     * @param key   Key
+     * @param value Value (null values are ignored)
+     */
+    public synchronized void put(K key, V value)
+    {
+        if (key != null && value != null && maxSize > 0) {
+            long expireTime = (ttlMs > 0) ? System.currentTimeMillis() + ttlMs : 0;
+            entries.put(key, new Entry<>(value, expireTime));
+        }
+    }
+
+    /**
+     * Removes the entry mapped to key.
+     * @param key Key
+     */
+    public synchronized void remove(K key)
+    {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entries. The hit/miss/eviction counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Changes the size and expiration bounds. Existing entries that exceed the new size are trimmed
+     * in LRU order; existing expiration times are left as is.
+     * @param maxSize Maximum number of entries to hold.
+     * @param ttlSecs Number of seconds an entry remains valid.
+     */
+    public synchronized void resize(int maxSize, int ttlSecs)
+    {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlSecs * 1000L;
+        while (entries.size() > maxSize) {
+            K eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return CacheStats snapshot of the current counters.
+     */
+    public synchronized CacheStats getStats()
+    {
+        return new CacheStats(name, entries.size(), maxSize, hits.get(), misses.get(), evictions.get());
+    }
+}
@@ -0,0 +1,160 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.factory.ApplicationFactory;
+import org.apache.log4j.Logger;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rate limits the requests that are sent to external providers so that their quotas are not exceeded.
+ * Each provider can be given a per-second rate and a daily limit for both interactive and batch traffic, e.g.
+ *
+ *     ratelimit.mapquest.interactive.rate = 10
+ *     ratelimit.mapquest.batch.rate = 2
+ *     ratelimit.mapquest.batch.daily = 5000
+ *
+ * Providers without a configured rate or daily limit are not limited. The traffic class applies to the whole
+ * JVM; the batch job process sets it to BATCH on startup so that it draws from the batch budget.
+ *
+ * In 'queue' mode, requests that exceed the rate wait for their turn so that bursts are smoothed out. Interactive
+ * requests wait up to ratelimit.wait ms and batch requests up to ratelimit.batch.wait ms. In 'fail' mode they are
+ * rejected immediately. Requests over the daily limit always fail.
+ *
+ * The limits are rebuilt when the config changes. Counts against the daily limits are carried over.
+ */
+public abstract class ProviderRateLimiter
+{
+    private static Logger logger = Logger.getLogger(ProviderRateLimiter.class);
+    private static Config config = ApplicationFactory.getConfig();
+
+    public enum TrafficClass { INTERACTIVE, BATCH }
+
+    private static TrafficClass trafficClass = TrafficClass.INTERACTIVE;
+    private static Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    static {
+        if (config != null) {
+            config.notifyOnChange(new Observer() {
+                @Override
+                public void update(Observable o, Object arg) {
+                    refreshLimits();
+                }
+            });
+        }
+    }
+
+    private static class Limit
+    {
+        final TokenBucket tokenBucket;
+        final int dailyLimit;
+        final AtomicInteger dailyCount = new AtomicInteger();
+        int day = -1;
+
+        Limit(TokenBucket tokenBucket, int dailyLimit)
+        {
+            this.tokenBucket = tokenBucket;
+            this.dailyLimit = dailyLimit;
+        }
+
+        /** Counts the request against the daily limit. */
+        synchronized boolean countDaily()
+        {
+            if (dailyLimit <= 0) {
+                return true;
+            }
+            int today = Calendar.getInstance().get(Calendar.DAY_OF_YEAR);
+            if (today != day) {
+                day = today;
+                dailyCount.set(0);
+            }
+            return dailyCount.incrementAndGet() <= dailyLimit;
+        }
+    }
+
+    /**
+     * Sets the budget that the requests from this JVM draw from.
+     * @param trafficClass TrafficClass
+     */
+    public static void setTrafficClass(TrafficClass trafficClass)
+    {
+        ProviderRateLimiter.trafficClass = trafficClass;
+        limits.clear();
+    }
+
+    public static TrafficClass getTrafficClass()
+    {
+        return trafficClass;
+    }
+
+    /**
+     * Acquires permission to send a request to the provider. This should be called before each HTTP request.
+     * @param provider Provider name as used in the ratelimit config keys
+     * @return true if the request may be sent, false if it would exceed the provider's quota.
+     */
+    public static boolean acquire(String provider)
+    {
+        Limit limit = getLimit(provider);
+        if (limit == null) {
+            return true;
+        }
+        boolean queue = config.getValue("ratelimit.mode", "queue").equalsIgnoreCase("queue");
+        long maxWaitMs = 0;
+        if (queue) {
+            maxWaitMs = (trafficClass == TrafficClass.BATCH) ? Long.parseLong(config.getValue("ratelimit.batch.wait", "30000"))
+                                                              : Long.parseLong(config.getValue("ratelimit.wait", "500"));
+        }
+        if (limit.tokenBucket != null && !limit.tokenBucket.tryAcquire(maxWaitMs)) {
+            logger.warn(String.format("Rate limit for %s (%s) exceeded. Request rejected.", provider, trafficClass));
+            return false;
+        }
+        if (!limit.countDaily()) {
+            logger.warn(String.format("Daily limit for %s (%s) reached. Request rejected.", provider, trafficClass));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the limits from the current config, keeping the requests already counted against the daily limits.
+     */
+    static void refreshLimits()
+    {
+        for (Map.Entry<String, Limit> entry : limits.entrySet()) {
+            Limit oldLimit = entry.getValue();
+            Limit newLimit = createLimit(entry.getKey());
+            synchronized (oldLimit) {
+                newLimit.day = oldLimit.day;
+                newLimit.dailyCount.set(oldLimit.dailyCount.get());
+            }
+            limits.put(entry.getKey(), newLimit);
+        }
+    }
+
+    /**
+     * @param provider Provider name
+     * @return Limit for the provider and current traffic class, or null if the provider is not limited.
+     */
+    private static Limit getLimit(String provider)
+    {
+        Limit limit = limits.get(provider);
+        if (limit == null) {
+            limits.putIfAbsent(provider, createLimit(provider));
+            limit = limits.get(provider);
+        }
+        return (limit.tokenBucket != null || limit.dailyLimit > 0) ? limit : null;
+    }
+
+    private static Limit createLimit(String provider)
+    {
+        String prefix = "ratelimit." + provider + "." + trafficClass.name().toLowerCase();
+        double rate = Double.parseDouble(config.getValue(prefix + ".rate", "0"));
+        double burst = Double.parseDouble(config.getValue(prefix + ".burst", Double.toString(rate)));
+        int dailyLimit = Integer.parseInt(config.getValue(prefix + ".daily", "0"));
+        return new Limit((rate > 0) ? new TokenBucket(rate, burst) : null, dailyLimit);
+    }
+}
@@ -0,0 +1,91 @@
+package gov.nysenate.sage.util;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of requests that are currently being processed so that concurrent callers with an
+ * identical request can wait on the result of the first caller instead of repeating the work.
+ *
+ * A caller claims a key with its own future. If claim() returns null the caller owns the request and
+ * must call complete() when done (even on failure). Otherwise the returned future belongs to the
+ * caller that is already processing the request and can be waited on with await().
+ *
+ * @param <K> Request key type
+ * @param <V> Result type
+ */
+public class RequestCoalescer<K, V>
+{
+    private static Logger logger = Logger.getLogger(RequestCoalescer.class);
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Registers future as the in-flight request for key unless one already exists.
+     * @param key       Request key
+     * @param future    Future that the caller will complete if it becomes the owner.
+     * @return null if the caller now owns the request, otherwise the in-flight future to wait on.
+     */
+    public CompletableFuture<V> claim(K key, CompletableFuture<V> future)
+    {
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+        }
+        return existing;
+    }
+
+    /**
+     * Completes an owned request and releases the key so that subsequent requests are processed anew.
+     * @param key       Request key
+     * @param future    Future that was used to claim the key
+     * @param result    Result to hand to the waiting callers (may be null if the request failed)
+     */
+    public void complete(K key, CompletableFuture<V> future, V result)
+    {
+        inFlight.remove(key, future);
+        future.complete(result);
+    }
+
+    /**
+     * Waits for the result of an in-flight request.
+     * @param future Future returned by claim()
+     * @return V or null if the owner failed to produce a result.
+     */
+    public V await(CompletableFuture<V> future)
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting on coalesced request.");
+        }
+        catch (ExecutionException ex) {
+            logger.warn("Coalesced request failed: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of requests that waited on an in-flight request instead of being processed.
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return Number of requests currently being processed.
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+}
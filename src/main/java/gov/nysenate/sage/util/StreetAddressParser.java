@@ -7,8 +7,6 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Utility class for parsing free-form or semi-parsed addresses into StreetAddress objects.
@@ -17,30 +15,83 @@ import java.util.regex.Pattern;
  *
  * Parsing addresses is a core requirement for performing street file look-ups as well as
  * performing geocode caching as they both operate on StreetAddress objects.
+ *
+ * Parsing runs several times per request so the parser makes a single pass over the address without regular
+ * expressions. The country, zip and state are cut off the end and the building number off the start by scanning
+ * inwards and narrowing the bounds of the remaining text. The rest is then split once into comma separated parts
+ * and the street part into tokens, which the street, unit and location are picked out of. Street, highway and
+ * unit types are matched against tries of the dictionary keys.
  */
 public abstract class StreetAddressParser
 {
     public static boolean DEBUG = false;
     public static Logger logger = Logger.getLogger(StreetAddressParser.class);
-    public static final String SEP = "[ ,]+";
 
     public static Set<String> streetTypeSet = AddressDictionary.streetTypeMap.keySet();
     public static Set<String> highWaySet = AddressDictionary.highWayMap.keySet();
     public static Set<String> unitSet = AddressDictionary.unitMap.keySet();
     public static Set<String> dirSet = AddressDictionary.directionMap.keySet();
 
-    public static String unitRegex;
-    public static String poBoxRegex;
+    /** Tries over the dictionary keys, used in place of joining token lists for set lookups */
+    private static final DictionaryTrie streetTypeTrie = new DictionaryTrie(AddressDictionary.streetTypeMap, false);
+    private static final DictionaryTrie highWayTrie = new DictionaryTrie(AddressDictionary.highWayMap, false);
+    private static final DictionaryTrie unitTrie = new DictionaryTrie(AddressDictionary.unitMap, false);
+
+    /** Upper case state names mapped to their abbreviations */
+    private static final Map<String, String> stateNameMap = new HashMap<>();
+
+    /** Ways of writing PO BOX, in the order they are tried. A '.' matches any character. */
+    private static final String[] poBoxPrefixes = {"PO ", "PO", "PO-", "P.O ", "P.O. "};
 
     static {
-        unitRegex = "(" + StringUtils.join(unitSet, "|") + ")";
-        poBoxRegex = "(?i)(?:PO |PO|PO-|P.O |P.O. )BOX[ #-:]*?(\\d+)";
+        for (Map.Entry<String, String> entry : AddressDictionary.stateMap.entrySet()) {
+            stateNameMap.put(entry.getValue().toUpperCase(Locale.ENGLISH), entry.getKey());
+        }
 
         if (!DEBUG) {
             logger.setLevel(Level.OFF);
         }
     }
 
+    /**
+     * The part of the address string that has not been parsed yet. Extracting a component from either end
+     * moves the bounds instead of copying the string.
+     */
+    private static class Remainder
+    {
+        String text;
+        int begin;
+        int end;
+
+        Remainder(String text)
+        {
+            this.text = text;
+            this.begin = 0;
+            this.end = text.length();
+        }
+
+        char charAt(int i)
+        {
+            return text.charAt(i);
+        }
+
+        boolean endsWith(String suffix)
+        {
+            return end - suffix.length() >= begin && text.startsWith(suffix, end - suffix.length());
+        }
+
+        /** Same as String.trim() */
+        void trim()
+        {
+            while (begin < end && text.charAt(begin) <= ' ') {
+                begin++;
+            }
+            while (end > begin && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+    }
+
     /**
      * Parses address and normalizes.
      * @param address Address to parse
@@ -71,8 +122,17 @@ public abstract class StreetAddressParser
         /** Fix up towns */
         String town = streetAddr.getLocation();
         if (isset(town)) {
-            town = town.replaceFirst("^(TOWN |TOWN OF |CITY |CITY OF |)", "");
-            town = town.replaceFirst("(\\(CITY\\)|/CITY)$", "");
+            if (town.startsWith("TOWN ") || town.startsWith("CITY ")) {
+                town = town.substring(5);
+            }
+            /** The suffix may be followed by a line terminator, which is kept */
+            int end = town.length() - lineTerminatorLength(town);
+            if (town.startsWith("(CITY)", end - 6)) {
+                town = town.substring(0, end - 6) + town.substring(end);
+            }
+            else if (town.startsWith("/CITY", end - 5)) {
+                town = town.substring(0, end - 5) + town.substring(end);
+            }
             streetAddr.setLocation(town);
         }
 
@@ -80,15 +140,69 @@ public abstract class StreetAddressParser
         String street = streetAddr.getStreetName();
         if (isset(street)) {
             /** Remove all numerical suffixes and special characters. */
-            street = street.replaceFirst("(?<=[0-9])(?:ST|ND|RD|TH)", "");
-            street = street.replaceAll("[#:;.,]", "").replaceAll("'", "").replaceAll(" +", " ").replaceAll("-", " ");
-            street = normalize(street);
+            street = normalize(removeSpecialChars(removeNumericSuffix(street)));
             streetAddr.setStreetName(street);
         }
 
         return streetAddr;
     }
 
+    /**
+     * @return Length of the line terminator at the end of s, or 0 if there is none.
+     */
+    private static int lineTerminatorLength(String s)
+    {
+        if (s.endsWith("\r\n")) {
+            return 2;
+        }
+        return (!s.isEmpty() && isLineTerminator(s.charAt(s.length() - 1))) ? 1 : 0;
+    }
+
+    /**
+     * Removes the first ST, ND, RD or TH that follows a digit, e.g. 8TH becomes 8.
+     */
+    private static String removeNumericSuffix(String street)
+    {
+        for (int i = 1; i < street.length() - 1; i++) {
+            if (isDigit(street.charAt(i - 1)) && (street.startsWith("ST", i) || street.startsWith("ND", i) ||
+                                                  street.startsWith("RD", i) || street.startsWith("TH", i))) {
+                return street.substring(0, i) + street.substring(i + 2);
+            }
+        }
+        return street;
+    }
+
+    /**
+     * Removes the characters #:;., and apostrophes, collapses runs of spaces and replaces hyphens with spaces.
+     * Hyphens are replaced after the spaces are collapsed, so a hyphen next to a space leaves two spaces.
+     */
+    private static String removeSpecialChars(String street)
+    {
+        StringBuilder sb = new StringBuilder(street.length());
+        boolean lastWasSpace = false;
+        for (int i = 0; i < street.length(); i++) {
+            char c = street.charAt(i);
+            switch (c) {
+                case '#': case ':': case ';': case '.': case ',': case '\'':
+                    break;
+                case ' ':
+                    if (!lastWasSpace) {
+                        sb.append(' ');
+                        lastWasSpace = true;
+                    }
+                    break;
+                case '-':
+                    sb.append(' ');
+                    lastWasSpace = false;
+                    break;
+                default:
+                    sb.append(c);
+                    lastWasSpace = false;
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Sometimes a street may be prefixed with `Saint` (as in `Saint Marks`) or `Fort` and an abbreviated
      * street name is desired (i.e `St Marks`)
@@ -98,14 +212,11 @@ public abstract class StreetAddressParser
     public static String getPrefixNormalizedStreetName(String street)
     {
         if (street != null && !street.isEmpty()) {
-            List<String> parts = new ArrayList<>(Arrays.asList(street.split(" ")));
-            if (parts.size() > 0) {
-                String streetPrefix = parts.get(0);
-                String replaceStreetPrefix = AddressDictionary.streetPrefixMap.get(streetPrefix.toUpperCase());
-                if (replaceStreetPrefix != null && !replaceStreetPrefix.isEmpty()) {
-                    parts.set(0, replaceStreetPrefix);
-                    street = StringUtils.join(parts, " ");
-                }
+            int prefixEnd = street.indexOf(' ');
+            String streetPrefix = (prefixEnd == -1) ? street : street.substring(0, prefixEnd);
+            String replaceStreetPrefix = AddressDictionary.streetPrefixMap.get(streetPrefix.toUpperCase());
+            if (replaceStreetPrefix != null && !replaceStreetPrefix.isEmpty()) {
+                street = replaceStreetPrefix + StringUtils.stripEnd(street.substring(streetPrefix.length()), " ");
             }
         }
         return street;
@@ -128,18 +239,18 @@ public abstract class StreetAddressParser
             stAddr.setZip5(addr.getZip5());
             stAddr.setZip4(addr.getZip4());
 
-            String addrStr = addr.getAddr1() + ((!addr.getAddr2().isEmpty()) ? " " + addr.getAddr2() : "");
-            addrStr = extractBldgNum(addrStr, stAddr);
-            extractStreet(normalize(addrStr), stAddr);
+            Remainder addrStr = new Remainder(addr.getAddr1() + ((!addr.getAddr2().isEmpty()) ? " " + addr.getAddr2() : ""));
+            extractBldgNum(addrStr, stAddr);
+            extractStreet(normalize(addrStr.text.substring(addrStr.begin, addrStr.end)), stAddr);
         }
         else {
-            String addrStr = normalize(addr.toString());
+            Remainder addrStr = new Remainder(normalize(addr.toString()));
 
-            addrStr = extractUSA(addrStr);
-            addrStr = extractZip(addrStr, stAddr);
-            addrStr = extractState(addrStr, stAddr);
-            addrStr = extractBldgNum(addrStr, stAddr);
-            extractStreet(addrStr, stAddr);
+            extractUSA(addrStr);
+            extractZip(addrStr, stAddr);
+            extractState(addrStr, stAddr);
+            extractBldgNum(addrStr, stAddr);
+            extractStreet(addrStr.text.replace('\n', ' ').replace('\t', ' '), addrStr.begin, addrStr.end, stAddr);
         }
 
         return normalizeStreetAddress(stAddr);
@@ -148,79 +259,197 @@ public abstract class StreetAddressParser
     /**
      * Removes 'United States' or a variant from the end of the string
      */
-    private static String extractUSA(String addressStr)
+    private static void extractUSA(Remainder addrStr)
+    {
+        int start = -1;
+        if (addrStr.endsWith("UNITED STATES OF AMERICA")) {
+            start = addrStr.end - 24;
+        }
+        else if (addrStr.endsWith("UNITED STATES")) {
+            start = addrStr.end - 13;
+        }
+        else {
+            /** U.S.A. where the periods and the A are optional */
+            int i = addrStr.end;
+            i = skip(addrStr, i, '.');
+            i = skip(addrStr, i, 'A');
+            i = skip(addrStr, i, '.');
+            if (skip(addrStr, i, 'S') < i) {
+                i = skip(addrStr, i - 1, '.');
+                if (skip(addrStr, i, 'U') < i) {
+                    start = i - 1;
+                }
+            }
+        }
+        if (start != -1) {
+            addrStr.end = start;
+            addrStr.trim();
+        }
+    }
+
+    /**
+     * @return i - 1 if the character before i is c, i otherwise.
+     */
+    private static int skip(Remainder addrStr, int i, char c)
     {
-        String countyPattern = "(?i)U((nited States( of America)?)|(\\.?S\\.?A?\\.?))$";
-        return addressStr.replaceFirst(countyPattern, "").trim();
+        return (i > addrStr.begin && addrStr.charAt(i - 1) == c) ? i - 1 : i;
     }
 
     /**
-    * Extracts the zip and sets it to the supplied StreetAddress
+    * Extracts the zip and sets it to the supplied StreetAddress. The zip is five digits or dashes, optionally
+    * followed by a space or dash and a four digit zip4, at the end of the string.
     */
-    private static String extractZip(String addressStr, StreetAddress streetAddress)
+    private static void extractZip(Remainder addrStr, StreetAddress streetAddress)
     {
-        String zipPattern = "(?<zip>(?<zip5>(?<![0-9])([-0-9]{5}))([ -](?<zip4>([0-9]{4})))?)[, ]*$";
-        Matcher zipMatcher = Pattern.compile(zipPattern).matcher(addressStr);
-        if (zipMatcher.find()) {
-            streetAddress.setZip5(zipMatcher.group("zip5"));
-            streetAddress.setZip4(zipMatcher.group("zip4"));
-            logger.debug("Zipcode: " + zipMatcher.group("zip"));
-            addressStr = addressStr.replace(zipMatcher.group("zip"), "").trim();
+        int end = trailingSeparatorStart(addrStr);
+        int start;
+        String zip4 = null;
+        if (isZip5(addrStr, end - 10) && (addrStr.charAt(end - 5) == ' ' || addrStr.charAt(end - 5) == '-')
+            && isDigits(addrStr, end - 4, end)) {
+            start = end - 10;
+            zip4 = addrStr.text.substring(end - 4, end);
         }
-        return addressStr;
+        else if (isZip5(addrStr, end - 5)) {
+            start = end - 5;
+        }
+        else {
+            return;
+        }
+        streetAddress.setZip5(addrStr.text.substring(start, start + 5));
+        streetAddress.setZip4(zip4);
+
+        String zip = addrStr.text.substring(start, end);
+        if (end == addrStr.end && addrStr.text.indexOf(zip, addrStr.begin) == start) {
+            addrStr.end = start;
+        }
+        else {
+            /** Every occurrence of the zip is removed, not just the one at the end */
+            addrStr.text = StringUtils.replace(addrStr.text.substring(addrStr.begin, addrStr.end), zip, "");
+            addrStr.begin = 0;
+            addrStr.end = addrStr.text.length();
+        }
+        addrStr.trim();
+    }
+
+    /**
+     * @return true if the five characters starting at i are digits or dashes and are not preceded by a digit.
+     */
+    private static boolean isZip5(Remainder addrStr, int i)
+    {
+        if (i < addrStr.begin || (i > addrStr.begin && isDigit(addrStr.charAt(i - 1)))) {
+            return false;
+        }
+        for (int j = i; j < i + 5; j++) {
+            if (!isDigit(addrStr.charAt(j)) && addrStr.charAt(j) != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigits(Remainder addrStr, int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            if (!isDigit(addrStr.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
     * Assumes zip code has already been extracted from addressStr
     */
-    private static String extractState(String addressStr, StreetAddress streetAddress)
+    private static void extractState(Remainder addrStr, StreetAddress streetAddress)
     {
-        String stateAbbrPattern = SEP + "(?<state>\\w{2})[, ]*$";
-        String stateFullPattern = SEP + "(?<state>\\w+([ ]\\w+)?)[, ]*$";
+        int end = trailingSeparatorStart(addrStr);
+        int wordStart = wordStart(addrStr, end);
+        if (wordStart == end || wordStart == addrStr.begin || !isSeparator(addrStr.charAt(wordStart - 1))) {
+            return;
+        }
 
         /** Check for state abbrev */
-        Matcher stateMatcher = Pattern.compile(stateAbbrPattern).matcher(addressStr);
-        if (stateMatcher.find()) {
-            if (AddressDictionary.stateMap.containsKey(stateMatcher.group("state"))) {
-                logger.debug("State: " + stateMatcher.group("state"));
-                streetAddress.setState(stateMatcher.group("state"));
-                addressStr = addressStr.replaceFirst(stateAbbrPattern, "").trim();
+        if (end - wordStart == 2) {
+            String state = addrStr.text.substring(wordStart, end);
+            if (AddressDictionary.stateMap.containsKey(state)) {
+                streetAddress.setState(state);
+                addrStr.end = wordStart - 1;
+                while (addrStr.end > addrStr.begin && isSeparator(addrStr.charAt(addrStr.end - 1))) {
+                    addrStr.end--;
+                }
+                addrStr.trim();
             }
         }
-        /** Check if state is written out. Set as the abbreviation if found */
+        /** Check if state is written out, as one or two words. Set as the abbreviation if found.
+         *  The state name is left in the string. */
         else {
-            stateMatcher = Pattern.compile(stateFullPattern).matcher(addressStr);
-            if (stateMatcher.find()) {
-                for (Map.Entry<String, String> entry : AddressDictionary.stateMap.entrySet()) {
-                    if (stateMatcher.group("state").equalsIgnoreCase(entry.getValue())) {
-                        logger.debug("State: " + entry.getKey());
-                        streetAddress.setState(entry.getKey());
-                        addressStr = addressStr.replaceFirst(entry.getValue() + "[, ]*$", "").trim();
-                    }
+            int stateStart = wordStart;
+            if (addrStr.charAt(wordStart - 1) == ' ') {
+                int prevStart = wordStart(addrStr, wordStart - 1);
+                if (prevStart < wordStart - 1 && prevStart > addrStr.begin && isSeparator(addrStr.charAt(prevStart - 1))) {
+                    stateStart = prevStart;
                 }
             }
+            String state = stateNameMap.get(addrStr.text.substring(stateStart, end));
+            if (state != null) {
+                streetAddress.setState(state);
+            }
         }
-        return addressStr;
+    }
+
+    /**
+     * @return Start of the trailing commas and spaces of the remainder.
+     */
+    private static int trailingSeparatorStart(Remainder addrStr)
+    {
+        int end = addrStr.end;
+        while (end > addrStr.begin && isSeparator(addrStr.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * @return Start of the run of word characters (letters, digits and underscores) that ends at end.
+     */
+    private static int wordStart(Remainder addrStr, int end)
+    {
+        int start = end;
+        while (start > addrStr.begin && isWordChar(addrStr.charAt(start - 1))) {
+            start--;
+        }
+        return start;
     }
 
     /**
     * Assume that the address begins with a digit, and extract it from the input string.
     * Handle dashes in the building number as well as a possible building character.
     */
-    private static String extractBldgNum(String addressStr, StreetAddress streetAddress)
-    {
-        String bldgNumPattern = "^(?<bldgNum1>[0-9]+)(-(?<bldgNum2>[0-9]+))?(?<bldgChr>[a-zA-Z])?";
-        Matcher matcher = Pattern.compile(bldgNumPattern).matcher(addressStr);
-        if (matcher.find()) {
-            String bldgNum = ((matcher.group("bldgNum1") != null) ? matcher.group("bldgNum1") : "") +
-                             ((matcher.group("bldgNum2") != null) ? matcher.group("bldgNum2") : "");
-            String bldgChr = (matcher.group("bldgChr") != null ? matcher.group("bldgChr") : "");
-            logger.debug("BldgNum: " + bldgNum);
-            streetAddress.setBldgNum(Integer.parseInt(bldgNum));
-            streetAddress.setBldgChar(bldgChr);
-            addressStr = addressStr.replaceFirst(bldgNumPattern, "").trim();
+    private static void extractBldgNum(Remainder addrStr, StreetAddress streetAddress)
+    {
+        int i = addrStr.begin;
+        while (i < addrStr.end && isDigit(addrStr.charAt(i))) {
+            i++;
         }
-        return addressStr;
+        if (i == addrStr.begin) {
+            return;
+        }
+        String bldgNum = addrStr.text.substring(addrStr.begin, i);
+        if (i + 1 < addrStr.end && addrStr.charAt(i) == '-' && isDigit(addrStr.charAt(i + 1))) {
+            int numStart = ++i;
+            while (i < addrStr.end && isDigit(addrStr.charAt(i))) {
+                i++;
+            }
+            bldgNum += addrStr.text.substring(numStart, i);
+        }
+        String bldgChr = "";
+        if (i < addrStr.end && isLetter(addrStr.charAt(i))) {
+            bldgChr = addrStr.text.substring(i, ++i);
+        }
+        streetAddress.setBldgNum(Integer.parseInt(bldgNum));
+        streetAddress.setBldgChar(bldgChr);
+        addrStr.begin = i;
+        addrStr.trim();
     }
 
     /**
@@ -230,260 +459,358 @@ public abstract class StreetAddressParser
     public static String extractStreet(String addressStr, StreetAddress streetAddress)
     {
         /** Replace new lines/tabs with spaces */
-        addressStr = addressStr.replaceAll("[\n\t]", " ");
-
-        String[] addrParts = addressStr.split(",");
-        if (addrParts.length >= 1) {
-            LinkedList<String> stParts = new LinkedList<>(Arrays.asList(addrParts[0].split(" ")));
-            normalize(stParts);
-
-            /** Look for pre-directional */
-            String preDir = stParts.get(0);
-            if (dirSet.contains(preDir)) {
-                logger.debug("PreDir: " + AddressDictionary.directionMap.get(stParts.get(0)));
-                streetAddress.setPreDir(AddressDictionary.directionMap.get(stParts.get(0)));
-                stParts.pop();
-            }
+        addressStr = addressStr.replace('\n', ' ').replace('\t', ' ');
+        extractStreet(addressStr, 0, addressStr.length(), streetAddress);
+        return addressStr;
+    }
 
-            /** Handle the easy case: Street, Apartment, Location */
-            if (addrParts.length == 3) {
-                streetAddress.setInternal(normalize(addrParts[1]));
-                logger.debug("Internal: " + streetAddress.getInternal());
+    /**
+     * Extracts the street components from text[begin, end), which must not contain new lines or tabs.
+     */
+    private static void extractStreet(String text, int begin, int end, StreetAddress streetAddress)
+    {
+        int[] addrParts = new int[6];
+        int partCount = splitParts(text, begin, end, addrParts);
+        if (partCount == 0) {
+            return;
+        }
+        List<String> stParts = splitWords(text, addrParts[0], addrParts[1]);
+
+        /** Look for pre-directional */
+        String preDir = AddressDictionary.directionMap.get(stParts.get(0));
+        if (preDir != null) {
+            streetAddress.setPreDir(preDir);
+            stParts.remove(0);
+        }
+
+        /** Handle the easy case: Street, Apartment, Location */
+        if (partCount == 3) {
+            streetAddress.setInternal(normalize(text.substring(addrParts[2], addrParts[3])));
+            if (!isset(streetAddress.getLocation())) {
+                streetAddress.setLocation(text.substring(addrParts[4], addrParts[5]));
+            }
+        }
+        /** Handle the following cases:
+         *  Street, Apartment
+         *  Street, Location
+         */
+        else if (partCount == 2) {
+            List<String> internal = extractInternal(stParts, true);
+            if (internal != null) {
+                streetAddress.setInternal(StringUtils.join(internal, " "));
                 if (!isset(streetAddress.getLocation())) {
-                    streetAddress.setLocation(addrParts[2]);
-                    logger.debug("Location: " + streetAddress.getLocation());
+                    streetAddress.setLocation(normalize(text.substring(addrParts[2], addrParts[3])));
                 }
             }
             else {
-                LinkedList<String> intParts;
-                /** Handle the following cases:
-                 *  Street, Apartment
-                 *  Street, Location
-                 */
-                if (addrParts.length == 2) {
-                    intParts = new LinkedList<>(stParts);
-                    String internal = extractInternal(intParts, stParts, streetAddress);
-                    if (!internal.isEmpty()) {
-                        streetAddress.setInternal(internal);
-                        logger.debug("Internal: " + streetAddress.getInternal());
-                        if (!isset(streetAddress.getLocation())) {
-                            streetAddress.setLocation(normalize(addrParts[1]));
-                            logger.debug("Location: " + streetAddress.getLocation());
-                        }
+                internal = extractInternal(splitWords(text, addrParts[2], addrParts[3]), false);
+                if (internal != null) {
+                    streetAddress.setInternal(StringUtils.join(internal, " "));
+                }
+                else if (!isset(streetAddress.getLocation())) {
+                    streetAddress.setLocation(normalize(text.substring(addrParts[2], addrParts[3])));
+                }
+            }
+        }
+        else {
+            List<String> internal = extractInternal(stParts, true);
+
+            /** If an internal is found, it might be possible that the location is also included.
+             *  Here we determine the bounds of the internal component and set whatever is to the right
+             *  of that bound as the location */
+            if (internal != null) {
+                /** Words of other whitespace are empty once trimmed and do not count at the end */
+                while (internal.get(internal.size() - 1).isEmpty()) {
+                    internal.remove(internal.size() - 1);
+                }
+                int loc = -1;
+                boolean single = false;
+                for (int i = 0; i < internal.size(); i++) {
+                    if (isUnit(internal.get(i))) {
+                        loc = i;
+                        break;
                     }
-                    else {
-                        intParts = new LinkedList<>(Arrays.asList(addrParts[1].split(" ")));
-                        normalize(intParts);
-                        internal = extractInternal(intParts, null, streetAddress);
-                        if (!internal.isEmpty()) {
-                            streetAddress.setInternal(internal);
-                            logger.debug("Internal: " + streetAddress.getInternal());
-                        }
-                        else {
-                            if (!isset(streetAddress.getLocation())) {
-                                streetAddress.setLocation(normalize(addrParts[1]));
-                                logger.debug("Location: " + streetAddress.getLocation());
-                            }
-                        }
+                    else if (isUnitWithNumber(internal.get(i))) {
+                        loc = i;
+                        single = true;
+                        break;
                     }
                 }
-                else {
-                    intParts = new LinkedList<>(stParts);
-                    String internal = extractInternal(intParts, stParts, streetAddress);
-
-                    /** If an internal is found, it might be possible that the location is also included.
-                     *  Here we determine the bounds of the internal component and set whatever is to the right
-                     *  of that bound as the location */
-                    if (!internal.isEmpty()) {
-                        LinkedList<String> intList = new LinkedList<>(Arrays.asList(internal.split(" ")));
-                        int loc = -1;
-                        boolean single = false;
-                        for (int i = 0; i < intList.size(); i++) {
-                            if (intList.get(i).matches(unitRegex + "#?")) {
-                                loc = i;
-                                break;
-                            }
-                            else if (intList.get(i).matches(unitRegex + "([-#a-zA-Z0-9]+)?")) {
-                                loc = i;
-                                single = true;
-                                break;
-                            }
-                        }
-                        if (loc > -1 && loc != intList.size() - 1) {
-                            if (single) {
-                                streetAddress.setInternal(StringUtils.join(intList.subList(0, loc + 1), " "));
-                                if (!isset(streetAddress.getLocation())) {
-                                    streetAddress.setLocation(StringUtils.join(intList.subList(loc + 1, intList.size()), " "));
-                                }
-                            }
-                            else {
-                                if (intList.get(loc + 1).equals("#")) {
-                                    streetAddress.setInternal(StringUtils.join(intList.subList(0, loc + 3), " "));
-                                    if (!isset(streetAddress.getLocation())) {
-                                        streetAddress.setLocation(StringUtils.join(intList.subList(loc + 3, intList.size()), " "));
-                                    }
-                                }
-                                else {
-                                    streetAddress.setInternal(StringUtils.join(intList.subList(0, loc + 2), " "));
-                                    if (!isset(streetAddress.getLocation())) {
-                                        streetAddress.setLocation(StringUtils.join(intList.subList(loc + 2, intList.size()), " "));
-                                    }
-                                }
-                            }
-                            logger.debug("Internal: " + streetAddress.getInternal());
-                            logger.debug("Location: " + streetAddress.getLocation());
-                        }
+                if (loc > -1 && loc != internal.size() - 1) {
+                    int internalEnd = (single) ? loc + 1 : (internal.get(loc + 1).equals("#")) ? loc + 3 : loc + 2;
+                    streetAddress.setInternal(StringUtils.join(internal.subList(0, internalEnd), " "));
+                    if (!isset(streetAddress.getLocation())) {
+                        streetAddress.setLocation(StringUtils.join(internal.subList(internalEnd, internal.size()), " "));
                     }
                 }
             }
+        }
 
-            /** Look for street type. */
-            LinkedList<String> stPartsClone = new LinkedList<>(stParts),
-                               stTypeList = new LinkedList<>(),
-                               locList = new LinkedList<>();
+        /** Try to match a street/highway type by iteratively shrinking the input from the right. The words
+         *  after the street type are the post-directional and/or the location. */
+        List<String> stTypeList = Collections.emptyList();
+        int typeEnd = stParts.size();
+        for (; typeEnd > 1; typeEnd--) {
+            stTypeList = extractStreetType(stParts, typeEnd, streetAddress);
+            if (!stTypeList.isEmpty()) {
+                break;
+            }
+        }
 
+        /** If street type was found and there was more after it, check for postDir and location */
+        if (!stTypeList.isEmpty() && typeEnd < stParts.size()) {
+            List<String> locList = new ArrayList<>(stParts.subList(typeEnd, stParts.size()));
 
-            /** Try to match a street/highway type by iteratively shrinking the input from the right */
-            while (stTypeList.isEmpty() && stPartsClone.size() > 1) {
-                stTypeList = extractStreetType(stPartsClone, streetAddress);
-                if (stTypeList.isEmpty() && stPartsClone.size() > 1) {
-                    locList.push(stPartsClone.removeLast());
-                }
+            /** Look for post-directional */
+            String postDir = AddressDictionary.directionMap.get(locList.get(0));
+            if (postDir != null) {
+                streetAddress.setPostDir(postDir);
+                stParts.remove(locList.get(0));
+                locList.remove(0);
             }
 
-            /** If street type was found and there was more after it, check for postDir and location */
-            if (!stTypeList.isEmpty() && !locList.isEmpty()) {
+            /** Anything remaining is assumed to be the location if not already set */
+            if (!locList.isEmpty() && !isset(streetAddress.getLocation())) {
+                streetAddress.setLocation(StringUtils.join(locList, " "));
+                stParts.removeAll(locList);
+            }
+        }
 
-                /** Look for post-directional */
-                String postDir = locList.getFirst();
-                if (dirSet.contains(postDir)) {
-                    streetAddress.setPostDir(AddressDictionary.directionMap.get(postDir));
-                    logger.debug("PostDir: " + streetAddress.getPostDir());
-                    stParts.remove(postDir);
-                    locList.removeFirst();
-                }
+        /** Remove the street type from the street parts list */
+        stParts.removeAll(stTypeList);
 
-                /** Anything remaining is assumed to be the location if not already set */
-                if (!locList.isEmpty() && !isset(streetAddress.getLocation())) {
-                    streetAddress.setLocation(StringUtils.join(locList, " "));
-                    logger.debug("Location due to street type search: " + streetAddress.getLocation());
-                    stParts.removeAll(locList);
-                }
+        /** Check for PO BOX addresses */
+        String streetName = StringUtils.join(stParts, " ");
+        int[] poBox = findPoBox(streetName);
+        if (poBox != null) {
+            streetAddress.setPoBox(streetName.substring(poBox[1], poBox[2]));
+            if (!isset(streetAddress.getLocation())) {
+                streetAddress.setLocation(streetName.replace(streetName.substring(poBox[0], poBox[2]), ""));
             }
+        }
+        /** Highway street names should be a single word. Any excess should be the location */
+        else if (streetAddress.isHwy() && !isset(streetAddress.getLocation()) && !streetName.isEmpty()) {
+            String[] streetNameWords = streetName.split(" ");
+            streetAddress.setStreetName(streetNameWords[0]);
+            streetAddress.setLocation(StringUtils.join(streetNameWords, " ", 1, streetNameWords.length));
+        }
+        else {
+            streetAddress.setStreetName(streetName);
+        }
 
-            /** Remove the street type from the street parts list */
-            stParts.removeAll(stTypeList);
+        /** If a 'street' was found but it doesn't have a building number and a street type, it's probably the location. */
+        if (streetAddress.getStreetType().isEmpty() && streetAddress.getBldgNum() == 0
+            && streetAddress.getLocation().isEmpty() && !streetAddress.getStreet().isEmpty()) {
+            streetAddress.setLocation(streetAddress.getStreet());
+            streetAddress.setStreetName("");
+        }
+    }
 
-            /** Check for PO BOX addresses */
-            String streetName = StringUtils.join(stParts, " ");
-            Matcher m = Pattern.compile(poBoxRegex).matcher(streetName);
-            if (m.find()) {
-                streetAddress.setPoBox(m.group(1));
-                logger.debug("PO BOX: " + streetAddress.getPoBox());
-                if (!isset(streetAddress.getLocation())) {
-                    streetAddress.setLocation(streetName.replace(m.group(0), ""));
-                    logger.debug("Location: " + streetAddress.getLocation());
-                }
-            }
-            else {
-                /** Highway street names should be a single word. Any excess should be the location */
-                if (streetAddress.isHwy() && !isset(streetAddress.getLocation()) && !streetName.isEmpty()) {
-                    LinkedList<String> streetNameList = new LinkedList<>(Arrays.asList(streetName.split(" ")));
-                    streetAddress.setStreetName(streetNameList.get(0));
-                    if (!isset(streetAddress.getLocation())) {
-                        streetAddress.setLocation(StringUtils.join(streetNameList.subList(1, streetNameList.size()), " "));
-                        logger.debug("Location: " + streetAddress.getLocation());
-                    }
-                    logger.debug("StreetName: " + streetAddress.getStreetName());
+    /**
+     * Finds the comma separated parts of text[begin, end). Trailing empty parts are dropped, as with String.split.
+     * @param bounds Receives the start and end of the first three parts
+     * @return Number of parts
+     */
+    private static int splitParts(String text, int begin, int end, int[] bounds)
+    {
+        int count = 0, lastNonEmpty = 0, partStart = begin;
+        for (int i = begin; i <= end; i++) {
+            if (i == end || text.charAt(i) == ',') {
+                if (count < 3) {
+                    bounds[2 * count] = partStart;
+                    bounds[2 * count + 1] = i;
                 }
-                else {
-                    streetAddress.setStreetName(streetName);
-                    logger.debug("StreetName: " + streetAddress.getStreetName());
+                count++;
+                if (i > partStart) {
+                    lastNonEmpty = count;
                 }
+                partStart = i + 1;
             }
+        }
+        return (count > 1) ? lastNonEmpty : count;
+    }
 
-            /** If a 'street' was found but it doesn't have a building number and a street type, it's probably the location. */
-            if (streetAddress.getStreetType().isEmpty() && streetAddress.getBldgNum() == 0
-                && streetAddress.getLocation().isEmpty() && !streetAddress.getStreet().isEmpty()) {
-                streetAddress.setLocation(streetAddress.getStreet());
-                streetAddress.setStreetName("");
+    /**
+     * Splits text[begin, end) on spaces into upper case, trimmed words. Trailing empty words are dropped, as
+     * with String.split.
+     */
+    private static List<String> splitWords(String text, int begin, int end)
+    {
+        List<String> words = new ArrayList<>();
+        int lastNonEmpty = 0, wordStart = begin;
+        for (int i = begin; i <= end; i++) {
+            if (i == end || text.charAt(i) == ' ') {
+                words.add(normalize(text.substring(wordStart, i)));
+                if (i > wordStart) {
+                    lastNonEmpty = words.size();
+                }
+                wordStart = i + 1;
             }
         }
-
-        return addressStr;
+        if (words.size() > 1) {
+            words.subList(lastNonEmpty, words.size()).clear();
+        }
+        return words;
     }
 
     /**
     * Look for a street or highway type designator in the list of street parts provided
     * @param sts  List of street level words
+    * @param end  Number of words to search
     * @return List of words that comprise the street type or empty list if nothing matched
     */
-    private static LinkedList<String> extractStreetType(LinkedList<String> sts, StreetAddress streetAddress)
+    private static List<String> extractStreetType(List<String> sts, int end, StreetAddress streetAddress)
     {
-        String streetType = null;
         /** Look for regular street types. Street types have street names before type. */
-        LinkedList<String> sList = new LinkedList<>(sts);
-        while (sList.size() > 0) {
-            String type = StringUtils.join(sList, " ");
-            if (streetTypeSet.contains(type)) {
-                streetType = normalize(AddressDictionary.streetTypeMap.get(type));
-                streetAddress.setStreetType(streetType);
-                logger.debug("StreetType: " + streetAddress.getStreetType());
-                break;
-            }
-            else {
-                sList.pop();
+        for (int start = 0; start < end; start++) {
+            String type = streetTypeTrie.get(sts, start, end);
+            if (type != null) {
+                streetAddress.setStreetType(normalize(type));
+                return new ArrayList<>(sts.subList(start, end));
             }
         }
 
         /** Look for highway type. Highway types have street names after street type.
          *  This essentially does the same search above but in reverse. */
-        if (streetType == null) {
-            sList = new LinkedList<>(sts);
-            while (sList.size() > 0) {
-                String type = StringUtils.join(sList, " ");
-                if (highWaySet.contains(type)) {
-                    streetAddress.setStreetType(normalize(AddressDictionary.highWayMap.get(type)));
-                    streetAddress.setHwy(true);
-                    logger.debug("HighwayType: " + streetAddress.getStreetType());
-                    break;
-                }
-                else {
-                    sList.removeLast();
-                }
+        int typeEnd = highWayTrie.longestMatch(sts, 0, end);
+        if (typeEnd > 0) {
+            streetAddress.setStreetType(normalize(highWayTrie.get(sts, 0, typeEnd)));
+            streetAddress.setHwy(true);
+            return new ArrayList<>(sts.subList(0, typeEnd));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+    * Checks if the word is a unit type, optionally followed by a '#' (e.g. APT or APT#)
+    */
+    private static boolean isUnit(String word)
+    {
+        if (unitTrie.get(word) != null) {
+            return true;
+        }
+        return word.endsWith("#") && unitTrie.get(word.substring(0, word.length() - 1)) != null;
+    }
+
+    /**
+    * Checks if the word is a unit type followed by a unit number (e.g. APT3B or RM#12)
+    */
+    private static boolean isUnitWithNumber(String word)
+    {
+        int unitEnd = unitTrie.shortestPrefix(word);
+        if (unitEnd == 0) {
+            return false;
+        }
+        for (int i = unitEnd; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!(c == '-' || c == '#' || isLetter(c) || isDigit(c))) {
+                return false;
             }
         }
-        return sList;
+        return true;
     }
 
     /**
-    * Attempts to find an internal component from the given list of candidates.
-    * @param candidates     List of words that are extracted from the street level portion of the address string
-    * @param streetList     The overall street level list that could be the same as the candidates list
-    *                       If a match for a unit type is found in candidates, it will be removed from streetList.
-    * @param streetAddress  StreetAddress to set
-    * @return String representation of the matched internal component
+    * Attempts to find an internal component in the given list of words, starting at the first unit type or
+    * word containing a '#'.
+    * @param words   List of words that are extracted from the street level portion of the address string
+    * @param remove  If true, every word that is equal to a word of the internal component is removed from words.
+    * @return Words of the internal component with the unit type abbreviated, or null if there is none.
     */
-    private static String extractInternal(LinkedList<String> candidates, LinkedList<String> streetList, StreetAddress streetAddress)
-    {
-        String internal = "";
-        while (candidates.size() > 0) {
-            String s = candidates.peek();
-            if (unitSet.contains(s) || unitSet.contains(s.replace("#", "")) || s.contains("#")) {
-                String unit = AddressDictionary.unitMap.get(s);
-                /** Remove from original list */
-                if (streetList != null) {
-                    streetList.removeAll(candidates);
+    private static List<String> extractInternal(List<String> words, boolean remove)
+    {
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (word.indexOf('#') >= 0 || unitSet.contains(word)) {
+                List<String> internal = new ArrayList<>(words.subList(i, words.size()));
+                if (remove) {
+                    words.removeAll(internal);
                 }
+                String unit = AddressDictionary.unitMap.get(word);
                 if (unit != null) {
-                    candidates.set(0, unit);
+                    internal.set(0, unit);
+                }
+                return internal;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the first PO BOX in the street name along with its number.
+     * @return Start of the PO BOX, start of its number and end of its number, or null if there is none.
+     */
+    private static int[] findPoBox(String street)
+    {
+        for (int start = 0; start < street.length(); start++) {
+            for (String prefix : poBoxPrefixes) {
+                int boxStart = start + prefix.length();
+                if (matchesIgnoreCase(street, start, prefix) && matchesIgnoreCase(street, boxStart, "BOX")) {
+                    /** Skip separators up to the number */
+                    int numStart = boxStart + 3;
+                    while (numStart < street.length() && !isDigit(street.charAt(numStart))
+                           && (street.charAt(numStart) == ' ' || (street.charAt(numStart) >= '#' && street.charAt(numStart) <= ':'))) {
+                        numStart++;
+                    }
+                    if (numStart < street.length() && isDigit(street.charAt(numStart))) {
+                        int numEnd = numStart;
+                        while (numEnd < street.length() && isDigit(street.charAt(numEnd))) {
+                            numEnd++;
+                        }
+                        return new int[] {start, numStart, numEnd};
+                    }
                 }
-                internal = StringUtils.join(candidates, " ");
-                break;
             }
-            candidates.pop();
         }
-        return internal;
+        return null;
+    }
+
+    /**
+     * @return true if s has the pattern at i, ignoring ASCII case. A '.' in the pattern matches any character
+     *         other than a line terminator.
+     */
+    private static boolean matchesIgnoreCase(String s, int i, String pattern)
+    {
+        if (i + pattern.length() > s.length()) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length(); j++) {
+            char c = s.charAt(i + j), p = pattern.charAt(j);
+            if (p == '.') {
+                if (isLineTerminator(c)) {
+                    return false;
+                }
+            }
+            else if (c != p && !(c >= 'a' && c <= 'z' && c - 'a' + 'A' == p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c)
+    {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWordChar(char c)
+    {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private static boolean isSeparator(char c)
+    {
+        return c == ' ' || c == ',';
     }
 
     /**
@@ -504,14 +831,4 @@ public abstract class StreetAddressParser
         }
         return s;
     }
-
-    /**
-    * Shorthand for performing uppercase and trim on each string in a list.
-    */
-    private static void normalize(List<String> list)
-    {
-        for (int i = 0; i < list.size(); i++) {
-            list.set(i, normalize(list.get(i)));
-        }
-    }
 }
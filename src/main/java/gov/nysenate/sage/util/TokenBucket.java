@@ -0,0 +1,88 @@
+package gov.nysenate.sage.util;
+
+/**
+ * Token bucket that allows up to ratePerSec requests per second with bursts of up to capacity requests.
+ * Callers that are willing to wait reserve a future token so that a burst of requests is spread out
+ * evenly over time instead of being rejected.
+ */
+public class TokenBucket
+{
+    private final double ratePerSec;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSec    Number of tokens added per second.
+     * @param capacity      Maximum number of tokens that can accumulate.
+     */
+    public TokenBucket(double ratePerSec, double capacity)
+    {
+        this.ratePerSec = ratePerSec;
+        this.capacity = Math.max(capacity, 1);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a token if one will be available within maxWaitMs.
+     * @param maxWaitMs Maximum time the caller is willing to wait
+     * @return The time (in ms) the caller must wait before using the token, or -1 if no token was reserved.
+     */
+    public synchronized long reserve(long maxWaitMs)
+    {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        long waitMs = (long) Math.ceil((1 - tokens) / ratePerSec * 1000);
+        if (waitMs > maxWaitMs) {
+            return -1;
+        }
+        /** Tokens go negative to hold the place of the callers that are waiting */
+        tokens -= 1;
+        return waitMs;
+    }
+
+    /**
+     * Acquires a token, waiting up to maxWaitMs for one to become available.
+     * @param maxWaitMs Maximum time to wait (0 to fail immediately)
+     * @return true if a token was acquired
+     */
+    public boolean tryAcquire(long maxWaitMs)
+    {
+        long waitMs = reserve(maxWaitMs);
+        if (waitMs < 0) {
+            return false;
+        }
+        if (waitMs > 0) {
+            try {
+                Thread.sleep(waitMs);
+            }
+            catch (InterruptedException ex) {
+                /** The reserved token is never used so give it back */
+                release();
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a reserved token that will not be used.
+     */
+    public synchronized void release()
+    {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    private void refill()
+    {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * ratePerSec);
+        lastRefillNanos = now;
+    }
+}
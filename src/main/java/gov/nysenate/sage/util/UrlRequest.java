@@ -1,114 +1,168 @@
 package gov.nysenate.sage.util;
 
+import gov.nysenate.sage.factory.ApplicationFactory;
+import gov.nysenate.sage.factory.SageThreadFactory;
 import oauth.signpost.OAuthConsumer;
 import oauth.signpost.basic.DefaultOAuthConsumer;
 import oauth.signpost.exception.OAuthCommunicationException;
 import oauth.signpost.exception.OAuthExpectationFailedException;
 import oauth.signpost.exception.OAuthMessageSignerException;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DecompressingHttpClient;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.concurrent.*;
 
+/**
+ * HTTP transport used by the provider DAOs. Requests share a pooled client so that connections (and TLS
+ * sessions) to each provider are kept alive and reused instead of being opened for every request. Gzip and
+ * deflate responses are requested and decompressed transparently.
+ *
+ * Responses can be read into a String, or streamed straight into a parser using a ResponseReader. The async
+ * methods run the request on a dedicated thread pool and return a CompletableFuture.
+ *
+ * A request that cannot get a pooled connection within http.pool.wait ms fails with a
+ * ConnectionPoolTimeoutException (an IOException), which the DAOs report as a provider error.
+ */
 public abstract class UrlRequest
 {
     public static Logger logger = Logger.getLogger(UrlRequest.class);
     private static int CONNECTION_TIMEOUT = 10000;
     private static int RESPONSE_TIMEOUT = 30000;
+    private static int MAX_CONNECTIONS = 100;
+    private static int MAX_CONNECTIONS_PER_HOST = 20;
+    private static int ASYNC_THREAD_COUNT = 10;
+    private static long POOL_WAIT_MS = 2000;
+
+    private static PoolingClientConnectionManager connectionManager;
+    private static HttpClient httpClient;
+    private static ExecutorService executor;
+
+    static {
+        Config config = ApplicationFactory.getConfig();
+        if (config != null) {
+            MAX_CONNECTIONS = Integer.parseInt(config.getValue("http.max.connections", "100"));
+            MAX_CONNECTIONS_PER_HOST = Integer.parseInt(config.getValue("http.max.connections.host", "20"));
+            ASYNC_THREAD_COUNT = Integer.parseInt(config.getValue("http.async.threads", "10"));
+            POOL_WAIT_MS = Long.parseLong(config.getValue("http.pool.wait", "2000"));
+        }
+        connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+        httpClient = createHttpClient(connectionManager, POOL_WAIT_MS);
+
+        executor = Executors.newFixedThreadPool(ASYNC_THREAD_COUNT, new SageThreadFactory("http"));
+    }
+
+    /**
+     * Reads a successful response body. The stream is closed (and the connection returned to the pool)
+     * once read() returns.
+     * @param <T> Type of the parsed response
+     */
+    public interface ResponseReader<T>
+    {
+        T read(InputStream inputStream) throws IOException;
+    }
+
+    private static final ResponseReader<String> STRING_READER = new ResponseReader<String>() {
+        @Override
+        public String read(InputStream inputStream) throws IOException {
+            String response = IOUtils.toString(inputStream, "UTF-8");
+            logger.trace("Retrieved string of length " + response.length());
+            return response;
+        }
+    };
+
+    private static final ResponseReader<InputStream> BUFFERED_READER = new ResponseReader<InputStream>() {
+        @Override
+        public InputStream read(InputStream inputStream) throws IOException {
+            return new ByteArrayInputStream(IOUtils.toByteArray(inputStream));
+        }
+    };
 
     /**
     * Connects to a url and retrieves the body response in String representation.
-    * This function can alternatively be implemented using the code snippet below
-    * but this produces unnecessarily detailed logs.
-    * <code>
-    *     Content content = Request.Get(url).execute().returnContent();
-    *     String response = content.asString();
-    * </code>
     *
     * @param url   Url request string
-    * @return      String containing response
+    * @return      String containing response, null if the request was not successful
     * @throws MalformedURLException
     * @throws IOException
     */
     public static String getResponseFromUrl(String url) throws IOException
     {
-        InputStream inputStream = getInputStreamFromUrl(url);
-        return getResponseFromInputStream(inputStream);
+        return readFromUrl(url, STRING_READER);
     }
 
-    private static String getResponseFromInputStream(InputStream inputStream) throws IOException
+    /**
+     * Connects to a url and streams the body response into the given reader.
+     * @param url       Url request string
+     * @param reader    ResponseReader that parses the response body
+     * @return          T returned by the reader, null if the request was not successful
+     * @throws IOException
+     */
+    public static <T> T readFromUrl(String url, ResponseReader<T> reader) throws IOException
     {
-        if (inputStream != null) {
-            String response = IOUtils.toString(inputStream);
-            logger.trace("Retrieved string of length " + response.length());
-            logger.trace("Response: " + response);
-            return response;
-        }
-        else {
-            return null;
-        }
+        return execute(new HttpGet(toUri(url)), reader);
     }
 
     /**
-    * Retrieves an input stream from a url resource
+    * Retrieves an input stream from a url resource. The response is buffered so that the
+    * connection can be returned to the pool right away.
     * @param url
-    * @return
+    * @return InputStream, null if the request was not successful
     * @throws IOException
     */
     public static InputStream getInputStreamFromUrl(String url) throws IOException
     {
-        URL u = new URL(url);
-        logger.debug("Requesting connection to " + url.toString());
-        HttpURLConnection uc = getHttpURLConnection(u);
-        int responseCode = uc.getResponseCode();
-        logger.debug("Connection replied with response code: " + responseCode);
-
-        if (responseCode >= 400) {
-            logger.error("Failed to get a successful response. Returning null input stream.");
-            return null;
-        }
-
-        InputStream inputStream = uc.getInputStream();
-        logger.trace("Retrieved input stream");
-        return inputStream;
+        return readFromUrl(url, BUFFERED_READER);
     }
 
     public static String getResponseFromUrlUsingPOST(String url, String postBody) throws IOException
     {
-        InputStream inputStream = getInputStreamFromUrlUsingPOST(url, postBody);
-        return getResponseFromInputStream(inputStream);
+        return readFromUrlUsingPOST(url, postBody, STRING_READER);
     }
 
     public static InputStream getInputStreamFromUrlUsingPOST(String url, String postBody) throws IOException
     {
-        URL u = new URL(url);
-        logger.debug("Requesting connection to " + url.toString());
-        HttpURLConnection uc = getHttpURLConnection(u);
-        uc.setRequestMethod("POST");
-        uc.setDoOutput(true);
-        uc.setRequestProperty("Content-Length", String.valueOf(postBody.length()));
-        uc.setRequestProperty("Content-Type", "text/javascript");
-        OutputStream os = uc.getOutputStream();
-        os.write(postBody.getBytes());
-        os.flush();
-        os.close();
-
-        int responseCode = uc.getResponseCode();
-        logger.debug("Connection replied with response code: " + responseCode);
-
-        if (responseCode >= 400) {
-            logger.error("Failed to get a successful response. Returning null input stream.");
-            return null;
-        }
+        return readFromUrlUsingPOST(url, postBody, BUFFERED_READER);
+    }
 
-        InputStream inputStream = uc.getInputStream();
-        logger.trace("Retrieved input stream");
-        return inputStream;
+    /**
+     * Posts the body to the url and streams the body response into the given reader.
+     * @param url       Url request string
+     * @param postBody  Request body
+     * @param reader    ResponseReader that parses the response body
+     * @return          T returned by the reader, null if the request was not successful
+     * @throws IOException
+     */
+    public static <T> T readFromUrlUsingPOST(String url, String postBody, ResponseReader<T> reader) throws IOException
+    {
+        HttpPost httpPost = new HttpPost(toUri(url));
+        httpPost.setEntity(new StringEntity(postBody, ContentType.create("text/javascript", "UTF-8")));
+        return execute(httpPost, reader);
     }
 
     /**
@@ -116,12 +170,12 @@ public abstract class UrlRequest
     * @param url            Request Url
     * @param consumerKey    Consumer Key for OAuth request
     * @param consumerSecret Consumer Secret for OAuth request
-    * @return               InputStream on success, null otherwise
+    * @return               String on success, null otherwise
     */
     public static String getResponseFromUrlUsingOauth(String url, String consumerKey, String consumerSecret) throws IOException
     {
-        InputStream inputStream = getInputStreamFromUrlUsingOauth(url, consumerKey, consumerSecret);
-        return getResponseFromInputStream(inputStream);
+        String signedUrl = signUrl(url, consumerKey, consumerSecret);
+        return (signedUrl != null) ? getResponseFromUrl(signedUrl) : null;
     }
 
     /**
@@ -133,23 +187,148 @@ public abstract class UrlRequest
     */
     public static InputStream getInputStreamFromUrlUsingOauth(String url, String consumerKey, String consumerSecret) throws IOException
     {
+        String signedUrl = signUrl(url, consumerKey, consumerSecret);
+        return (signedUrl != null) ? getInputStreamFromUrl(signedUrl) : null;
+    }
+
+    /**
+     * Streams the body response of an OAuth signed url request into the given reader.
+     * @param url            Request Url
+     * @param consumerKey    Consumer Key for OAuth request
+     * @param consumerSecret Consumer Secret for OAuth request
+     * @param reader         ResponseReader that parses the response body
+     * @return               T returned by the reader, null if the request could not be signed or was not successful
+     */
+    public static <T> T readFromUrlUsingOauth(String url, String consumerKey, String consumerSecret, ResponseReader<T> reader)
+        throws IOException
+    {
+        String signedUrl = signUrl(url, consumerKey, consumerSecret);
+        return (signedUrl != null) ? readFromUrl(signedUrl, reader) : null;
+    }
+
+    /**
+     * Asynchronously retrieves the body response of the url.
+     * @param url Url request string
+     * @return CompletableFuture that completes with the response (null if not successful) or
+     *         completes exceptionally if the request failed.
+     */
+    public static CompletableFuture<String> getResponseFromUrlAsync(String url)
+    {
+        return readFromUrlAsync(url, STRING_READER);
+    }
+
+    /**
+     * Asynchronously streams the body response of the url into the given reader.
+     * @param url       Url request string
+     * @param reader    ResponseReader that parses the response body
+     * @return CompletableFuture that completes with the value returned by the reader (null if not successful)
+     *         or completes exceptionally if the request failed.
+     */
+    public static <T> CompletableFuture<T> readFromUrlAsync(final String url, final ResponseReader<T> reader)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
         try {
-            logger.debug("Requesting connection to: " + url);
-            URL u = new URL(url);
-            HttpURLConnection uc = getHttpURLConnection(u);
-            OAuthConsumer consumer = new DefaultOAuthConsumer(consumerKey, consumerSecret);
-            consumer.sign(uc);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(readFromUrl(url, reader));
+                    }
+                    catch (Exception ex) {
+                        future.completeExceptionally(ex);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
 
-            int responseCode = uc.getResponseCode();
-            if (responseCode >= 400) {
-                logger.error("Service responded with error code (" + responseCode + "): " + uc.getResponseMessage() + ". " + IOUtils.toString(uc.getErrorStream()));
-                return null;
-            }
+    /**
+     * Closes the pooled connections and stops the async request threads.
+     */
+    public static void shutdown()
+    {
+        executor.shutdownNow();
+        connectionManager.shutdown();
+    }
 
-            return uc.getInputStream();
+    /**
+     * Creates a client that draws its connections from the given pool.
+     * @param connectionManager Connection pool
+     * @param poolWaitMs        Maximum time to wait for a free connection in the pool
+     */
+    static HttpClient createHttpClient(PoolingClientConnectionManager connectionManager, long poolWaitMs)
+    {
+        DefaultHttpClient defaultHttpClient = new DefaultHttpClient(connectionManager);
+        HttpParams params = defaultHttpClient.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, CONNECTION_TIMEOUT);
+        HttpConnectionParams.setSoTimeout(params, RESPONSE_TIMEOUT);
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        params.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, poolWaitMs);
+        return new DecompressingHttpClient(defaultHttpClient);
+    }
+
+    /**
+     * Executes the request using the pooled client. The connection is released back to the pool once the
+     * response has been read.
+     */
+    private static <T> T execute(final HttpUriRequest request, final ResponseReader<T> reader) throws IOException
+    {
+        return execute(httpClient, request, reader);
+    }
+
+    /**
+     * Executes the request using the given client.
+     * @throws ConnectionPoolTimeoutException if no pooled connection became free in time
+     */
+    static <T> T execute(HttpClient httpClient, final HttpUriRequest request, final ResponseReader<T> reader)
+        throws IOException
+    {
+        logger.debug("Requesting connection to " + request.getURI());
+        try {
+            return httpClient.execute(request, new ResponseHandler<T>() {
+                @Override
+                public T handleResponse(HttpResponse response) throws IOException {
+                    int responseCode = response.getStatusLine().getStatusCode();
+                    logger.debug("Connection replied with response code: " + responseCode);
+                    HttpEntity entity = response.getEntity();
+                    if (responseCode >= 400) {
+                        logger.error("Service responded with error code (" + responseCode + "): " +
+                                     response.getStatusLine().getReasonPhrase() + ". " +
+                                     ((entity != null) ? EntityUtils.toString(entity) : ""));
+                        return null;
+                    }
+                    if (entity == null) {
+                        return null;
+                    }
+                    InputStream inputStream = entity.getContent();
+                    try {
+                        return reader.read(inputStream);
+                    }
+                    finally {
+                        inputStream.close();
+                    }
+                }
+            });
         }
-        catch(MalformedURLException ex) {
-            logger.error("Malformed Url in Oauth Request: " + ex.getMessage(), ex);
+        catch (ConnectionPoolTimeoutException ex) {
+            logger.error("No pooled connection available for " + request.getURI().getHost() + ". Request rejected.");
+            throw ex;
+        }
+    }
+
+    /**
+     * Signs the url with the OAuth query string parameters.
+     * @return Signed url, or null if the url could not be signed.
+     */
+    private static String signUrl(String url, String consumerKey, String consumerSecret)
+    {
+        try {
+            OAuthConsumer consumer = new DefaultOAuthConsumer(consumerKey, consumerSecret);
+            return consumer.sign(url);
         }
         catch (OAuthExpectationFailedException |
                OAuthCommunicationException |
@@ -160,16 +339,22 @@ public abstract class UrlRequest
     }
 
     /**
-     * Returns a HttpURLConnection object using the URL supplied. Timeout options are set as well.
-     * @param u URL
-     * @return HttpURLConnection
-     * @throws IOException
+     * Converts the url string to a URI, quoting any characters that are not legal in a URI.
+     * @throws MalformedURLException if the url cannot be parsed
      */
-    private static HttpURLConnection getHttpURLConnection(URL u) throws IOException
+    private static URI toUri(String url) throws MalformedURLException
     {
-        HttpURLConnection uc = (HttpURLConnection) u.openConnection();
-        uc.setConnectTimeout(CONNECTION_TIMEOUT);
-        uc.setReadTimeout(RESPONSE_TIMEOUT);
-        return uc;
+        try {
+            return new URI(url);
+        }
+        catch (URISyntaxException ex) {
+            URL u = new URL(url);
+            try {
+                return new URI(u.getProtocol(), u.getAuthority(), u.getPath(), u.getQuery(), u.getRef());
+            }
+            catch (URISyntaxException ex2) {
+                throw new MalformedURLException("Malformed Url: " + url);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import gov.nysenate.sage.model.district.DistrictInfo;
 import gov.nysenate.sage.model.district.DistrictMap;
 import gov.nysenate.sage.model.district.DistrictType;
 import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.service.district.DistrictPolygonIndex;
 import gov.nysenate.sage.util.FormatUtil;
 import org.apache.log4j.Logger;
 import org.junit.Before;
@@ -13,12 +14,14 @@ import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class DistrictShapefileDaoTest extends TestBase
 {
@@ -92,4 +95,115 @@ public class DistrictShapefileDaoTest extends TestBase
         String jsonGeom = "{\"type\":\"MultiLineString\",\"coordinates\":[[[-73.799332,40.723235],[-73.798728,40.721816],[-73.798099,40.720345]],[[-73.796475,40.717592],[-73.795825,40.716267],[-73.794736,40.714057],[-73.793903,40.71237],[-73.793038,40.710711],[-73.792621,40.709997],[-73.792166,40.709218],[-73.791674,40.708379],[-73.791292,40.707725],[-73.790796,40.70687]],[[-73.789193,40.703204],[-73.788597,40.702103],[-73.788157,40.701268],[-73.787816,40.700544],[-73.787599,40.699866]],[[-73.783933,40.695494],[-73.783428,40.694702],[-73.782836,40.693897],[-73.781687,40.692315],[-73.780782,40.69103],[-73.779773,40.689281],[-73.778805,40.687623],[-73.77785,40.685989],[-73.777049,40.684622]],[[-73.771178,40.672531],[-73.770997,40.67091],[-73.770818,40.669016],[-73.770932,40.66834]]]}";
         FormatUtil.printObject(dsDao.getIntersectingStreetLine(DistrictType.SENATE, new HashSet<String>(Arrays.asList("11", "14", "15")), jsonGeom));
     }
+
+    @Test
+    public void parsePolygonsTest()
+    {
+        List<List<double[]>> polygons = DistrictShapefileDao.parsePolygons("POLYGON((0 0,4 0,4 4,0 4,0 0),(1 1,2 1,2 2,1 1))");
+        assertEquals(1, polygons.size());
+        assertEquals(2, polygons.get(0).size());
+        assertEquals(10, polygons.get(0).get(0).length);
+        assertEquals(2.0, polygons.get(0).get(1)[2], 0);
+
+        polygons = DistrictShapefileDao.parsePolygons("MULTIPOLYGON(((0 0,1 0,1 1,0 0)),((5 5,6 5,6 6,5 5),(5.5 5.1,5.9 5.1,5.9 5.5,5.5 5.1)))");
+        assertEquals(2, polygons.size());
+        assertEquals(1, polygons.get(0).size());
+        assertEquals(2, polygons.get(1).size());
+        assertEquals(5.9, polygons.get(1).get(1)[2], 0);
+
+        assertNull(DistrictShapefileDao.parsePolygons(null));
+        assertNull(DistrictShapefileDao.parsePolygons("POLYGON((0 0,a b))"));
+    }
+
+    /** The in-memory index must return the same districts as the ST_Contains query across the state */
+    @Test
+    public void districtPolygonIndexMatchesPostgisTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        assertTrue(dsDao.cacheDistrictPolygonIndex(index));
+        int mismatches = 0;
+        for (double lat = 40.50; lat <= 45.00; lat += 0.1) {
+            for (double lon = -79.75; lon <= -71.85; lon += 0.1) {
+                Point point = new Point(lat, lon);
+                DistrictInfo dinfo = dsDao.getDistrictInfo(point, DistrictType.getStandardTypes(), false, false);
+                for (DistrictType type : DistrictType.getStandardTypes()) {
+                    DistrictPolygonIndex.District district = index.getDistrict(type, point);
+                    String code = (district != null) ? district.getCode() : null;
+                    if (code != null ? !code.equals(dinfo.getDistCode(type)) : dinfo.getDistCode(type) != null) {
+                        logger.warn(String.format("%s mismatch at %s: index %s, postgis %s", type, point, code, dinfo.getDistCode(type)));
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        assertEquals(0, mismatches);
+    }
+
+    /** Boundary distances measured in memory must agree with ST_Distance_Sphere to within a meter or 0.5% */
+    @Test
+    public void districtPolygonIndexProximityTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        assertTrue(dsDao.cacheDistrictPolygonIndex(index));
+        for (double lat = 40.50; lat <= 45.00; lat += 0.25) {
+            for (double lon = -79.75; lon <= -71.85; lon += 0.25) {
+                Point point = new Point(lat, lon);
+                DistrictInfo dinfo = dsDao.getDistrictInfo(point, DistrictType.getStandardTypes(), false, true);
+                for (DistrictType type : DistrictType.getStandardTypes()) {
+                    DistrictPolygonIndex.District district = index.getDistrict(type, point);
+                    if (district != null && dinfo.getDistProximity(type) != null) {
+                        double expected = dinfo.getDistProximity(type);
+                        assertEquals(expected, index.getBoundaryDistance(district, point), Math.max(1, expected * 0.005));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void districtPolygonIndexNeighborsTest() throws InterruptedException
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        assertTrue(dsDao.cacheDistrictPolygonIndex(index));
+        while (!index.hasNeighbors()) {
+            Thread.sleep(100);
+        }
+        for (double lat = 40.50; lat <= 45.00; lat += 0.05) {
+            for (double lon = -79.75; lon <= -71.85; lon += 0.05) {
+                Point point = new Point(lat, lon);
+                for (DistrictType type : DistrictType.getStandardTypes()) {
+                    DistrictPolygonIndex.District district = index.getDistrict(type, point);
+                    if (district != null && index.getBoundaryDistance(district, point) < 500) {
+                        List<String> expected = new ArrayList<>(dsDao.getNearbyDistricts(type, point, false, 500, 2).keySet());
+                        List<String> actual = new ArrayList<>();
+                        for (DistrictPolygonIndex.District nearby : index.getNearbyDistricts(district, point, 500, 2).keySet()) {
+                            actual.add(nearby.getCode());
+                        }
+                        assertEquals(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void districtInfoCacheTest()
+    {
+        Point point = new Point(42.6533, -73.7567);
+        List<DistrictType> types = DistrictType.getStandardTypes();
+        DistrictShapefileDao.clearDistrictInfoCache();
+        long hits = DistrictShapefileDao.getDistrictInfoCacheStats().getHits();
+
+        DistrictInfo first = dsDao.getDistrictInfo(point, types, false, true);
+        String senateCode = first.getDistCode(DistrictType.SENATE);
+        first.setDistCode(DistrictType.SENATE, "99");
+        DistrictInfo second = dsDao.getDistrictInfo(new Point(42.65330001, -73.75670001), types, false, true);
+        assertEquals(hits + 1, DistrictShapefileDao.getDistrictInfoCacheStats().getHits());
+        assertEquals(senateCode, second.getDistCode(DistrictType.SENATE));
+        assertEquals(first.getDistProximity(DistrictType.SENATE), second.getDistProximity(DistrictType.SENATE));
+
+        /** Different flags are cached separately */
+        dsDao.getDistrictInfo(point, types, false, false);
+        assertEquals(hits + 1, DistrictShapefileDao.getDistrictInfoCacheStats().getHits());
+    }
 }
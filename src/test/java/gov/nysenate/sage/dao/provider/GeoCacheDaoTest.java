@@ -12,9 +12,13 @@ import gov.nysenate.sage.util.TimeUtil;
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.Test;
 
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 
+import static org.junit.Assert.*;
+
 public class GeoCacheDaoTest extends TestBase
 {
     GeoCacheDao geoCacheDao = new GeoCacheDao();
@@ -43,4 +47,15 @@ public class GeoCacheDaoTest extends TestBase
         geoCacheDao.flushCacheBuffer();
         System.out.println("Elapsed time: " + TimeUtil.getElapsedMs(start) + " ms.");
     }
+
+    @Test
+    public void getBatchUpdateExceptionTest()
+    {
+        BatchUpdateException batchEx = new BatchUpdateException("rejected", new int[]{1});
+        SQLException wrapped = new SQLException("wrapped");
+        wrapped.setNextException(batchEx);
+        assertSame(batchEx, GeoCacheDao.getBatchUpdateException(wrapped));
+        assertSame(batchEx, GeoCacheDao.getBatchUpdateException(new SQLException("cause", batchEx)));
+        assertNull(GeoCacheDao.getBatchUpdateException(new SQLException("connection refused")));
+    }
 }
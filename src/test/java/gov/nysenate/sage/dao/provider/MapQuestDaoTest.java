@@ -0,0 +1,93 @@
+package gov.nysenate.sage.dao.provider;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.util.JsonStreamUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds recorded MapQuest responses to the streaming parser.
+ */
+public class MapQuestDaoTest
+{
+    private MapQuestDao mapQuestDao = new MapQuestDao();
+
+    private InputStream getResponse(String name)
+    {
+        return getClass().getResourceAsStream("/providerResponses/" + name);
+    }
+
+    @Test
+    public void responseHandlerCollectsInfoAndResultsTest() throws IOException
+    {
+        MapQuestDao.ResponseHandler responseHandler = mapQuestDao.new ResponseHandler();
+        JsonParser parser = new ObjectMapper().getFactory().createParser(getResponse("mapquestBatch.json"));
+        JsonStreamUtil.readObject(parser, responseHandler);
+        parser.close();
+        assertEquals(0, responseHandler.info.get("statuscode").asInt());
+        assertEquals(2, responseHandler.geocodedAddresses.size());
+    }
+
+    @Test
+    public void batchResponseTest() throws IOException
+    {
+        List<GeocodedAddress> geocodedAddresses = mapQuestDao.readGeocodedAddresses(getResponse("mapquestBatch.json"));
+        assertEquals(2, geocodedAddresses.size());
+
+        GeocodedAddress first = geocodedAddresses.get(0);
+        assertEquals("214 8th St", first.getAddress().getAddr1());
+        assertEquals("Troy", first.getAddress().getCity());
+        assertEquals("12180", first.getAddress().getZip5());
+        assertEquals(GeocodeQuality.HOUSE, first.getGeocode().getQuality());
+        assertEquals(42.731245, first.getGeocode().getLat(), 0.000001);
+        assertEquals(-73.684201, first.getGeocode().getLon(), 0.000001);
+        assertEquals(GeocodeQuality.POINT, geocodedAddresses.get(1).getGeocode().getQuality());
+    }
+
+    @Test
+    public void partialResponseKeepsPositionsTest() throws IOException
+    {
+        List<GeocodedAddress> geocodedAddresses = mapQuestDao.readGeocodedAddresses(getResponse("mapquestPartial.json"));
+        assertEquals(3, geocodedAddresses.size());
+        assertTrue(geocodedAddresses.get(0).isValidGeocode());
+        /** Results without a location or lat/lng are replaced with empty placeholders */
+        assertFalse(geocodedAddresses.get(1).isValidGeocode());
+        assertFalse(geocodedAddresses.get(2).isValidGeocode());
+    }
+
+    @Test
+    public void errorStatusReturnsNoResultsTest() throws IOException
+    {
+        assertTrue(mapQuestDao.readGeocodedAddresses(getResponse("mapquestError.json")).isEmpty());
+    }
+
+    @Test
+    public void missingInfoReturnsNoResultsTest() throws IOException
+    {
+        assertTrue(mapQuestDao.readGeocodedAddresses(getResponse("mapquestNoInfo.json")).isEmpty());
+    }
+
+    @Test
+    public void failedBatchIsLeftNullTest()
+    {
+        MapQuestDao unreachableDao = new MapQuestDao();
+        unreachableDao.setGeoUrl("http://localhost:1/geocoding/v1/batch");
+        ArrayList<Address> addresses = new ArrayList<>(Arrays.asList(new Address("214 8th St", "Troy", "NY", "12180"),
+                                                                     new Address("100 State St", "Albany", "NY", "12207")));
+        List<GeocodedAddress> geocodedAddresses = unreachableDao.getGeocodedAddresses(addresses);
+        assertEquals(2, geocodedAddresses.size());
+        assertNull(geocodedAddresses.get(0));
+        assertNull(geocodedAddresses.get(1));
+    }
+}
@@ -0,0 +1,53 @@
+package gov.nysenate.sage.dao.provider;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.service.geo.AddressRangeIndex;
+import gov.nysenate.sage.util.StreetAddressParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The range index is keyed by the street key built from the TIGER name components and is queried with the
+ * street key of the parsed input address, so the two have to agree for the same street.
+ */
+public class TigerAddressRangeDaoTest
+{
+    private static void assertSameStreetKey(String addr1, String preDir, String name, String streetType, String postDir)
+    {
+        String parsedKey = AddressRangeIndex.getStreetKey(
+            StreetAddressParser.parseAddress(new Address(addr1, "Troy", "NY", "12180")));
+        assertEquals(addr1, parsedKey, TigerAddressRangeDao.getStreetKey(preDir, name, streetType, postDir));
+    }
+
+    @Test
+    public void streetKeysMatchParsedAddressesTest()
+    {
+        /** Plain streets and suffixes */
+        assertSameStreetKey("214 Washington Avenue", null, "Washington", "Ave", null);
+        assertSameStreetKey("214 Washington Ave", null, "Washington", "Ave", null);
+        assertSameStreetKey("55 Elk Street", null, "Elk", "St", null);
+        assertSameStreetKey("12 Greenhaven Drive", null, "Greenhaven", "Dr", null);
+        assertSameStreetKey("100 Deer Park Ave", null, "Deer Park", "Ave", null);
+        assertSameStreetKey("9 Hudson Boulevard", null, "Hudson", "Blvd", null);
+        assertSameStreetKey("9 Mill Road", null, "Mill", "Rd", null);
+
+        /** Directionals */
+        assertSameStreetKey("101 East State Street", "E", "State", "St", null);
+        assertSameStreetKey("101 E State St", "E", "State", "St", null);
+        assertSameStreetKey("20 North Pearl Street", "N", "Pearl", "St", null);
+        assertSameStreetKey("300 Main Street West", null, "Main", "St", "W");
+        assertSameStreetKey("300 Main St W", null, "Main", "St", "W");
+
+        /** Numbered streets */
+        assertSameStreetKey("214 8th Street", null, "8th", "St", null);
+        assertSameStreetKey("214 8th St", null, "8th", "St", null);
+        assertSameStreetKey("2 West 125th Street", "W", "125th", "St", null);
+        assertSameStreetKey("40 3rd Avenue", null, "3rd", "Ave", null);
+        assertSameStreetKey("9264 224th St", null, "224th", "St", null);
+
+        /** Name prefixes */
+        assertSameStreetKey("10 Saint James Place", null, "St James", "Pl", null);
+        assertSameStreetKey("10 St James Pl", null, "St James", "Pl", null);
+    }
+}
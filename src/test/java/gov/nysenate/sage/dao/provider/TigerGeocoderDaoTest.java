@@ -21,6 +21,7 @@ import java.util.List;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class TigerGeocoderDaoTest extends TestBase
 {
@@ -40,7 +41,7 @@ public class TigerGeocoderDaoTest extends TestBase
          * time out is not set. */
         Address incorrectAddress = new Address("9264 224 st", "Queens", "NY", "11432");
         GeocodedStreetAddress timedOutGsa = tigerGeocoderDao.getGeocodedStreetAddress(incorrectAddress);
-        assertNull(timedOutGsa);
+        assertSame(TigerGeocoderDao.FAILED, timedOutGsa);
     }
 
 
@@ -69,6 +70,23 @@ public class TigerGeocoderDaoTest extends TestBase
         assertNull(geocodedStreetAddress);
     }
 
+    @Test
+    public void TigerGeocoderBatchGeocodeTest_TimeOutDoesNotFailOtherAddresses()
+    {
+        List<GeocodedStreetAddress> geocodedStreetAddresses = tigerGeocoderDao.getGeocodedStreetAddresses(Arrays.asList(
+                new Address("9264 224 st", "Queens", "NY", "11432"),
+                null,
+                new Address("214 8th Street", "Troy", "NY", "12180"),
+                new Address("214 8th Street", "Troy", "NY", "12180")));
+
+        assertEquals(4, geocodedStreetAddresses.size());
+        /** The timed out query is reported as failed, not as a miss */
+        assertSame(TigerGeocoderDao.FAILED, geocodedStreetAddresses.get(0));
+        assertNull(geocodedStreetAddresses.get(1));
+        assertGeocodesAreSimilar(new Geocode(new Point(42.7352408, -73.6828174)), geocodedStreetAddresses.get(2).getGeocode());
+        assertGeocodesAreSimilar(new Geocode(new Point(42.7352408, -73.6828174)), geocodedStreetAddresses.get(3).getGeocode());
+    }
+
     @Test
     public void TigerGeocoderSingleAddressParseTest_ReturnsStreetAddress()
     {
@@ -0,0 +1,63 @@
+package gov.nysenate.sage.dao.provider;
+
+import gov.nysenate.sage.TestBase;
+import gov.nysenate.sage.model.result.AddressResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds recorded USPS AMS responses to the streaming parser.
+ */
+public class USPSAMSDaoTest extends TestBase
+{
+    private USPSAMSDao uspsAmsDao = new USPSAMSDao();
+
+    private InputStream getResponse(String name)
+    {
+        return getClass().getResourceAsStream("/providerResponses/" + name);
+    }
+
+    @Test
+    public void readValidateResponseTest() throws IOException
+    {
+        List<AddressResult> results = uspsAmsDao.readAddressResults(getResponse("uspsamsValidateBatch.json"), false);
+        assertEquals(3, results.size());
+
+        AddressResult first = results.get(0);
+        assertTrue(first.isValidated());
+        assertEquals("214 8th St", first.getAddress().getAddr1());
+        assertEquals("2705", first.getAddress().getZip4());
+        assertTrue(first.getAddress().isUspsValidated());
+
+        AddressResult second = results.get(1);
+        assertFalse(second.isValidated());
+        assertEquals(ResultStatus.NO_ADDRESS_VALIDATE_RESULT, second.getStatusCode());
+        assertTrue(second.getMessages().contains("N - Address was standardized"));
+
+        /** The result without a status is reported as a parse error in its place */
+        assertEquals(ResultStatus.RESPONSE_PARSE_ERROR, results.get(2).getStatusCode());
+    }
+
+    @Test
+    public void readCityStateResponseTest() throws IOException
+    {
+        List<AddressResult> results = uspsAmsDao.readAddressResults(getResponse("uspsamsCityStateBatch.json"), true);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isValidated());
+        assertEquals("Troy", results.get(0).getAddress().getCity());
+        assertEquals("NY", results.get(0).getAddress().getState());
+        assertFalse(results.get(1).isValidated());
+    }
+
+    @Test
+    public void readErrorResponseTest() throws IOException
+    {
+        assertTrue(uspsAmsDao.readAddressResults(getResponse("uspsamsError.json"), false).isEmpty());
+    }
+}
@@ -3,11 +3,18 @@ package gov.nysenate.sage.dao.provider;
 import gov.nysenate.sage.TestBase;
 import gov.nysenate.sage.dao.provider.YahooDao;
 import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
 import gov.nysenate.sage.util.FormatUtil;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
 
 public class YahooDaoTest extends TestBase
 {
@@ -32,4 +39,47 @@ public class YahooDaoTest extends TestBase
     {
         FormatUtil.printObject(yahooDao.getGeocodedAddress(new Address("133 St")));
     }
+
+    private InputStream getResponse(String name)
+    {
+        return getClass().getResourceAsStream("/providerResponses/" + name);
+    }
+
+    @Test
+    public void readBatchResponseTest() throws IOException
+    {
+        List<GeocodedAddress> geocodedAddresses = yahooDao.readGeocodedAddresses(getResponse("yahooBatch.json"));
+        assertEquals(3, geocodedAddresses.size());
+        assertEquals("214 8th St", geocodedAddresses.get(0).getAddress().getAddr1());
+        assertEquals(GeocodeQuality.HOUSE, geocodedAddresses.get(0).getGeocode().getQuality());
+        assertEquals(42.731245, geocodedAddresses.get(0).getGeocode().getLat(), 0.000001);
+        /** A null line1 is read as an empty street */
+        assertEquals("", geocodedAddresses.get(2).getAddress().getAddr1());
+        assertEquals(GeocodeQuality.ZIP, geocodedAddresses.get(2).getGeocode().getQuality());
+    }
+
+    @Test
+    public void readSingleResultResponseTest() throws IOException
+    {
+        List<GeocodedAddress> geocodedAddresses = yahooDao.readGeocodedAddresses(getResponse("yahooSingle.json"));
+        assertEquals(1, geocodedAddresses.size());
+        assertEquals("Albany", geocodedAddresses.get(0).getAddress().getCity());
+    }
+
+    @Test
+    public void readPartialResponseTest() throws IOException
+    {
+        List<GeocodedAddress> geocodedAddresses = yahooDao.readGeocodedAddresses(getResponse("yahooPartial.json"));
+        assertEquals(2, geocodedAddresses.size());
+        assertTrue(geocodedAddresses.get(0).isValidGeocode());
+        /** The unparseable result is an empty placeholder, not null */
+        assertNotNull(geocodedAddresses.get(1));
+        assertFalse(geocodedAddresses.get(1).isValidGeocode());
+    }
+
+    @Test
+    public void readErrorResponseTest() throws IOException
+    {
+        assertTrue(yahooDao.readGeocodedAddresses(getResponse("yahooError.json")).isEmpty());
+    }
 }
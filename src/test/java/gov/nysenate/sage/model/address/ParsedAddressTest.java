@@ -0,0 +1,57 @@
+package gov.nysenate.sage.model.address;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParsedAddressTest
+{
+    @Test
+    public void sameParseSameKeyTest()
+    {
+        ParsedAddress freeForm = ParsedAddress.parse(new Address("214 8th Street Troy NY 12180"));
+        ParsedAddress parsed = ParsedAddress.parse(new Address("214 8TH ST", "", "Troy", "NY", "12180", ""));
+        assertEquals(freeForm.getNormalizedAddress(), parsed.getNormalizedAddress());
+        assertEquals(freeForm.getKey(), parsed.getKey());
+        assertEquals(214, parsed.getStreetAddress().getBldgNum());
+
+        ParsedAddress other = ParsedAddress.parse(new Address("216 8th Street Troy NY 12180"));
+        assertNotEquals(freeForm.getKey(), other.getKey());
+    }
+
+    @Test
+    public void emptyAddressTest()
+    {
+        assertNull(ParsedAddress.parse(null));
+        assertNull(ParsedAddress.parse(new Address()));
+        assertNull(ParsedAddress.forAddress(new Address(), null));
+    }
+
+    @Test
+    public void reuseUntilAddressChangesTest()
+    {
+        Address address = new Address("100 Nyroy Dr", "Troy", "NY", "12180");
+        ParsedAddress parsedAddress = ParsedAddress.parse(address);
+        assertTrue(parsedAddress == ParsedAddress.forAddress(address, parsedAddress));
+        assertTrue(parsedAddress == ParsedAddress.forAddress(address.clone(), parsedAddress));
+
+        address.setAddr1("101 Nyroy Dr");
+        assertFalse(parsedAddress.isParseOf(address));
+        ParsedAddress reparsed = ParsedAddress.forAddress(address, parsedAddress);
+        assertEquals(101, reparsed.getStreetAddress().getBldgNum());
+    }
+
+    @Test
+    public void geocodedAddressParseTest()
+    {
+        Address address = new Address("100 Nyroy Dr", "Troy", "NY", "12180");
+        ParsedAddress parsedAddress = ParsedAddress.parse(address);
+        GeocodedAddress geocodedAddress = new GeocodedAddress(address);
+        geocodedAddress.setParsedAddress(parsedAddress);
+        assertTrue(parsedAddress == geocodedAddress.getParsedAddress());
+
+        geocodedAddress.setAddress(new Address("5 Main St", "Troy", "NY", "12180"));
+        assertEquals(5, geocodedAddress.getParsedAddress().getStreetAddress().getBldgNum());
+        assertTrue(geocodedAddress.getParsedAddress() == geocodedAddress.getParsedAddress());
+    }
+}
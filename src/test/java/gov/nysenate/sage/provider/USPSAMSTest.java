@@ -0,0 +1,60 @@
+package gov.nysenate.sage.provider;
+
+import gov.nysenate.sage.TestBase;
+import gov.nysenate.sage.dao.provider.USPSAMSDao;
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.result.AddressResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the statuses USPSAMS reports when the AMS web service does not answer.
+ */
+public class USPSAMSTest extends TestBase
+{
+    /** Dao that behaves as if the web service could not be reached */
+    private static class UnreachableDao extends USPSAMSDao
+    {
+        @Override
+        public AddressResult getValidatedAddressResult(Address address) { return null; }
+
+        @Override
+        public List<AddressResult> getValidatedAddressResults(List<Address> addresses) { return null; }
+
+        @Override
+        public AddressResult getCityStateResult(Address address) { return null; }
+
+        @Override
+        public List<AddressResult> getCityStateResults(List<Address> addresses) { return null; }
+    }
+
+    private Address address = new Address("200 State St", "Albany", "NY", "12210");
+
+    @Test
+    public void missingResponseIsReportedAsOutageTest()
+    {
+        USPSAMS uspsams = new USPSAMS(new UnreachableDao());
+        assertEquals(ResultStatus.RESPONSE_MISSING_ERROR, uspsams.validate(address).getStatusCode());
+        assertEquals(ResultStatus.RESPONSE_MISSING_ERROR, uspsams.lookupCityState(address).getStatusCode());
+
+        List<AddressResult> results = uspsams.validate(Arrays.asList(address, address));
+        assertEquals(2, results.size());
+        for (AddressResult result : results) {
+            assertEquals(ResultStatus.RESPONSE_MISSING_ERROR, result.getStatusCode());
+        }
+        assertEquals(ResultStatus.RESPONSE_MISSING_ERROR,
+                     uspsams.lookupCityState(Arrays.asList(address)).get(0).getStatusCode());
+    }
+
+    @Test
+    public void emptyAddressIsNotAnOutageTest()
+    {
+        USPSAMS uspsams = new USPSAMS(new UnreachableDao());
+        assertEquals(ResultStatus.NO_ADDRESS_VALIDATE_RESULT, uspsams.validate(new Address()).getStatusCode());
+    }
+}
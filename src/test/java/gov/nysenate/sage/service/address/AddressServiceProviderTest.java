@@ -0,0 +1,179 @@
+package gov.nysenate.sage.service.address;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.result.AddressResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.util.Bulkhead;
+import gov.nysenate.sage.util.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests against a stub provider. The batch tests assume the default batch settings of chunks of 10
+ * addresses, one retry and at most 8 requests per chunk.
+ */
+public class AddressServiceProviderTest
+{
+    /** Addresses whose addr1 is in here fail every request they are a part of */
+    private static final Set<String> badAddresses = Collections.synchronizedSet(new HashSet<String>());
+
+    /** Number of requests made for the addresses in the second chunk */
+    private static final AtomicInteger secondChunkCalls = new AtomicInteger();
+
+    /** Validator that echoes each address back, failing the whole request if it contains a bad address */
+    public static class StubAddressService implements AddressService
+    {
+        @Override
+        public AddressResult validate(Address address)
+        {
+            return new AddressResult(address, ResultStatus.SUCCESS, StubAddressService.class, true);
+        }
+
+        @Override
+        public List<AddressResult> validate(List<Address> addresses)
+        {
+            if (getIndex(addresses.get(0)) >= 10) {
+                secondChunkCalls.incrementAndGet();
+            }
+            List<AddressResult> addressResults = new ArrayList<>();
+            boolean failed = false;
+            for (Address address : addresses) {
+                failed |= badAddresses.contains(address.getAddr1());
+            }
+            for (Address address : addresses) {
+                addressResults.add((failed) ? new AddressResult(StubAddressService.class, ResultStatus.RESPONSE_ERROR)
+                                            : validate(address));
+            }
+            return addressResults;
+        }
+
+        @Override
+        public AddressResult lookupCityState(Address address) { return validate(address); }
+
+        @Override
+        public List<AddressResult> lookupCityState(List<Address> addresses) { return validate(addresses); }
+
+        @Override
+        public AddressResult lookupZipCode(Address address) { return validate(address); }
+
+        @Override
+        public List<AddressResult> lookupZipCode(List<Address> addresses) { return validate(addresses); }
+    }
+
+    private AddressServiceProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        badAddresses.clear();
+        secondChunkCalls.set(0);
+        provider = new AddressServiceProvider();
+        provider.registerDefaultProvider("stub", StubAddressService.class);
+    }
+
+    @Test
+    public void resultsAreInInputOrderTest()
+    {
+        List<AddressResult> addressResults = provider.validate(newAddresses(45), "stub", false);
+
+        assertEquals(45, addressResults.size());
+        for (int i = 0; i < 45; i++) {
+            assertEquals(ResultStatus.SUCCESS, addressResults.get(i).getStatusCode());
+            assertEquals(i + " Main St", addressResults.get(i).getAddress().getAddr1());
+        }
+    }
+
+    @Test
+    public void failedAddressIsIsolatedBySplitAndRetryTest()
+    {
+        badAddresses.add("13 Main St");
+        List<AddressResult> addressResults = provider.validate(newAddresses(20), "stub", false);
+
+        assertEquals(20, addressResults.size());
+        /** Chunk fails twice, its first half fails twice, the second half passes, then [10, 12) passes, [12, 15)
+         *  fails twice and the attempts are used up, so [12, 15) is given up on. */
+        assertEquals(8, secondChunkCalls.get());
+        for (int i = 0; i < 20; i++) {
+            AddressResult addressResult = addressResults.get(i);
+            if (i >= 12 && i < 15) {
+                assertEquals(ResultStatus.RESPONSE_ERROR, addressResult.getStatusCode());
+            }
+            else {
+                assertEquals(ResultStatus.SUCCESS, addressResult.getStatusCode());
+                assertEquals(i + " Main St", addressResult.getAddress().getAddr1());
+            }
+        }
+    }
+
+    @Test
+    public void persistentFailureEndsInResponseErrorTest()
+    {
+        badAddresses.add("10 Main St");
+        List<AddressResult> addressResults = provider.validate(newAddresses(11), "stub", false);
+
+        assertEquals(11, addressResults.size());
+        /** The single address chunk is retried once and cannot be split any further */
+        assertEquals(2, secondChunkCalls.get());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ResultStatus.SUCCESS, addressResults.get(i).getStatusCode());
+            assertEquals(i + " Main St", addressResults.get(i).getAddress().getAddr1());
+        }
+        assertEquals(ResultStatus.RESPONSE_ERROR, addressResults.get(10).getStatusCode());
+        assertNull(addressResults.get(10).getAddress());
+    }
+
+    @Test
+    public void bulkheadRejectionReleasesHalfOpenProbeTest() throws Exception
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("stub", 1, 1);
+        Bulkhead bulkhead = new Bulkhead("stub", 1, 0);
+        provider.circuitBreakers.put("stub", circuitBreaker);
+        provider.bulkheads.put("stub", bulkhead);
+        circuitBreaker.recordFailure();
+        Thread.sleep(1100);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        /** The probe is rejected by the full bulkhead, so the next request may probe without waiting again */
+        assertTrue(bulkhead.tryAcquire());
+        Address address = newAddresses(1).get(0);
+        assertEquals(ResultStatus.ADDRESS_PROVIDER_TEMP_DISABLED, provider.validate(address, "stub", false).getStatusCode());
+        bulkhead.release();
+        assertEquals(ResultStatus.SUCCESS, provider.validate(address, "stub", false).getStatusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void unregisteredCityStateProviderIsNotTrackedTest()
+    {
+        Address address = newAddresses(1).get(0);
+        assertEquals(ResultStatus.ADDRESS_PROVIDER_NOT_SUPPORTED, provider.lookupCityState(address, "unknown").getStatusCode());
+        List<AddressResult> addressResults = provider.lookupCityState(newAddresses(2), "unknown");
+        assertEquals(2, addressResults.size());
+        assertEquals(ResultStatus.ADDRESS_PROVIDER_NOT_SUPPORTED, addressResults.get(1).getStatusCode());
+        assertFalse(provider.circuitBreakers.containsKey("unknown"));
+        assertFalse(provider.bulkheads.containsKey("unknown"));
+    }
+
+    private static List<Address> newAddresses(int count)
+    {
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            addresses.add(new Address(i + " Main St", "Albany", "NY", "12210"));
+        }
+        return addresses;
+    }
+
+    private static int getIndex(Address address)
+    {
+        return Integer.parseInt(address.getAddr1().substring(0, address.getAddr1().indexOf(' ')));
+    }
+}
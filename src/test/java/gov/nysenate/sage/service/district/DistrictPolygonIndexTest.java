@@ -0,0 +1,246 @@
+package gov.nysenate.sage.service.district;
+
+import gov.nysenate.sage.model.district.DistrictType;
+import gov.nysenate.sage.model.geo.Point;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DistrictPolygonIndexTest
+{
+    /** Square ring with its lower left corner at x, y as lon, lat pairs */
+    private static double[] square(double x, double y, double size)
+    {
+        return new double[]{x, y, x + size, y, x + size, y + size, x, y + size, x, y};
+    }
+
+    private static List<List<double[]>> polygons(double[]... rings)
+    {
+        List<List<double[]>> polygons = new ArrayList<>();
+        polygons.add(Arrays.asList(rings));
+        return polygons;
+    }
+
+    @Test
+    public void polygonWithHoleTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        index.addDistrict(DistrictType.SENATE, "Senate District 1", "1", null, polygons(square(-74, 42, 1), square(-73.75, 42.25, 0.5)));
+        index.addDistrict(DistrictType.SENATE, "Senate District 2", "2", null, polygons(square(-73.75, 42.25, 0.5)));
+        index.build();
+
+        assertEquals("1", index.getDistrict(DistrictType.SENATE, new Point(42.1, -73.9)).getCode());
+        assertEquals("2", index.getDistrict(DistrictType.SENATE, new Point(42.5, -73.5)).getCode());
+        assertNull(index.getDistrict(DistrictType.SENATE, new Point(43.5, -73.5)));
+        assertNull(index.getDistrict(DistrictType.ASSEMBLY, new Point(42.1, -73.9)));
+        assertNull(index.getDistrict(DistrictType.SENATE, null));
+        assertFalse(index.hasDistrictType(DistrictType.ASSEMBLY));
+    }
+
+    @Test
+    public void multiPolygonTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        List<List<double[]>> islands = polygons(square(-74, 40, 0.1));
+        islands.add(Arrays.asList(square(-72, 41, 0.1)));
+        index.addDistrict(DistrictType.COUNTY, "Islands", "52", null, islands);
+        index.build();
+
+        assertEquals(2, index.getPolygonCount(DistrictType.COUNTY));
+        assertEquals(1, index.getDistrictCount(DistrictType.COUNTY));
+        assertEquals("52", index.getDistrict(DistrictType.COUNTY, new Point(40.05, -73.95)).getCode());
+        assertEquals("52", index.getDistrict(DistrictType.COUNTY, new Point(41.05, -71.95)).getCode());
+        assertNull(index.getDistrict(DistrictType.COUNTY, new Point(40.5, -73)));
+    }
+
+    /** A grid of districts large enough to need several tree levels */
+    @Test
+    public void gridTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                String code = x + "-" + y;
+                index.addDistrict(DistrictType.TOWN, code, code, null, polygons(square(-79 + x * 0.1, 40 + y * 0.1, 0.1)));
+            }
+        }
+        index.build();
+
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                Point point = new Point(40 + y * 0.1 + 0.05, -79 + x * 0.1 + 0.05);
+                assertEquals(x + "-" + y, index.getDistrict(DistrictType.TOWN, point).getCode());
+            }
+        }
+        assertNull(index.getDistrict(DistrictType.TOWN, new Point(39.95, -78.95)));
+    }
+
+    @Test
+    public void containsTest()
+    {
+        double[][] triangle = new double[][]{{0, 0, 4, 0, 0, 4, 0, 0}};
+        assertTrue(DistrictPolygonIndex.contains(triangle, 1, 1));
+        assertFalse(DistrictPolygonIndex.contains(triangle, 3, 3));
+        assertFalse(DistrictPolygonIndex.contains(triangle, -1, 1));
+    }
+
+    /** Lookups through the grid must give the same districts as the tree alone */
+    @Test
+    public void gridMatchesTreeTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        index.addDistrict(DistrictType.SENATE, "Senate District 1", "1", null, polygons(square(-74, 42, 1), square(-73.75, 42.25, 0.5)));
+        index.addDistrict(DistrictType.SENATE, "Senate District 2", "2", null, polygons(square(-73.75, 42.25, 0.5)));
+        index.addDistrict(DistrictType.SENATE, "Senate District 3", "3", null, polygons(new double[]{-73, 42, -72, 42.5, -73, 43, -73, 42}));
+        index.build();
+
+        Random random = new Random(1);
+        Point[] points = new Point[5000];
+        String[] expected = new String[points.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(41.9 + random.nextDouble() * 1.2, -74.1 + random.nextDouble() * 2.2);
+            DistrictPolygonIndex.District district = index.getDistrict(DistrictType.SENATE, points[i]);
+            expected[i] = (district != null) ? district.getCode() : null;
+        }
+        assertEquals(-1, index.getBoundaryCellRatio(DistrictType.SENATE), 0);
+
+        index.buildGrid(0.05);
+        double boundaryRatio = index.getBoundaryCellRatio(DistrictType.SENATE);
+        assertTrue(boundaryRatio > 0 && boundaryRatio < 0.5);
+        for (int i = 0; i < points.length; i++) {
+            DistrictPolygonIndex.District district = index.getDistrict(DistrictType.SENATE, points[i]);
+            assertEquals(expected[i], (district != null) ? district.getCode() : null);
+        }
+    }
+
+    @Test
+    public void boundaryDistanceTest()
+    {
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        index.addDistrict(DistrictType.SENATE, "Senate District 1", "1", null, polygons(square(-74, 41.95, 0.1), square(-73.96, 42.04, 0.005)));
+        index.build();
+
+        /** The west and east edges are nearest, 0.05 degrees of longitude away */
+        Point center = new Point(42, -73.95);
+        DistrictPolygonIndex.District district = index.getDistrict(DistrictType.SENATE, center);
+        double expected = DistrictPolygonIndex.sphereDistance(-73.95, 42, -74, 42);
+        assertEquals(4132, expected, 1);
+        assertEquals(expected, index.getBoundaryDistance(district, center), 0.01);
+
+        /** The hole is nearer than the outer ring */
+        Point nearHole = new Point(42.03, -73.9575);
+        assertEquals(DistrictPolygonIndex.sphereDistance(-73.9575, 42.03, -73.9575, 42.04),
+                     index.getBoundaryDistance(district, nearHole), 0.01);
+        assertNull(index.getBoundaryDistance(district, null));
+    }
+
+    /** The boundary tree search must find the same nearest edge as sampling every edge */
+    @Test
+    public void boundaryDistanceMatchesBruteForceTest()
+    {
+        int vertices = 3000;
+        double[] circle = new double[(vertices + 1) * 2];
+        for (int v = 0; v <= vertices; v++) {
+            double angle = 2 * Math.PI * (v % vertices) / vertices;
+            circle[2*v] = -73.5 + 0.4 * Math.cos(angle) + 0.01 * Math.sin(angle * 40);
+            circle[2*v+1] = 42.5 + 0.3 * Math.sin(angle);
+        }
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        index.addDistrict(DistrictType.COUNTY, "Circle", "1", null, polygons(circle));
+        index.build();
+
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            Point point = new Point(42.3 + random.nextDouble() * 0.4, -73.8 + random.nextDouble() * 0.6);
+            DistrictPolygonIndex.District district = index.getDistrict(DistrictType.COUNTY, point);
+            if (district == null) {
+                continue;
+            }
+            double bruteForce = Double.MAX_VALUE;
+            for (int v = 0; v < vertices; v++) {
+                for (int step = 0; step <= 20; step++) {
+                    double t = step / 20.0;
+                    double lon = circle[2*v] + t * (circle[2*v+2] - circle[2*v]);
+                    double lat = circle[2*v+1] + t * (circle[2*v+3] - circle[2*v+1]);
+                    bruteForce = Math.min(bruteForce, DistrictPolygonIndex.sphereDistance(point.getLon(), point.getLat(), lon, lat));
+                }
+            }
+            double distance = index.getBoundaryDistance(district, point);
+            assertEquals(bruteForce, distance, 1);
+        }
+    }
+
+    /** The index must find the same nearby districts as measuring every district */
+    @Test
+    public void nearbyDistrictsMatchBruteForceTest()
+    {
+        /** The squares are shrunk by about a meter on each side so that neighbors are separated by small gaps */
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                String code = x + "-" + y;
+                index.addDistrict(DistrictType.ASSEMBLY, code, code, null, polygons(square(-74 + x * 0.005 + 0.00001, 42 + y * 0.005 + 0.00001, 0.00498)));
+            }
+        }
+        index.build();
+
+        Point center = new Point(42.025, -73.975);
+        DistrictPolygonIndex.District centerDistrict = index.getDistrict(DistrictType.ASSEMBLY, center);
+        assertNull(index.getNearbyDistricts(centerDistrict, center, 500, 2));
+
+        index.buildNeighbors(5);
+        assertTrue(index.hasNeighbors());
+
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            Point point = new Point(42.005 + random.nextDouble() * 0.04, -73.995 + random.nextDouble() * 0.04);
+            DistrictPolygonIndex.District district = index.getDistrict(DistrictType.ASSEMBLY, point);
+            if (district == null) {
+                continue;
+            }
+            List<Double> expected = new ArrayList<>();
+            for (int x = 0; x < 10; x++) {
+                for (int y = 0; y < 10; y++) {
+                    Point other = new Point(42 + y * 0.005 + 0.0025, -74 + x * 0.005 + 0.0025);
+                    DistrictPolygonIndex.District otherDistrict = index.getDistrict(DistrictType.ASSEMBLY, other);
+                    double distance = index.getBoundaryDistance(otherDistrict, point);
+                    if (otherDistrict != district && distance < 600) {
+                        expected.add(distance);
+                    }
+                }
+            }
+            Collections.sort(expected);
+
+            Map<DistrictPolygonIndex.District, Double> nearby = index.getNearbyDistricts(district, point, 600, 100);
+            assertEquals(expected, new ArrayList<>(nearby.values()));
+            assertFalse(nearby.containsKey(district));
+            assertEquals(Math.min(2, expected.size()), index.getNearbyDistricts(district, point, 600, 2).size());
+        }
+    }
+
+    /** Districts across water are not neighbors in the graph but must still be found if they are within range */
+    @Test
+    public void nearbyDistrictAcrossGapTest()
+    {
+        /** Districts 1 and 2 are separated by about 111 meters, district 3 lies over a kilometer away */
+        DistrictPolygonIndex index = new DistrictPolygonIndex();
+        index.addDistrict(DistrictType.SENATE, "Senate District 1", "1", null, polygons(square(-74, 42, 0.01)));
+        index.addDistrict(DistrictType.SENATE, "Senate District 2", "2", null, polygons(square(-74, 42.011, 0.01)));
+        index.addDistrict(DistrictType.SENATE, "Senate District 3", "3", null, polygons(square(-74, 42.021, 0.01)));
+        index.build();
+        index.buildNeighbors(5);
+
+        Point point = new Point(42.0095, -73.995);
+        DistrictPolygonIndex.District district = index.getDistrict(DistrictType.SENATE, point);
+        assertEquals("1", district.getCode());
+
+        Map<DistrictPolygonIndex.District, Double> nearby = index.getNearbyDistricts(district, point, 500, 2);
+        assertEquals(1, nearby.size());
+        Map.Entry<DistrictPolygonIndex.District, Double> entry = nearby.entrySet().iterator().next();
+        assertEquals("2", entry.getKey().getCode());
+        assertEquals(DistrictPolygonIndex.sphereDistance(-73.995, 42.0095, -73.995, 42.011), entry.getValue(), 0.5);
+        assertTrue(index.getNearbyDistricts(district, point, 100, 2).isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.model.geo.Point;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AddressRangeIndexTest
+{
+    /** Segment running due east along latitude 42 */
+    private static final float[] EAST_SEGMENT = {-73.01f, 42f, -73.00f, 42f};
+
+    private AddressRangeIndex newIndex()
+    {
+        AddressRangeIndex index = new AddressRangeIndex(10);
+        int segment = index.addSegment(EAST_SEGMENT);
+        index.addRange("12180", "8 ST", 1, 99, true, segment);
+        index.addRange("12180", "8 ST", 2, 100, false, segment);
+        index.addRange("12180", "8 ST", 198, 102, false, index.addSegment(new float[]{-73.00f, 42f, -72.99f, 42f}));
+        index.build();
+        return index;
+    }
+
+    @Test
+    public void interpolatesAlongSegmentTest()
+    {
+        Point point = newIndex().getPoint("12180", "8 ST", 50);
+        assertNotNull(point);
+        assertEquals(-73.005, point.getLon(), 0.0002);
+    }
+
+    @Test
+    public void pointIsOffsetToSideOfStreetTest()
+    {
+        AddressRangeIndex index = newIndex();
+        /** Facing east, the left side is north and the right side is south */
+        assertTrue(index.getPoint("12180", "8 ST", 51).getLat() > 42);
+        assertTrue(index.getPoint("12180", "8 ST", 50).getLat() < 42);
+    }
+
+    @Test
+    public void reversedRangeTest()
+    {
+        /** 102 is at the to node of the second segment */
+        Point point = newIndex().getPoint("12180", "8 ST", 102);
+        assertEquals(-72.99, point.getLon(), 0.0002);
+    }
+
+    @Test
+    public void missingRangeReturnsNullTest()
+    {
+        AddressRangeIndex index = newIndex();
+        assertNull(index.getPoint("12180", "8 ST", 500));
+        assertNull(index.getPoint("12180", "9 ST", 50));
+        assertNull(index.getPoint("12203", "8 ST", 50));
+    }
+
+    @Test
+    public void overlappingRangesTest()
+    {
+        AddressRangeIndex index = new AddressRangeIndex(0);
+        index.addRange("12180", "MAIN ST", 1, 999, true, index.addSegment(EAST_SEGMENT));
+        index.addRange("12180", "MAIN ST", 11, 21, true, index.addSegment(new float[]{-74f, 43f, -74f, 43.1f}));
+        index.build();
+        assertEquals(-73.005, index.getPoint("12180", "MAIN ST", 500).getLon(), 0.0002);
+        assertEquals(-74, index.getPoint("12180", "MAIN ST", 16).getLon(), 0.0002);
+    }
+
+    @Test
+    public void getStreetKeyTest()
+    {
+        StreetAddress streetAddress = new StreetAddress(214, "N", "8", "St", "", "", "Troy", "NY", "12180");
+        assertEquals("N 8 ST", AddressRangeIndex.getStreetKey(streetAddress));
+    }
+}
@@ -0,0 +1,147 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.TestBase;
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.ParsedAddress;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks what the negative geocode cache stores and when it is read, using stub providers and an empty geocache.
+ */
+public class GeocodeServiceProviderTest extends TestBase
+{
+    private static final AtomicInteger missCalls = new AtomicInteger();
+
+    /** Geocoder that answers without a match */
+    public static class MissGeocoder implements GeocodeService
+    {
+        @Override
+        public GeocodeResult geocode(Address address)
+        {
+            missCalls.incrementAndGet();
+            return new GeocodeResult(MissGeocoder.class, ResultStatus.NO_GEOCODE_RESULT);
+        }
+
+        @Override
+        public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
+        {
+            ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+            for (Address address : addresses) {
+                geocodeResults.add(geocode(address));
+            }
+            return geocodeResults;
+        }
+    }
+
+    /** Geocoder whose requests fail */
+    public static class FailingGeocoder implements GeocodeService
+    {
+        @Override
+        public GeocodeResult geocode(Address address)
+        {
+            return new GeocodeResult(FailingGeocoder.class, ResultStatus.RESPONSE_ERROR);
+        }
+
+        @Override
+        public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses)
+        {
+            ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+            for (Address address : addresses) {
+                geocodeResults.add(geocode(address));
+            }
+            return geocodeResults;
+        }
+    }
+
+    /** Geocache that never has a match and stores nothing */
+    private static class EmptyGeocodeCache implements GeocodeCacheService
+    {
+        @Override
+        public GeocodeResult geocode(Address address, ParsedAddress parsedAddress)
+        {
+            return new GeocodeResult(EmptyGeocodeCache.class, ResultStatus.NO_GEOCODE_RESULT);
+        }
+
+        @Override
+        public ArrayList<GeocodeResult> geocode(List<Address> addresses, List<ParsedAddress> parsedAddresses)
+        {
+            ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+            for (Address address : addresses) {
+                geocodeResults.add(geocode(address, null));
+            }
+            return geocodeResults;
+        }
+
+        @Override
+        public GeocodeResult geocode(Address address) { return geocode(address, null); }
+
+        @Override
+        public ArrayList<GeocodeResult> geocode(ArrayList<Address> addresses) { return geocode(addresses, null); }
+
+        @Override
+        public void saveToCache(GeocodeResult geocodeResult) {}
+
+        @Override
+        public void saveToCacheAndFlush(GeocodeResult geocodeResult) {}
+
+        @Override
+        public void saveToCache(List<GeocodeResult> geocodeResults) {}
+
+        @Override
+        public void saveToCacheAndFlush(List<GeocodeResult> geocodeResults) {}
+    }
+
+    private GeocodeServiceProvider geocodeServiceProvider;
+    private Address address = new Address("1 Nowhere Rd", "Albany", "NY", "12210");
+
+    @Before
+    public void setUp()
+    {
+        missCalls.set(0);
+        geocodeServiceProvider = new GeocodeServiceProvider() {
+            @Override
+            public GeocodeCacheService newCacheInstance() {
+                return new EmptyGeocodeCache();
+            }
+        };
+        geocodeServiceProvider.registerProvider("miss", MissGeocoder.class);
+        geocodeServiceProvider.registerProvider("failing", FailingGeocoder.class);
+    }
+
+    @Test
+    public void failingProviderLeavesNoNegativeEntryTest()
+    {
+        LinkedList<String> fallback = new LinkedList<>(Arrays.asList("failing"));
+        GeocodeResult geocodeResult = geocodeServiceProvider.geocode(address, "miss", fallback, true, false);
+        assertFalse(geocodeResult.isSuccess());
+        assertEquals(0, geocodeServiceProvider.getNegativeCacheStats().getSize());
+
+        List<GeocodeResult> geocodeResults = geocodeServiceProvider.geocode(Arrays.asList(address), "miss", fallback, true, false);
+        assertFalse(geocodeResults.get(0).isSuccess());
+        assertEquals(0, geocodeServiceProvider.getNegativeCacheStats().getSize());
+    }
+
+    @Test
+    public void uncachedRequestReachesProviderTest()
+    {
+        geocodeServiceProvider.geocode(address, "miss", new LinkedList<String>(), false, false);
+        assertEquals(1, geocodeServiceProvider.getNegativeCacheStats().getSize());
+
+        /** The miss is remembered but a request with caching turned off still goes to the provider */
+        geocodeServiceProvider.geocode(address, "miss", new LinkedList<String>(), false, false);
+        assertEquals(2, missCalls.get());
+        geocodeServiceProvider.geocode(Arrays.asList(address), "miss", new ArrayList<String>(), false, false);
+        assertEquals(3, missCalls.get());
+    }
+}
@@ -0,0 +1,65 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import gov.nysenate.sage.provider.MapQuest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GeocodeServiceValidatorTest
+{
+    /** Geocoder class with a circuit breaker of its own */
+    private static abstract class RateLimitedGeocoder implements GeocodeService {}
+
+    @Test
+    public void failedPartOfBatchIsResponseErrorTest()
+    {
+        ArrayList<Address> addresses = new ArrayList<>(Arrays.asList(new Address("214 8th St", "Troy", "NY", "12180"),
+                                                                     new Address("1 Nowhere Rd", "Troy", "NY", "12180"),
+                                                                     new Address("100 State St", "Albany", "NY", "12207")));
+        List<GeocodedAddress> geocodedAddresses = new ArrayList<>();
+        geocodedAddresses.add(new GeocodedAddress(addresses.get(0), new Geocode(new Point(42.7312, -73.6842), GeocodeQuality.HOUSE, "test")));
+        geocodedAddresses.add(new GeocodedAddress(addresses.get(1)));
+        geocodedAddresses.add(null);
+
+        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+        assertTrue(GeocodeServiceValidator.validateBatchGeocodeResult(MapQuest.class, addresses, geocodeResults, geocodedAddresses, false));
+        assertEquals(3, geocodeResults.size());
+        assertEquals(ResultStatus.SUCCESS, geocodeResults.get(0).getStatusCode());
+        assertEquals(ResultStatus.NO_GEOCODE_RESULT, geocodeResults.get(1).getStatusCode());
+        assertEquals(ResultStatus.RESPONSE_ERROR, geocodeResults.get(2).getStatusCode());
+        assertEquals("100 State St", geocodeResults.get(2).getAddress().getAddr1());
+    }
+
+    @Test
+    public void rateLimitedResultIsNotAFailureTest()
+    {
+        GeocodeResult geocodeResult = new GeocodeResult(RateLimitedGeocoder.class);
+        assertFalse(GeocodeServiceValidator.validateGeocodeResult(RateLimitedGeocoder.class, GeocodeServiceValidator.RATE_LIMITED,
+                                                                  geocodeResult, true));
+        assertEquals(ResultStatus.GEOCODE_PROVIDER_TEMP_DISABLED, geocodeResult.getStatusCode());
+
+        ArrayList<Address> addresses = new ArrayList<>(Arrays.asList(new Address("214 8th St", "Troy", "NY", "12180"),
+                                                                     new Address("100 State St", "Albany", "NY", "12207")));
+        ArrayList<GeocodeResult> geocodeResults = new ArrayList<>();
+        GeocodeServiceValidator.validateBatchGeocodeResult(RateLimitedGeocoder.class, addresses, geocodeResults,
+            Arrays.asList(GeocodeServiceValidator.RATE_LIMITED, GeocodeServiceValidator.RATE_LIMITED), true);
+        assertEquals(ResultStatus.GEOCODE_PROVIDER_TEMP_DISABLED, geocodeResults.get(1).getStatusCode());
+        assertEquals(0, GeocodeServiceValidator.getCircuitBreaker(RateLimitedGeocoder.class).getConsecutiveFailures());
+
+        /** A batch that got an answer without a match still counts against the provider */
+        GeocodeServiceValidator.validateBatchGeocodeResult(RateLimitedGeocoder.class, addresses, geocodeResults,
+            Arrays.asList(GeocodeServiceValidator.RATE_LIMITED, new GeocodedAddress(addresses.get(1))), true);
+        assertEquals(1, GeocodeServiceValidator.getCircuitBreaker(RateLimitedGeocoder.class).getConsecutiveFailures());
+    }
+}
@@ -0,0 +1,69 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GeocoderRankingTest
+{
+    @Test
+    public void healthyRankingIsUnchangedTest()
+    {
+        GeocoderRanking ranking = new GeocoderRanking();
+        ranking.setBounds(1, 0.1, 5, 1000, 0);
+        ranking.setConfiguredRanking(Arrays.asList("google", "yahoo", "tiger"));
+        for (int i = 0; i < 10; i++) {
+            ranking.recordLatency("google", 200);
+        }
+        assertEquals(Arrays.asList("google", "yahoo", "tiger"), ranking.rank());
+    }
+
+    @Test
+    public void degradedProviderMovesWithinBoundsTest()
+    {
+        GeocoderRanking ranking = new GeocoderRanking();
+        ranking.setBounds(1, 0.1, 5, 1000, 0);
+        ranking.setConfiguredRanking(Arrays.asList("google", "yahoo", "tiger"));
+        for (int i = 0; i < 10; i++) {
+            ranking.recordResult("google", new GeocodeResult(GeocoderRankingTest.class, ResultStatus.RESPONSE_ERROR));
+        }
+        assertTrue(ranking.getScore("google") < ranking.getScore("yahoo"));
+        /** Google can only drop one position */
+        assertEquals(Arrays.asList("yahoo", "google", "tiger"), ranking.rank());
+
+        ranking.setBounds(2, 0.1, 5, 1000, 0);
+        assertEquals(Arrays.asList("yahoo", "tiger", "google"), ranking.rank());
+    }
+
+    @Test
+    public void slowProviderIsPenalizedTest()
+    {
+        GeocoderRanking ranking = new GeocoderRanking();
+        ranking.setBounds(1, 0.1, 5, 1000, 0);
+        ranking.setConfiguredRanking(Arrays.asList("google", "yahoo"));
+        for (int i = 0; i < 10; i++) {
+            ranking.recordLatency("google", 4000);
+        }
+        assertEquals(0.25, ranking.getScore("google"), 0.001);
+        assertEquals(Arrays.asList("yahoo", "google"), ranking.rank());
+    }
+
+    @Test
+    public void noGeocodeResultLeavesHealthUnchangedTest()
+    {
+        GeocoderRanking ranking = new GeocoderRanking();
+        ranking.setBounds(1, 0.1, 5, 1000, 0);
+        ranking.setConfiguredRanking(Arrays.asList("google", "yahoo"));
+        for (int i = 0; i < 10; i++) {
+            ranking.recordResult("google", new GeocodeResult(GeocoderRankingTest.class, ResultStatus.NO_GEOCODE_RESULT));
+        }
+        assertEquals(0, ranking.getHealth("google").getResultCount());
+        assertEquals(1, ranking.getHealth("google").getSuccessRate(), 0.001);
+        assertEquals(1, ranking.getScore("google"), 0.001);
+        assertEquals(Arrays.asList("google", "yahoo"), ranking.rank());
+    }
+}
@@ -0,0 +1,140 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class HedgedGeocodeServiceTest
+{
+    private static GeocodeResult houseResult(String method)
+    {
+        Geocode geocode = new Geocode(new Point(42.65, -73.75), GeocodeQuality.HOUSE, method);
+        return new GeocodeResult(HedgedGeocodeServiceTest.class, ResultStatus.SUCCESS, new GeocodedAddress(new Address("1 Main St"), geocode));
+    }
+
+    /** Returns its result once the latch is released */
+    private static Callable<GeocodeResult> blockingCall(final CountDownLatch release, final String method)
+    {
+        return new Callable<GeocodeResult>() {
+            @Override
+            public GeocodeResult call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return houseResult(method);
+            }
+        };
+    }
+
+    private static Callable<GeocodeResult> fastCall(final AtomicBoolean called, final String method)
+    {
+        return new Callable<GeocodeResult>() {
+            @Override
+            public GeocodeResult call() {
+                called.set(true);
+                return houseResult(method + ":" + Thread.currentThread().getName());
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        HedgedGeocodeService.setThreadCount(32);
+    }
+
+    @Test
+    public void hedgeWinsTest()
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean hedgeCalled = new AtomicBoolean(false);
+        List<Callable<GeocodeResult>> calls = Arrays.asList(blockingCall(release, "slow"), fastCall(hedgeCalled, "fast"));
+        try {
+            GeocodeResult result = HedgedGeocodeService.geocode(Arrays.asList("slow", "fast"), calls, Arrays.asList(10L, 10L),
+                                                                GeocodeQuality.HOUSE, new ArrayList<GeocodeResult>());
+            assertTrue(hedgeCalled.get());
+            assertTrue(result.getGeocode().getMethod().startsWith("fast"));
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    /** With no free thread for the hedge, the running call is waited on instead */
+    @Test
+    public void fullPoolSkipsHedgeTest() throws Exception
+    {
+        HedgedGeocodeService.setThreadCount(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean hedgeCalled = new AtomicBoolean(false);
+        List<Callable<GeocodeResult>> calls = Arrays.asList(blockingCall(release, "slow"), fastCall(hedgeCalled, "fast"));
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException ignored) {}
+                release.countDown();
+            }
+        });
+        releaser.start();
+        GeocodeResult result = HedgedGeocodeService.geocode(Arrays.asList("slow", "fast"), calls, Arrays.asList(10L, 10L),
+                                                            GeocodeQuality.HOUSE, new ArrayList<GeocodeResult>());
+        releaser.join();
+        assertFalse(hedgeCalled.get());
+        assertEquals("slow", result.getGeocode().getMethod());
+    }
+
+    /** With no free thread at all, the first call is made on the caller's thread */
+    @Test
+    public void fullPoolRunsOnCallerThreadTest() throws Exception
+    {
+        HedgedGeocodeService.setThreadCount(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread occupier = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Callable<GeocodeResult> call = new Callable<GeocodeResult>() {
+                    @Override
+                    public GeocodeResult call() throws Exception {
+                        started.countDown();
+                        release.await(5, TimeUnit.SECONDS);
+                        return houseResult("occupier");
+                    }
+                };
+                HedgedGeocodeService.geocode(Arrays.asList("occupier"), Arrays.asList(call), Arrays.asList(10L),
+                                             GeocodeQuality.HOUSE, new ArrayList<GeocodeResult>());
+            }
+        });
+        occupier.start();
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            AtomicBoolean called = new AtomicBoolean(false);
+            List<Callable<GeocodeResult>> calls = new ArrayList<>();
+            calls.add(fastCall(called, "fast"));
+            GeocodeResult result = HedgedGeocodeService.geocode(Arrays.asList("fast"), calls, Arrays.asList(10L),
+                                                                GeocodeQuality.HOUSE, new ArrayList<GeocodeResult>());
+            assertEquals("fast:" + Thread.currentThread().getName(), result.getGeocode().getMethod());
+        }
+        finally {
+            release.countDown();
+            occupier.join();
+        }
+    }
+}
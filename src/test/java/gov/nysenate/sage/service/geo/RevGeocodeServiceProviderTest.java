@@ -0,0 +1,88 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RevGeocodeServiceProviderTest
+{
+    private static final AtomicInteger calls = new AtomicInteger();
+
+    /** Reverse geocoder that places every point on the same street */
+    public static class StubRevGeocoder implements RevGeocodeService
+    {
+        @Override
+        public GeocodeResult reverseGeocode(Point point)
+        {
+            calls.incrementAndGet();
+            Geocode geocode = new Geocode(new Point(point.getLat(), point.getLon()), GeocodeQuality.HOUSE, "stub");
+            return new GeocodeResult(StubRevGeocoder.class, ResultStatus.SUCCESS,
+                                     new GeocodedAddress(new Address("214 8th St", "Troy", "NY", "12180"), geocode));
+        }
+
+        @Override
+        public ArrayList<GeocodeResult> reverseGeocode(ArrayList<Point> points)
+        {
+            ArrayList<GeocodeResult> results = new ArrayList<>();
+            for (Point point : points) {
+                results.add(reverseGeocode(point));
+            }
+            return results;
+        }
+    }
+
+    private RevGeocodeServiceProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        calls.set(0);
+        provider = new RevGeocodeServiceProvider();
+        provider.registerDefaultProvider("stub", StubRevGeocoder.class);
+    }
+
+    @Test
+    public void cacheHitUsesRequestedPointTest()
+    {
+        Point first = new Point(42.731201, -73.684201);
+        Point second = new Point(42.731249, -73.684249);
+        GeocodeResult firstResult = provider.reverseGeocode(first, "stub", false);
+        GeocodeResult secondResult = provider.reverseGeocode(second, "stub", false);
+
+        assertEquals(1, calls.get());
+        assertEquals(first.getLat(), firstResult.getGeocode().getLat(), 0);
+        assertEquals(second.getLat(), secondResult.getGeocode().getLat(), 0);
+        assertEquals(second.getLon(), secondResult.getGeocode().getLon(), 0);
+        assertEquals(GeocodeQuality.HOUSE, secondResult.getGeocode().getQuality());
+        assertEquals("214 8th St", secondResult.getAddress().getAddr1());
+    }
+
+    @Test
+    public void cachedResultIsDeepCopiedTest()
+    {
+        Point point = new Point(42.7312, -73.6842);
+        GeocodeResult firstResult = provider.reverseGeocode(point, "stub", false);
+        firstResult.getAddress().setAddr1("changed");
+        firstResult.getGeocode().setQuality(GeocodeQuality.NOMATCH);
+
+        GeocodeResult secondResult = provider.reverseGeocode(point, "stub", false);
+        secondResult.getGeocode().getLatLon().setLat(0.0);
+
+        GeocodeResult thirdResult = provider.reverseGeocode(point, "stub", false);
+        assertEquals(1, calls.get());
+        assertEquals("214 8th St", thirdResult.getAddress().getAddr1());
+        assertEquals(GeocodeQuality.HOUSE, thirdResult.getGeocode().getQuality());
+        assertEquals(42.7312, thirdResult.getGeocode().getLat(), 0);
+    }
+}
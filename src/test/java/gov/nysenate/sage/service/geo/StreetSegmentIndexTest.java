@@ -0,0 +1,74 @@
+package gov.nysenate.sage.service.geo;
+
+import gov.nysenate.sage.model.address.StreetAddress;
+import gov.nysenate.sage.model.geo.Point;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreetSegmentIndexTest
+{
+    private StreetSegmentIndex newIndex()
+    {
+        StreetSegmentIndex index = new StreetSegmentIndex(0.005);
+        /** 8th St runs due east along latitude 42 with odd numbers on the north (left) side */
+        int eighth = index.addSegment(new float[]{-73.01f, 42f, -73.00f, 42f});
+        index.setStreet(eighth, "", "8th", "St", "", "12180");
+        index.setRange(eighth, 1, 99, true);
+        index.setRange(eighth, 2, 100, false);
+        /** Main St runs due north from the east end of 8th St and has no ranges */
+        int main = index.addSegment(new float[]{-73.00f, 42f, -73.00f, 42.01f});
+        index.setStreet(main, "N", "Main", "St", "", "12180");
+        /** Unnamed segments are not indexed */
+        index.addSegment(new float[]{-73.02f, 42.001f, -73.00f, 42.001f});
+        index.build();
+        return index;
+    }
+
+    @Test
+    public void nearestStreetTest()
+    {
+        StreetSegmentIndex index = newIndex();
+        StreetAddress onEighth = index.getStreetAddress(new Point(42.0002, -73.005), 100);
+        assertNotNull(onEighth);
+        assertEquals("8th", onEighth.getStreetName());
+        assertEquals("12180", onEighth.getZip5());
+
+        StreetAddress onMain = index.getStreetAddress(new Point(42.005, -73.0002), 100);
+        assertEquals("Main", onMain.getStreetName());
+        assertEquals("N", onMain.getPreDir());
+        assertEquals(0, onMain.getBldgNum());
+    }
+
+    @Test
+    public void houseNumberFromSideOfStreetTest()
+    {
+        StreetSegmentIndex index = newIndex();
+        StreetAddress north = index.getStreetAddress(new Point(42.0002, -73.005), 100);
+        StreetAddress south = index.getStreetAddress(new Point(41.9998, -73.005), 100);
+        assertEquals(1, north.getBldgNum() % 2);
+        assertEquals(0, south.getBldgNum() % 2);
+        assertTrue(Math.abs(north.getBldgNum() - 50) <= 2);
+        assertTrue(Math.abs(south.getBldgNum() - 50) <= 2);
+    }
+
+    @Test
+    public void maxDistanceTest()
+    {
+        StreetSegmentIndex index = newIndex();
+        /** About 1.1 km north of 8th St and 800 m west of Main St */
+        assertNull(index.getStreetAddress(new Point(42.01, -73.01), 100));
+        assertNotNull(index.getStreetAddress(new Point(42.01, -73.01), 1000));
+        assertNull(index.getStreetAddress(null, 100));
+    }
+
+    @Test
+    public void interpolateHouseNumberTest()
+    {
+        assertEquals(1, StreetSegmentIndex.interpolateHouseNumber(1, 99, 0));
+        assertEquals(99, StreetSegmentIndex.interpolateHouseNumber(1, 99, 1));
+        assertEquals(49, StreetSegmentIndex.interpolateHouseNumber(1, 99, 0.5));
+        assertEquals(52, StreetSegmentIndex.interpolateHouseNumber(100, 2, 0.5));
+        assertEquals(51, StreetSegmentIndex.interpolateHouseNumber(1, 100, 0.5));
+    }
+}
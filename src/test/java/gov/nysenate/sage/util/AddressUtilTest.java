@@ -6,9 +6,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.junit.Assert.assertEquals;
+
 public class AddressUtilTest
 {
     Logger logger = Logger.getLogger(this.getClass());
@@ -16,6 +20,40 @@ public class AddressUtilTest
     @Test
     public void addPunctuationTest()
     {
+        assertEquals("100 N. Pearl St. Apt. 4", addPunctuation("100 N Pearl St Apt 4"));
+        assertEquals("100 main st. apt. 4b", addPunctuation("100 main st apt 4b"));
+        assertEquals("1600 Pennsylvania Ave. NW., Washington, DC 20500", addPunctuation("1600 Pennsylvania Ave NW, Washington, DC 20500"));
+        assertEquals("1 US Hwy. 9", addPunctuation("1 US Hwy 9"));
+        assertEquals("100 Main St. Ste. #200", addPunctuation("100 Main St Ste #200"));
+        assertEquals("100 Main St. Ste 200 Albany", addPunctuation("100 Main St Ste 200 Albany"));
+        assertEquals("2 St. St", addPunctuation("2 St St"));
+    }
 
+    /**
+     * Punctuates every input in the golden file and compares the result to the recorded output, so that changes
+     * to addPunctuation cannot silently change its output.
+     */
+    @Test
+    public void addPunctuationGoldenFileTest() throws Exception
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            getClass().getResourceAsStream("/addPunctuationGolden.tsv"), "UTF-8"));
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("##") || line.isEmpty()) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            assertEquals(line, columns[1].replace("\\t", "\t"), addPunctuation(columns[0].replace("\\t", "\t")));
+            count++;
+        }
+        reader.close();
+        assertEquals(296, count);
+    }
+
+    private String addPunctuation(String addr1)
+    {
+        return AddressUtil.addPunctuation(new Address(addr1, "", "", "", "", "")).getAddr1();
     }
 }
@@ -0,0 +1,82 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchDispatcherTest
+{
+    private static List<Integer> range(int size)
+    {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    @Test
+    public void resultsAreInInputOrderTest()
+    {
+        List<Integer> items = range(53);
+        List<String> results = BatchDispatcher.dispatch("test", items, 5, 4,
+            new BatchDispatcher.BatchRequest<Integer, String>() {
+                @Override
+                public List<String> send(List<Integer> batch) {
+                    List<String> results = new ArrayList<>();
+                    for (Integer item : batch) {
+                        results.add("r" + item);
+                    }
+                    return results;
+                }
+            });
+        assertEquals(items.size(), results.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals("r" + i, results.get(i));
+        }
+    }
+
+    @Test
+    public void failedBatchIsBisectedTest()
+    {
+        final AtomicInteger requests = new AtomicInteger();
+        List<Integer> results = BatchDispatcher.dispatch("test", range(16), 8, 2,
+            new BatchDispatcher.BatchRequest<Integer, Integer>() {
+                @Override
+                public List<Integer> send(List<Integer> batch) {
+                    requests.incrementAndGet();
+                    /** Any batch containing item 5 fails */
+                    return batch.contains(5) ? null : new ArrayList<>(batch);
+                }
+            });
+        for (int i = 0; i < 16; i++) {
+            assertEquals((i == 5) ? null : Integer.valueOf(i), results.get(i));
+        }
+        /** 2 batches, then 0-3/4-7, 4-5/6-7, 4/5 */
+        assertEquals(8, requests.get());
+    }
+
+    @Test
+    public void failingProviderIsNotSplitToSingleItemsTest()
+    {
+        final AtomicInteger requests = new AtomicInteger();
+        List<Integer> results = BatchDispatcher.dispatch("test", range(100), 100, 1,
+            new BatchDispatcher.BatchRequest<Integer, Integer>() {
+                @Override
+                public List<Integer> send(List<Integer> batch) {
+                    requests.incrementAndGet();
+                    return Arrays.asList(1);
+                }
+            });
+        assertEquals(100, results.size());
+        for (Integer result : results) {
+            assertNull(result);
+        }
+        assertEquals(3, requests.get());
+    }
+}
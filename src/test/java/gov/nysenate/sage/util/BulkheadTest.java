@@ -0,0 +1,21 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest
+{
+    @Test
+    public void bulkheadLimitTest()
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 2, 0);
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(2, bulkhead.getActiveCount());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+}
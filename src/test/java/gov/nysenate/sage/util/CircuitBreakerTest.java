@@ -0,0 +1,87 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest
+{
+    @Test
+    public void opensAfterConsecutiveFailuresTest()
+    {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 300);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void halfOpenProbeTest()
+    {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        /** A failed probe re-opens the breaker */
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+
+        /** A successful probe closes it */
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void rejectsWhileOpenTest()
+    {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 300);
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void singleProbeWhileHalfOpenTest() throws Exception
+    {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 1);
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        /** Once the open period elapses only one probe is let through until it reports back */
+        Thread.sleep(1100);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void cancelledProbeAllowsAnotherTest() throws Exception
+    {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 1);
+        breaker.recordFailure();
+        Thread.sleep(1100);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.cancelProbe();
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+}
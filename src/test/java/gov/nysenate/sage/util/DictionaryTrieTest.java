@@ -0,0 +1,65 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DictionaryTrieTest
+{
+    private DictionaryTrie newTrie(boolean ignoreCase)
+    {
+        Map<String, String> map = new HashMap<>();
+        map.put("ST", "St");
+        map.put("STREET", "St");
+        map.put("SERVICE DRIVE", "Svc Dr");
+        map.put("SERVICE", "Svc");
+        return new DictionaryTrie(map, ignoreCase);
+    }
+
+    @Test
+    public void getTest()
+    {
+        DictionaryTrie trie = newTrie(false);
+        assertEquals("St", trie.get("STREET"));
+        assertEquals("Svc Dr", trie.get("SERVICE DRIVE"));
+        assertNull(trie.get("STR"));
+        assertNull(trie.get("street"));
+        assertNull(trie.get(""));
+        assertEquals("St", newTrie(true).get("street"));
+    }
+
+    @Test
+    public void tokenMatchTest()
+    {
+        DictionaryTrie trie = newTrie(false);
+        List<String> tokens = Arrays.asList("MAIN", "SERVICE", "DRIVE", "EAST");
+        assertEquals("Svc Dr", trie.get(tokens, 1, 3));
+        assertEquals("Svc", trie.get(tokens, 1, 2));
+        assertNull(trie.get(tokens, 0, 3));
+        assertNull(trie.get(tokens, 1, 4));
+        assertEquals(2, trie.longestMatch(tokens, 1, 4));
+        assertEquals(1, trie.longestMatch(tokens, 1, 2));
+        assertEquals(0, trie.longestMatch(tokens, 0, 4));
+
+        /** Empty tokens match keys with repeated spaces, as with joining the tokens */
+        assertNull(trie.get(Arrays.asList("SERVICE", "", "DRIVE"), 0, 3));
+    }
+
+    @Test
+    public void findMatchesTest()
+    {
+        DictionaryTrie trie = newTrie(true);
+        int[] ends = new int[trie.getMaxKeyLength() + 1];
+        assertEquals(2, trie.findMatches("1 Street", 2, ends));
+        assertEquals(4, ends[0]);
+        assertEquals(8, ends[1]);
+        assertEquals(0, trie.findMatches("1 Street", 0, ends));
+        assertEquals(2, trie.shortestPrefix("ST3"));
+        assertEquals(0, trie.shortestPrefix("S"));
+    }
+}
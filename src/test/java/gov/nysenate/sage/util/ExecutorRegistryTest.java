@@ -0,0 +1,98 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.model.stats.ExecutorStats;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ExecutorRegistryTest
+{
+    private static class FastProvider {}
+    private static class SlowProvider {}
+
+    @Test
+    public void poolPerProviderAndWorkloadTest()
+    {
+        ExecutorService fast = ExecutorRegistry.getExecutor("test", FastProvider.class);
+        assertTrue(fast == ExecutorRegistry.getExecutor("test", FastProvider.class));
+        assertFalse(fast == ExecutorRegistry.getExecutor("test", SlowProvider.class));
+        assertFalse(fast == ExecutorRegistry.getExecutor("other", FastProvider.class));
+    }
+
+    @Test
+    public void slowProviderDoesNotBlockOtherProvidersTest() throws Exception
+    {
+        int poolSize = ((ThreadPoolExecutor) ExecutorRegistry.getExecutor("block", SlowProvider.class)).getMaximumPoolSize();
+        int taskCount = poolSize + 5;
+        final CountDownLatch started = new CountDownLatch(poolSize);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<String>> slow = new ArrayList<>();
+        try {
+            for (int i = 0; i < taskCount; i++) {
+                slow.add(ExecutorRegistry.supplyAsync("block", SlowProvider.class, new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        return "slow";
+                    }
+                }));
+            }
+            /** Every thread of the slow pool is busy before the fast provider is used */
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<String> fast = ExecutorRegistry.supplyAsync("block", FastProvider.class, new Callable<String>() {
+                @Override
+                public String call() {
+                    return "fast";
+                }
+            });
+            assertEquals("fast", fast.get(5, TimeUnit.SECONDS));
+
+            boolean queued = false;
+            for (ExecutorStats stats : ExecutorRegistry.getStats()) {
+                if (stats.getWorkload().equals("block") && stats.getProvider().equals("slowprovider")) {
+                    assertEquals(stats.getPoolSize(), stats.getActiveThreads());
+                    queued = stats.getQueueDepth() > 0;
+                }
+            }
+            assertTrue(queued);
+        }
+        finally {
+            release.countDown();
+        }
+        assertEquals(taskCount, ExecutorRegistry.joinAll(slow).size());
+    }
+
+    @Test
+    public void failedTaskCompletesExceptionallyTest()
+    {
+        CompletableFuture<String> failed = ExecutorRegistry.supplyAsync("test", FastProvider.class, new Callable<String>() {
+            @Override
+            public String call() {
+                throw new IllegalStateException("failed");
+            }
+        });
+        CompletableFuture<String> ok = CompletableFuture.completedFuture("ok");
+        assertEquals(Arrays.asList("ok"), ExecutorRegistry.joinAll(Arrays.asList(failed, ok)));
+        assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void resizeTest()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        ExecutorRegistry.resize(executor, 5);
+        assertEquals(5, executor.getCorePoolSize());
+        assertEquals(5, executor.getMaximumPoolSize());
+        ExecutorRegistry.resize(executor, 1);
+        assertEquals(1, executor.getCorePoolSize());
+        assertEquals(1, executor.getMaximumPoolSize());
+        executor.shutdownNow();
+    }
+}
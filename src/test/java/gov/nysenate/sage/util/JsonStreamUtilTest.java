@@ -0,0 +1,69 @@
+package gov.nysenate.sage.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamUtilTest
+{
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<String> readResults(String json) throws IOException
+    {
+        final List<String> results = new ArrayList<>();
+        final JsonStreamUtil.NodeHandler resultHandler = new JsonStreamUtil.NodeHandler() {
+            @Override
+            public void handle(JsonNode node) {
+                results.add(node.get("name").asText());
+            }
+        };
+        JsonParser parser = objectMapper.getFactory().createParser(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        JsonStreamUtil.readObject(parser, new JsonStreamUtil.FieldHandler() {
+            @Override
+            public void handle(String fieldName, JsonParser parser) throws IOException {
+                if (fieldName.equals("results")) {
+                    JsonStreamUtil.readElements(parser, objectMapper, resultHandler);
+                }
+            }
+        });
+        parser.close();
+        return results;
+    }
+
+    @Test
+    public void readsArrayElementsAndSkipsOtherFieldsTest() throws IOException
+    {
+        List<String> results = readResults("{\"info\":{\"messages\":[{\"a\":1}]},\"results\":[{\"name\":\"a\",\"x\":[1,2]},{\"name\":\"b\"}],\"total\":2}");
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0));
+        assertEquals("b", results.get(1));
+    }
+
+    @Test
+    public void readsSingleObjectAsElementTest() throws IOException
+    {
+        List<String> results = readResults("{\"results\":{\"name\":\"a\"}}");
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0));
+    }
+
+    @Test
+    public void ignoresNullResultsTest() throws IOException
+    {
+        assertEquals(0, readResults("{\"results\":null}").size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonObjectTest() throws IOException
+    {
+        readResults("[1, 2]");
+    }
+}
@@ -0,0 +1,37 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyWindowTest
+{
+    @Test
+    public void percentileTest()
+    {
+        LatencyWindow window = new LatencyWindow(10);
+        assertEquals(-1, window.getPercentile(90));
+        for (int i = 1; i <= 10; i++) {
+            window.add(i * 10);
+        }
+        assertEquals(10, window.getCount());
+        assertEquals(90, window.getPercentile(90));
+        assertEquals(50, window.getPercentile(50));
+        assertEquals(10, window.getPercentile(0));
+        assertEquals(55, window.getMean());
+    }
+
+    @Test
+    public void rollingWindowTest()
+    {
+        LatencyWindow window = new LatencyWindow(3);
+        window.add(1000);
+        window.add(10);
+        window.add(20);
+        window.add(30);
+        /** The oldest sample has been replaced */
+        assertEquals(3, window.getCount());
+        assertEquals(30, window.getPercentile(100));
+        assertEquals(20, window.getMean());
+    }
+}
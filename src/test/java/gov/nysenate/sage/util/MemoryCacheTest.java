@@ -0,0 +1,53 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryCacheTest
+{
+    @Test
+    public void sizeEvictionTest()
+    {
+        MemoryCache<String, Integer> cache = new MemoryCache<>("test", 2, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        /** 'b' was the least recently used entry */
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void ttlEvictionTest() throws InterruptedException
+    {
+        MemoryCache<String, Integer> cache = new MemoryCache<>("test", 10, 1);
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        Thread.sleep(1100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void resizeTest()
+    {
+        MemoryCache<String, Integer> cache = new MemoryCache<>("test", 3, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.resize(1, 0);
+        assertEquals(1, cache.size());
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertNull(cache.get("a"));
+        assertEquals(0.5, cache.getStats().getHitRate(), 0.001);
+    }
+}
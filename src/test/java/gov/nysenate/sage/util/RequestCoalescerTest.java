@@ -0,0 +1,67 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.model.address.Address;
+import gov.nysenate.sage.model.address.GeocodedAddress;
+import gov.nysenate.sage.model.geo.Geocode;
+import gov.nysenate.sage.model.geo.GeocodeQuality;
+import gov.nysenate.sage.model.geo.Point;
+import gov.nysenate.sage.model.result.GeocodeResult;
+import gov.nysenate.sage.model.result.ResultStatus;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest
+{
+    @Test
+    public void claimAndCompleteTest()
+    {
+        RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+        CompletableFuture<String> owner = new CompletableFuture<>();
+        assertNull(coalescer.claim("key", owner));
+
+        CompletableFuture<String> waiter = coalescer.claim("key", new CompletableFuture<String>());
+        assertSame(owner, waiter);
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        coalescer.complete("key", owner, "result");
+        assertEquals("result", coalescer.await(waiter));
+        assertEquals(0, coalescer.getInFlightCount());
+
+        /** Once completed, the key can be claimed again */
+        assertNull(coalescer.claim("key", new CompletableFuture<String>()));
+    }
+
+    /** Each coalesced caller gets a copy of the result that it can modify without affecting the others */
+    @Test
+    public void coalescedResultsAreIndependentTest()
+    {
+        RequestCoalescer<String, GeocodeResult> coalescer = new RequestCoalescer<>();
+        CompletableFuture<GeocodeResult> owner = new CompletableFuture<>();
+        coalescer.claim("key", owner);
+        CompletableFuture<GeocodeResult> waiter = coalescer.claim("key", new CompletableFuture<GeocodeResult>());
+
+        GeocodedAddress geocodedAddress = new GeocodedAddress(new Address("100 Nyroy Dr", "Troy", "NY", "12180"),
+                                                              new Geocode(new Point(42.74, -73.67), GeocodeQuality.HOUSE, "Test"));
+        GeocodeResult ownerResult = new GeocodeResult(GeocodeResult.class, ResultStatus.SUCCESS, geocodedAddress);
+        coalescer.complete("key", owner, ownerResult.copy());
+
+        GeocodeResult first = coalescer.await(waiter).copy();
+        GeocodeResult second = coalescer.await(waiter).copy();
+        first.getAddress().setCity("Albany");
+        first.getGeocode().getLatLon().setLat(0);
+        first.getGeocode().setQuality(GeocodeQuality.CITY);
+        first.addMessage("Modified");
+        ownerResult.getAddress().setZip5("12207");
+
+        assertEquals("Troy", second.getAddress().getCity());
+        assertEquals("12180", second.getAddress().getZip5());
+        assertEquals(42.74, second.getGeocode().getLat(), 0);
+        assertEquals(GeocodeQuality.HOUSE, second.getGeocode().getQuality());
+        assertTrue(second.getMessages().isEmpty());
+        assertEquals("Troy", ownerResult.getAddress().getCity());
+    }
+}
@@ -0,0 +1,77 @@
+package gov.nysenate.sage.util;
+
+import gov.nysenate.sage.model.address.Address;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing StreetAddressParser against the regex based parser it replaced, using the addresses
+ * from the golden file as input. Run the main method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreetAddressParserBenchmark
+{
+    private List<Address> addresses = new ArrayList<>();
+
+    @Setup
+    public void loadAddresses() throws Exception
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            getClass().getResourceAsStream("/streetAddressParserGolden.tsv"), "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("A\t")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            for (int i = 1; i < columns.length; i++) {
+                columns[i] = columns[i].replace("\\t", "\t").replace("\\n", "\n").replace("\\\\", "\\");
+            }
+            addresses.add(new Address(columns[1], columns[2], columns[3], columns[4], columns[5], columns[6]));
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public void tokenizer(Blackhole blackhole)
+    {
+        for (Address address : addresses) {
+            blackhole.consume(StreetAddressParser.parseAddress(address));
+        }
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole)
+    {
+        for (Address address : addresses) {
+            blackhole.consume(RegexStreetAddressParser.parseAddress(address));
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder().include(StreetAddressParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
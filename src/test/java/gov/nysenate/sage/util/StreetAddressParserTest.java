@@ -5,9 +5,12 @@ import gov.nysenate.sage.model.address.StreetAddress;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.*;
@@ -77,6 +80,113 @@ public class StreetAddressParserTest {
 
     }
 
+    /**
+     * Parses every input in the golden file and compares the result to the recorded output, so that changes
+     * to the parser cannot silently change how addresses are parsed.
+     */
+    @Test
+    public void goldenFileTest() throws Exception
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            getClass().getResourceAsStream("/streetAddressParserGolden.tsv"), "UTF-8"));
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            for (int i = 1; i < columns.length; i++) {
+                columns[i] = columns[i].replace("\\t", "\t").replace("\\n", "\n").replace("\\\\", "\\");
+            }
+            StreetAddress streetAddress;
+            if (columns[0].equals("S")) {
+                streetAddress = new StreetAddress();
+                StreetAddressParser.extractStreet(columns[1], streetAddress);
+                StreetAddressParser.normalizeStreetAddress(streetAddress);
+            }
+            else {
+                streetAddress = StreetAddressParser.parseAddress(
+                    new Address(columns[1], columns[2], columns[3], columns[4], columns[5], columns[6]));
+            }
+            assertThat(line, getGoldenFields(streetAddress), is(columns[columns.length - 1]));
+            count++;
+        }
+        reader.close();
+        assertThat(count, is(209));
+    }
+
+    /**
+     * Parses generated addresses with both StreetAddressParser and the regex based parser it replaced and checks
+     * that they agree, including on the inputs that make them throw.
+     */
+    @Test
+    public void regexParserEquivalenceTest()
+    {
+        String[] words = {"1", "214", "92-64", "214A", "0", "N", "E", "South", "SOUTH-WEST", "Main", "8th", "21st",
+            "Saint", "St.", "O'Neil", "Lake", "Park", "Avenue", "X", "of", "St", "Street", "Ave", "Rd", "Dr", "Pl", "Hwy",
+            "Route", "County", "Road", "State", "US", "Interstate", "Apt", "#", "#4", "Apt#4", "Suite", "Fl", "Rear",
+            "APT3B", "3B", "Albany", "New", "York", "Town", "(City)", "Troy/City", "NY", "ca", "North Carolina", "ZZ",
+            "12180", "12180-2931", "12180 2931", "-----", "1218", "USA", "U.S.", "United States", "PO BOX", "POBOX",
+            "P.O. BOX", "Box", "1582"};
+        String[] separators = {" ", " ", " ", ", ", ",", "  ", " , ", ",,", "\t", "\n"};
+        Random random = new Random(17);
+        for (int i = 0; i < 20000; i++) {
+            String addr1 = getRandomAddress(random, words, separators, 12);
+            Address address = (random.nextBoolean()) ? new Address(addr1)
+                : new Address(addr1, getRandomAddress(random, words, separators, 2), getRandomAddress(random, words, separators, 2),
+                              "NY", (random.nextBoolean()) ? "12180" : "", "");
+            assertThat(addr1, parseWith(address, false), is(parseWith(address, true)));
+            assertThat(addr1, extractStreetWith(addr1, false), is(extractStreetWith(addr1, true)));
+        }
+    }
+
+    private static String getRandomAddress(Random random, String[] words, String[] separators, int maxWords)
+    {
+        StringBuilder sb = new StringBuilder(words[random.nextInt(words.length)]);
+        for (int i = random.nextInt(maxWords); i > 0; i--) {
+            sb.append(separators[random.nextInt(separators.length)]).append(words[random.nextInt(words.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String parseWith(Address address, boolean regexParser)
+    {
+        try {
+            return getGoldenFields((regexParser) ? RegexStreetAddressParser.parseAddress(address)
+                                                 : StreetAddressParser.parseAddress(address));
+        }
+        catch (IndexOutOfBoundsException ex) {
+            return "IndexOutOfBoundsException";
+        }
+    }
+
+    private static String extractStreetWith(String street, boolean regexParser)
+    {
+        StreetAddress streetAddress = new StreetAddress();
+        try {
+            if (regexParser) {
+                RegexStreetAddressParser.extractStreet(street, streetAddress);
+                RegexStreetAddressParser.normalizeStreetAddress(streetAddress);
+            }
+            else {
+                StreetAddressParser.extractStreet(street, streetAddress);
+                StreetAddressParser.normalizeStreetAddress(streetAddress);
+            }
+            return getGoldenFields(streetAddress);
+        }
+        catch (IndexOutOfBoundsException ex) {
+            return "IndexOutOfBoundsException";
+        }
+    }
+
+    private static String getGoldenFields(StreetAddress sa)
+    {
+        return StringUtils.join(Arrays.asList(sa.getBldgNum(), sa.getBldgChar(), sa.getPreDir(), sa.getStreetName(),
+            sa.getStreetType(), sa.getPostDir(), sa.getInternal(), sa.getLocation(), sa.getState(), sa.getZip5(),
+            sa.getZip4(), sa.getPoBox(), sa.isHwy()), "|");
+    }
+
     public void assertStreetAddressesAreEqual(StreetAddress s1, StreetAddress s2)
     {
         assertThat(s1, notNullValue());
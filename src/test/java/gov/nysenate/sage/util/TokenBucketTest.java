@@ -0,0 +1,43 @@
+package gov.nysenate.sage.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest
+{
+    @Test
+    public void burstThenRejectTest()
+    {
+        TokenBucket tokenBucket = new TokenBucket(1, 2);
+        assertEquals(0, tokenBucket.reserve(0));
+        assertEquals(0, tokenBucket.reserve(0));
+        assertEquals(-1, tokenBucket.reserve(0));
+    }
+
+    @Test
+    public void queuedReservationsAreSpacedOutTest()
+    {
+        TokenBucket tokenBucket = new TokenBucket(10, 1);
+        assertEquals(0, tokenBucket.reserve(1000));
+        long firstWait = tokenBucket.reserve(1000);
+        long secondWait = tokenBucket.reserve(1000);
+        assertTrue(firstWait > 0 && firstWait <= 100);
+        assertTrue(secondWait > firstWait && secondWait <= 200);
+        /** A caller unwilling to wait that long is rejected */
+        assertEquals(-1, tokenBucket.reserve(100));
+    }
+
+    @Test
+    public void interruptedWaiterReturnsTokenTest()
+    {
+        TokenBucket tokenBucket = new TokenBucket(1, 1);
+        assertEquals(0, tokenBucket.reserve(0));
+        Thread.currentThread().interrupt();
+        assertFalse(tokenBucket.tryAcquire(2000));
+        assertTrue(Thread.interrupted());
+        /** Only the one placeholder was returned so the next caller still waits about a second */
+        long waitMs = tokenBucket.reserve(2000);
+        assertTrue(waitMs > 0 && waitMs <= 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package gov.nysenate.sage.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UrlRequestTest
+{
+    private static final UrlRequest.ResponseReader<String> READER = new UrlRequest.ResponseReader<String>() {
+        @Override
+        public String read(InputStream inputStream) throws IOException {
+            return "ok";
+        }
+    };
+
+    @Test
+    public void exhaustedPoolFailsFastTest() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, 2);
+                OutputStream out = exchange.getResponseBody();
+                out.write("ok".getBytes("UTF-8"));
+                out.close();
+            }
+        });
+        server.start();
+
+        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(1);
+        connectionManager.setDefaultMaxPerRoute(1);
+        final HttpClient httpClient = UrlRequest.createHttpClient(connectionManager, 200);
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    UrlRequest.execute(httpClient, new HttpGet(url), READER);
+                }
+                catch (IOException ex) {
+                    /** Not checked */
+                }
+            }
+        });
+        try {
+            /** The only pooled connection is held by a request the server has not answered yet */
+            holder.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            long start = System.currentTimeMillis();
+            try {
+                UrlRequest.execute(httpClient, new HttpGet(url), READER);
+                fail("Expected the request to time out waiting for a pooled connection");
+            }
+            catch (ConnectionPoolTimeoutException ex) {
+                assertTrue(System.currentTimeMillis() - start < 2000);
+            }
+        }
+        finally {
+            release.countDown();
+            holder.join(5000);
+            connectionManager.shutdown();
+            server.stop(0);
+        }
+    }
+}